@@ -0,0 +1,156 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * GeneratedAccount class builds accounts holding a given number of lots for the benchmarks. Lots
+ * are bought one minute apart over a fixed set of symbols, and every tenth purchase is followed by
+ * a sale, so reports have purchases and sales spread over the whole time span. Quotes come from a
+ * seeded in-process source, the same size and seed always give the same account.
+ */
+final class GeneratedAccount implements QuoteProvider {
+
+  /**
+   * Number of asset symbols lots are spread over.
+   */
+  static final int SYMBOLS = 100;
+
+  /**
+   * Time the first lot is bought at.
+   */
+  static final long START_TIME = 1_600_000_000L;
+
+  /**
+   * Time between quotes.
+   */
+  static final long STEP = 60;
+
+  /**
+   * Generator of price moves.
+   */
+  private final Random random;
+
+  /**
+   * Latest price by symbol index.
+   */
+  private final double[] prices = new double[SYMBOLS];
+
+  /**
+   * Time of the next quote.
+   */
+  private long time = START_TIME;
+
+  /**
+   * The account built.
+   */
+  private final User user;
+
+
+  /**
+   * Constructor builds the account.
+   *
+   * @param lots number of lots to buy.
+   * @param seed seed of the price moves.
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   */
+  GeneratedAccount(int lots, long seed) throws IOException, InterruptedException {
+    random = new Random(seed);
+    for (int i = 0; i < SYMBOLS; i++) {
+      prices[i] = 10 + random.nextInt(490);
+    }
+    user = new User("benchmark", this);
+    user.addFunds(1e12);
+    for (int i = 0; i < lots; i++) {
+      String symbol = symbol(random.nextInt(SYMBOLS));
+      user.purchaseAsset(symbol, 10);
+      if (i % 10 == 9) {
+        user.sellAsset(symbol, 5, LotSelection.FIFO);
+      }
+    }
+  }
+
+
+  /**
+   * Returning the account built.
+   *
+   * @return the account.
+   */
+  User getUser() {
+    return user;
+  }
+
+
+  /**
+   * Returning the time of the latest quote.
+   *
+   * @return UNIX timestamp.
+   */
+  synchronized long getTime() {
+    return time;
+  }
+
+
+  /**
+   * Method returns the symbol of the given index.
+   *
+   * @param index index between 0 and SYMBOLS.
+   * @return the asset symbol.
+   */
+  static String symbol(int index) {
+    return index % 10 == 0 ? "C" + index + "-USD" : "S" + index;
+  }
+
+
+  /**
+   * Method returns the full name of the given index.
+   *
+   * @param index index between 0 and SYMBOLS.
+   * @return the full name.
+   */
+  static String fullName(int index) {
+    return (index % 10 == 0 ? "Coin " : "Stock ") + index;
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public synchronized CompletableFuture<List<AssetQuote>> getQuotesAsync(
+      List<String> assetSymbols) {
+    List<AssetQuote> quotes = new ArrayList<>();
+    for (String symbol : assetSymbols) {
+      int index = index(symbol);
+      if (index < 0) {
+        continue;
+      }
+      prices[index] *= 1 + 0.01 * random.nextGaussian();
+      quotes.add(new AssetQuote(symbol, fullName(index),
+          index % 10 == 0 ? "CRYPTOCURRENCY" : "EQUITY", time, prices[index]));
+      time += STEP;
+    }
+    return CompletableFuture.completedFuture(quotes);
+  }
+
+
+  /**
+   * Helper method to find the index of a generated symbol.
+   *
+   * @param symbol asset symbol.
+   * @return the index, -1 if the symbol is not generated.
+   */
+  private static int index(String symbol) {
+    try {
+      int index = Integer.parseInt(symbol.endsWith("-USD")
+          ? symbol.substring(1, symbol.length() - 4) : symbol.substring(1));
+      return index >= 0 && index < SYMBOLS && symbol.equals(symbol(index)) ? index : -1;
+    } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PortfolioBenchmark class measures the reports of an account holding 10, 10k and 1M lots. The
+ * ranged reports ask for the middle tenth of the time the lots were bought over.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class PortfolioBenchmark {
+
+  /**
+   * Number of lots the account is generated with.
+   */
+  @Param({"10", "10000", "1000000"})
+  public int lots;
+
+  /**
+   * The account measured.
+   */
+  private User user;
+
+  /**
+   * Start of the ranged reports.
+   */
+  private long rangeStart;
+
+  /**
+   * End of the ranged reports.
+   */
+  private long rangeEnd;
+
+  /**
+   * Names asked for by name, symbols and partial names.
+   */
+  private final List<String> names = List.of("S11", "Stock 42", "Coi", "TSLA", "missing");
+
+
+  /**
+   * Method generates the account.
+   *
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, InterruptedException {
+    GeneratedAccount account = new GeneratedAccount(lots, 1);
+    user = account.getUser();
+    long span = account.getTime() - GeneratedAccount.START_TIME;
+    rangeStart = GeneratedAccount.START_TIME + span * 9 / 20;
+    rangeEnd = GeneratedAccount.START_TIME + span * 11 / 20;
+  }
+
+
+  /**
+   * Benchmark of the short status of the account.
+   *
+   * @return the status.
+   */
+  @Benchmark
+  public String shortStatus() {
+    return user.getShortStatus();
+  }
+
+
+  /**
+   * Benchmark of matching asset names and symbols against the account.
+   *
+   * @return the symbols matched.
+   */
+  @Benchmark
+  public List<String> namesToSymbolList() {
+    return user.namesToSymbolList(user.getView(), names);
+  }
+
+
+  /**
+   * Benchmark of the report of purchases made within a range.
+   *
+   * @return the report.
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   */
+  @Benchmark
+  public String purchasesInRange() throws IOException, InterruptedException {
+    return user.listPortfolioPurchasesInRange(rangeStart, rangeEnd);
+  }
+
+
+  /**
+   * Benchmark of the report of sales made within a range.
+   *
+   * @return the report.
+   */
+  @Benchmark
+  public String salesInRange() {
+    return user.listPortfolioSalesInRange(rangeStart, rangeEnd);
+  }
+
+
+  /**
+   * Benchmark of the report of all investments.
+   *
+   * @return the report.
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   */
+  @Benchmark
+  public String allInvestments() throws IOException, InterruptedException {
+    return user.listAllInvestments();
+  }
+
+
+  /**
+   * Benchmark of the report of investments asked for by name.
+   *
+   * @return the report.
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   */
+  @Benchmark
+  public String investmentsByName() throws IOException, InterruptedException {
+    return user.listPortfolioAssetsByName(names);
+  }
+}
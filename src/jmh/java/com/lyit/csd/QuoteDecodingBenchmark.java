@@ -0,0 +1,90 @@
+package com.lyit.csd;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * QuoteDecodingBenchmark class measures decoding of quote responses holding 1, 10 and 100
+ * quotes. Each quote carries the fields the api sends besides the five that are read, so
+ * skipping them is part of the cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuoteDecodingBenchmark {
+
+  /**
+   * Number of quotes in the response.
+   */
+  @Param({"1", "10", "100"})
+  public int quotes;
+
+  /**
+   * Body of the response.
+   */
+  private byte[] response;
+
+
+  /**
+   * Method writes the response.
+   */
+  @Setup
+  public void setUp() {
+    StringBuilder json = new StringBuilder("{\"quoteResponse\":{\"result\":[");
+    for (int i = 0; i < quotes; i++) {
+      String symbol = GeneratedAccount.symbol(i % GeneratedAccount.SYMBOLS);
+      json.append(i == 0 ? "" : ",")
+          .append("{\"language\":\"en-US\",\"region\":\"US\",\"quoteType\":\"EQUITY\",")
+          .append("\"typeDisp\":\"Equity\",\"quoteSourceName\":\"Nasdaq Real Time Price\",")
+          .append("\"triggerable\":true,\"customPriceAlertConfidence\":\"HIGH\",")
+          .append("\"currency\":\"USD\",\"exchange\":\"NMS\",\"shortName\":\"")
+          .append(GeneratedAccount.fullName(i % GeneratedAccount.SYMBOLS)).append("\",")
+          .append("\"longName\":\"Generated Stock Incorporated\",\"messageBoardId\":\"finmb_1\",")
+          .append("\"exchangeTimezoneName\":\"America/New_York\",\"market\":\"us_market\",")
+          .append("\"firstTradeDateMilliseconds\":345479400000,\"priceHint\":2,")
+          .append("\"regularMarketChange\":-1.25,\"regularMarketChangePercent\":-0.73,")
+          .append("\"regularMarketTime\":").append(1_600_000_000L + i).append(",")
+          .append("\"regularMarketPrice\":").append(100 + i * 0.25).append(",")
+          .append("\"regularMarketDayHigh\":172.1,\"regularMarketDayRange\":\"168.2 - 172.1\",")
+          .append("\"regularMarketDayLow\":168.2,\"regularMarketVolume\":75615432,")
+          .append("\"regularMarketPreviousClose\":171.2,\"bid\":169.9,\"ask\":170.0,")
+          .append("\"bidSize\":10,\"askSize\":12,\"fullExchangeName\":\"NasdaqGS\",")
+          .append("\"fiftyTwoWeekRange\":\"116.21 - 182.94\",\"fiftyDayAverage\":165.3,")
+          .append("\"twoHundredDayAverage\":150.1,\"marketCap\":2780000000000,")
+          .append("\"trailingPE\":28.4,\"epsTrailingTwelveMonths\":6.0,")
+          .append("\"marketState\":\"REGULAR\",\"tradeable\":false,")
+          .append("\"components\":[\"^NDX\",\"^GSPC\"],\"symbol\":\"").append(symbol).append("\"}");
+    }
+    response = json.append("],\"error\":null}}").toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+
+  /**
+   * Benchmark of decoding the response.
+   *
+   * @return the quotes decoded.
+   * @throws IOException if the response is not valid JSON.
+   */
+  @Benchmark
+  public List<AssetQuote> mapRequiredFields() throws IOException {
+    return ConnectionPort.mapRequiredFields(new ByteArrayInputStream(response));
+  }
+}
@@ -0,0 +1,79 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SellBenchmark class measures selling from an account holding 10, 10k and 1M lots. Every sale
+ * is recorded, so the account is generated again for each iteration to keep its size from
+ * drifting over a long run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SellBenchmark {
+
+  /**
+   * Number of lots the account is generated with.
+   */
+  @Param({"10", "10000", "1000000"})
+  public int lots;
+
+  /**
+   * How the lots to sell from are picked.
+   */
+  @Param({"LOWEST_COST", "FIFO"})
+  public LotSelection selection;
+
+  /**
+   * The account measured.
+   */
+  private User user;
+
+  /**
+   * Symbol index of the next sale.
+   */
+  private int next;
+
+
+  /**
+   * Method generates the account.
+   *
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   */
+  @Setup(Level.Iteration)
+  public void setUp() throws IOException, InterruptedException {
+    user = new GeneratedAccount(lots, 1).getUser();
+  }
+
+
+  /**
+   * Benchmark of selling a small amount of one asset symbol, cycling through the symbols.
+   *
+   * @return whether the sale went through.
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   */
+  @Benchmark
+  public boolean sellAsset() throws IOException, InterruptedException {
+    next = (next + 1) % GeneratedAccount.SYMBOLS;
+    return user.sellAsset(GeneratedAccount.symbol(next), 0.001, selection);
+  }
+}
@@ -26,14 +26,19 @@ public class Asset {
     private long timeStamp;
 
     /**
-     * Quote price of the asset (value when bought).
+     * Quote price of the asset (value when bought), in micro dollars.
      */
-    private double priceBought;
+    private long priceBought;
 
     /**
-     * The number/unit of the asset (held or bought).
+     * The number/unit of the asset (held or bought), in hundred millionths of a unit.
      */
-    private double amount;
+    private long amount;
+
+    /**
+     * Identifier of this lot within the portfolio holding it, 0 until the lot is added.
+     */
+    private long lotId;
 
 
     /**
@@ -52,8 +57,8 @@ public class Asset {
         this.assetFullName = assetFullName;
         this.assetType = assetType;
         this.timeStamp = timeStamp;
-        this.priceBought = priceBought;
-        this.amount = amount;
+        this.priceBought = Money.toMicros(priceBought);
+        this.amount = Money.toUnits(amount);
     }
 
 
@@ -64,6 +69,26 @@ public class Asset {
     }
 
 
+    /**
+     * Creating a lot whose price and amount are already scaled, taken over exactly.
+     *
+     * @param assetSymbol asset symbol.
+     * @param assetFullName asset full name.
+     * @param assetType type of the asset.
+     * @param timeStamp asset timestamp.
+     * @param priceBoughtMicros price at the moment of purchase in micro dollars, see Money.
+     * @param amountUnits amount of asset in hundred millionths of a unit.
+     * @return the lot.
+     */
+    static Asset ofUnits(String assetSymbol, String assetFullName, String assetType,
+                         long timeStamp, long priceBoughtMicros, long amountUnits) {
+        Asset asset = new Asset(assetSymbol, assetFullName, assetType, timeStamp, 0, 0);
+        asset.priceBought = priceBoughtMicros;
+        asset.amount = amountUnits;
+        return asset;
+    }
+
+
     /**
      * Returning asset symbol.
      *
@@ -103,7 +128,15 @@ public class Asset {
      *
      * @return the price the relevant asset was brought on.
      */
-    public double getPriceBought() { return priceBought; }
+    public double getPriceBought() { return Money.toUsd(priceBought); }
+
+
+    /**
+     * Returning the price brought in micro dollars.
+     *
+     * @return the price the relevant asset was brought on, see Money.
+     */
+    public long getPriceBoughtMicros() { return priceBought; }
 
 
     /**
@@ -111,15 +144,67 @@ public class Asset {
      *
      * @return the amount of the relevant asset.
      */
-    public double getAmount() { return amount; }
+    public double getAmount() { return Money.toAmount(amount); }
+
+
+    /**
+     * Returning the amount in hundred millionths of a unit.
+     *
+     * @return the amount of the relevant asset, see Money.
+     */
+    public long getAmountUnits() { return amount; }
 
 
     /**
-     * Setting the amount.
+     * Setting the amount. For a lot held in a portfolio use Portfolio.setLotAmount instead,
+     * so the position totals stay in step.
      *
      * @param amount: the number of the relevant asset.
      */
-    public void setAmount(double amount) { this.amount = amount; }
+    public void setAmount(double amount) { this.amount = Money.toUnits(amount); }
+
+
+    /**
+     * Setting the amount in hundred millionths of a unit. For a lot held in a portfolio use
+     * Portfolio.setLotAmount instead.
+     *
+     * @param amount: the number of the relevant asset, see Money.
+     */
+    void setAmountUnits(long amount) { this.amount = amount; }
+
+
+    /**
+     * Returning the lot identifier.
+     *
+     * @return the identifier given to this lot by the portfolio holding it.
+     */
+    public long getLotId() { return lotId; }
+
+
+    /**
+     * Setting the lot identifier. Done by the portfolio when the lot is added.
+     *
+     * @param lotId: the identifier of this lot within the portfolio.
+     */
+    void setLotId(long lotId) { this.lotId = lotId; }
+
+
+    /**
+     * Returning a copy of this lot, lot identifier included.
+     *
+     * @return the copy.
+     */
+    Asset copy() {
+        Asset copy = new Asset();
+        copy.assetSymbol = assetSymbol;
+        copy.assetFullName = assetFullName;
+        copy.assetType = assetType;
+        copy.timeStamp = timeStamp;
+        copy.priceBought = priceBought;
+        copy.amount = amount;
+        copy.lotId = lotId;
+        return copy;
+    }
 
 
     /**
@@ -134,8 +219,8 @@ public class Asset {
                 ", assetFullName='" + assetFullName + '\'' +
                 ", assetType='" + assetType + '\'' +
                 ", timeStamp=" + timeStamp +
-                ", priceBought=" + priceBought +
-                ", amount=" + amount +
+                ", priceBought=" + getPriceBought() +
+                ", amount=" + getAmount() +
                 '}';
     }
 }
\ No newline at end of file
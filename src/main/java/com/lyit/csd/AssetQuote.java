@@ -33,10 +33,10 @@ public class AssetQuote {
   private long timeStamp;
 
   /**
-   * The value in USD of the named asset at this point in time.
+   * The value in micro dollars of the named asset at this point in time, mapped to
+   * regularMarketPrice in USD through its getter and setter.
    */
-  @JsonProperty("regularMarketPrice")
-  private double livePrice;
+  private long livePrice;
 
 
   /**
@@ -54,7 +54,7 @@ public class AssetQuote {
     this.assetFullName = assetFullName;
     this.assetType = assetType;
     this.timeStamp = timeStamp;
-    this.livePrice = livePrice;
+    this.livePrice = Money.toMicros(livePrice);
   }
 
   /**
@@ -64,6 +64,24 @@ public class AssetQuote {
   }
 
 
+  /**
+   * Creating a quote whose price is already in micro dollars, taken over exactly.
+   *
+   * @param assetSymbol symbol of the asset.
+   * @param assetFullName full name of the asset.
+   * @param assetType type of the asset.
+   * @param timeStamp UNIX timestamp
+   * @param livePriceMicros current price in micro dollars, see Money.
+   * @return the quote.
+   */
+  static AssetQuote ofMicros(String assetSymbol, String assetFullName, String assetType,
+                             long timeStamp, long livePriceMicros) {
+    AssetQuote quote = new AssetQuote(assetSymbol, assetFullName, assetType, timeStamp, 0);
+    quote.livePrice = livePriceMicros;
+    return quote;
+  }
+
+
   /**
    * Returning asset symbol.
    *
@@ -105,6 +123,24 @@ public class AssetQuote {
    *
    * @return the live/up-to-date price of the asset.
    */
-  public double getLivePrice() { return livePrice; }
+  @JsonProperty("regularMarketPrice")
+  public double getLivePrice() { return Money.toUsd(livePrice); }
+
+
+  /**
+   * Returning the live price in micro dollars.
+   *
+   * @return the live/up-to-date price of the asset, see Money.
+   */
+  public long getLivePriceMicros() { return livePrice; }
+
+
+  /**
+   * Setting the live price.
+   *
+   * @param livePrice the live/up-to-date price of the asset in USD.
+   */
+  @JsonProperty("regularMarketPrice")
+  private void setLivePrice(double livePrice) { this.livePrice = Money.toMicros(livePrice); }
 
 }
@@ -0,0 +1,236 @@
+package com.lyit.csd;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BatchingQuoteProvider class collects symbols asked for by many callers over a short window and
+ * sends them upstream as one multi symbol request. The combined answer is handed back to each
+ * caller, trading a few milliseconds of latency for far fewer round trips. A batch is sent with
+ * the priority of its most urgent caller.
+ */
+public class BatchingQuoteProvider implements QuoteProvider {
+
+  /**
+   * Default time symbols are collected before the batch is sent.
+   */
+  public static final Duration DEFAULT_WINDOW = Duration.ofMillis(5);
+
+  /**
+   * Default number of symbols sent in one request. The quote endpoint accepts up to ten.
+   */
+  public static final int DEFAULT_MAX_BATCH = 10;
+
+  /**
+   * Single daemon thread sending batches once their window has passed.
+   */
+  private static final ScheduledExecutorService TIMER =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "quote-batcher");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * Provider the batches are sent to.
+   */
+  private final QuoteProvider delegate;
+
+  /**
+   * Time in nanoseconds symbols are collected.
+   */
+  private final long windowNanos;
+
+  /**
+   * Number of symbols that causes the batch to be sent at once.
+   */
+  private final int maxBatch;
+
+  /**
+   * Symbols waiting for the next batch.
+   */
+  private Map<String, CompletableFuture<AssetQuote>> pending = new LinkedHashMap<>();
+
+  /**
+   * Priority of the most urgent caller waiting for the next batch.
+   */
+  private QuotePriority pendingPriority = QuotePriority.PREFETCH;
+
+  /**
+   * Scheduled send of the pending batch, null if nothing is waiting.
+   */
+  private ScheduledFuture<?> scheduledFlush;
+
+
+  /**
+   * Constructor to instantiate BatchingQuoteProvider with default window and batch size.
+   *
+   * @param delegate provider the batches are sent to.
+   */
+  public BatchingQuoteProvider(QuoteProvider delegate) {
+    this(delegate, DEFAULT_WINDOW, DEFAULT_MAX_BATCH);
+  }
+
+
+  /**
+   * Constructor to instantiate BatchingQuoteProvider object.
+   *
+   * @param delegate provider the batches are sent to.
+   * @param window   time symbols are collected before the batch is sent.
+   * @param maxBatch number of symbols that causes the batch to be sent at once.
+   */
+  public BatchingQuoteProvider(QuoteProvider delegate, Duration window, int maxBatch) {
+    if (maxBatch < 1) {
+      throw new IllegalArgumentException("maxBatch must be at least 1");
+    }
+    this.delegate = delegate;
+    this.windowNanos = window.toNanos();
+    this.maxBatch = maxBatch;
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> assetSymbols) {
+    return getQuotesAsync(assetSymbols, QuotePriority.INTERACTIVE);
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> assetSymbols,
+      QuotePriority priority) {
+
+    Map<String, CompletableFuture<AssetQuote>> waitingOn = new LinkedHashMap<>();
+    List<Batch> full = new ArrayList<>();
+
+    synchronized (this) {
+      for (String symbol : assetSymbols) {
+        if (priority.compareTo(pendingPriority) < 0) {
+          pendingPriority = priority;
+        }
+        String key = QuoteCache.key(symbol);
+        waitingOn.put(key, pending.computeIfAbsent(key, k -> new CompletableFuture<>()));
+
+        // batch is full, send it without waiting for the window
+        if (pending.size() >= maxBatch) {
+          full.add(takePending());
+        }
+      }
+
+      if (!pending.isEmpty() && scheduledFlush == null) {
+        if (windowNanos <= 0) {
+          full.add(takePending());
+        } else {
+          scheduledFlush = TIMER.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+        }
+      }
+    }
+
+    for (Batch batch : full) {
+      send(batch);
+    }
+
+    return QuoteFutures.collect(waitingOn.values());
+  }
+
+
+  /**
+   * Method sends the pending batch at once.
+   */
+  public void flush() {
+    Batch batch;
+    synchronized (this) {
+      batch = takePending();
+    }
+    if (!batch.futures.isEmpty()) {
+      send(batch);
+    }
+  }
+
+
+  /**
+   * Helper method to take the pending batch and start collecting a new one. Must be called
+   * while holding the lock of this object.
+   *
+   * @return the batch taken.
+   */
+  private Batch takePending() {
+    Batch batch = new Batch(pending, pendingPriority);
+    pending = new LinkedHashMap<>();
+    pendingPriority = QuotePriority.PREFETCH;
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    return batch;
+  }
+
+
+  /**
+   * Helper method to send one batch and hand the answer to each caller.
+   *
+   * @param batch the batch to send.
+   */
+  private void send(Batch batch) {
+    CompletableFuture<List<AssetQuote>> request;
+    try {
+      request = delegate.getQuotesAsync(new ArrayList<>(batch.futures.keySet()), batch.priority);
+    } catch (RuntimeException e) {
+      request = CompletableFuture.failedFuture(e);
+    }
+    request.whenComplete((quotes, failure) ->
+        QuoteFutures.complete(batch.futures, quotes, failure));
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public void close() {
+    // waiting callers are failed by the closing delegate rather than left hanging
+    flush();
+    delegate.close();
+  }
+
+
+  /**
+   * Symbols collected for one request with the priority it is sent with.
+   */
+  private static final class Batch {
+
+    /**
+     * Futures by upper cased symbol.
+     */
+    private final Map<String, CompletableFuture<AssetQuote>> futures;
+
+    /**
+     * Priority of the most urgent caller in the batch.
+     */
+    private final QuotePriority priority;
+
+    /**
+     * Constructor to instantiate Batch object.
+     *
+     * @param futures  futures by upper cased symbol.
+     * @param priority priority of the most urgent caller in the batch.
+     */
+    private Batch(Map<String, CompletableFuture<AssetQuote>> futures, QuotePriority priority) {
+      this.futures = futures;
+      this.priority = priority;
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package com.lyit.csd;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CoalescingQuoteProvider class shares outstanding quote requests between concurrent callers.
+ * A caller asking for a symbol that is already being requested waits for that request instead
+ * of sending its own, so a burst of callers on the same symbols costs one upstream request.
+ * Callers only join requests at least as urgent as their own, so a trade never waits behind a
+ * background refresh.
+ */
+public class CoalescingQuoteProvider implements QuoteProvider {
+
+  /**
+   * Provider the shared requests are sent to.
+   */
+  private final QuoteProvider delegate;
+
+  /**
+   * Outstanding request per upper cased symbol.
+   */
+  private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+
+  /**
+   * Constructor to instantiate CoalescingQuoteProvider object.
+   *
+   * @param delegate provider the shared requests are sent to.
+   */
+  public CoalescingQuoteProvider(QuoteProvider delegate) {
+    this.delegate = delegate;
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> assetSymbols) {
+    return getQuotesAsync(assetSymbols, QuotePriority.INTERACTIVE);
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> assetSymbols,
+      QuotePriority priority) {
+
+    Map<String, CompletableFuture<AssetQuote>> waitingOn = new LinkedHashMap<>();
+    Map<String, Flight> owned = new LinkedHashMap<>();
+
+    // join requests already in flight, claim the rest for ourselves
+    for (String symbol : assetSymbols) {
+      String key = QuoteCache.key(symbol);
+      if (waitingOn.containsKey(key)) {
+        continue;
+      }
+      Flight flight = inFlight.compute(key, (k, existing) -> {
+        if (existing != null && existing.priority.compareTo(priority) <= 0) {
+          return existing;
+        }
+        Flight mine = new Flight(priority);
+        owned.put(k, mine);
+        return mine;
+      });
+      waitingOn.put(key, flight.future);
+    }
+
+    if (!owned.isEmpty()) {
+      send(owned, priority);
+    }
+
+    return QuoteFutures.collect(waitingOn.values());
+  }
+
+
+  /**
+   * Returning the number of symbols with a request in flight.
+   *
+   * @return number of outstanding symbols.
+   */
+  public int inFlightCount() {
+    return inFlight.size();
+  }
+
+
+  /**
+   * Helper method to send one request for the claimed symbols and hand the answer to everyone
+   * waiting on them.
+   *
+   * @param owned    requests claimed by this caller by symbol.
+   * @param priority how urgent the request is.
+   */
+  private void send(Map<String, Flight> owned, QuotePriority priority) {
+
+    CompletableFuture<List<AssetQuote>> request;
+    try {
+      request = delegate.getQuotesAsync(new ArrayList<>(owned.keySet()), priority);
+    } catch (RuntimeException e) {
+      request = CompletableFuture.failedFuture(e);
+    }
+
+    Map<String, CompletableFuture<AssetQuote>> futures = new LinkedHashMap<>();
+    owned.forEach((key, flight) -> futures.put(key, flight.future));
+
+    request.whenComplete((quotes, failure) -> {
+      // callers arriving from now on start a new request
+      for (Map.Entry<String, Flight> entry : owned.entrySet()) {
+        inFlight.remove(entry.getKey(), entry.getValue());
+      }
+      QuoteFutures.complete(futures, quotes, failure);
+    });
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+
+  /**
+   * One outstanding request for a symbol. Completed with null if the symbol has no quote.
+   */
+  private static final class Flight {
+
+    /**
+     * Priority the request was sent with.
+     */
+    private final QuotePriority priority;
+
+    /**
+     * Quote of the symbol once the request completes.
+     */
+    private final CompletableFuture<AssetQuote> future = new CompletableFuture<>();
+
+    /**
+     * Constructor to instantiate Flight object.
+     *
+     * @param priority priority the request was sent with.
+     */
+    private Flight(QuotePriority priority) {
+      this.priority = priority;
+    }
+  }
+}
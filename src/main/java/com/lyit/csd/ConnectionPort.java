@@ -1,128 +1,528 @@
-package com.lyit.csd;
-
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.util.ArrayList;
-import java.util.List;
-
-
-/**
- * ConnectionPort class represents connection between user and  Yahoo finance api.
- */
-public class ConnectionPort {
-
-  /**
-   * Request for HTTP connection.
-   */
-  private String request;
-
-  /**
-   * API key of the user.
-   */
-  private String key;
-
-  /**
-   * The list of the user's asset quotes.
-   */
-  private List<AssetQuote> assetQuote;
-
-
-  /**
-   * Constructor to instantiate ConnectionPort object.
-   *
-   * @throws IOException if underlying service fails.
-   * @throws InterruptedException if underlying service fails.
-   * @param request String value with address.
-   * @param key     String value with user api key.
-   */
-  public ConnectionPort(String request, String key) throws IOException, InterruptedException {
-    this.request = request;
-    this.key = key;
-    assetQuote = new ArrayList<>();
-    makeRequest(request);
-  }
-
-
-  /**
-   * Default constructor.
-   */
-  public ConnectionPort() {
-  }
-
-
-  /**
-   * Method makes request to access data. After response is received it will map required
-   * information the AssetQuote class instance fields.
-   *
-   * @param requestString address with information.
-   * @throws IOException          thrown if wrong data is entered.
-   * @throws InterruptedException thrown when a thread is interrupted while it's waiting, sleeping,
-   *                              or otherwise occupied.
-   */
-  private void makeRequest(String requestString) throws IOException, InterruptedException {
-
-    // Code reference - yahoo finance api tutorial. Line 55 - 61, creating user request
-    // with appropriate URI, API key and type of request.
-    HttpRequest userRequest = HttpRequest.newBuilder()
-        .uri(URI.create("https://yfapi.net/" + requestString))
-        .header("x-api-key", key)
-        .method("GET", HttpRequest.BodyPublishers.noBody())
-        .build();
-    // Storing response from API.
-    HttpResponse<String> response = HttpClient.newHttpClient()
-        .send(userRequest, HttpResponse.BodyHandlers.ofString());
-
-    // call mapping method with received data.
-    mapRequiredFields(response.body());
-  }
-
-  /**
-   * Method to map chosen values to AssetQuote object fields.
-   *
-   * @throws IOException if underlying service fails.
-   * @throws InterruptedException if underlying service fails.
-   * @param responseBody api response body JSON formatted string
-   */
-  private void mapRequiredFields(String responseBody) throws IOException, InterruptedException {
-
-    // Creating ObjectMapper instance and dealing with unknown fields.
-    ObjectMapper objectMapper = new ObjectMapper();
-    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-
-    // Creating Json node with relevant data.
-    JsonNode node = objectMapper.readTree(responseBody);
-
-    // Creating object from information stored in JsonNode.
-    if (request.contains("v6/finance/quote")) {
-      if (node.has("quoteResponse") && node.get("quoteResponse").has("result")) {
-        node = node.get("quoteResponse").get("result");
-        for (int i = 0; i < node.size(); i++) {
-          String object = node.get(i).toString();
-          try {
-            AssetQuote quote = objectMapper.readValue(object, AssetQuote.class);
-            assetQuote.add(quote);
-          } catch (JsonProcessingException e) {
-            e.printStackTrace();
-          }
-        }
-      }
-    }
-  }
-
-
-  /**
-   * Method to get access to our asset quotes.
-   *
-   * @return Information object
-   */
-  public List<AssetQuote> getAssetQuote() {
-    return assetQuote;
-  }
-}
+package com.lyit.csd;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * ConnectionPort class represents connection between user and  Yahoo finance api.
+ */
+public class ConnectionPort implements QuoteProvider, HistorySource {
+
+  /**
+   * Shared factory for streaming parsers. JsonFactory is thread safe once configured.
+   */
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  /**
+   * Request for HTTP connection.
+   */
+  private String request;
+
+  /**
+   * API key of the user.
+   */
+  private String key;
+
+  /**
+   * The list of the user's asset quotes.
+   */
+  private List<AssetQuote> assetQuote;
+
+  /**
+   * Transport used to reach the api.
+   */
+  private HttpTransport transport;
+
+
+  /**
+   * Constructor to instantiate ConnectionPort object over the shared transport.
+   *
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   * @param request String value with address.
+   * @param key     String value with user api key.
+   */
+  public ConnectionPort(String request, String key) throws IOException, InterruptedException {
+    this(request, key, HttpTransport.getDefault());
+  }
+
+
+  /**
+   * Constructor to instantiate ConnectionPort object over the given transport.
+   *
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   * @param request   String value with address.
+   * @param key       String value with user api key.
+   * @param transport transport used to reach the api.
+   */
+  public ConnectionPort(String request, String key, HttpTransport transport)
+      throws IOException, InterruptedException {
+    this.request = request;
+    this.key = key;
+    this.transport = transport;
+    assetQuote = new ArrayList<>();
+    makeRequest(request);
+  }
+
+
+  /**
+   * Constructor to instantiate reusable ConnectionPort object. No request is made until quotes
+   * are asked for through the QuoteProvider methods.
+   *
+   * @param transport transport used to reach the api.
+   * @param key       String value with user api key.
+   */
+  public ConnectionPort(HttpTransport transport, String key) {
+    this.transport = transport;
+    this.key = key;
+    assetQuote = new ArrayList<>();
+  }
+
+
+  /**
+   * Default constructor.
+   */
+  public ConnectionPort() {
+  }
+
+
+  /**
+   * Method builds quote request string for one or more asset symbols.
+   *
+   * @param assetSymbols asset symbols to ask for.
+   * @return request string relative to the api address.
+   */
+  public static String quoteRequest(List<String> assetSymbols) {
+    return "v6/finance/quote?region=US&lang=en&symbols=" + String.join("%2C", assetSymbols);
+  }
+
+
+  /**
+   * Method builds chart request string for the history of one asset symbol.
+   *
+   * @param assetSymbol asset symbol to ask for.
+   * @param interval    time between bars.
+   * @param range       time range ending now.
+   * @return request string relative to the api address.
+   */
+  public static String chartRequest(String assetSymbol, String interval, String range) {
+    return "v8/finance/chart/" + assetSymbol + "?range=" + range + "&interval=" + interval;
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public List<PriceBar> getHistory(String assetSymbol, String interval, String range)
+      throws IOException, InterruptedException {
+    HttpResponse<InputStream> response = checkStatus(transport.send(
+        buildRequest(chartRequest(assetSymbol, interval, range)),
+        HttpResponse.BodyHandlers.ofInputStream()));
+    try (InputStream body = response.body()) {
+      return mapChart(body);
+    }
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public List<AssetQuote> getQuotes(List<String> assetSymbols, QuotePriority priority)
+      throws IOException, InterruptedException {
+    if (assetSymbols.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    String requestString = quoteRequest(assetSymbols);
+    HttpResponse<InputStream> response = checkStatus(
+        transport.send(buildRequest(requestString), HttpResponse.BodyHandlers.ofInputStream()));
+    return mapRequiredFields(requestString, response.body());
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> assetSymbols) {
+    if (assetSymbols.isEmpty()) {
+      return CompletableFuture.completedFuture(new ArrayList<>());
+    }
+
+    // send without blocking, mapping is done by the client as the body arrives
+    String requestString = quoteRequest(assetSymbols);
+    return transport.getClient()
+        .sendAsync(buildRequest(requestString), HttpResponse.BodyHandlers.ofInputStream())
+        .thenApply(response -> {
+          try {
+            return mapRequiredFields(requestString, checkStatus(response).body());
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
+
+  /**
+   * Method makes request to access data. After response is received it will map required
+   * information the AssetQuote class instance fields.
+   *
+   * @param requestString address with information.
+   * @throws IOException          thrown if wrong data is entered.
+   * @throws InterruptedException thrown when a thread is interrupted while it's waiting, sleeping,
+   *                              or otherwise occupied.
+   */
+  private void makeRequest(String requestString) throws IOException, InterruptedException {
+
+    // Storing response from API, reusing pooled connection.
+    HttpResponse<InputStream> response = checkStatus(
+        transport.send(buildRequest(requestString), HttpResponse.BodyHandlers.ofInputStream()));
+
+    // call mapping method with received data.
+    assetQuote.addAll(mapRequiredFields(requestString, response.body()));
+  }
+
+
+  /**
+   * Method creates user request for the given request string.
+   *
+   * @param requestString address with information.
+   * @return request ready to be sent.
+   */
+  private HttpRequest buildRequest(String requestString) {
+
+    // Code reference - yahoo finance api tutorial. Creating user request
+    // with appropriate URI, API key and type of request.
+    return transport
+        .newGetRequest(transport.resolve(requestString))
+        .header("x-api-key", key)
+        .build();
+  }
+
+
+  /**
+   * Helper method to fail on responses that do not carry data. The body of a failed response is
+   * closed.
+   *
+   * @throws QuotaExceededException if the api refused the request for its rate limit.
+   * @throws IOException            if the api answered with any other error.
+   * @param response response received.
+   * @return the response, if successful.
+   */
+  private static HttpResponse<InputStream> checkStatus(HttpResponse<InputStream> response)
+      throws IOException {
+    int status = response.statusCode();
+    if (status >= 200 && status < 300) {
+      return response;
+    }
+    response.body().close();
+    if (status == 429) {
+      throw new QuotaExceededException("Request rate limit of the api exceeded");
+    }
+    throw new IOException("Api answered " + status + " to " + response.uri());
+  }
+
+  /**
+   * Method to map chosen values to AssetQuote object fields.
+   *
+   * @throws IOException if underlying service fails.
+   * @param requestString address the response belongs to.
+   * @param responseBody api response body as JSON formatted stream
+   * @return the quotes found in the response.
+   */
+  private static List<AssetQuote> mapRequiredFields(String requestString,
+      InputStream responseBody) throws IOException {
+
+    try (InputStream body = responseBody) {
+      if (!requestString.contains("v6/finance/quote")) {
+        return new ArrayList<>();
+      }
+      return mapRequiredFields(body);
+    }
+  }
+
+
+  /**
+   * Method reads quotes from quote response token by token. Only the fields mapped by AssetQuote
+   * are read, everything else is skipped without being built into objects.
+   *
+   * @throws IOException if the response is not valid JSON.
+   * @param responseBody api response body as JSON formatted stream
+   * @return the quotes found in quoteResponse.result.
+   */
+  static List<AssetQuote> mapRequiredFields(InputStream responseBody) throws IOException {
+
+    List<AssetQuote> result = new ArrayList<>();
+
+    try (JsonParser parser = JSON_FACTORY.createParser(responseBody)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return result;
+      }
+
+      // walk down to quoteResponse.result, skipping anything else
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        if (parser.nextToken() != JsonToken.START_OBJECT || !name.equals("quoteResponse")) {
+          parser.skipChildren();
+          continue;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          if (parser.nextToken() != JsonToken.START_ARRAY || !field.equals("result")) {
+            parser.skipChildren();
+            continue;
+          }
+          while (nextElement(parser)) {
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+              result.add(readQuote(parser));
+            } else {
+              parser.skipChildren();
+            }
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Helper method to read one quote object. Parser must be positioned on its opening brace and
+   * is left on its closing brace.
+   *
+   * @throws IOException if the response is not valid JSON.
+   * @param parser parser positioned on the quote object.
+   * @return the quote read.
+   */
+  private static AssetQuote readQuote(JsonParser parser) throws IOException {
+
+    String symbol = null;
+    String shortName = null;
+    String quoteType = null;
+    long marketTime = 0;
+    double marketPrice = 0;
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      parser.nextToken();
+      switch (name) {
+        case "symbol" -> symbol = parser.getValueAsString();
+        case "shortName" -> shortName = parser.getValueAsString();
+        case "quoteType" -> quoteType = parser.getValueAsString();
+        case "regularMarketTime" -> marketTime = parser.getValueAsLong();
+        case "regularMarketPrice" -> marketPrice = parser.getValueAsDouble();
+        default -> {
+        }
+      }
+      // no-op for plain values, jumps over nested objects and arrays
+      parser.skipChildren();
+    }
+
+    return new AssetQuote(symbol, shortName, quoteType, marketTime, marketPrice);
+  }
+
+
+  /**
+   * Method reads price bars from chart response token by token. The response holds one array per
+   * field, bars are put together from the same position of each array. Bars without a close
+   * price, gaps in trading, are left out.
+   *
+   * @throws IOException if the response is not valid JSON.
+   * @param responseBody api response body as JSON formatted stream
+   * @return the bars found in chart.result, ordered by time.
+   */
+  static List<PriceBar> mapChart(InputStream responseBody) throws IOException {
+
+    List<PriceBar> result = new ArrayList<>();
+
+    try (JsonParser parser = JSON_FACTORY.createParser(responseBody)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return result;
+      }
+
+      // walk down to chart.result, skipping anything else
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        if (parser.nextToken() != JsonToken.START_OBJECT || !name.equals("chart")) {
+          parser.skipChildren();
+          continue;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          if (parser.nextToken() != JsonToken.START_ARRAY || !field.equals("result")) {
+            parser.skipChildren();
+            continue;
+          }
+          while (nextElement(parser)) {
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+              readChart(parser, result);
+            } else {
+              parser.skipChildren();
+            }
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Helper method to read one chart result object. Parser must be positioned on its opening
+   * brace and is left on its closing brace.
+   *
+   * @throws IOException if the response is not valid JSON.
+   * @param parser parser positioned on the chart result.
+   * @param result list the bars are added to.
+   */
+  private static void readChart(JsonParser parser, List<PriceBar> result) throws IOException {
+
+    String symbol = null;
+    String shortName = null;
+    String type = null;
+    List<Long> times = new ArrayList<>();
+    List<Double> open = new ArrayList<>();
+    List<Double> high = new ArrayList<>();
+    List<Double> low = new ArrayList<>();
+    List<Double> close = new ArrayList<>();
+    List<Double> volume = new ArrayList<>();
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      parser.nextToken();
+      switch (name) {
+        case "meta" -> {
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+              case "symbol" -> symbol = parser.getValueAsString();
+              case "shortName" -> shortName = parser.getValueAsString();
+              case "instrumentType" -> type = parser.getValueAsString();
+              default -> parser.skipChildren();
+            }
+          }
+        }
+        case "timestamp" -> {
+          // a null or an object in place of the array adds no times
+          if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+          } else {
+            while (nextElement(parser)) {
+              times.add(parser.getValueAsLong());
+              parser.skipChildren();
+            }
+          }
+        }
+        case "indicators" -> {
+          // indicators.quote[0] holds one array per price field
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_ARRAY || !field.equals("quote")) {
+              parser.skipChildren();
+              continue;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+              while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String column = parser.getCurrentName();
+                parser.nextToken();
+                switch (column) {
+                  case "open" -> readNumbers(parser, open);
+                  case "high" -> readNumbers(parser, high);
+                  case "low" -> readNumbers(parser, low);
+                  case "close" -> readNumbers(parser, close);
+                  case "volume" -> readNumbers(parser, volume);
+                  default -> parser.skipChildren();
+                }
+              }
+            }
+          }
+        }
+        default -> parser.skipChildren();
+      }
+    }
+
+    for (int i = 0; i < times.size() && i < close.size(); i++) {
+      if (Double.isNaN(close.get(i))) {
+        continue;
+      }
+      result.add(new PriceBar(symbol, shortName, type, times.get(i),
+          valueAt(open, i), valueAt(high, i), valueAt(low, i), close.get(i),
+          (long) valueAt(volume, i)));
+    }
+  }
+
+
+  /**
+   * Helper method to read an array of numbers, null entries are read as NaN. A value that is
+   * not an array is skipped and adds nothing.
+   *
+   * @throws IOException if the response is not valid JSON.
+   * @param parser parser positioned on the opening bracket.
+   * @param values list the numbers are added to.
+   */
+  private static void readNumbers(JsonParser parser, List<Double> values) throws IOException {
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return;
+    }
+    while (nextElement(parser)) {
+      values.add(parser.currentToken() == JsonToken.VALUE_NULL
+          ? Double.NaN : parser.getValueAsDouble());
+      parser.skipChildren();
+    }
+  }
+
+
+  /**
+   * Helper method to move to the next element of the array the parser is in.
+   *
+   * @throws IOException if the response ends before the array does.
+   * @param parser parser inside an array.
+   * @return true if positioned on an element, false at the closing bracket.
+   */
+  private static boolean nextElement(JsonParser parser) throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == null) {
+      throw new IOException("Response ended inside an array");
+    }
+    return token != JsonToken.END_ARRAY;
+  }
+
+
+  /**
+   * Helper method to return the value at the position, NaN if the array is shorter.
+   *
+   * @param values the values.
+   * @param index  position of the value.
+   * @return the value.
+   */
+  private static double valueAt(List<Double> values, int index) {
+    return index < values.size() ? values.get(index) : Double.NaN;
+  }
+
+
+  /**
+   * Method to get access to our asset quotes.
+   *
+   * @return Information object
+   */
+  public List<AssetQuote> getAssetQuote() {
+    return assetQuote;
+  }
+}
@@ -4,6 +4,7 @@ package com.lyit.csd;
 import com.lyit.csd.UnclosableInputStreamDecorator;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -19,10 +20,15 @@ import java.util.Scanner;
 public class Console {
 
 
+  /**
+   * API key used when none is given with the system property portfolio.api.key.
+   */
+  static final String DEFAULT_KEY = "J0E2Ge85rgajGHOO28u0R7gcZ3T0SjC44f5RzekF";
+
   /**
    * User's unique API key.
    */
-  private String key = "J0E2Ge85rgajGHOO28u0R7gcZ3T0SjC44f5RzekF";
+  private String key = System.getProperty("portfolio.api.key", DEFAULT_KEY);
 
   /**
    * User object instance with unique API key.
@@ -70,6 +76,12 @@ public class Console {
    */
   public void run() throws IOException, InterruptedException, ParseException {
 
+    // keep the account across runs if a journal directory is given
+    String journalDir = System.getProperty("portfolio.journal.dir");
+    if (journalDir != null) {
+      user.attachJournal(TradeJournal.open(Paths.get(journalDir)));
+    }
+
     // Initial wording to be displayed.
     System.out.println("Welcome to portfolio system.");
     System.out.println("Please follow the commands on the console.");
@@ -257,7 +269,8 @@ public class Console {
 
             // Displaying relevant information and requests.
             System.out.println("Selected: LIST OF ALL INVESTMENT.\n");
-            System.out.println(user.listAllInvestments());
+            user.writeAllInvestments(System.out);
+            System.out.println();
             System.out.println("+-------------------------------------------------+");
             break;
 
@@ -269,9 +282,11 @@ public class Console {
             String type = requiredString(ANSI_GREEN + "Please enter S for 'STOCK' or C for 'CRYPTO'"
                     + "to list the portfolio type: " + ANSI_RESET);
             if (type.toLowerCase(Locale.ROOT).equals("s")) {
-              System.out.println(user.listPortfolioAssetsByType("Stock"));
+              user.writePortfolioAssetsByType("Stock", System.out);
+              System.out.println();
             } else if (type.toLowerCase(Locale.ROOT).equals("c")) {
-              System.out.println(user.listPortfolioAssetsByType("Crypto"));
+              user.writePortfolioAssetsByType("Crypto", System.out);
+              System.out.println();
             } else {
               System.out.println("Invalid selection. Please enter 'S' or 'C'.\n");
             }
@@ -333,7 +348,8 @@ public class Console {
               if ( unixDate2<= unixDate1) {
                 System.out.println("Enter appropriate interval. Please try again ... ");
               } else {
-                System.out.println(user.listPortfolioPurchasesInRange(unixDate1, unixDate2));
+                user.writePortfolioPurchasesInRange(unixDate1, unixDate2, System.out);
+                System.out.println();
               }
 
             } else {
@@ -377,7 +393,8 @@ public class Console {
               if ( unixDate2<= unixDate1) {
                 System.out.println("Enter appropriate interval. Please try again ... ");
               } else {
-                System.out.println(user.listPortfolioSalesInRange(unixDate1, unixDate2));
+                user.writePortfolioSalesInRange(unixDate1, unixDate2, System.out);
+                System.out.println();
               }
 
             } else {
@@ -0,0 +1,22 @@
+package com.lyit.csd;
+
+/**
+ * How far a journal record must have got before the trade it records is acknowledged.
+ */
+public enum Durability {
+
+  /**
+   * Handed to the operating system. Survives the application crashing, not the machine.
+   */
+  NONE,
+
+  /**
+   * Forced to disk by a sync shared with every other record written meanwhile.
+   */
+  GROUP,
+
+  /**
+   * Forced to disk by a sync of its own.
+   */
+  SYNC
+}
@@ -0,0 +1,24 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Source of historical prices of assets, for example the chart endpoint of the api.
+ */
+@FunctionalInterface
+public interface HistorySource {
+
+  /**
+   * Retrieve the price bars of the asset over the range.
+   *
+   * @param assetSymbol symbol of the asset.
+   * @param interval    time between bars, for example 1m, 1d or 1wk.
+   * @param range       time range ending now, for example 5d, 1y or max.
+   * @return bars ordered by time.
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   */
+  List<PriceBar> getHistory(String assetSymbol, String interval, String range)
+      throws IOException, InterruptedException;
+}
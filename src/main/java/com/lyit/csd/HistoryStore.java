@@ -0,0 +1,655 @@
+package com.lyit.csd;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HistoryStore class keeps historical prices on disk, one directory per asset symbol and
+ * interval, one memory mapped file per field. A series is filled from the history source the
+ * first time a range is asked for and is served from disk afterwards. Once a new bar is due only
+ * the shortest range holding the bars after the covered span is fetched, a range starting before
+ * the covered span is fetched as a whole.
+ */
+public class HistoryStore implements Closeable {
+
+  /**
+   * Directory used by default, can be changed with the system property portfolio.history.dir.
+   */
+  public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty(
+      "portfolio.history.dir",
+      Paths.get(System.getProperty("user.home"), ".portfolio", "history").toString()));
+
+  /**
+   * Store per API key.
+   */
+  private static final ConcurrentHashMap<String, HistoryStore> SHARED = new ConcurrentHashMap<>();
+
+  /**
+   * Names of the column files, in the order of Series.columns.
+   */
+  private static final String[] COLUMNS = {"time", "open", "high", "low", "close", "volume"};
+
+  /**
+   * Ranges tried for fetching the bars after a covered span, shortest first.
+   */
+  private static final String[] TAIL_RANGES = {"1d", "5d", "1mo", "3mo", "6mo", "1y", "2y", "5y",
+      "10y"};
+
+  /**
+   * Bytes taken by one value of a column.
+   */
+  private static final int WIDTH = Long.BYTES;
+
+  /**
+   * Number of bars room is made for in a new series.
+   */
+  private static final int INITIAL_CAPACITY = 256;
+
+  /**
+   * Directory holding the series.
+   */
+  private final Path directory;
+
+  /**
+   * Source the series are filled from.
+   */
+  private final HistorySource source;
+
+  /**
+   * Clock deciding which bars are due.
+   */
+  private final Clock clock;
+
+  /**
+   * Open series by symbol and interval. A series is locked while it is read or filled.
+   */
+  private final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<>();
+
+
+  /**
+   * Constructor to instantiate HistoryStore object.
+   *
+   * @param directory directory holding the series, created if missing.
+   * @param source    source the series are filled from.
+   */
+  public HistoryStore(Path directory, HistorySource source) {
+    this(directory, source, Clock.systemUTC());
+  }
+
+
+  /**
+   * Constructor to instantiate HistoryStore object with given clock.
+   *
+   * @param directory directory holding the series, created if missing.
+   * @param source    source the series are filled from.
+   * @param clock     clock deciding which bars are due.
+   */
+  HistoryStore(Path directory, HistorySource source, Clock clock) {
+    this.directory = directory;
+    this.source = source;
+    this.clock = clock;
+  }
+
+
+  /**
+   * Returning the store shared by every user of the given API key, kept in the default
+   * directory.
+   *
+   * @param key String value with user api key.
+   * @return shared history store.
+   */
+  public static HistoryStore forKey(String key) {
+    return SHARED.computeIfAbsent(key, k -> new HistoryStore(DEFAULT_DIRECTORY,
+        new ConnectionPort(HttpTransport.getDefault(), k)));
+  }
+
+
+  /**
+   * Method returns the bars of the asset over the range, filling the series from the source
+   * first if the range is not covered yet.
+   *
+   * @param assetSymbol symbol of the asset.
+   * @param interval    time between bars, one of 1m 2m 5m 15m 30m 60m 90m 1h 1d 5d 1wk 1mo 3mo.
+   * @param range       time range ending now, one of 1d 5d 1mo 3mo 6mo 1y 2y 5y 10y ytd max.
+   * @return view of the bars starting within the range, ordered by time.
+   * @throws IOException if the files or the source fail.
+   * @throws InterruptedException if the source is interrupted.
+   */
+  public PriceSeries read(String assetSymbol, String interval, String range)
+      throws IOException, InterruptedException {
+    long step = intervalSeconds(interval);
+    long now = clock.instant().getEpochSecond();
+    long start = rangeStart(range, now);
+    String symbol = assetSymbol.trim().toUpperCase();
+    if (symbol.isEmpty() || !symbol.matches("[A-Z0-9.^=_-]+")) {
+      throw new IllegalArgumentException("Invalid asset symbol: " + assetSymbol);
+    }
+
+    Series s = open(symbol, interval);
+    synchronized (s) {
+      if (!s.covers(start, now - step)) {
+        // with the start covered only the bars after the covered span are missing
+        String fetch = s.covers(start, start) ? tailRange(s.coveredTo, now, range) : range;
+        s.merge(source.getHistory(symbol, interval, fetch), rangeStart(fetch, now), now);
+      }
+      return s.view(start);
+    }
+  }
+
+
+  /**
+   * Method writes the closing prices of the asset over the range to the stream in the compressed
+   * block format of TimeSeriesEncoder, filling the series from the source first like read. The
+   * stream is flushed, not closed.
+   *
+   * @param assetSymbol symbol of the asset.
+   * @param interval    time between bars, see read.
+   * @param range       time range ending now, see read.
+   * @param out         stream the blocks are written to.
+   * @return number of bars written.
+   * @throws IOException if the files, the source or the stream fail.
+   * @throws InterruptedException if the source is interrupted.
+   */
+  public int export(String assetSymbol, String interval, String range, OutputStream out)
+      throws IOException, InterruptedException {
+    PriceSeries bars = read(assetSymbol, interval, range);
+    TimeSeriesEncoder encoder = new TimeSeriesEncoder(out);
+    for (int i = 0; i < bars.size(); i++) {
+      encoder.add(bars.getTimeStamp(i), bars.getClose(i));
+    }
+    encoder.flush();
+    return bars.size();
+  }
+
+
+  /**
+   * Method closes the files of every open series. Views already returned must not be used
+   * afterwards.
+   *
+   * @throws IOException if a file cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    for (Series s : series.values()) {
+      synchronized (s) {
+        s.close();
+      }
+    }
+    series.clear();
+  }
+
+
+  /**
+   * Helper method to return the open series, opening its files first if needed.
+   *
+   * @param symbol   symbol of the asset.
+   * @param interval time between bars.
+   * @return the series.
+   * @throws IOException if the files cannot be opened.
+   */
+  private Series open(String symbol, String interval) throws IOException {
+    String key = symbol + "/" + interval;
+    Series s = series.get(key);
+    if (s != null) {
+      return s;
+    }
+    synchronized (series) {
+      s = series.get(key);
+      if (s == null) {
+        s = new Series(directory.resolve(symbol).resolve(interval), symbol);
+        series.put(key, s);
+      }
+      return s;
+    }
+  }
+
+
+  /**
+   * Helper method to return the length of an interval.
+   *
+   * @param interval time between bars.
+   * @return number of seconds between bars.
+   */
+  static long intervalSeconds(String interval) {
+    return switch (interval) {
+      case "1m" -> 60;
+      case "2m" -> 120;
+      case "5m" -> 300;
+      case "15m" -> 900;
+      case "30m" -> 1_800;
+      case "60m", "1h" -> 3_600;
+      case "90m" -> 5_400;
+      case "1d" -> 86_400;
+      case "5d" -> 5 * 86_400;
+      case "1wk" -> 7 * 86_400;
+      case "1mo" -> 31 * 86_400;
+      case "3mo" -> 92 * 86_400;
+      default -> throw new IllegalArgumentException("Invalid interval: " + interval);
+    };
+  }
+
+
+  /**
+   * Helper method to return the shortest range starting at or before the given time.
+   *
+   * @param from  time the range has to reach back to.
+   * @param now   current UNIX time.
+   * @param range range asked for, returned if no shorter one reaches back far enough.
+   * @return range to fetch.
+   */
+  static String tailRange(long from, long now, String range) {
+    for (String tail : TAIL_RANGES) {
+      if (tail.equals(range) || rangeStart(tail, now) <= from) {
+        return tail;
+      }
+    }
+    return range;
+  }
+
+
+  /**
+   * Helper method to return the start of a range.
+   *
+   * @param range time range ending now.
+   * @param now   current UNIX time.
+   * @return UNIX time the range starts at, Long.MIN_VALUE for max.
+   */
+  static long rangeStart(String range, long now) {
+    long day = 86_400;
+    return switch (range) {
+      case "1d" -> now - day;
+      case "5d" -> now - 5 * day;
+      case "1mo" -> now - 31 * day;
+      case "3mo" -> now - 92 * day;
+      case "6mo" -> now - 183 * day;
+      case "1y" -> now - 366 * day;
+      case "2y" -> now - 731 * day;
+      case "5y" -> now - 1_827 * day;
+      case "10y" -> now - 3_653 * day;
+      case "ytd" -> LocalDate.ofEpochDay(Math.floorDiv(now, day)).withDayOfYear(1)
+          .atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+      case "max" -> Long.MIN_VALUE;
+      default -> throw new IllegalArgumentException("Invalid range: " + range);
+    };
+  }
+
+
+  /**
+   * Series class holds the columns of one asset symbol and interval. Column files are mapped
+   * as a whole and grown by doubling, meta.properties records how many bars are valid and which
+   * time span has been filled from the source. Meta data is written after the columns, so a
+   * crash in between leaves the previous state.
+   */
+  private static final class Series {
+
+    /**
+     * Directory of the series.
+     */
+    private final Path path;
+
+    /**
+     * Open column files, in the order of COLUMNS.
+     */
+    private final FileChannel[] channels = new FileChannel[COLUMNS.length];
+
+    /**
+     * Mapped column files, in the order of COLUMNS.
+     */
+    private final MappedByteBuffer[] columns = new MappedByteBuffer[COLUMNS.length];
+
+    /**
+     * Symbol of the asset.
+     */
+    private final String symbol;
+
+    /**
+     * Full name of the asset, null until filled.
+     */
+    private String name;
+
+    /**
+     * Type of the asset, null until filled.
+     */
+    private String type;
+
+    /**
+     * Number of valid bars.
+     */
+    private int count;
+
+    /**
+     * Number of bars the mapped files have room for.
+     */
+    private int capacity;
+
+    /**
+     * Start of the span filled from the source.
+     */
+    private long coveredFrom;
+
+    /**
+     * End of the span filled from the source, Long.MIN_VALUE if nothing was filled yet.
+     */
+    private long coveredTo = Long.MIN_VALUE;
+
+
+    /**
+     * Constructor opens the files of the series, creating them if missing.
+     *
+     * @param path   directory of the series.
+     * @param symbol symbol of the asset.
+     * @throws IOException if the files cannot be opened.
+     */
+    Series(Path path, String symbol) throws IOException {
+      this.path = path;
+      this.symbol = symbol;
+      Files.createDirectories(path);
+
+      Path meta = path.resolve("meta.properties");
+      if (Files.exists(meta)) {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(meta)) {
+          properties.load(in);
+        }
+        count = Integer.parseInt(properties.getProperty("count"));
+        coveredFrom = Long.parseLong(properties.getProperty("coveredFrom"));
+        coveredTo = Long.parseLong(properties.getProperty("coveredTo"));
+        name = properties.getProperty("name");
+        type = properties.getProperty("type");
+      }
+
+      for (int i = 0; i < COLUMNS.length; i++) {
+        channels[i] = FileChannel.open(path.resolve(COLUMNS[i] + ".col"),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      }
+      map(Math.max(INITIAL_CAPACITY, (int) (channels[0].size() / WIDTH)));
+    }
+
+
+    /**
+     * Method tells whether the series was filled over the whole span.
+     *
+     * @param from start of the span.
+     * @param to   end of the span.
+     * @return true if no bar of the span is missing.
+     */
+    boolean covers(long from, long to) {
+      return coveredTo != Long.MIN_VALUE && coveredFrom <= from && coveredTo >= to;
+    }
+
+
+    /**
+     * Method merges bars fetched for the span into the series. Bars later than the last stored
+     * one are appended in place, past the bars views returned earlier can see. A bar earlier
+     * than the last stored one at an unknown time, or one changing a stored bar, makes the
+     * columns be rewritten to new files, so earlier views keep the bars they were given.
+     *
+     * @param bars bars ordered by time.
+     * @param from start of the span the bars were fetched for.
+     * @param to   end of the span the bars were fetched for.
+     * @throws IOException if the files cannot be written.
+     */
+    void merge(List<PriceBar> bars, long from, long to) throws IOException {
+      boolean inPlace = true;
+      for (PriceBar bar : bars) {
+        if (count > 0 && bar.getTimeStamp() <= time(count - 1)) {
+          int index = find(bar.getTimeStamp());
+          if (index < 0 || !holds(index, bar)) {
+            inPlace = false;
+            break;
+          }
+        }
+      }
+
+      if (inPlace) {
+        for (PriceBar bar : bars) {
+          if (count == 0 || bar.getTimeStamp() > time(count - 1)) {
+            if (count >= capacity) {
+              map(capacity * 2);
+            }
+            put(count++, bar);
+          }
+        }
+      } else {
+        TreeMap<Long, PriceBar> all = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+          all.put(time(i), bar(i));
+        }
+        for (PriceBar bar : bars) {
+          all.put(bar.getTimeStamp(), bar);
+        }
+        rewrite(all.values());
+      }
+
+      for (PriceBar bar : bars) {
+        name = bar.getAssetFullName() != null ? bar.getAssetFullName() : name;
+        type = bar.getAssetType() != null ? bar.getAssetType() : type;
+      }
+      // the fetched span joins the covered one unless there is a gap between them
+      coveredFrom = coveredTo == Long.MIN_VALUE || from > coveredTo
+          ? from : Math.min(coveredFrom, from);
+      coveredTo = to;
+
+      for (MappedByteBuffer column : columns) {
+        column.force();
+      }
+      writeMeta();
+    }
+
+
+    /**
+     * Method returns a view of the bars starting at or after the given time.
+     *
+     * @param from start of the view.
+     * @return view of the bars.
+     */
+    PriceSeries view(long from) {
+      int first = find(from);
+      first = first < 0 ? -first - 1 : first;
+      return new PriceSeries(symbol, name, type,
+          slice(0, first).asLongBuffer(), slice(1, first).asDoubleBuffer(),
+          slice(2, first).asDoubleBuffer(), slice(3, first).asDoubleBuffer(),
+          slice(4, first).asDoubleBuffer(), slice(5, first).asLongBuffer());
+    }
+
+
+    /**
+     * Method closes the column files.
+     *
+     * @throws IOException if a file cannot be closed.
+     */
+    void close() throws IOException {
+      for (FileChannel channel : channels) {
+        channel.close();
+      }
+    }
+
+
+    /**
+     * Helper method to return a read only slice of a column from the given bar to the last one.
+     *
+     * @param column position of the column.
+     * @param first  first bar of the slice.
+     * @return the slice.
+     */
+    private ByteBuffer slice(int column, int first) {
+      return columns[column].asReadOnlyBuffer()
+          .position(first * WIDTH).limit(count * WIDTH).slice();
+    }
+
+
+    /**
+     * Helper method to find a bar by time with binary search.
+     *
+     * @param time UNIX time of the bar.
+     * @return position of the bar, or (-(insertion point) - 1) as Arrays.binarySearch.
+     */
+    private int find(long time) {
+      int low = 0;
+      int high = count - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        long value = time(middle);
+        if (value < time) {
+          low = middle + 1;
+        } else if (value > time) {
+          high = middle - 1;
+        } else {
+          return middle;
+        }
+      }
+      return -(low + 1);
+    }
+
+
+    /**
+     * Helper method to return the time of a bar.
+     *
+     * @param index position of the bar.
+     * @return UNIX time of the bar.
+     */
+    private long time(int index) {
+      return columns[0].getLong(index * WIDTH);
+    }
+
+
+    /**
+     * Helper method to read a bar into an object.
+     *
+     * @param index position of the bar.
+     * @return the bar.
+     */
+    private PriceBar bar(int index) {
+      int offset = index * WIDTH;
+      return new PriceBar(symbol, name, type, columns[0].getLong(offset),
+          columns[1].getDouble(offset), columns[2].getDouble(offset),
+          columns[3].getDouble(offset), columns[4].getDouble(offset),
+          columns[5].getLong(offset));
+    }
+
+
+    /**
+     * Helper method to tell whether a stored bar has the values of the given one.
+     *
+     * @param index position of the stored bar.
+     * @param bar   the bar.
+     * @return true if no value differs.
+     */
+    private boolean holds(int index, PriceBar bar) {
+      int offset = index * WIDTH;
+      return columns[1].getLong(offset) == Double.doubleToRawLongBits(bar.getOpen())
+          && columns[2].getLong(offset) == Double.doubleToRawLongBits(bar.getHigh())
+          && columns[3].getLong(offset) == Double.doubleToRawLongBits(bar.getLow())
+          && columns[4].getLong(offset) == Double.doubleToRawLongBits(bar.getClose())
+          && columns[5].getLong(offset) == bar.getVolume();
+    }
+
+
+    /**
+     * Helper method to write a bar into the columns.
+     *
+     * @param index position of the bar.
+     * @param bar   the bar.
+     */
+    private void put(int index, PriceBar bar) {
+      int offset = index * WIDTH;
+      columns[0].putLong(offset, bar.getTimeStamp());
+      columns[1].putDouble(offset, bar.getOpen());
+      columns[2].putDouble(offset, bar.getHigh());
+      columns[3].putDouble(offset, bar.getLow());
+      columns[4].putDouble(offset, bar.getClose());
+      columns[5].putLong(offset, bar.getVolume());
+    }
+
+
+    /**
+     * Helper method to map the column files with room for the given number of bars. Views
+     * returned earlier keep the previous mapping.
+     *
+     * @param bars number of bars to make room for.
+     * @throws IOException if the files cannot be mapped.
+     */
+    private void map(int bars) throws IOException {
+      for (int i = 0; i < COLUMNS.length; i++) {
+        columns[i] = channels[i].map(FileChannel.MapMode.READ_WRITE, 0, (long) bars * WIDTH);
+      }
+      capacity = bars;
+    }
+
+
+    /**
+     * Helper method to write the bars to new column files replacing the current ones. The
+     * replaced files stay mapped, untouched, by views returned earlier.
+     *
+     * @param bars bars ordered by time.
+     * @throws IOException if the files cannot be written.
+     */
+    private void rewrite(Collection<PriceBar> bars) throws IOException {
+      FileChannel[] replaced = channels.clone();
+      Path[] temps = new Path[COLUMNS.length];
+      int room = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, bars.size())) * 2);
+      for (int i = 0; i < COLUMNS.length; i++) {
+        temps[i] = path.resolve(COLUMNS[i] + ".col.tmp");
+        channels[i] = FileChannel.open(temps[i], StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+      }
+      map(room);
+
+      count = 0;
+      for (PriceBar bar : bars) {
+        put(count++, bar);
+      }
+      for (int i = 0; i < COLUMNS.length; i++) {
+        columns[i].force();
+        Files.move(temps[i], path.resolve(COLUMNS[i] + ".col"),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        replaced[i].close();
+      }
+    }
+
+
+    /**
+     * Helper method to replace meta.properties with the current state.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    private void writeMeta() throws IOException {
+      Properties properties = new Properties();
+      properties.setProperty("count", Integer.toString(count));
+      properties.setProperty("coveredFrom", Long.toString(coveredFrom));
+      properties.setProperty("coveredTo", Long.toString(coveredTo));
+      if (name != null) {
+        properties.setProperty("name", name);
+      }
+      if (type != null) {
+        properties.setProperty("type", type);
+      }
+
+      Path temp = path.resolve("meta.properties.tmp");
+      try (OutputStream out = Files.newOutputStream(temp)) {
+        properties.store(out, symbol);
+      }
+      Files.move(temp, path.resolve("meta.properties"), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * HttpTransport class holds the long-lived HTTP client used to reach Yahoo finance api. The
+ * client keeps its connections alive and prefers HTTP/2, so consecutive quote requests reuse the
+ * same TLS session instead of paying a new handshake each time. Requests are resolved against a
+ * base address, so a local stand-in such as MockYahooServer can take the place of the api.
+ */
+public class HttpTransport {
+
+  /**
+   * Address of Yahoo finance api.
+   */
+  public static final URI DEFAULT_BASE_URI = URI.create("https://yfapi.net/");
+
+  /**
+   * Default time allowed to establish a connection.
+   */
+  public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+  /**
+   * Default time allowed for a response to arrive once the request is sent.
+   */
+  public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+  /**
+   * Transport shared by every ConnectionPort that does not supply its own.
+   */
+  private static final HttpTransport DEFAULT = new HttpTransport(
+      durationProperty("portfolio.http.connectTimeoutMillis", DEFAULT_CONNECT_TIMEOUT),
+      durationProperty("portfolio.http.requestTimeoutMillis", DEFAULT_REQUEST_TIMEOUT),
+      baseUriProperty("portfolio.api.baseUrl", DEFAULT_BASE_URI));
+
+  /**
+   * The pooled client. HttpClient is thread safe and keeps idle connections open.
+   */
+  private final HttpClient client;
+
+  /**
+   * Time allowed for each request to complete.
+   */
+  private final Duration requestTimeout;
+
+  /**
+   * Address request strings are resolved against, ending with '/'.
+   */
+  private final URI baseUri;
+
+
+  /**
+   * Constructor to instantiate HttpTransport object reaching Yahoo finance api.
+   *
+   * @param connectTimeout time allowed to establish a connection.
+   * @param requestTimeout time allowed for each response to arrive.
+   */
+  public HttpTransport(Duration connectTimeout, Duration requestTimeout) {
+    this(connectTimeout, requestTimeout, DEFAULT_BASE_URI);
+  }
+
+
+  /**
+   * Constructor to instantiate HttpTransport object reaching the api at the given address.
+   *
+   * @param connectTimeout time allowed to establish a connection.
+   * @param requestTimeout time allowed for each response to arrive.
+   * @param baseUri        address of the api.
+   */
+  public HttpTransport(Duration connectTimeout, Duration requestTimeout, URI baseUri) {
+    this.requestTimeout = requestTimeout;
+    this.baseUri = baseUri.toString().endsWith("/") ? baseUri : URI.create(baseUri + "/");
+    client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(connectTimeout)
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .build();
+  }
+
+
+  /**
+   * Returning the shared transport. Timeouts can be tuned with the system properties
+   * portfolio.http.connectTimeoutMillis and portfolio.http.requestTimeoutMillis, and the api
+   * address replaced with portfolio.api.baseUrl.
+   *
+   * @return the transport shared across the application.
+   */
+  public static HttpTransport getDefault() {
+    return DEFAULT;
+  }
+
+
+  /**
+   * Method resolves a request string against the address of the api.
+   *
+   * @param requestString request string relative to the api address.
+   * @return address of the resource.
+   */
+  public URI resolve(String requestString) {
+    return baseUri.resolve(requestString);
+  }
+
+
+  /**
+   * Method creates GET request builder for the given address with the request timeout applied.
+   *
+   * @param uri address of the resource.
+   * @return request builder ready for headers.
+   */
+  public HttpRequest.Builder newGetRequest(URI uri) {
+    return HttpRequest.newBuilder()
+        .uri(uri)
+        .timeout(requestTimeout)
+        .GET();
+  }
+
+
+  /**
+   * Method sends request over the pooled client and waits for the response.
+   *
+   * @param request     request to send.
+   * @param bodyHandler handler for the response body.
+   * @param <T>         type of the response body.
+   * @return received response.
+   * @throws IOException          if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   */
+  public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+      throws IOException, InterruptedException {
+    return client.send(request, bodyHandler);
+  }
+
+
+  /**
+   * Returning the underlying client.
+   *
+   * @return the pooled HTTP client.
+   */
+  public HttpClient getClient() {
+    return client;
+  }
+
+
+  /**
+   * Returning the request timeout.
+   *
+   * @return time allowed for each response to arrive.
+   */
+  public Duration getRequestTimeout() {
+    return requestTimeout;
+  }
+
+
+  /**
+   * Returning the address of the api.
+   *
+   * @return address request strings are resolved against.
+   */
+  public URI getBaseUri() {
+    return baseUri;
+  }
+
+
+  /**
+   * Helper method to read timeout in milliseconds from system property.
+   *
+   * @param name     name of the system property.
+   * @param fallback value used when property is missing or not a number.
+   * @return configured duration.
+   */
+  private static Duration durationProperty(String name, Duration fallback) {
+    String value = System.getProperty(name);
+    if (value == null) {
+      return fallback;
+    }
+    try {
+      return Duration.ofMillis(Long.parseLong(value.trim()));
+    } catch (NumberFormatException e) {
+      return fallback;
+    }
+  }
+
+
+  /**
+   * Helper method to read an address from system property.
+   *
+   * @param name     name of the system property.
+   * @param fallback value used when property is missing or not a valid address.
+   * @return configured address.
+   */
+  private static URI baseUriProperty(String name, URI fallback) {
+    String value = System.getProperty(name);
+    if (value == null || value.isBlank()) {
+      return fallback;
+    }
+    try {
+      return URI.create(value.trim());
+    } catch (IllegalArgumentException e) {
+      return fallback;
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package com.lyit.csd;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.function.Consumer;
+
+/**
+ * IndexedList class is a list in insertion order that tells its owner about every element added
+ * or removed, so the owner can keep its own indexes in step. Elements are compared by identity,
+ * removing an element and checking whether it is held take constant time. Elements can only be
+ * appended; positional access walks the list and is meant for occasional use.
+ *
+ * @param <E> type of the elements.
+ */
+public class IndexedList<E> extends AbstractList<E> {
+
+  /**
+   * Elements in insertion order.
+   */
+  private final LinkedHashSet<E> elements = new LinkedHashSet<>();
+
+  /**
+   * Called after an element has been added.
+   */
+  private final Consumer<E> onAdd;
+
+  /**
+   * Called after an element has been removed.
+   */
+  private final Consumer<E> onRemove;
+
+
+  /**
+   * Constructor to instantiate IndexedList object.
+   *
+   * @param onAdd    called after an element has been added.
+   * @param onRemove called after an element has been removed.
+   */
+  public IndexedList(Consumer<E> onAdd, Consumer<E> onRemove) {
+    this.onAdd = onAdd;
+    this.onRemove = onRemove;
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public int size() {
+    return elements.size();
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public E get(int index) {
+    if (index < 0 || index >= elements.size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elements.size());
+    }
+    Iterator<E> iterator = elements.iterator();
+    for (int i = 0; i < index; i++) {
+      iterator.next();
+    }
+    return iterator.next();
+  }
+
+
+  /**
+   * Appends the element. Only adding at the end of the list is supported.
+   *
+   * @param index position of the new element, must be the size of the list.
+   * @param element element to add.
+   * @throws IllegalArgumentException if the element is already in the list.
+   */
+  @Override
+  public void add(int index, E element) {
+    if (index != elements.size()) {
+      throw new UnsupportedOperationException("Elements can only be appended");
+    }
+    if (!elements.add(element)) {
+      throw new IllegalArgumentException("Element is already in the list");
+    }
+    modCount++;
+    onAdd.accept(element);
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public E remove(int index) {
+    E element = get(index);
+    remove(element);
+    return element;
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean remove(Object element) {
+    if (!elements.remove(element)) {
+      return false;
+    }
+    modCount++;
+    onRemove.accept((E) element);
+    return true;
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public boolean contains(Object element) {
+    return elements.contains(element);
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public void clear() {
+    for (E element : new ArrayList<>(elements)) {
+      remove(element);
+    }
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public Iterator<E> iterator() {
+    Iterator<E> iterator = elements.iterator();
+    return new Iterator<>() {
+
+      private E last;
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public E next() {
+        last = iterator.next();
+        return last;
+      }
+
+      @Override
+      public void remove() {
+        if (last == null) {
+          throw new IllegalStateException();
+        }
+        iterator.remove();
+        modCount++;
+        onRemove.accept(last);
+        last = null;
+      }
+    };
+  }
+}
@@ -0,0 +1,356 @@
+package com.lyit.csd;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JournalRecord class is one change to an account as written to the trade journal. A trade
+ * carries the quote it was made at, so replaying the journal needs no market data and gives
+ * back the same account. Money is written in micro dollars and amounts in 1e-8 units, see Money,
+ * so replaying gives back the exact values the trade was made with.
+ */
+public final class JournalRecord {
+
+  /**
+   * Kinds of change recorded.
+   */
+  public enum Type {
+
+    /**
+     * Money added to the account.
+     */
+    FUNDS_ADDED,
+
+    /**
+     * Asset bought at the quoted price.
+     */
+    PURCHASE,
+
+    /**
+     * Asset sold at the quoted price.
+     */
+    SALE,
+
+    /**
+     * Money taken out of the account.
+     */
+    FUNDS_WITHDRAWN
+  }
+
+  /**
+   * Kind of change.
+   */
+  private final Type type;
+
+  /**
+   * Log sequence number, given by the journal when the record is written.
+   */
+  private final long lsn;
+
+  /**
+   * Symbol the trade was asked for with, null for money added or withdrawn.
+   */
+  private final String assetSymbol;
+
+  /**
+   * Money added or taken out in micro dollars, or amount of the asset bought or sold in 1e-8
+   * units.
+   */
+  private final long amount;
+
+  /**
+   * Quote the trade was made at, null for money added or withdrawn.
+   */
+  private final AssetQuote quote;
+
+  /**
+   * Order lots were used up in by a sale, null if one specific lot was sold from.
+   */
+  private final LotSelection selection;
+
+  /**
+   * Lot sold from when selection is null.
+   */
+  private final long lotId;
+
+
+  /**
+   * Constructor to instantiate JournalRecord object.
+   *
+   * @param type        kind of change.
+   * @param lsn         log sequence number, 0 until written.
+   * @param assetSymbol symbol the trade was asked for with.
+   * @param amount      money in micro dollars, or amount of the asset in 1e-8 units.
+   * @param quote       quote the trade was made at.
+   * @param selection   order lots were used up in by a sale.
+   * @param lotId       lot sold from when selection is null.
+   */
+  private JournalRecord(Type type, long lsn, String assetSymbol, long amount, AssetQuote quote,
+      LotSelection selection, long lotId) {
+    this.type = type;
+    this.lsn = lsn;
+    this.assetSymbol = assetSymbol;
+    this.amount = amount;
+    this.quote = quote;
+    this.selection = selection;
+    this.lotId = lotId;
+  }
+
+
+  /**
+   * Creating a record of money added to the account.
+   *
+   * @param amount money added in USD.
+   * @return the record.
+   */
+  public static JournalRecord fundsAdded(double amount) {
+    return new JournalRecord(Type.FUNDS_ADDED, 0, null, Money.toMicros(amount), null, null, 0);
+  }
+
+
+  /**
+   * Creating a record of money taken out of the account.
+   *
+   * @param amount money taken out in USD.
+   * @return the record.
+   */
+  public static JournalRecord fundsWithdrawn(double amount) {
+    return new JournalRecord(Type.FUNDS_WITHDRAWN, 0, null, Money.toMicros(amount), null, null,
+        0);
+  }
+
+
+  /**
+   * Creating a record of a purchase.
+   *
+   * @param assetSymbol symbol the purchase was asked for with.
+   * @param quote       quote the asset was bought at.
+   * @param amount      amount bought.
+   * @return the record.
+   */
+  public static JournalRecord purchase(String assetSymbol, AssetQuote quote, double amount) {
+    return new JournalRecord(Type.PURCHASE, 0, assetSymbol, Money.toUnits(amount), quote, null,
+        0);
+  }
+
+
+  /**
+   * Creating a record of a sale.
+   *
+   * @param assetSymbol symbol the sale was asked for with.
+   * @param quote       quote the asset was sold at.
+   * @param amount      amount sold.
+   * @param selection   order lots were used up in, null if only lotId was sold from.
+   * @param lotId       lot sold from when selection is null.
+   * @return the record.
+   */
+  public static JournalRecord sale(String assetSymbol, AssetQuote quote, double amount,
+      LotSelection selection, long lotId) {
+    return new JournalRecord(Type.SALE, 0, assetSymbol, Money.toUnits(amount), quote, selection,
+        lotId);
+  }
+
+
+  /**
+   * Returning the kind of change.
+   *
+   * @return record type.
+   */
+  public Type getType() {
+    return type;
+  }
+
+
+  /**
+   * Returning the log sequence number.
+   *
+   * @return position of the record in the journal, 0 if not written.
+   */
+  public long getLsn() {
+    return lsn;
+  }
+
+
+  /**
+   * Returning the symbol the trade was asked for with.
+   *
+   * @return asset symbol, null for money added or withdrawn.
+   */
+  public String getAssetSymbol() {
+    return assetSymbol;
+  }
+
+
+  /**
+   * Returning the money added or the amount traded.
+   *
+   * @return amount of the change.
+   */
+  public double getAmount() {
+    return isFunds(type) ? Money.toUsd(amount) : Money.toAmount(amount);
+  }
+
+
+  /**
+   * Returning the money added or the amount traded as a scaled long.
+   *
+   * @return micro dollars for money added or withdrawn, 1e-8 units for a trade.
+   */
+  public long getScaledAmount() {
+    return amount;
+  }
+
+
+  /**
+   * Returning the quote the trade was made at.
+   *
+   * @return quote, null for money added or withdrawn.
+   */
+  public AssetQuote getQuote() {
+    return quote;
+  }
+
+
+  /**
+   * Returning the order lots were used up in by a sale.
+   *
+   * @return lot selection, null if one specific lot was sold from.
+   */
+  public LotSelection getSelection() {
+    return selection;
+  }
+
+
+  /**
+   * Returning the lot sold from.
+   *
+   * @return lot identifier, used when the selection is null.
+   */
+  public long getLotId() {
+    return lotId;
+  }
+
+
+  /**
+   * Method writes the record body with the given sequence number.
+   *
+   * @param buffer buffer to write to.
+   * @param lsn    log sequence number of the record.
+   */
+  void writeTo(ByteBuffer buffer, long lsn) {
+    buffer.putLong(lsn);
+    buffer.put((byte) type.ordinal());
+    buffer.putLong(amount);
+    if (isFunds(type)) {
+      return;
+    }
+    putString(buffer, assetSymbol);
+    putString(buffer, quote.getAssetSymbol());
+    putString(buffer, quote.getAssetFullName());
+    putString(buffer, quote.getAssetType());
+    buffer.putLong(quote.getTimeStamp());
+    buffer.putLong(quote.getLivePriceMicros());
+    if (type == Type.SALE) {
+      buffer.put((byte) (selection == null ? -1 : selection.ordinal()));
+      buffer.putLong(lotId);
+    }
+  }
+
+
+  /**
+   * Method reads a record body written by writeTo.
+   *
+   * @param buffer buffer positioned at the body.
+   * @return the record.
+   */
+  static JournalRecord readFrom(ByteBuffer buffer) {
+    long lsn = buffer.getLong();
+    Type type = Type.values()[buffer.get()];
+    long amount = buffer.getLong();
+    if (isFunds(type)) {
+      return new JournalRecord(type, lsn, null, amount, null, null, 0);
+    }
+    String assetSymbol = getString(buffer);
+    AssetQuote quote = AssetQuote.ofMicros(getString(buffer), getString(buffer),
+        getString(buffer), buffer.getLong(), buffer.getLong());
+    LotSelection selection = null;
+    long lotId = 0;
+    if (type == Type.SALE) {
+      byte ordinal = buffer.get();
+      selection = ordinal < 0 ? null : LotSelection.values()[ordinal];
+      lotId = buffer.getLong();
+    }
+    return new JournalRecord(type, lsn, assetSymbol, amount, quote, selection, lotId);
+  }
+
+
+  /**
+   * Returning the largest number of bytes writeTo can use for this record.
+   *
+   * @return upper bound of the body size.
+   */
+  int maxSize() {
+    int size = 8 + 1 + 8;
+    if (quote != null) {
+      size += maxSize(assetSymbol) + maxSize(quote.getAssetSymbol())
+          + maxSize(quote.getAssetFullName()) + maxSize(quote.getAssetType()) + 8 + 8 + 1 + 8;
+    }
+    return size;
+  }
+
+
+  /**
+   * Helper method to tell whether a kind of change moves money rather than an asset.
+   *
+   * @param type kind of change.
+   * @return true for money added or withdrawn.
+   */
+  private static boolean isFunds(Type type) {
+    return type == Type.FUNDS_ADDED || type == Type.FUNDS_WITHDRAWN;
+  }
+
+
+  /**
+   * Helper method to write a string as its UTF-8 length and bytes, -1 for null.
+   *
+   * @param buffer buffer to write to.
+   * @param value  string to write.
+   */
+  private static void putString(ByteBuffer buffer, String value) {
+    if (value == null) {
+      buffer.putInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+  }
+
+
+  /**
+   * Helper method to read a string written by putString.
+   *
+   * @param buffer buffer to read from.
+   * @return the string.
+   */
+  private static String getString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+
+  /**
+   * Helper method to return the largest number of bytes putString uses for the string.
+   *
+   * @param value the string.
+   * @return upper bound of the encoded size.
+   */
+  private static int maxSize(String value) {
+    return 4 + (value == null ? 0 : value.length() * 3);
+  }
+}
@@ -0,0 +1,174 @@
+package com.lyit.csd;
+
+/**
+ * LatencyHistogram class counts recorded latencies in buckets that grow with the value, 128 per
+ * power of two, so any percentile is read back within 1% of the recorded value while the
+ * histogram keeps a fixed size whatever the number of values. Not thread safe, each thread
+ * records into its own histogram and they are added up afterwards.
+ */
+public final class LatencyHistogram {
+
+  /**
+   * Number of bits of a value kept, sub buckets per power of two.
+   */
+  private static final int SUB_BITS = 7;
+
+  /**
+   * Number of sub buckets per power of two.
+   */
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+  /**
+   * Number of values recorded by bucket.
+   */
+  private final long[] counts = new long[(64 - SUB_BITS) * SUB_BUCKETS];
+
+  /**
+   * Number of values recorded.
+   */
+  private long count;
+
+  /**
+   * Sum of the values recorded.
+   */
+  private double sum;
+
+  /**
+   * Smallest value recorded.
+   */
+  private long min = Long.MAX_VALUE;
+
+  /**
+   * Largest value recorded.
+   */
+  private long max;
+
+
+  /**
+   * Method records a value.
+   *
+   * @param value the value, negative values are recorded as 0.
+   */
+  public void record(long value) {
+    value = Math.max(0, value);
+    counts[index(value)]++;
+    count++;
+    sum += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+
+  /**
+   * Method adds the values of another histogram to this one.
+   *
+   * @param other the histogram to add.
+   */
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] += other.counts[i];
+    }
+    count += other.count;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+
+  /**
+   * Returning the number of values recorded.
+   *
+   * @return the number of values.
+   */
+  public long getCount() {
+    return count;
+  }
+
+
+  /**
+   * Returning the mean of the values recorded.
+   *
+   * @return the mean, 0 if there are none.
+   */
+  public double getMean() {
+    return count == 0 ? 0 : sum / count;
+  }
+
+
+  /**
+   * Returning the smallest value recorded.
+   *
+   * @return the smallest value, 0 if there are none.
+   */
+  public long getMin() {
+    return count == 0 ? 0 : min;
+  }
+
+
+  /**
+   * Returning the largest value recorded.
+   *
+   * @return the largest value, 0 if there are none.
+   */
+  public long getMax() {
+    return max;
+  }
+
+
+  /**
+   * Method returns the value the given share of the values recorded are at or below.
+   *
+   * @param percentile share between 0 and 100.
+   * @return the highest value of the bucket holding the percentile, 0 if there are none.
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.max(min, Math.min(max, highestValue(i)));
+      }
+    }
+    return max;
+  }
+
+
+  /**
+   * Helper method to find the bucket of a value.
+   *
+   * @param value value at least 0.
+   * @return index of the bucket.
+   */
+  private static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BITS;
+    // the leading bit is implied by the exponent, the next SUB_BITS pick the sub bucket
+    return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+
+  /**
+   * Helper method to return the highest value counted in a bucket.
+   *
+   * @param index index of the bucket.
+   * @return the highest value of the bucket.
+   */
+  private static long highestValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long mantissa = SUB_BUCKETS + index % SUB_BUCKETS;
+    return ((mantissa + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,476 @@
+package com.lyit.csd;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LoadGenerator class drives the accounts of a PortfolioEngine the way many concurrent users
+ * would, each user a thread of its own picking operations at random from a weighted mix and
+ * starting them at a fixed rate. Latency is measured from the time an operation was due rather
+ * than the time it got to run, so a slow operation also counts against the ones queued behind
+ * it instead of hiding them. The run is summed up as throughput and latency percentiles of the
+ * successful operations, failures are counted apart. Pair it with MockYahooServer so quotes come
+ * from a local stand-in with known latency rather than the real api.
+ */
+public class LoadGenerator {
+
+  /**
+   * Operations a simulated user runs.
+   */
+  public enum Operation {
+
+    /**
+     * Buy one unit of a random symbol.
+     */
+    BUY,
+
+    /**
+     * Sell one unit of a random symbol, refused if none is held.
+     */
+    SELL,
+
+    /**
+     * Look up the quotes of two random symbols.
+     */
+    QUOTE,
+
+    /**
+     * List all investments of the account.
+     */
+    REPORT
+  }
+
+  /**
+   * Accounts the load is run against.
+   */
+  private final PortfolioEngine engine;
+
+  /**
+   * Weight of each operation in the mix.
+   */
+  private final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+
+  /**
+   * Symbols traded and looked up.
+   */
+  private List<String> symbols = List.of("AAPL", "MSFT", "TSLA", "NVDA", "AMZN", "GOOG", "META",
+      "IBM", "BTC-USD", "ETH-USD");
+
+  /**
+   * Number of simulated users.
+   */
+  private int users = 10;
+
+  /**
+   * Time the load is run for, after the warm up.
+   */
+  private Duration duration = Duration.ofSeconds(10);
+
+  /**
+   * Time the load is run for before latencies are recorded.
+   */
+  private Duration warmup = Duration.ZERO;
+
+  /**
+   * Seed the users pick operations and symbols with.
+   */
+  private long seed = 1;
+
+  /**
+   * Operations each user starts per second.
+   */
+  private double rate = 100;
+
+
+  /**
+   * Constructor to instantiate LoadGenerator object with a mix of 40% buys, 30% sells, 20% quote
+   * lookups and 10% reports.
+   *
+   * @param engine accounts the load is run against.
+   */
+  public LoadGenerator(PortfolioEngine engine) {
+    this.engine = engine;
+    mix.put(Operation.BUY, 40);
+    mix.put(Operation.SELL, 30);
+    mix.put(Operation.QUOTE, 20);
+    mix.put(Operation.REPORT, 10);
+  }
+
+
+  /**
+   * Setting the weight of an operation in the mix.
+   *
+   * @param operation the operation.
+   * @param weight    weight relative to the other operations, 0 to leave it out.
+   */
+  public void setWeight(Operation operation, int weight) {
+    if (weight < 0) {
+      throw new IllegalArgumentException("Weight must not be negative");
+    }
+    mix.put(operation, weight);
+  }
+
+
+  /**
+   * Setting the mix from text such as "buy=40,sell=30,quote=20,report=10". Operations not named
+   * keep their weight.
+   *
+   * @param text weights by operation name.
+   */
+  public void setMix(String text) {
+    for (String pair : text.split(",")) {
+      String[] parts = pair.split("=");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Invalid mix entry: " + pair);
+      }
+      setWeight(Operation.valueOf(parts[0].trim().toUpperCase()),
+          Integer.parseInt(parts[1].trim()));
+    }
+  }
+
+
+  /**
+   * Setting the symbols traded and looked up.
+   *
+   * @param symbols asset symbols, at least one.
+   */
+  public void setSymbols(List<String> symbols) {
+    if (symbols.isEmpty()) {
+      throw new IllegalArgumentException("At least one symbol is needed");
+    }
+    this.symbols = List.copyOf(symbols);
+  }
+
+
+  /**
+   * Setting the number of simulated users.
+   *
+   * @param users number of users, each on an account of its own.
+   */
+  public void setUsers(int users) {
+    if (users < 1) {
+      throw new IllegalArgumentException("At least one user is needed");
+    }
+    this.users = users;
+  }
+
+
+  /**
+   * Setting the time the load is run for.
+   *
+   * @param warmup   time run before latencies are recorded.
+   * @param duration time latencies are recorded for.
+   */
+  public void setDuration(Duration warmup, Duration duration) {
+    this.warmup = warmup;
+    this.duration = duration;
+  }
+
+
+  /**
+   * Setting the rate each user starts operations at. An operation is due at its time whether or
+   * not the one before it has finished.
+   *
+   * @param rate operations per second per user.
+   */
+  public void setRate(double rate) {
+    if (!(rate > 0) || Double.isInfinite(rate)) {
+      throw new IllegalArgumentException("Rate must be positive");
+    }
+    this.rate = rate;
+  }
+
+
+  /**
+   * Setting the seed the users pick operations and symbols with.
+   *
+   * @param seed the seed.
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+
+  /**
+   * Method runs the load and waits for every user to finish.
+   *
+   * @return latencies and throughput of the run.
+   * @throws InterruptedException if interrupted while waiting for the users.
+   */
+  public Report run() throws InterruptedException {
+    int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+    if (total == 0) {
+      throw new IllegalArgumentException("Mix must hold at least one operation");
+    }
+    // accounts are opened and funded first so setting them up does not eat into the run
+    List<User> accounts = new ArrayList<>();
+    for (int i = 0; i < users; i++) {
+      User account = engine.account("load-" + i);
+      account.addFunds(1_000_000_000);
+      accounts.add(account);
+    }
+
+    ExecutorService executor = PortfolioServer.newRequestExecutor();
+    List<Future<Report>> running = new ArrayList<>();
+    long start = System.nanoTime() + warmup.toNanos();
+    long end = start + duration.toNanos();
+    try {
+      for (int i = 0; i < users; i++) {
+        User account = accounts.get(i);
+        Random random = new Random(seed * 31 + i);
+        running.add(executor.submit(() -> simulate(account, random, total, start, end)));
+      }
+      Report report = new Report(duration);
+      for (Future<Report> user : running) {
+        report.add(user.get());
+      }
+      return report;
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Simulated user failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+
+  /**
+   * Helper method to run the operations of one simulated user until the end of the run. The
+   * operations are due at the fixed rate, and each is measured from the time it was due.
+   *
+   * @param account account of the user.
+   * @param random  generator picking operations and symbols.
+   * @param total   sum of the weights of the mix.
+   * @param start   time recording starts, System.nanoTime based.
+   * @param end     time the run ends, System.nanoTime based.
+   * @return latencies of the operations due after the start.
+   */
+  private Report simulate(User account, Random random, int total, long start, long end) {
+    Report report = new Report(duration);
+    long interval = Math.max(1, (long) (1e9 / rate));
+    // users start at random points of the first interval rather than all at once
+    long due = System.nanoTime() + (long) (random.nextDouble() * interval);
+    while (due < end && !Thread.currentThread().isInterrupted()) {
+      long wait = due - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+        continue;
+      }
+      Operation operation = pick(random.nextInt(total));
+      boolean failed = false;
+      try {
+        execute(operation, account, random);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (Exception e) {
+        failed = true;
+      }
+      if (due >= start) {
+        report.record(operation, System.nanoTime() - due, failed);
+      }
+      due += interval;
+    }
+    return report;
+  }
+
+
+  /**
+   * Helper method to run one operation.
+   *
+   * @param operation operation to run.
+   * @param account   account of the user.
+   * @param random    generator picking symbols.
+   * @throws Exception if the operation fails.
+   */
+  private void execute(Operation operation, User account, Random random) throws Exception {
+    switch (operation) {
+      case BUY -> account.purchaseAsset(symbol(random), 1);
+      case SELL -> account.sellAsset(symbol(random), 1);
+      case QUOTE -> account.getAssetInformation(List.of(symbol(random), symbol(random)));
+      case REPORT -> account.listAllInvestments();
+    }
+  }
+
+
+  /**
+   * Helper method to pick the operation a draw falls on.
+   *
+   * @param draw number between 0 and the sum of the weights.
+   * @return the operation.
+   */
+  private Operation pick(int draw) {
+    for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+      draw -= entry.getValue();
+      if (draw < 0) {
+        return entry.getKey();
+      }
+    }
+    throw new IllegalStateException("Draw outside the mix");
+  }
+
+
+  /**
+   * Helper method to pick a symbol.
+   *
+   * @param random generator picking symbols.
+   * @return the symbol.
+   */
+  private String symbol(Random random) {
+    return symbols.get(random.nextInt(symbols.size()));
+  }
+
+
+  /**
+   * Report class holds the latencies recorded during a run, in nanoseconds, by operation.
+   */
+  public static final class Report {
+
+    /**
+     * Latencies of the successful operations by operation.
+     */
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+
+    /**
+     * Latencies of the failed operations by operation.
+     */
+    private final Map<Operation, LatencyHistogram> failures = new EnumMap<>(Operation.class);
+
+    /**
+     * Time the latencies were recorded over.
+     */
+    private final Duration duration;
+
+
+    /**
+     * Constructor to instantiate an empty Report.
+     *
+     * @param duration time the latencies are recorded over.
+     */
+    Report(Duration duration) {
+      this.duration = duration;
+      for (Operation operation : Operation.values()) {
+        latencies.put(operation, new LatencyHistogram());
+        failures.put(operation, new LatencyHistogram());
+      }
+    }
+
+
+    /**
+     * Helper method to record one operation.
+     *
+     * @param operation   the operation.
+     * @param latencyNano time from when it was due until it finished.
+     * @param failed      whether it failed, kept out of the latencies of the successful ones.
+     */
+    void record(Operation operation, long latencyNano, boolean failed) {
+      (failed ? failures : latencies).get(operation).record(latencyNano);
+    }
+
+
+    /**
+     * Helper method to add the operations of another report.
+     *
+     * @param other the report to add.
+     */
+    void add(Report other) {
+      for (Operation operation : Operation.values()) {
+        latencies.get(operation).add(other.latencies.get(operation));
+        failures.get(operation).add(other.failures.get(operation));
+      }
+    }
+
+
+    /**
+     * Returning the latencies of the successful runs of an operation.
+     *
+     * @param operation the operation.
+     * @return latencies in nanoseconds.
+     */
+    public LatencyHistogram getLatencies(Operation operation) {
+      return latencies.get(operation);
+    }
+
+
+    /**
+     * Returning the latencies of the failed runs of an operation.
+     *
+     * @param operation the operation.
+     * @return latencies in nanoseconds.
+     */
+    public LatencyHistogram getFailureLatencies(Operation operation) {
+      return failures.get(operation);
+    }
+
+
+    /**
+     * Returning the number of failed runs of an operation.
+     *
+     * @param operation the operation.
+     * @return number of failures.
+     */
+    public long getErrors(Operation operation) {
+      return failures.get(operation).getCount();
+    }
+
+
+    /**
+     * Returning the throughput of an operation.
+     *
+     * @param operation the operation.
+     * @return operations completed successfully per second.
+     */
+    public double getThroughput(Operation operation) {
+      return latencies.get(operation).getCount() * 1e9 / Math.max(1, duration.toNanos());
+    }
+
+
+    /**
+     * Method returns the report as a table, latencies of the successful operations in
+     * milliseconds.
+     *
+     * @return the table.
+     */
+    @Override
+    public String toString() {
+      StringBuilder result = new StringBuilder(String.format(
+          "%-8s %10s %8s %10s %10s %10s %10s %10s%n", "op", "count", "errors", "ops/s",
+          "p50 ms", "p99 ms", "p999 ms", "max ms"));
+      LatencyHistogram all = new LatencyHistogram();
+      long failed = 0;
+      for (Operation operation : Operation.values()) {
+        LatencyHistogram histogram = latencies.get(operation);
+        all.add(histogram);
+        failed += getErrors(operation);
+        row(result, operation.name().toLowerCase(), histogram, getErrors(operation));
+      }
+      row(result, "all", all, failed);
+      return result.toString();
+    }
+
+
+    /**
+     * Helper method to write one row of the table.
+     *
+     * @param result    the table.
+     * @param name      name of the row.
+     * @param histogram latencies of the row.
+     * @param failed    number of failures of the row.
+     */
+    private void row(StringBuilder result, String name, LatencyHistogram histogram,
+        long failed) {
+      result.append(String.format("%-8s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f%n", name,
+          histogram.getCount(), failed,
+          histogram.getCount() * 1e9 / Math.max(1, duration.toNanos()),
+          histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+          histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMax() / 1e6));
+    }
+  }
+}
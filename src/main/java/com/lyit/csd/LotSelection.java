@@ -0,0 +1,27 @@
+package com.lyit.csd;
+
+/**
+ * Order in which lots of an asset are used up when part of a holding is sold.
+ */
+public enum LotSelection {
+
+  /**
+   * Oldest purchase first (first in, first out).
+   */
+  FIFO,
+
+  /**
+   * Newest purchase first (last in, first out).
+   */
+  LIFO,
+
+  /**
+   * Lot bought at the highest price first.
+   */
+  HIGHEST_COST,
+
+  /**
+   * Lot bought at the lowest price first.
+   */
+  LOWEST_COST
+}
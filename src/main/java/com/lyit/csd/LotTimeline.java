@@ -0,0 +1,340 @@
+package com.lyit.csd;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * LotTimeline class is an immutable list of lots ordered by purchase time, kept as a treap whose
+ * nodes are shared between versions. Adding, replacing or removing a lot copies only the path
+ * down to it, so a new version costs logarithmic time and space while the older versions stay as
+ * they were. Lots are copied when added and the copies are never changed.
+ */
+final class LotTimeline extends AbstractList<Asset> {
+
+  /**
+   * Timeline without lots.
+   */
+  static final LotTimeline EMPTY = new LotTimeline(null);
+
+  /**
+   * Root of the treap, null if there are no lots.
+   */
+  private final Node root;
+
+
+  /**
+   * Constructor to instantiate LotTimeline object.
+   *
+   * @param root root of the treap.
+   */
+  private LotTimeline(Node root) {
+    this.root = root;
+  }
+
+
+  /**
+   * Method returns a timeline holding a copy of the lot, in place of the lot with the same
+   * purchase time and lot identifier if there is one.
+   *
+   * @param lot lot to add.
+   * @return the new timeline.
+   */
+  LotTimeline with(Asset lot) {
+    Asset copy = lot.copy();
+    Node replaced = replace(root, copy);
+    return new LotTimeline(replaced != null ? replaced
+        : insert(root, new Node(copy, priority(copy), null, null)));
+  }
+
+
+  /**
+   * Method returns a timeline without the lot with the purchase time and lot identifier of the
+   * given one.
+   *
+   * @param lot lot to remove.
+   * @return the new timeline, this one if the lot is not held.
+   */
+  LotTimeline without(Asset lot) {
+    Node removed = delete(root, lot);
+    return removed == root ? this : new LotTimeline(removed);
+  }
+
+
+  /**
+   * Method finds the first lot bought at or after the given time.
+   *
+   * @param timeStamp UNIX timestamp.
+   * @return position of the lot, the number of lots if there is none.
+   */
+  int firstAtOrAfter(long timeStamp) {
+    int position = 0;
+    Node node = root;
+    while (node != null) {
+      if (node.lot.getTimeStamp() < timeStamp) {
+        position += size(node.left) + 1;
+        node = node.right;
+      } else {
+        node = node.left;
+      }
+    }
+    return position;
+  }
+
+
+  /**
+   * Returning the number of lots.
+   *
+   * @return number of lots.
+   */
+  @Override
+  public int size() {
+    return size(root);
+  }
+
+
+  /**
+   * Returning the lot at the given position.
+   *
+   * @param index position of the lot, oldest first.
+   * @return the lot.
+   */
+  @Override
+  public Asset get(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+    Node node = root;
+    while (true) {
+      int left = size(node.left);
+      if (index < left) {
+        node = node.left;
+      } else if (index > left) {
+        index -= left + 1;
+        node = node.right;
+      } else {
+        return node.lot;
+      }
+    }
+  }
+
+
+  /**
+   * Returning an iterator walking the lots oldest first.
+   *
+   * @return iterator over the lots.
+   */
+  @Override
+  public Iterator<Asset> iterator() {
+    Deque<Node> path = new ArrayDeque<>();
+    for (Node node = root; node != null; node = node.left) {
+      path.push(node);
+    }
+    return new Iterator<>() {
+
+      @Override
+      public boolean hasNext() {
+        return !path.isEmpty();
+      }
+
+      @Override
+      public Asset next() {
+        if (path.isEmpty()) {
+          throw new NoSuchElementException();
+        }
+        Node node = path.pop();
+        for (Node next = node.right; next != null; next = next.left) {
+          path.push(next);
+        }
+        return node.lot;
+      }
+    };
+  }
+
+
+  /**
+   * Helper method to return the number of lots under a node.
+   *
+   * @param node the node, may be null.
+   * @return number of lots.
+   */
+  private static int size(Node node) {
+    return node == null ? 0 : node.size;
+  }
+
+
+  /**
+   * Helper method to give a lot its priority in the treap. Mixing the lot identifier spreads the
+   * priorities of lots bought one after another.
+   *
+   * @param lot the lot.
+   * @return priority of the lot.
+   */
+  private static int priority(Asset lot) {
+    return Long.hashCode(lot.getLotId() * 0x9E3779B97F4A7C15L);
+  }
+
+
+  /**
+   * Helper method to replace the lot with the same key as the given one.
+   *
+   * @param node root of the subtree.
+   * @param lot  lot to put in.
+   * @return root of the new subtree, null if no lot has the key.
+   */
+  private static Node replace(Node node, Asset lot) {
+    if (node == null) {
+      return null;
+    }
+    int order = SymbolLots.BY_TIME.compare(lot, node.lot);
+    if (order == 0) {
+      return new Node(lot, node.priority, node.left, node.right);
+    }
+    Node child = replace(order < 0 ? node.left : node.right, lot);
+    if (child == null) {
+      return null;
+    }
+    return order < 0 ? new Node(node.lot, node.priority, child, node.right)
+        : new Node(node.lot, node.priority, node.left, child);
+  }
+
+
+  /**
+   * Helper method to insert a node whose key is not in the subtree.
+   *
+   * @param node root of the subtree.
+   * @param leaf node to insert, without children.
+   * @return root of the new subtree.
+   */
+  private static Node insert(Node node, Node leaf) {
+    if (node == null) {
+      return leaf;
+    }
+    if (leaf.priority > node.priority) {
+      Node[] parts = split(node, leaf.lot);
+      return new Node(leaf.lot, leaf.priority, parts[0], parts[1]);
+    }
+    if (SymbolLots.BY_TIME.compare(leaf.lot, node.lot) < 0) {
+      return new Node(node.lot, node.priority, insert(node.left, leaf), node.right);
+    }
+    return new Node(node.lot, node.priority, node.left, insert(node.right, leaf));
+  }
+
+
+  /**
+   * Helper method to remove the lot with the same key as the given one.
+   *
+   * @param node root of the subtree.
+   * @param lot  lot to remove.
+   * @return root of the new subtree, the same node if no lot has the key.
+   */
+  private static Node delete(Node node, Asset lot) {
+    if (node == null) {
+      return null;
+    }
+    int order = SymbolLots.BY_TIME.compare(lot, node.lot);
+    if (order == 0) {
+      return merge(node.left, node.right);
+    }
+    if (order < 0) {
+      Node left = delete(node.left, lot);
+      return left == node.left ? node : new Node(node.lot, node.priority, left, node.right);
+    }
+    Node right = delete(node.right, lot);
+    return right == node.right ? node : new Node(node.lot, node.priority, node.left, right);
+  }
+
+
+  /**
+   * Helper method to split a subtree into the lots before the key and the lots after it.
+   *
+   * @param node root of the subtree.
+   * @param key  lot to split at, not in the subtree.
+   * @return roots of the lots before and after the key.
+   */
+  private static Node[] split(Node node, Asset key) {
+    if (node == null) {
+      return new Node[2];
+    }
+    if (SymbolLots.BY_TIME.compare(node.lot, key) < 0) {
+      Node[] parts = split(node.right, key);
+      parts[0] = new Node(node.lot, node.priority, node.left, parts[0]);
+      return parts;
+    }
+    Node[] parts = split(node.left, key);
+    parts[1] = new Node(node.lot, node.priority, parts[1], node.right);
+    return parts;
+  }
+
+
+  /**
+   * Helper method to join two subtrees, every lot of the first before every lot of the second.
+   *
+   * @param first  root of the earlier lots.
+   * @param second root of the later lots.
+   * @return root of the joined subtree.
+   */
+  private static Node merge(Node first, Node second) {
+    if (first == null) {
+      return second;
+    }
+    if (second == null) {
+      return first;
+    }
+    if (first.priority >= second.priority) {
+      return new Node(first.lot, first.priority, first.left, merge(first.right, second));
+    }
+    return new Node(second.lot, second.priority, merge(first, second.left), second.right);
+  }
+
+
+  /**
+   * Node class is one lot of the treap, never changed once built.
+   */
+  private static final class Node {
+
+    /**
+     * Copy of the lot.
+     */
+    private final Asset lot;
+
+    /**
+     * Priority of the lot, no child has a higher one.
+     */
+    private final int priority;
+
+    /**
+     * Number of lots under this node, itself included.
+     */
+    private final int size;
+
+    /**
+     * Earlier lots.
+     */
+    private final Node left;
+
+    /**
+     * Later lots.
+     */
+    private final Node right;
+
+
+    /**
+     * Constructor to instantiate Node object.
+     *
+     * @param lot      copy of the lot.
+     * @param priority priority of the lot.
+     * @param left     earlier lots.
+     * @param right    later lots.
+     */
+    Node(Asset lot, int priority, Node left, Node right) {
+      this.lot = lot;
+      this.priority = priority;
+      this.left = left;
+      this.right = right;
+      this.size = 1 + size(left) + size(right);
+    }
+  }
+}
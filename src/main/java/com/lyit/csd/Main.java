@@ -1,6 +1,10 @@
 package com.lyit.csd;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.text.ParseException;
 
 /**
@@ -9,7 +13,11 @@ import java.text.ParseException;
 public class Main {
 
   /**
-   * The main method is a so-called entry point where the program's execution begins.
+   * The main method is a so-called entry point where the program's execution begins. With
+   * --server [port] the accounts are served over HTTP instead of the console, see
+   * PortfolioServer, with --mock-api [port] a local stand-in for the quote api is run, see
+   * MockYahooServer, and with --load-test simulated users are run against the stand-in, see
+   * LoadGenerator.
    *
    * @param args required parameter of the main method.
    * @throws IOException thrown if wrong data is entered.
@@ -19,10 +27,132 @@ public class Main {
    */
   public static void main(String[] args) throws IOException, InterruptedException, ParseException {
 
+    if (args.length > 0 && args[0].equals("--server")) {
+      serve(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+      return;
+    }
+    if (args.length > 0 && args[0].equals("--load-test")) {
+      loadTest();
+      return;
+    }
+    if (args.length > 0 && args[0].equals("--mock-api")) {
+      mockApi(args.length > 1 ? Integer.parseInt(args[1]) : 8090);
+      return;
+    }
+
     // Creating and instance of the console.
     Console console = new Console();
     // Running the console.
     console.run();
 
   }
+
+  /**
+   * Method serves the accounts over HTTP on the loopback address until the process is stopped.
+   * Accounts keep their journals under portfolio.journal.dir when the property is set.
+   *
+   * @param port port to listen on.
+   * @throws IOException if the port cannot be bound.
+   * @throws InterruptedException when the main thread is interrupted.
+   */
+  private static void serve(int port) throws IOException, InterruptedException {
+    String key = System.getProperty("portfolio.api.key", Console.DEFAULT_KEY);
+    String journalDir = System.getProperty("portfolio.journal.dir");
+    PortfolioEngine engine = new PortfolioEngine(key, QuoteProviders.forKey(key),
+        journalDir == null ? null : Paths.get(journalDir), TradeJournal.DEFAULT_DURABILITY);
+    PortfolioServer server = new PortfolioServer(engine,
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      server.close();
+      try {
+        engine.close();
+      } catch (IOException e) {
+        System.err.println("Could not close journals: " + e.getMessage());
+      }
+    }));
+    server.start();
+    System.out.println("Serving on http://localhost:" + server.getPort() + "/");
+    Thread.currentThread().join();
+  }
+
+
+  /**
+   * Method runs a stand-in for the quote api on the loopback address until the process is
+   * stopped. It is set up with the system properties portfolio.mock.seed,
+   * portfolio.mock.latencyMillis, portfolio.mock.jitterMillis, portfolio.mock.errorRate,
+   * portfolio.mock.rateLimitRate and portfolio.mock.recordings. With portfolio.mock.record=true
+   * requests without a recording are passed on to the real api and recorded.
+   *
+   * @param port port to listen on.
+   * @throws IOException if the port cannot be bound.
+   * @throws InterruptedException when the main thread is interrupted.
+   */
+  private static void mockApi(int port) throws IOException, InterruptedException {
+    MockYahooServer server = new MockYahooServer(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+        Long.getLong("portfolio.mock.seed", 1));
+    server.setLatency(Long.getLong("portfolio.mock.latencyMillis", 0),
+        Long.getLong("portfolio.mock.jitterMillis", 0));
+    server.setErrorRate(Double.parseDouble(System.getProperty("portfolio.mock.errorRate", "0")));
+    server.setRateLimitRate(
+        Double.parseDouble(System.getProperty("portfolio.mock.rateLimitRate", "0")));
+    String recordings = System.getProperty("portfolio.mock.recordings");
+    if (recordings != null) {
+      server.setRecordings(Paths.get(recordings));
+    }
+    if (Boolean.getBoolean("portfolio.mock.record")) {
+      server.setUpstream(new HttpTransport(HttpTransport.DEFAULT_CONNECT_TIMEOUT,
+              HttpTransport.DEFAULT_REQUEST_TIMEOUT),
+          System.getProperty("portfolio.api.key", Console.DEFAULT_KEY));
+    }
+
+    Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+    server.start();
+    System.out.println("Quote api stand-in on " + server.getBaseUri()
+        + ", start clients with -Dportfolio.api.baseUrl=" + server.getBaseUri());
+    Thread.currentThread().join();
+  }
+
+
+  /**
+   * Method runs simulated users against a local stand-in for the quote api and prints their
+   * throughput and latencies. It is set up with the system properties portfolio.load.users,
+   * portfolio.load.warmupSeconds, portfolio.load.seconds, portfolio.load.mix (for instance
+   * buy=40,sell=30,quote=20,report=10), portfolio.load.userRate (operations each user starts per
+   * second), portfolio.load.rate (quote requests per second let through to the stand-in) and
+   * portfolio.mock.latencyMillis.
+   *
+   * @throws IOException if the stand-in cannot be started.
+   * @throws InterruptedException when the main thread is interrupted.
+   */
+  private static void loadTest() throws IOException, InterruptedException {
+    try (MockYahooServer api = new MockYahooServer(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+        Long.getLong("portfolio.mock.seed", 1))) {
+      api.setLatency(Long.getLong("portfolio.mock.latencyMillis", 50), 0);
+      api.start();
+
+      HttpTransport transport = new HttpTransport(HttpTransport.DEFAULT_CONNECT_TIMEOUT,
+          HttpTransport.DEFAULT_REQUEST_TIMEOUT, api.getBaseUri());
+      int rate = Integer.getInteger("portfolio.load.rate", 1_000);
+      QuoteProvider quotes = QuoteProviders.standard(transport, "load", Integer.MAX_VALUE, rate,
+          rate);
+      PortfolioEngine engine = new PortfolioEngine("load", quotes, null, Durability.NONE);
+
+      LoadGenerator load = new LoadGenerator(engine);
+      load.setUsers(Integer.getInteger("portfolio.load.users", 50));
+      load.setRate(Double.parseDouble(System.getProperty("portfolio.load.userRate", "20")));
+      load.setDuration(Duration.ofSeconds(Long.getLong("portfolio.load.warmupSeconds", 5)),
+          Duration.ofSeconds(Long.getLong("portfolio.load.seconds", 30)));
+      String mix = System.getProperty("portfolio.load.mix");
+      if (mix != null) {
+        load.setMix(mix);
+      }
+      System.out.print(load.run());
+      System.out.println("Quote requests reaching the api: " + api.getRequestCount());
+      engine.close();
+      quotes.close();
+    }
+  }
 }
\ No newline at end of file
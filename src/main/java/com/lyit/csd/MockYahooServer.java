@@ -0,0 +1,588 @@
+package com.lyit.csd;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MockYahooServer class is a local stand-in for Yahoo finance api, answering the quote
+ * (v6/finance/quote) and chart (v8/finance/chart) requests ConnectionPort makes. Point a transport
+ * at it with the portfolio.api.baseUrl system property or an HttpTransport built with its base
+ * address. Each request is answered, in order of preference:
+ *
+ * <ol>
+ *   <li>from a recording, when a recordings directory is set and holds the request;</li>
+ *   <li>from the real api, when an upstream is set, saving the response as a recording;</li>
+ *   <li>with prices made up for any symbol, each quote moving the price a random step.</li>
+ * </ol>
+ *
+ * <p>Latency, server errors and rate limit responses can be injected to see how the
+ * application copes with a slow or failing api. Made up prices come from a seeded generator, so
+ * a run with the same seed and the same requests sees the same prices.
+ */
+public class MockYahooServer implements Closeable {
+
+  /**
+   * Shared factory for streaming generators.
+   */
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  /**
+   * Most bars answered for one chart request.
+   */
+  private static final int MAX_BARS = 10_000;
+
+  /**
+   * Standard deviation of the relative price step per quote used by default.
+   */
+  private static final double DEFAULT_VOLATILITY = 0.01;
+
+  /**
+   * Seed prices are made up from.
+   */
+  private final long seed;
+
+  /**
+   * Generator of price steps, latency and injected failures. Guards the prices.
+   */
+  private final Random random;
+
+  /**
+   * Latest made up price by asset symbol.
+   */
+  private final Map<String, Double> prices = new HashMap<>();
+
+  /**
+   * Number of requests received.
+   */
+  private final AtomicLong requestCount = new AtomicLong();
+
+  /**
+   * Underlying server.
+   */
+  private final HttpServer server;
+
+  /**
+   * Executor running the requests.
+   */
+  private final ExecutorService executor;
+
+  /**
+   * Directory responses are replayed from and recorded to, null if none.
+   */
+  private volatile Path recordings;
+
+  /**
+   * Transport reaching the real api, null if responses are not recorded.
+   */
+  private volatile HttpTransport upstream;
+
+  /**
+   * API key used with the real api.
+   */
+  private volatile String upstreamKey;
+
+  /**
+   * Time every response is held back, in milliseconds.
+   */
+  private volatile long latencyMillis;
+
+  /**
+   * Most time added at random to the latency, in milliseconds.
+   */
+  private volatile long jitterMillis;
+
+  /**
+   * Share of requests answered with a server error.
+   */
+  private volatile double errorRate;
+
+  /**
+   * Share of requests answered with a rate limit response.
+   */
+  private volatile double rateLimitRate;
+
+  /**
+   * Standard deviation of the relative price step per quote.
+   */
+  private volatile double volatility = DEFAULT_VOLATILITY;
+
+  /**
+   * Symbols left out of quote responses, as the real api does for symbols it does not know.
+   */
+  private volatile Set<String> unlisted = Set.of();
+
+  /**
+   * Full names answered by asset symbol, other symbols get a made up name.
+   */
+  private volatile Map<String, String> fullNames = Map.of();
+
+
+  /**
+   * Constructor to instantiate MockYahooServer object. The server is not started.
+   *
+   * @param address address to listen on, port 0 picks a free port.
+   * @param seed    seed prices are made up from.
+   * @throws IOException if the address cannot be bound.
+   */
+  public MockYahooServer(InetSocketAddress address, long seed) throws IOException {
+    this.seed = seed;
+    this.random = new Random(seed);
+    this.executor = PortfolioServer.newRequestExecutor();
+    this.server = HttpServer.create(address, 0);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+  }
+
+
+  /**
+   * Method starts accepting requests.
+   */
+  public void start() {
+    server.start();
+  }
+
+
+  /**
+   * Returning the address to resolve requests against in place of the real api.
+   *
+   * @return base address of the server.
+   */
+  public URI getBaseUri() {
+    InetSocketAddress address = server.getAddress();
+    return URI.create("http://" + address.getHostString() + ":" + address.getPort() + "/");
+  }
+
+
+  /**
+   * Returning the number of requests received, including those answered with a failure.
+   *
+   * @return number of requests.
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+
+  /**
+   * Setting the directory responses are replayed from, and recorded to when an upstream is set.
+   *
+   * @param recordings the directory, null to make up every response.
+   */
+  public void setRecordings(Path recordings) {
+    this.recordings = recordings;
+  }
+
+
+  /**
+   * Setting the real api requests without a recording are passed on to.
+   *
+   * @param upstream transport reaching the real api, null to make up the responses instead.
+   * @param key      API key used with the real api.
+   */
+  public void setUpstream(HttpTransport upstream, String key) {
+    this.upstream = upstream;
+    this.upstreamKey = key;
+  }
+
+
+  /**
+   * Setting the time every response is held back.
+   *
+   * @param latencyMillis fixed latency, in milliseconds.
+   * @param jitterMillis  most time added at random, in milliseconds.
+   */
+  public void setLatency(long latencyMillis, long jitterMillis) {
+    if (latencyMillis < 0 || jitterMillis < 0) {
+      throw new IllegalArgumentException("Latency must not be negative");
+    }
+    this.latencyMillis = latencyMillis;
+    this.jitterMillis = jitterMillis;
+  }
+
+
+  /**
+   * Setting the share of requests answered with 500 Internal Server Error.
+   *
+   * @param errorRate share between 0 and 1.
+   */
+  public void setErrorRate(double errorRate) {
+    this.errorRate = rate(errorRate);
+  }
+
+
+  /**
+   * Setting the share of requests answered with 429 Too Many Requests.
+   *
+   * @param rateLimitRate share between 0 and 1.
+   */
+  public void setRateLimitRate(double rateLimitRate) {
+    this.rateLimitRate = rate(rateLimitRate);
+  }
+
+
+  /**
+   * Setting how far made up prices move, 0 keeps every price at its starting value.
+   *
+   * @param volatility standard deviation of the relative price step per quote, not negative.
+   */
+  public void setVolatility(double volatility) {
+    if (!(volatility >= 0)) {
+      throw new IllegalArgumentException("Volatility must not be negative");
+    }
+    this.volatility = volatility;
+  }
+
+
+  /**
+   * Setting the symbols the server knows nothing of, left out of quote responses.
+   *
+   * @param symbols asset symbols.
+   */
+  public void setUnlisted(Collection<String> symbols) {
+    this.unlisted = Set.copyOf(symbols);
+  }
+
+
+  /**
+   * Setting the full names answered for some symbols in place of made up ones.
+   *
+   * @param fullNames full name by asset symbol.
+   */
+  public void setFullNames(Map<String, String> fullNames) {
+    this.fullNames = Map.copyOf(fullNames);
+  }
+
+
+  /**
+   * Method stops the server, letting requests in progress finish for up to a second.
+   */
+  @Override
+  public void close() {
+    server.stop(1);
+    executor.shutdown();
+  }
+
+
+  /**
+   * Method returns the name a request is recorded under.
+   *
+   * @param requestString request string relative to the api address.
+   * @return file name of the recording.
+   */
+  static String recordingName(String requestString) {
+    return requestString.replaceAll("[^A-Za-z0-9.=-]", "_") + ".json";
+  }
+
+
+  /**
+   * Helper method to answer one request.
+   *
+   * @param exchange the request.
+   * @throws IOException if the response cannot be sent.
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      requestCount.incrementAndGet();
+      double roll;
+      long delay = latencyMillis;
+      synchronized (random) {
+        roll = random.nextDouble();
+        if (jitterMillis > 0) {
+          delay += (long) (random.nextDouble() * jitterMillis);
+        }
+      }
+      if (delay > 0) {
+        Thread.sleep(delay);
+      }
+
+      if (roll < rateLimitRate) {
+        send(exchange, 429, message("Limit Exceeded"));
+      } else if (roll < rateLimitRate + errorRate) {
+        send(exchange, 500, message("Internal server error"));
+      } else {
+        answer(exchange);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      send(exchange, 503, message("Interrupted"));
+    } catch (IllegalArgumentException e) {
+      send(exchange, 400, message(e.getMessage()));
+    } catch (IOException e) {
+      send(exchange, 502, message(e.getMessage()));
+    } finally {
+      exchange.close();
+    }
+  }
+
+
+  /**
+   * Helper method to answer a request from a recording, the real api or made up prices.
+   *
+   * @param exchange the request.
+   * @throws IOException if the response cannot be sent or the real api fails.
+   * @throws InterruptedException if interrupted waiting for the real api.
+   */
+  private void answer(HttpExchange exchange) throws IOException, InterruptedException {
+    URI uri = exchange.getRequestURI();
+    String requestString = uri.getRawPath().substring(1)
+        + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+
+    Path directory = recordings;
+    Path recording = directory == null ? null : directory.resolve(recordingName(requestString));
+    if (recording != null && Files.isRegularFile(recording)) {
+      send(exchange, 200, Files.readAllBytes(recording));
+      return;
+    }
+
+    HttpTransport transport = upstream;
+    if (transport != null) {
+      HttpResponse<byte[]> response = transport.send(
+          transport.newGetRequest(transport.resolve(requestString))
+              .header("x-api-key", upstreamKey).build(),
+          HttpResponse.BodyHandlers.ofByteArray());
+      if (recording != null && response.statusCode() == 200) {
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, "recording", ".tmp");
+        Files.write(temporary, response.body());
+        Files.move(temporary, recording, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      }
+      send(exchange, response.statusCode(), response.body());
+      return;
+    }
+
+    Map<String, String> query = PortfolioServer.parseQuery(uri.getRawQuery());
+    String path = uri.getPath();
+    if (path.equals("/v6/finance/quote") && query.containsKey("symbols")) {
+      List<String> symbols = new ArrayList<>();
+      for (String symbol : query.get("symbols").split(",")) {
+        if (!symbol.isBlank() && !unlisted.contains(symbol.trim())) {
+          symbols.add(symbol.trim());
+        }
+      }
+      send(exchange, 200, quotes(symbols));
+    } else if (path.startsWith("/v8/finance/chart/") && path.length() > 18) {
+      send(exchange, 200, chart(path.substring(18), query.getOrDefault("interval", "1d"),
+          query.getOrDefault("range", "1mo")));
+    } else {
+      send(exchange, 404, message("Not Found"));
+    }
+  }
+
+
+  /**
+   * Helper method to make up a quote response, moving the price of each symbol a random step.
+   *
+   * @param symbols asset symbols asked for.
+   * @return body of the response.
+   * @throws IOException if the response cannot be written.
+   */
+  private byte[] quotes(List<String> symbols) throws IOException {
+    long now = System.currentTimeMillis() / 1000;
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (JsonGenerator json = JSON_FACTORY.createGenerator(body)) {
+      json.writeStartObject();
+      json.writeObjectFieldStart("quoteResponse");
+      json.writeArrayFieldStart("result");
+      for (String symbol : symbols) {
+        double price;
+        synchronized (random) {
+          price = price(symbol) * Math.exp(volatility * random.nextGaussian());
+          prices.put(symbol, price);
+        }
+        json.writeStartObject();
+        json.writeStringField("symbol", symbol);
+        json.writeStringField("shortName", fullName(symbol));
+        json.writeStringField("quoteType", type(symbol));
+        json.writeNumberField("regularMarketTime", now);
+        json.writeNumberField("regularMarketPrice", price);
+        json.writeEndObject();
+      }
+      json.writeEndArray();
+      json.writeNullField("error");
+      json.writeEndObject();
+      json.writeEndObject();
+    }
+    return body.toByteArray();
+  }
+
+
+  /**
+   * Helper method to make up a chart response. Bars are walked back from the current price, the
+   * same request in the same interval gets the same bars.
+   *
+   * @param symbol   asset symbol asked for.
+   * @param interval time between bars.
+   * @param range    time range ending now.
+   * @return body of the response.
+   * @throws IOException if the response cannot be written.
+   */
+  private byte[] chart(String symbol, String interval, String range) throws IOException {
+    long step = HistoryStore.intervalSeconds(interval);
+    long now = System.currentTimeMillis() / 1000;
+    long last = now - Math.floorMod(now, step);
+    long first = Math.max(HistoryStore.rangeStart(range, now), last - (MAX_BARS - 1) * step);
+    int count = first > last ? 0 : (int) ((last - first) / step) + 1;
+
+    double price;
+    synchronized (random) {
+      price = price(symbol);
+    }
+    double spread = volatility;
+    Random walk = new Random((seed * 31 + symbol.hashCode()) * 31 + last);
+    double[] open = new double[count];
+    double[] high = new double[count];
+    double[] low = new double[count];
+    double[] close = new double[count];
+    long[] volume = new long[count];
+    for (int i = count - 1; i >= 0; i--) {
+      close[i] = price;
+      open[i] = price * Math.exp(spread / 4 * walk.nextGaussian());
+      high[i] = Math.max(open[i], close[i]) * (1 + spread / 4 * Math.abs(walk.nextGaussian()));
+      low[i] = Math.min(open[i], close[i]) * (1 - spread / 4 * Math.abs(walk.nextGaussian()));
+      volume[i] = 1_000 + walk.nextInt(1_000_000);
+      price = open[i] * Math.exp(spread * walk.nextGaussian());
+    }
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (JsonGenerator json = JSON_FACTORY.createGenerator(body)) {
+      json.writeStartObject();
+      json.writeObjectFieldStart("chart");
+      json.writeArrayFieldStart("result");
+      json.writeStartObject();
+      json.writeObjectFieldStart("meta");
+      json.writeStringField("symbol", symbol);
+      json.writeStringField("shortName", fullName(symbol));
+      json.writeStringField("instrumentType", type(symbol));
+      json.writeEndObject();
+      json.writeArrayFieldStart("timestamp");
+      for (int i = 0; i < count; i++) {
+        json.writeNumber(last - (count - 1 - i) * step);
+      }
+      json.writeEndArray();
+      json.writeObjectFieldStart("indicators");
+      json.writeArrayFieldStart("quote");
+      json.writeStartObject();
+      json.writeFieldName("open");
+      json.writeArray(open, 0, count);
+      json.writeFieldName("high");
+      json.writeArray(high, 0, count);
+      json.writeFieldName("low");
+      json.writeArray(low, 0, count);
+      json.writeFieldName("close");
+      json.writeArray(close, 0, count);
+      json.writeFieldName("volume");
+      json.writeArray(volume, 0, count);
+      json.writeEndObject();
+      json.writeEndArray();
+      json.writeEndObject();
+      json.writeEndObject();
+      json.writeEndArray();
+      json.writeNullField("error");
+      json.writeEndObject();
+      json.writeEndObject();
+    }
+    return body.toByteArray();
+  }
+
+
+  /**
+   * Helper method to return the current made up price of a symbol. Must be called holding the
+   * lock of the generator.
+   *
+   * @param symbol asset symbol.
+   * @return the price, a fixed starting price for a symbol not asked for before.
+   */
+  private double price(String symbol) {
+    Double price = prices.get(symbol);
+    return price != null ? price : 20 + Math.floorMod(symbol.hashCode(), 480);
+  }
+
+
+  /**
+   * Helper method to return the full name of a symbol, made up unless one was set.
+   *
+   * @param symbol asset symbol.
+   * @return the full name.
+   */
+  private String fullName(String symbol) {
+    return fullNames.getOrDefault(symbol, symbol + " Mock");
+  }
+
+
+  /**
+   * Helper method to tell the type of a symbol, pairs quoted in USD are cryptocurrencies.
+   *
+   * @param symbol asset symbol.
+   * @return the asset type.
+   */
+  private static String type(String symbol) {
+    return symbol.endsWith("-USD") ? "CRYPTOCURRENCY" : "EQUITY";
+  }
+
+
+  /**
+   * Helper method to write the error body the api answers with.
+   *
+   * @param message description of the failure.
+   * @return body of the response.
+   */
+  private static byte[] message(String message) {
+    String text = message == null ? "" : message.replace("\\", "\\\\").replace("\"", "\\\"");
+    return ("{\"message\":\"" + text + "\"}").getBytes(StandardCharsets.UTF_8);
+  }
+
+
+  /**
+   * Helper method to send a response.
+   *
+   * @param exchange the request.
+   * @param status   status of the response.
+   * @param body     body of the response.
+   * @throws IOException if the response cannot be sent.
+   */
+  private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+
+  /**
+   * Helper method to check a share.
+   *
+   * @param rate share of requests.
+   * @return the share, if between 0 and 1.
+   */
+  private static double rate(double rate) {
+    if (!(rate >= 0 && rate <= 1)) {
+      throw new IllegalArgumentException("Rate must be between 0 and 1: " + rate);
+    }
+    return rate;
+  }
+}
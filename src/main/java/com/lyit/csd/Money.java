@@ -0,0 +1,185 @@
+package com.lyit.csd;
+
+/**
+ * Money class holds the fixed point arithmetic used for funds, prices and amounts. Money is kept
+ * as a long count of micro dollars and amounts as a long count of hundred millionths of a unit,
+ * so sums are exact and rounding is done once, half to even, where a value is scaled or priced.
+ * Methods work on primitives only and never allocate. Values are converted from and to double at
+ * the edges, where the public API takes and returns them.
+ */
+public final class Money {
+
+  /**
+   * Micro dollars in one dollar.
+   */
+  public static final long MONEY_SCALE = 1_000_000L;
+
+  /**
+   * Hundred millionths of a unit in one unit of an asset.
+   */
+  public static final long AMOUNT_SCALE = 100_000_000L;
+
+  /**
+   * Micro dollars in one cent.
+   */
+  private static final long CENT = MONEY_SCALE / 100;
+
+  /**
+   * Largest magnitude a double may have once scaled to be converted.
+   */
+  private static final double LIMIT = 0x1p63;
+
+
+  /**
+   * Private constructor, class only holds static methods.
+   */
+  private Money() {
+  }
+
+
+  /**
+   * Method converts dollars to micro dollars.
+   *
+   * @param usd amount of money in USD.
+   * @return nearest number of micro dollars, halves rounded to even.
+   */
+  public static long toMicros(double usd) {
+    return scale(usd, MONEY_SCALE);
+  }
+
+
+  /**
+   * Method converts an amount of an asset to hundred millionths of a unit.
+   *
+   * @param amount amount of the asset.
+   * @return nearest number of hundred millionths, halves rounded to even.
+   */
+  public static long toUnits(double amount) {
+    return scale(amount, AMOUNT_SCALE);
+  }
+
+
+  /**
+   * Method converts micro dollars to dollars.
+   *
+   * @param micros number of micro dollars.
+   * @return the double nearest to the amount in USD.
+   */
+  public static double toUsd(long micros) {
+    return micros / (double) MONEY_SCALE;
+  }
+
+
+  /**
+   * Method converts hundred millionths of a unit to an amount of an asset.
+   *
+   * @param units number of hundred millionths.
+   * @return the double nearest to the amount.
+   */
+  public static double toAmount(long units) {
+    return units / (double) AMOUNT_SCALE;
+  }
+
+
+  /**
+   * Method prices an amount of an asset.
+   *
+   * @param priceMicros price of one unit in micro dollars.
+   * @param amountUnits amount in hundred millionths of a unit.
+   * @return price times amount in micro dollars, halves rounded to even.
+   * @throws ArithmeticException if the result does not fit a long.
+   */
+  public static long cost(long priceMicros, long amountUnits) {
+    // price * amount / AMOUNT_SCALE worked out on the whole and fractional parts of each,
+    // which keeps every product within a long
+    long priceWhole = Math.floorDiv(priceMicros, AMOUNT_SCALE);
+    long priceFraction = Math.floorMod(priceMicros, AMOUNT_SCALE);
+    long amountWhole = Math.floorDiv(amountUnits, AMOUNT_SCALE);
+    long amountFraction = Math.floorMod(amountUnits, AMOUNT_SCALE);
+
+    long fractions = priceFraction * amountFraction;
+    long result = Math.addExact(Math.multiplyExact(priceMicros, amountWhole),
+        Math.addExact(Math.multiplyExact(priceWhole, amountFraction),
+            fractions / AMOUNT_SCALE));
+    return roundHalfEven(result, fractions % AMOUNT_SCALE, AMOUNT_SCALE);
+  }
+
+
+  /**
+   * Method works out the price of one unit from what an amount cost.
+   *
+   * @param costMicros  cost of the amount in micro dollars.
+   * @param amountUnits amount in hundred millionths of a unit, positive.
+   * @return cost divided by amount in micro dollars, halves rounded to even.
+   * @throws ArithmeticException if the result does not fit a long.
+   */
+  public static long unitPrice(long costMicros, long amountUnits) {
+    if (amountUnits <= 0) {
+      throw new IllegalArgumentException("Amount must be positive: " + amountUnits);
+    }
+    long result = Math.floorDiv(costMicros, amountUnits);
+    long remainder = Math.floorMod(costMicros, amountUnits);
+    // long division, one decimal digit of AMOUNT_SCALE at a time
+    for (long digit = 1; digit < AMOUNT_SCALE; digit *= 10) {
+      remainder *= 10;
+      result = Math.addExact(Math.multiplyExact(result, 10), remainder / amountUnits);
+      remainder %= amountUnits;
+    }
+    return roundHalfEven(result, remainder, amountUnits);
+  }
+
+
+  /**
+   * Method rounds micro dollars to whole cents.
+   *
+   * @param micros number of micro dollars.
+   * @return nearest whole number of cents, in micro dollars, halves rounded to even.
+   */
+  public static long roundToCents(long micros) {
+    return roundHalfEven(Math.floorDiv(micros, CENT), Math.floorMod(micros, CENT), CENT) * CENT;
+  }
+
+
+  /**
+   * Method rounds dollars to whole cents.
+   *
+   * @param usd amount of money in USD.
+   * @return the double nearest to the whole number of cents, halves rounded to even.
+   */
+  public static double roundToCents(double usd) {
+    return toUsd(roundToCents(toMicros(usd)));
+  }
+
+
+  /**
+   * Helper method to scale a double to a long.
+   *
+   * @param value the value.
+   * @param scale parts in one whole.
+   * @return nearest number of parts, halves rounded to even.
+   */
+  private static long scale(double value, long scale) {
+    double scaled = value * scale;
+    if (!(Math.abs(scaled) < LIMIT)) {
+      throw new IllegalArgumentException("Value out of range: " + value);
+    }
+    return (long) Math.rint(scaled);
+  }
+
+
+  /**
+   * Helper method to round a quotient half to even.
+   *
+   * @param quotient  quotient rounded down.
+   * @param remainder remainder, between 0 and divisor.
+   * @param divisor   the divisor, positive.
+   * @return quotient rounded to the nearest whole number.
+   */
+  private static long roundHalfEven(long quotient, long remainder, long divisor) {
+    long twice = remainder * 2;
+    if (twice > divisor || (twice == divisor && (quotient & 1) != 0)) {
+      return Math.addExact(quotient, 1);
+    }
+    return quotient;
+  }
+}
@@ -1,14 +1,27 @@
 package com.lyit.csd;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
 
 /**
  * Current class holds all assets
  */
 public class Portfolio {
 
+    /**
+     * Orders sales by time, sale identifier keeps sales made at the same time apart.
+     */
+    static final Comparator<SoldAsset> SALES_BY_TIME =
+            Comparator.comparingLong(SoldAsset::getTimeStamp).thenComparingLong(SoldAsset::getSaleId);
+
     /**
      * Data structure to hold the symbol and full name as key pair values.
      */
@@ -24,20 +37,69 @@ public class Portfolio {
      */
     private List<String> allAssetNames = new ArrayList<>();
 
+    /**
+     * Lots of each asset symbol the user owns, kept in step with the crypto and stock lists.
+     */
+    private final Map<String, SymbolLots> lotsBySymbol = new HashMap<>();
+
+    /**
+     * Identifier given to the next lot added.
+     */
+    private long nextLotId = 1;
+
     /**
      * List of cryptos the user owns.
      */
-    private List<Asset> crypto = new ArrayList<>();
+    private List<Asset> crypto = new IndexedList<>(this::indexLot, this::unindexLot);
 
     /**
      * List of stocks the user owns.
      */
-    private List<Asset> stock = new ArrayList<>();
+    private List<Asset> stock = new IndexedList<>(this::indexLot, this::unindexLot);
 
     /**
      * List of assets the user sold.
      */
-    private List<SoldAsset> soldAssets = new ArrayList<>();
+    private List<SoldAsset> soldAssets = new IndexedList<>(this::indexSale, this::unindexSale);
+
+    /**
+     * Sales of each asset symbol ordered by time with realized totals per day, kept in step
+     * with soldAssets.
+     */
+    private final Map<String, SaleHistory> salesBySymbol = new HashMap<>();
+
+    /**
+     * All sales ordered by time with realized totals per day, kept in step with soldAssets.
+     */
+    private final SaleHistory allSales = new SaleHistory();
+
+    /**
+     * Identifier given to the next sale recorded.
+     */
+    private long nextSaleId = 1;
+
+    /**
+     * Asset symbols whose lots or sales changed since the last PortfolioView was taken.
+     */
+    private final Set<String> changedSymbols = new HashSet<>();
+
+    /**
+     * Asset symbols with a sale removed or recorded before a later one since the last
+     * PortfolioView was taken; the sales of other symbols were only appended to.
+     */
+    private final Set<String> reorderedSales = new HashSet<>();
+
+    /**
+     * Number of changes made to lots and sales, read without a lock to tell if a PortfolioView
+     * is still current.
+     */
+    private volatile long version;
+
+    /**
+     * Number of changes made to the asset types and full names held, so a PortfolioView keeps
+     * its copies of them while only lots change.
+     */
+    private long namesVersion;
 
 
 
@@ -131,6 +193,41 @@ public class Portfolio {
     }
 
 
+    /**
+     * Returns the lots held of the specified asset symbol.
+     *
+     * @param assetSymbol asset symbol
+     * @return lots of the symbol ordered by purchase price, null if none is held.
+     */
+    public SymbolLots getLots(String assetSymbol) { return lotsBySymbol.get(assetSymbol); }
+
+
+    /**
+     * Returns the positions of the user's portfolio, one per asset symbol held.
+     *
+     * @return read only view of the lots of every symbol.
+     */
+    public Collection<SymbolLots> getPositions() {
+        return Collections.unmodifiableCollection(lotsBySymbol.values());
+    }
+
+
+    /**
+     * Changes the amount left in a lot of the portfolio, keeping the position totals in step.
+     *
+     * @param asset lot in the crypto or stock list
+     * @param amountUnits new amount of the lot in hundred millionths of a unit
+     */
+    public void setLotAmount(Asset asset, long amountUnits) {
+        SymbolLots lots = lotsBySymbol.get(asset.getAssetSymbol());
+        if (lots == null)
+            throw new IllegalArgumentException("Lot " + asset.getLotId() + " is not held");
+
+        lots.setAmount(asset, amountUnits);
+        changed(asset.getAssetSymbol());
+    }
+
+
     /**
      * Returning the symbol and full name of the asset.
      *
@@ -145,4 +242,235 @@ public class Portfolio {
      * @return the assets that have been sold.
      */
     public List<SoldAsset> getSoldAssets() { return soldAssets; }
+
+
+    /**
+     * Returns the asset symbols that have been sold at least once.
+     *
+     * @return read only view of the sold symbols.
+     */
+    public Set<String> getSoldSymbols() { return Collections.unmodifiableSet(salesBySymbol.keySet()); }
+
+
+    /**
+     * Returns the sales of the specified asset symbol made within the time range, oldest first.
+     * Only the sales in the range are visited.
+     *
+     * @param assetSymbol asset symbol
+     * @param startTimeStamp start of the range, inclusive
+     * @param endTimeStamp end of the range, inclusive
+     * @return read only view of the sales in the range.
+     */
+    public NavigableSet<SoldAsset> getSalesBetween(String assetSymbol, long startTimeStamp,
+                                                   long endTimeStamp) {
+        SaleHistory sales = salesBySymbol.get(assetSymbol);
+        if (sales == null)
+            return Collections.emptyNavigableSet();
+
+        return sales.between(startTimeStamp, endTimeStamp);
+    }
+
+
+    /**
+     * Returns what the sales of the specified asset symbol made within the time range realized,
+     * in logarithmic time.
+     *
+     * @param assetSymbol asset symbol
+     * @param startTimeStamp start of the range, inclusive
+     * @param endTimeStamp end of the range, inclusive
+     * @return realized profit or loss, amount sold and number of sales.
+     */
+    public RealizedTotals getRealizedBetween(String assetSymbol, long startTimeStamp,
+                                             long endTimeStamp) {
+        SaleHistory sales = salesBySymbol.get(assetSymbol);
+        if (sales == null)
+            return RealizedTotals.NONE;
+
+        return sales.realizedBetween(startTimeStamp, endTimeStamp);
+    }
+
+
+    /**
+     * Returns what all sales made within the time range realized, in logarithmic time.
+     *
+     * @param startTimeStamp start of the range, inclusive
+     * @param endTimeStamp end of the range, inclusive
+     * @return realized profit or loss, amount sold and number of sales.
+     */
+    public RealizedTotals getRealizedBetween(long startTimeStamp, long endTimeStamp) {
+        return allSales.realizedBetween(startTimeStamp, endTimeStamp);
+    }
+
+
+    /**
+     * Returns the identifier the next lot added will get.
+     *
+     * @return next lot identifier.
+     */
+    long getNextLotId() { return nextLotId; }
+
+
+    /**
+     * Sets the identifier the next lot added will get, used when a portfolio is restored.
+     *
+     * @param nextLotId next lot identifier
+     */
+    void setNextLotId(long nextLotId) { this.nextLotId = nextLotId; }
+
+
+    /**
+     * Returns the identifier the next sale recorded will get.
+     *
+     * @return next sale identifier.
+     */
+    long getNextSaleId() { return nextSaleId; }
+
+
+    /**
+     * Sets the identifier the next sale recorded will get, used when a portfolio is restored.
+     *
+     * @param nextSaleId next sale identifier
+     */
+    void setNextSaleId(long nextSaleId) { this.nextSaleId = nextSaleId; }
+
+
+    /**
+     * Returns the number of changes made to lots and sales so far.
+     *
+     * @return version of the portfolio.
+     */
+    long getVersion() { return version; }
+
+
+    /**
+     * Returns the number of changes made to the asset types and full names held so far.
+     *
+     * @return version of the asset names.
+     */
+    long getNamesVersion() { return namesVersion; }
+
+
+    /**
+     * Notes a change to the asset types and full names held, made through the maps and list
+     * returned by their getters.
+     */
+    void namesChanged() {
+        namesVersion++;
+        version++;
+    }
+
+
+    /**
+     * Returns the asset symbols whose lots or sales changed since the last call, and forgets
+     * them.
+     *
+     * @return the changed asset symbols.
+     */
+    Set<String> takeChangedSymbols() {
+        Set<String> changed = new HashSet<>(changedSymbols);
+        changedSymbols.clear();
+        return changed;
+    }
+
+
+    /**
+     * Returns the asset symbols whose sales were not only appended to since the last call, and
+     * forgets them.
+     *
+     * @return the reordered asset symbols.
+     */
+    Set<String> takeReorderedSales() {
+        Set<String> reordered = new HashSet<>(reorderedSales);
+        reorderedSales.clear();
+        return reordered;
+    }
+
+
+    /**
+     * Returns the sales of the specified asset symbol ordered after the given sale.
+     *
+     * @param assetSymbol asset symbol
+     * @param sale sale of the asset symbol
+     * @return read only view of the later sales.
+     */
+    NavigableSet<SoldAsset> getSalesAfter(String assetSymbol, SoldAsset sale) {
+        return getSalesBetween(assetSymbol, Long.MIN_VALUE, Long.MAX_VALUE).tailSet(sale, false);
+    }
+
+
+    /**
+     * Helper method to note a change to the lots or sales of an asset symbol.
+     *
+     * @param assetSymbol the asset symbol changed.
+     */
+    private void changed(String assetSymbol) {
+        changedSymbols.add(assetSymbol);
+        version++;
+    }
+
+
+    /**
+     * Helper method called when a lot is added to the crypto or stock list.
+     *
+     * @param asset the lot added.
+     */
+    private void indexLot(Asset asset) {
+        asset.setLotId(nextLotId++);
+        lotsBySymbol.computeIfAbsent(asset.getAssetSymbol(), SymbolLots::new).add(asset);
+        changed(asset.getAssetSymbol());
+    }
+
+
+    /**
+     * Helper method called when a lot is removed from the crypto or stock list.
+     *
+     * @param asset the lot removed.
+     */
+    private void unindexLot(Asset asset) {
+        SymbolLots lots = lotsBySymbol.get(asset.getAssetSymbol());
+        if (lots == null)
+            return;
+
+        changed(asset.getAssetSymbol());
+        lots.remove(asset);
+        if (lots.isEmpty())
+            lotsBySymbol.remove(asset.getAssetSymbol());
+    }
+
+
+    /**
+     * Helper method called when a sale is added to the sold assets list.
+     *
+     * @param sale the sale added.
+     */
+    private void indexSale(SoldAsset sale) {
+        sale.setSaleId(nextSaleId++);
+        NavigableSet<SoldAsset> earlier = getSalesBetween(sale.getAssetSymbol(), Long.MIN_VALUE,
+                Long.MAX_VALUE);
+        if (!earlier.isEmpty() && SALES_BY_TIME.compare(sale, earlier.last()) < 0)
+            reorderedSales.add(sale.getAssetSymbol());
+
+        salesBySymbol.computeIfAbsent(sale.getAssetSymbol(), symbol -> new SaleHistory()).add(sale);
+        allSales.add(sale);
+        changed(sale.getAssetSymbol());
+    }
+
+
+    /**
+     * Helper method called when a sale is removed from the sold assets list.
+     *
+     * @param sale the sale removed.
+     */
+    private void unindexSale(SoldAsset sale) {
+        allSales.remove(sale);
+        changed(sale.getAssetSymbol());
+        reorderedSales.add(sale.getAssetSymbol());
+        SaleHistory sales = salesBySymbol.get(sale.getAssetSymbol());
+        if (sales == null)
+            return;
+
+        sales.remove(sale);
+        if (sales.isEmpty())
+            salesBySymbol.remove(sale.getAssetSymbol());
+    }
 }
@@ -0,0 +1,248 @@
+package com.lyit.csd;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PortfolioEngine class hosts many accounts in one process. Accounts share the quote stack, so
+ * their lookups are cached and batched together, while each account is guarded by its own lock:
+ * trades on different accounts run in parallel and trades on the same account one after another.
+ * With a journal directory every account records its changes in a journal of its own, in a sub
+ * directory named after the account, and is restored from it when first opened.
+ */
+public class PortfolioEngine implements Closeable {
+
+  /**
+   * The API key new accounts are created with.
+   */
+  private final String keyApi;
+
+  /**
+   * Source of realtime quotes shared by the accounts.
+   */
+  private final QuoteProvider quoteProvider;
+
+  /**
+   * Directory holding the journals of the accounts, null if changes are not recorded.
+   */
+  private final Path journalDirectory;
+
+  /**
+   * Durability of the journals.
+   */
+  private final Durability durability;
+
+  /**
+   * Store historical prices are served from, created when first needed.
+   */
+  private volatile HistoryStore historyStore;
+
+  /**
+   * Accounts by identifier, completed once opened. Accounts are opened outside the map, threads
+   * asking for an account being opened wait on its future.
+   */
+  private final ConcurrentHashMap<String, CompletableFuture<User>> accounts =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Open journals by account identifier.
+   */
+  private final ConcurrentHashMap<String, TradeJournal> journals = new ConcurrentHashMap<>();
+
+
+  /**
+   * Constructor to instantiate PortfolioEngine object without journals. Quotes go through the
+   * stack shared by every user of the same key, see QuoteProviders.
+   *
+   * @param keyApi the Api Key used to connect to Yahoo Finance API.
+   */
+  public PortfolioEngine(String keyApi) {
+    this(keyApi, QuoteProviders.forKey(keyApi), null, TradeJournal.DEFAULT_DURABILITY);
+  }
+
+
+  /**
+   * Constructor to instantiate PortfolioEngine object.
+   *
+   * @param keyApi           the Api Key used to connect to Yahoo Finance API.
+   * @param quoteProvider    source of realtime quotes shared by the accounts.
+   * @param journalDirectory directory holding the journals, null if changes are not recorded.
+   * @param durability       durability of the journals.
+   */
+  public PortfolioEngine(String keyApi, QuoteProvider quoteProvider, Path journalDirectory,
+      Durability durability) {
+    this.keyApi = keyApi;
+    this.quoteProvider = quoteProvider;
+    this.journalDirectory = journalDirectory;
+    this.durability = durability;
+  }
+
+
+  /**
+   * Method returns the account with the given identifier, opening it first if needed. A new
+   * account is restored from its journal when there is one.
+   *
+   * @param accountId identifier of the account, letters, digits, '.', '_' and '-' only.
+   * @return the account.
+   * @throws UncheckedIOException if the journal of the account cannot be opened.
+   */
+  public User account(String accountId) {
+    CompletableFuture<User> account = accounts.get(accountId);
+    if (account == null) {
+      checkIdentifier(accountId);
+      CompletableFuture<User> opening = new CompletableFuture<>();
+      account = accounts.putIfAbsent(accountId, opening);
+      if (account == null) {
+        try {
+          opening.complete(open(accountId));
+        } catch (RuntimeException e) {
+          // a later call tries again
+          accounts.remove(accountId, opening);
+          opening.completeExceptionally(e);
+          throw e;
+        }
+        account = opening;
+      }
+    }
+    try {
+      return account.join();
+    } catch (CompletionException e) {
+      throw (RuntimeException) e.getCause();
+    }
+  }
+
+
+  /**
+   * Method returns the account with the given identifier if it is open or has a journal to be
+   * restored from, opening it first if needed. Unlike account no new account is created.
+   *
+   * @param accountId identifier of the account, letters, digits, '.', '_' and '-' only.
+   * @return the account, null if there is no such account.
+   * @throws UncheckedIOException if the journal of the account cannot be opened.
+   */
+  public User findAccount(String accountId) {
+    if (!accounts.containsKey(accountId)) {
+      checkIdentifier(accountId);
+      if (journalDirectory == null || !Files.isDirectory(journalDirectory.resolve(accountId))) {
+        return null;
+      }
+    }
+    return account(accountId);
+  }
+
+
+  /**
+   * Returning the identifiers of the open accounts.
+   *
+   * @return read only view of the account identifiers.
+   */
+  public Set<String> getAccountIds() {
+    return Collections.unmodifiableSet(accounts.keySet());
+  }
+
+
+  /**
+   * Returning the source of realtime quotes shared by the accounts.
+   *
+   * @return the quote provider.
+   */
+  public QuoteProvider getQuoteProvider() {
+    return quoteProvider;
+  }
+
+
+  /**
+   * Returning the store historical prices are served from, by default the one shared by every
+   * user of the API key.
+   *
+   * @return the history store.
+   */
+  public HistoryStore getHistoryStore() {
+    HistoryStore store = historyStore;
+    if (store == null) {
+      synchronized (this) {
+        if (historyStore == null) {
+          historyStore = HistoryStore.forKey(keyApi);
+        }
+        store = historyStore;
+      }
+    }
+    return store;
+  }
+
+
+  /**
+   * Setting the store historical prices are served from. Accounts opened afterwards use it too.
+   *
+   * @param historyStore the history store.
+   */
+  public void setHistoryStore(HistoryStore historyStore) {
+    this.historyStore = historyStore;
+  }
+
+
+  /**
+   * Method closes the journals of the accounts. Accounts must not be used afterwards.
+   *
+   * @throws IOException if a journal cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    IOException failure = null;
+    for (TradeJournal journal : journals.values()) {
+      try {
+        journal.close();
+      } catch (IOException e) {
+        failure = failure == null ? e : failure;
+      }
+    }
+    journals.clear();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+
+  /**
+   * Helper method to reject identifiers that are no safe directory name.
+   *
+   * @param accountId identifier of the account.
+   * @throws IllegalArgumentException if the identifier is not valid.
+   */
+  private static void checkIdentifier(String accountId) {
+    if (!accountId.matches("[A-Za-z0-9._-]+") || accountId.matches("\\.+")) {
+      throw new IllegalArgumentException("Invalid account identifier: " + accountId);
+    }
+  }
+
+
+  /**
+   * Helper method to create an account and attach its journal.
+   *
+   * @param accountId identifier of the account.
+   * @return the account.
+   */
+  private User open(String accountId) {
+    User account = new User(keyApi, quoteProvider);
+    account.setHistoryStore(getHistoryStore());
+    if (journalDirectory != null) {
+      try {
+        TradeJournal journal = TradeJournal.open(journalDirectory.resolve(accountId), durability,
+            TradeJournal.DEFAULT_SEGMENT_BYTES);
+        journals.put(accountId, journal);
+        account.attachJournal(journal);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return account;
+  }
+}
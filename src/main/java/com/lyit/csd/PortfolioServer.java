@@ -0,0 +1,469 @@
+package com.lyit.csd;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PortfolioServer class exposes the accounts of a PortfolioEngine over a local HTTP API answering
+ * in JSON. Every request runs on a thread of its own, a virtual thread where the runtime has
+ * them, so requests waiting on the quote api do not hold up each other. Parameters are passed in
+ * the query string. History export answers with the closing prices in the compressed block
+ * format of TimeSeriesEncoder rather than JSON. An account is opened by creating or funding it,
+ * the other account routes answer 404 for an account that does not exist:
+ *
+ * <pre>
+ * GET  /quotes?symbols=AAPL,MSFT
+ * GET  /history?symbols=AAPL&amp;interval=1d&amp;range=1mo
+ * GET  /history/export?symbol=AAPL&amp;interval=1m&amp;range=5d
+ * POST /accounts/{id}
+ * GET  /accounts/{id}
+ * POST /accounts/{id}/funds?amount=100
+ * POST /accounts/{id}/withdraw?amount=100
+ * POST /accounts/{id}/buy?symbol=AAPL&amp;amount=2
+ * POST /accounts/{id}/sell?symbol=AAPL&amp;amount=1[&amp;selection=FIFO | &amp;lot=3]
+ * GET  /accounts/{id}/value
+ * GET  /accounts/{id}/investments[?type=stock|crypto | ?names=Apple,TSLA]
+ * GET  /accounts/{id}/purchases?from=0&amp;to=1700000000
+ * GET  /accounts/{id}/sales?from=0&amp;to=1700000000
+ * </pre>
+ */
+public class PortfolioServer implements Closeable {
+
+  /**
+   * Writer of the JSON responses.
+   */
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  /**
+   * Accounts served.
+   */
+  private final PortfolioEngine engine;
+
+  /**
+   * Underlying server.
+   */
+  private final HttpServer server;
+
+  /**
+   * Executor running the requests.
+   */
+  private final ExecutorService executor;
+
+
+  /**
+   * Constructor to instantiate PortfolioServer object. The server is not started.
+   *
+   * @param engine  accounts to serve.
+   * @param address address to listen on, port 0 picks a free port.
+   * @throws IOException if the address cannot be bound.
+   */
+  public PortfolioServer(PortfolioEngine engine, InetSocketAddress address) throws IOException {
+    this.engine = engine;
+    this.executor = newRequestExecutor();
+    this.server = HttpServer.create(address, 0);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+  }
+
+
+  /**
+   * Method starts accepting requests.
+   */
+  public void start() {
+    server.start();
+  }
+
+
+  /**
+   * Returning the port the server listens on.
+   *
+   * @return the port.
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+
+  /**
+   * Method stops the server, letting requests in progress finish for up to a second.
+   */
+  @Override
+  public void close() {
+    server.stop(1);
+    executor.shutdown();
+  }
+
+
+  /**
+   * Method returns an executor starting a virtual thread per request when the runtime has them,
+   * otherwise one growing a pool of daemon threads.
+   *
+   * @return the executor.
+   */
+  static ExecutorService newRequestExecutor() {
+    try {
+      Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) virtual.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      AtomicLong count = new AtomicLong();
+      return Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "portfolio-server-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+
+  /**
+   * Helper method to answer one request, turning failures into error responses.
+   *
+   * @param exchange the request.
+   * @throws IOException if the response cannot be sent.
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      int status = 200;
+      Object body;
+      try {
+        body = route(exchange);
+        if (body == null) {
+          status = 404;
+          body = error("No such resource: " + exchange.getRequestURI().getPath());
+        }
+      } catch (MethodNotAllowed e) {
+        status = 405;
+        body = error(e.getMessage());
+      } catch (IllegalArgumentException e) {
+        status = 400;
+        body = error(e.getMessage());
+      } catch (QuotaExceededException e) {
+        status = 429;
+        body = error(e.getMessage());
+      } catch (IOException | UncheckedIOException e) {
+        status = 502;
+        body = error(e.getMessage());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        status = 503;
+        body = error("Interrupted");
+      } catch (RuntimeException e) {
+        status = 500;
+        body = error(e.toString());
+      }
+
+      // raw bytes are sent as they are, anything else as JSON
+      byte[] response;
+      if (body instanceof byte[] bytes) {
+        response = bytes;
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+      } else {
+        response = JSON.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+      }
+      exchange.sendResponseHeaders(status, response.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(response);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+
+  /**
+   * Helper method to run the operation a request asks for.
+   *
+   * @param exchange the request.
+   * @return object written as the response, null if there is no such resource.
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   */
+  private Object route(HttpExchange exchange) throws IOException, InterruptedException {
+    String[] path = Arrays.stream(exchange.getRequestURI().getPath().split("/"))
+        .filter(part -> !part.isEmpty()).toArray(String[]::new);
+    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+    String method = exchange.getRequestMethod();
+
+    if (path.length == 1 && path[0].equals("quotes")) {
+      expect(method, "GET");
+      return engine.getQuoteProvider().getQuotes(list(query, "symbols"),
+          QuotePriority.INTERACTIVE);
+    }
+    if (path.length == 1 && path[0].equals("history")) {
+      expect(method, "GET");
+      List<PriceBar> bars = new ArrayList<>();
+      for (String symbol : list(query, "symbols")) {
+        bars.addAll(engine.getHistoryStore().read(symbol, required(query, "interval"),
+            required(query, "range")).toBars());
+      }
+      return bars;
+    }
+    if (path.length == 2 && path[0].equals("history") && path[1].equals("export")) {
+      expect(method, "GET");
+      ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+      engine.getHistoryStore().export(required(query, "symbol"), required(query, "interval"),
+          required(query, "range"), blocks);
+      return blocks.toByteArray();
+    }
+    if (path.length < 2 || !path[0].equals("accounts")) {
+      return null;
+    }
+
+    if (path.length > 3) {
+      return null;
+    }
+    String operation = path.length == 2 ? "" : path[2];
+    if (operation.isEmpty() && method.equals("POST")) {
+      return status(engine.account(path[1]).getView());
+    }
+    if (operation.equals("funds")) {
+      expect(method, "POST");
+      double amount = number(query, "amount");
+      if (amount <= 0) {
+        throw new IllegalArgumentException("Amount must be positive");
+      }
+      User account = engine.account(path[1]);
+      account.addFunds(amount);
+      return result(true, account);
+    }
+
+    // reading or trading never opens an account
+    User account = engine.findAccount(path[1]);
+    if (account == null) {
+      return null;
+    }
+    switch (operation) {
+      case "" -> {
+        expect(method, "GET");
+        return status(account.getView());
+      }
+      case "withdraw" -> {
+        expect(method, "POST");
+        return result(account.withdrawFunds(number(query, "amount")), account);
+      }
+      case "buy" -> {
+        expect(method, "POST");
+        return result(account.purchaseAsset(required(query, "symbol"), number(query, "amount")),
+            account);
+      }
+      case "sell" -> {
+        expect(method, "POST");
+        String symbol = required(query, "symbol");
+        double amount = number(query, "amount");
+        boolean sold;
+        if (query.containsKey("lot")) {
+          sold = account.sellLot(symbol, Long.parseLong(query.get("lot")), amount);
+        } else if (query.containsKey("selection")) {
+          sold = account.sellAsset(symbol, amount, LotSelection.valueOf(query.get("selection")));
+        } else {
+          sold = account.sellAsset(symbol, amount);
+        }
+        return result(sold, account);
+      }
+      case "value" -> {
+        expect(method, "GET");
+        return Map.of("value", account.getPortfolioValue());
+      }
+      case "investments" -> {
+        expect(method, "GET");
+        String report;
+        if (query.containsKey("type")) {
+          report = account.listPortfolioAssetsByType(query.get("type"));
+        } else if (query.containsKey("names")) {
+          report = account.listPortfolioAssetsByName(list(query, "names"));
+        } else {
+          report = account.listAllInvestments();
+        }
+        return Map.of("report", report);
+      }
+      case "purchases" -> {
+        expect(method, "GET");
+        return Map.of("report", account.listPortfolioPurchasesInRange(
+            (long) number(query, "from"), (long) number(query, "to")));
+      }
+      case "sales" -> {
+        expect(method, "GET");
+        return Map.of("report", account.listPortfolioSalesInRange(
+            (long) number(query, "from"), (long) number(query, "to")));
+      }
+      default -> {
+        return null;
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to describe an account.
+   *
+   * @param view view of the account.
+   * @return funds and positions of the account.
+   */
+  private static Map<String, Object> status(PortfolioView view) {
+    List<Map<String, Object>> positions = new ArrayList<>();
+    for (PositionView position : view.getPositions()) {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("symbol", position.getAssetSymbol());
+      entry.put("name", position.getAssetFullName());
+      entry.put("type", position.getAssetType());
+      entry.put("amount", position.getAmount());
+      entry.put("averagePrice", position.getAveragePriceBought());
+      positions.add(entry);
+    }
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("availableFunds", view.getAvailableFunds());
+    result.put("positions", positions);
+    return result;
+  }
+
+
+  /**
+   * Helper method to describe the outcome of a change.
+   *
+   * @param success whether the change was made.
+   * @param account the account changed.
+   * @return outcome and funds left.
+   */
+  private static Map<String, Object> result(boolean success, User account) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("success", success);
+    result.put("availableFunds", account.getAvailableFunds());
+    return result;
+  }
+
+
+  /**
+   * Helper method to describe a failure.
+   *
+   * @param message description of the failure.
+   * @return the error.
+   */
+  private static Map<String, Object> error(String message) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("error", message == null ? "" : message);
+    return result;
+  }
+
+
+  /**
+   * Helper method to check the request method.
+   *
+   * @param method   method of the request.
+   * @param expected method the operation takes.
+   * @throws MethodNotAllowed if they differ.
+   */
+  private static void expect(String method, String expected) {
+    if (!method.equals(expected)) {
+      throw new MethodNotAllowed(expected + " expected, got " + method);
+    }
+  }
+
+
+  /**
+   * Helper method to read the query string.
+   *
+   * @param rawQuery encoded query string, may be null.
+   * @return parameters by name.
+   */
+  static Map<String, String> parseQuery(String rawQuery) {
+    Map<String, String> result = new HashMap<>();
+    if (rawQuery == null || rawQuery.isEmpty()) {
+      return result;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int equals = pair.indexOf('=');
+      String name = equals < 0 ? pair : pair.substring(0, equals);
+      String value = equals < 0 ? "" : pair.substring(equals + 1);
+      result.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+          URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+    return result;
+  }
+
+
+  /**
+   * Helper method to read a parameter that must be given.
+   *
+   * @param query parameters by name.
+   * @param name  name of the parameter.
+   * @return value of the parameter.
+   */
+  private static String required(Map<String, String> query, String name) {
+    String value = query.get(name);
+    if (value == null || value.isEmpty()) {
+      throw new IllegalArgumentException("Missing parameter: " + name);
+    }
+    return value;
+  }
+
+
+  /**
+   * Helper method to read a number parameter.
+   *
+   * @param query parameters by name.
+   * @param name  name of the parameter.
+   * @return value of the parameter.
+   */
+  private static double number(Map<String, String> query, String name) {
+    double value = Double.parseDouble(required(query, name));
+    if (!Double.isFinite(value)) {
+      throw new IllegalArgumentException("Invalid number: " + name);
+    }
+    return value;
+  }
+
+
+  /**
+   * Helper method to read a comma separated list parameter.
+   *
+   * @param query parameters by name.
+   * @param name  name of the parameter.
+   * @return the values, without empty ones.
+   */
+  private static List<String> list(Map<String, String> query, String name) {
+    List<String> values = new ArrayList<>();
+    for (String value : required(query, name).split(",")) {
+      if (!value.isBlank()) {
+        values.add(value.trim());
+      }
+    }
+    return values;
+  }
+
+
+  /**
+   * Thrown when an operation is asked for with the wrong request method.
+   */
+  private static final class MethodNotAllowed extends IllegalArgumentException {
+
+    /**
+     * Constructor to instantiate MethodNotAllowed object.
+     *
+     * @param message description of the failure.
+     */
+    MethodNotAllowed(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,413 @@
+package com.lyit.csd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * PortfolioSnapshot class writes the whole state of an account, funds, lots and sales, as one
+ * compact binary file tagged with the journal sequence number it is current to. Restoring an
+ * account loads the latest snapshot and replays only the journal records after it. Snapshot
+ * files are written and old journal segments deleted on a background thread.
+ */
+public final class PortfolioSnapshot {
+
+  /**
+   * Number of snapshots kept. Journal segments are deleted only once the oldest snapshot kept
+   * covers them, so a damaged latest snapshot can still be recovered from.
+   */
+  public static final int KEEP = 2;
+
+  /**
+   * First bytes of a snapshot file.
+   */
+  private static final int MAGIC = 0x50534E50;
+
+  /**
+   * Format version of snapshot files. Money is held in micro dollars and amounts in 1e-8 units.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * Prefix of snapshot file names.
+   */
+  private static final String PREFIX = "snapshot-";
+
+  /**
+   * Suffix of snapshot file names.
+   */
+  private static final String SUFFIX = ".bin";
+
+  /**
+   * Single daemon thread writing snapshots and deleting what they make obsolete.
+   */
+  private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "portfolio-snapshot");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+
+  /**
+   * Not instantiated.
+   */
+  private PortfolioSnapshot() {
+  }
+
+
+  /**
+   * Method encodes the state of the account.
+   *
+   * @param user the account.
+   * @param lsn  sequence number of the last journal record applied to the account.
+   * @return snapshot bytes.
+   * @throws IOException never, the bytes are written to memory.
+   */
+  static byte[] encode(User user, long lsn) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    Portfolio portfolio = user.getUserPortfolio();
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeLong(lsn);
+    out.writeLong(user.getAvailableFundsMicros());
+    out.writeByte(user.getLotSelection().ordinal());
+    out.writeLong(portfolio.getNextLotId());
+    out.writeLong(portfolio.getNextSaleId());
+
+    writeLots(out, portfolio.getCrypto());
+    writeLots(out, portfolio.getStock());
+
+    out.writeInt(portfolio.getSoldAssets().size());
+    for (SoldAsset sale : portfolio.getSoldAssets()) {
+      out.writeLong(sale.getSaleId());
+      writeString(out, sale.getAssetSymbol());
+      writeString(out, sale.getAssetFullName());
+      writeString(out, sale.getAssetType());
+      out.writeLong(sale.getTimeStamp());
+      out.writeLong(sale.getAvgPurchasePriceMicros());
+      out.writeLong(sale.getPriceSoldMicros());
+      out.writeLong(sale.getAmountUnits());
+    }
+
+    writeMap(out, portfolio.getAssetsInPortfolio());
+    writeMap(out, portfolio.getSymbolFullName());
+    out.writeInt(portfolio.getAllAssetNames().size());
+    for (String name : portfolio.getAllAssetNames()) {
+      writeString(out, name);
+    }
+
+    // checksum over everything before it
+    CRC32 crc = new CRC32();
+    crc.update(bytes.toByteArray());
+    out.writeInt((int) crc.getValue());
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+
+  /**
+   * Method restores the account from snapshot bytes.
+   *
+   * @param data snapshot bytes.
+   * @param user the account, its state is replaced.
+   * @return sequence number the snapshot is current to.
+   * @throws IOException if the bytes are not a valid snapshot.
+   */
+  static long decode(byte[] data, User user) throws IOException {
+    if (data.length < 12) {
+      throw new IOException("Snapshot is cut short");
+    }
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length - 4);
+    if ((int) crc.getValue() != ByteBuffer.wrap(data, data.length - 4, 4).getInt()) {
+      throw new IOException("Snapshot checksum does not match");
+    }
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+    int version = in.readInt() == MAGIC ? in.readInt() : -1;
+    if (version != VERSION) {
+      throw new IOException("Not a snapshot of a known version");
+    }
+    long lsn = in.readLong();
+    long funds = in.readLong();
+    LotSelection selection = LotSelection.values()[in.readByte()];
+    long nextLotId = in.readLong();
+    long nextSaleId = in.readLong();
+
+    // start from an empty portfolio, not the pre-populated one
+    Portfolio portfolio = new Portfolio();
+    portfolio.getCrypto().clear();
+    portfolio.getStock().clear();
+    portfolio.getAssetsInPortfolio().clear();
+    portfolio.getSymbolFullName().clear();
+    portfolio.getAllAssetNames().clear();
+
+    readLots(in, portfolio, portfolio.getCrypto());
+    readLots(in, portfolio, portfolio.getStock());
+    portfolio.setNextLotId(nextLotId);
+
+    int sales = in.readInt();
+    for (int i = 0; i < sales; i++) {
+      long saleId = in.readLong();
+      SoldAsset sale = SoldAsset.ofUnits(readString(in), readString(in), readString(in),
+          in.readLong(), in.readLong(), in.readLong(), in.readLong());
+      portfolio.setNextSaleId(saleId);
+      portfolio.getSoldAssets().add(sale);
+    }
+    portfolio.setNextSaleId(nextSaleId);
+
+    readMap(in, portfolio.getAssetsInPortfolio());
+    readMap(in, portfolio.getSymbolFullName());
+    int names = in.readInt();
+    for (int i = 0; i < names; i++) {
+      portfolio.getAllAssetNames().add(readString(in));
+    }
+
+    user.restoreState(funds, selection, portfolio);
+    return lsn;
+  }
+
+
+  /**
+   * Method writes a snapshot on the background thread, then deletes snapshots and journal
+   * segments it makes obsolete.
+   *
+   * @param journal journal the snapshot belongs to, snapshots are kept in its directory.
+   * @param lsn     sequence number the snapshot is current to.
+   * @param data    snapshot bytes.
+   * @return completed with the snapshot file once it is on disk.
+   */
+  static CompletableFuture<Path> writeAsync(TradeJournal journal, long lsn, byte[] data) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        Path file = write(journal.getDirectory(), lsn, data);
+        compact(journal);
+        return file;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, WRITER);
+  }
+
+
+  /**
+   * Method restores the account from the latest readable snapshot in the directory.
+   *
+   * @param directory directory holding the snapshots.
+   * @param user      the account, its state is replaced if a snapshot is found.
+   * @return sequence number the snapshot is current to, 0 if there is none.
+   * @throws IOException if the directory can not be read.
+   */
+  static long restoreLatest(Path directory, User user) throws IOException {
+    List<Path> snapshots = snapshots(directory);
+    Collections.reverse(snapshots);
+    for (Path snapshot : snapshots) {
+      try {
+        return decode(Files.readAllBytes(snapshot), user);
+      } catch (IOException | RuntimeException e) {
+        // damaged, fall back to the one before
+      }
+    }
+    return 0;
+  }
+
+
+  /**
+   * Helper method to write snapshot bytes to a new file, forced to disk before it is renamed
+   * into place so a crash never leaves a partly written snapshot.
+   *
+   * @param directory directory holding the snapshots.
+   * @param lsn       sequence number the snapshot is current to.
+   * @param data      snapshot bytes.
+   * @return the snapshot file.
+   * @throws IOException if the file can not be written.
+   */
+  private static Path write(Path directory, long lsn, byte[] data) throws IOException {
+    Path file = directory.resolve(String.format("%s%020d%s", PREFIX, lsn, SUFFIX));
+    Path temp = directory.resolve(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    return file;
+  }
+
+
+  /**
+   * Helper method to delete all but the newest snapshots and the journal segments the oldest
+   * snapshot kept covers.
+   *
+   * @param journal journal the snapshots belong to.
+   * @throws IOException if files can not be deleted.
+   */
+  private static void compact(TradeJournal journal) throws IOException {
+    List<Path> snapshots = snapshots(journal.getDirectory());
+    if (snapshots.size() < KEEP) {
+      return;
+    }
+    int oldestKept = snapshots.size() - KEEP;
+    for (int i = 0; i < oldestKept; i++) {
+      Files.deleteIfExists(snapshots.get(i));
+    }
+    journal.deleteSegmentsThrough(lsnOf(snapshots.get(oldestKept)));
+  }
+
+
+  /**
+   * Helper method to list the snapshots in the directory, oldest first.
+   *
+   * @param directory directory holding the snapshots.
+   * @return snapshot files.
+   * @throws IOException if the directory can not be listed.
+   */
+  static List<Path> snapshots(Path directory) throws IOException {
+    List<Path> snapshots = new ArrayList<>();
+    if (!Files.isDirectory(directory)) {
+      return snapshots;
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      files.filter(file -> {
+        String name = file.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+      }).sorted().forEach(snapshots::add);
+    }
+    return snapshots;
+  }
+
+
+  /**
+   * Helper method to read the sequence number from a snapshot name.
+   *
+   * @param snapshot the snapshot.
+   * @return sequence number the snapshot is current to.
+   */
+  private static long lsnOf(Path snapshot) {
+    String name = snapshot.getFileName().toString();
+    return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+  }
+
+
+  /**
+   * Helper method to write a list of lots.
+   *
+   * @param out  stream to write to.
+   * @param lots the lots.
+   * @throws IOException if the stream fails.
+   */
+  private static void writeLots(DataOutputStream out, List<Asset> lots) throws IOException {
+    out.writeInt(lots.size());
+    for (Asset lot : lots) {
+      out.writeLong(lot.getLotId());
+      writeString(out, lot.getAssetSymbol());
+      writeString(out, lot.getAssetFullName());
+      writeString(out, lot.getAssetType());
+      out.writeLong(lot.getTimeStamp());
+      out.writeLong(lot.getPriceBoughtMicros());
+      out.writeLong(lot.getAmountUnits());
+    }
+  }
+
+
+  /**
+   * Helper method to read a list of lots, each keeping its lot identifier.
+   *
+   * @param in        stream to read from.
+   * @param portfolio portfolio the lots are added to.
+   * @param lots      list the lots are added to.
+   * @throws IOException if the stream fails.
+   */
+  private static void readLots(DataInputStream in, Portfolio portfolio, List<Asset> lots)
+      throws IOException {
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      long lotId = in.readLong();
+      Asset lot = Asset.ofUnits(readString(in), readString(in), readString(in), in.readLong(),
+          in.readLong(), in.readLong());
+      portfolio.setNextLotId(lotId);
+      lots.add(lot);
+    }
+  }
+
+
+  /**
+   * Helper method to write a map of strings.
+   *
+   * @param out stream to write to.
+   * @param map the map.
+   * @throws IOException if the stream fails.
+   */
+  private static void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+    out.writeInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      writeString(out, entry.getKey());
+      writeString(out, entry.getValue());
+    }
+  }
+
+
+  /**
+   * Helper method to read a map of strings into the given map.
+   *
+   * @param in  stream to read from.
+   * @param map map the entries are put in.
+   * @throws IOException if the stream fails.
+   */
+  private static void readMap(DataInputStream in, Map<String, String> map) throws IOException {
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      map.put(readString(in), readString(in));
+    }
+  }
+
+
+  /**
+   * Helper method to write a string that may be null.
+   *
+   * @param out   stream to write to.
+   * @param value the string.
+   * @throws IOException if the stream fails.
+   */
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+
+  /**
+   * Helper method to read a string written by writeString.
+   *
+   * @param in stream to read from.
+   * @return the string, may be null.
+   * @throws IOException if the stream fails.
+   */
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
@@ -0,0 +1,327 @@
+package com.lyit.csd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PortfolioView class is an immutable point in time copy of an account, taken for reports. A view
+ * is taken by each change of the account, and then only the positions of the asset symbols
+ * traded since the previous view are taken again, each sharing the persistent lot timeline of its
+ * position, new sales are appended and the asset names are only copied if a symbol came or went;
+ * the rest is shared with it. Reports read the view without a lock, so a long report neither
+ * waits for trades nor sees one half applied.
+ */
+public final class PortfolioView {
+
+  /**
+   * The available funds in micro dollars.
+   */
+  private final long availableFunds;
+
+  /**
+   * Positions by asset symbol.
+   */
+  private final Map<String, PositionView> positions;
+
+  /**
+   * Sales ordered by time, by asset symbol.
+   */
+  private final Map<String, SaleLog> sales;
+
+  /**
+   * Asset symbol and type of the assets held.
+   */
+  private final Map<String, String> assetsInPortfolio;
+
+  /**
+   * Full name and symbol of the assets held.
+   */
+  private final Map<String, String> symbolFullName;
+
+  /**
+   * Full names of the assets held.
+   */
+  private final List<String> allAssetNames;
+
+  /**
+   * Portfolio the view was taken of.
+   */
+  private final Portfolio source;
+
+  /**
+   * Version of the portfolio the view was taken at.
+   */
+  private final long sourceVersion;
+
+  /**
+   * Version of the asset names of the portfolio the view was taken at.
+   */
+  private final long namesVersion;
+
+
+  /**
+   * Constructor copies the state of an account. Must be called holding the lock of the account.
+   *
+   * @param availableFunds funds of the account in micro dollars.
+   * @param portfolio      portfolio of the account.
+   * @param previous       the previous view of the account, null if there is none.
+   */
+  PortfolioView(long availableFunds, Portfolio portfolio, PortfolioView previous) {
+    Set<String> changed = portfolio.takeChangedSymbols();
+    Set<String> reordered = portfolio.takeReorderedSales();
+    boolean reuse = previous != null && previous.source == portfolio;
+
+    Map<String, PositionView> positions = new LinkedHashMap<>();
+    for (SymbolLots lots : portfolio.getPositions()) {
+      String symbol = lots.getAssetSymbol();
+      PositionView position = reuse && !changed.contains(symbol)
+          ? previous.positions.get(symbol) : null;
+      positions.put(symbol, position != null ? position : new PositionView(lots));
+    }
+
+    // sales that were only appended to are added to the copy of the previous view
+    Map<String, SaleLog> sales = new LinkedHashMap<>();
+    for (String symbol : portfolio.getSoldSymbols()) {
+      SaleLog sold = reuse ? previous.sales.get(symbol) : null;
+      if (sold != null && reordered.contains(symbol)) {
+        sold = null;
+      } else if (sold != null && changed.contains(symbol)) {
+        sold = sold.append(portfolio.getSalesAfter(symbol, sold.last()));
+      }
+      sales.put(symbol, sold != null ? sold
+          : new SaleLog(portfolio.getSalesBetween(symbol, Long.MIN_VALUE, Long.MAX_VALUE)));
+    }
+
+    this.availableFunds = availableFunds;
+    this.positions = Collections.unmodifiableMap(positions);
+    this.sales = Collections.unmodifiableMap(sales);
+    // names only change when a symbol comes or goes, most trades keep the previous copies
+    if (reuse && previous.namesVersion == portfolio.getNamesVersion()) {
+      this.assetsInPortfolio = previous.assetsInPortfolio;
+      this.symbolFullName = previous.symbolFullName;
+      this.allAssetNames = previous.allAssetNames;
+    } else {
+      this.assetsInPortfolio = Collections.unmodifiableMap(
+          new HashMap<>(portfolio.getAssetsInPortfolio()));
+      this.symbolFullName = Collections.unmodifiableMap(
+          new HashMap<>(portfolio.getSymbolFullName()));
+      this.allAssetNames = Collections.unmodifiableList(
+          new ArrayList<>(portfolio.getAllAssetNames()));
+    }
+    this.source = portfolio;
+    this.sourceVersion = portfolio.getVersion();
+    this.namesVersion = portfolio.getNamesVersion();
+  }
+
+
+  /**
+   * Method tells whether the view still shows the account.
+   *
+   * @param availableFunds current funds of the account in micro dollars.
+   * @param portfolio      current portfolio of the account.
+   * @return true if neither changed since the view was taken.
+   */
+  boolean isCurrent(long availableFunds, Portfolio portfolio) {
+    return source == portfolio && sourceVersion == portfolio.getVersion()
+        && this.availableFunds == availableFunds;
+  }
+
+
+  /**
+   * Returning the available funds.
+   *
+   * @return the available funds at the time of the view.
+   */
+  public double getAvailableFunds() {
+    return Money.toUsd(availableFunds);
+  }
+
+
+  /**
+   * Returning the positions, one per asset symbol held.
+   *
+   * @return read only collection of the positions.
+   */
+  public Collection<PositionView> getPositions() {
+    return positions.values();
+  }
+
+
+  /**
+   * Returning the position of an asset symbol.
+   *
+   * @param assetSymbol asset symbol.
+   * @return the position, null if the symbol is not held.
+   */
+  public PositionView getPosition(String assetSymbol) {
+    return positions.get(assetSymbol);
+  }
+
+
+  /**
+   * Returning the asset symbols that have been sold at least once.
+   *
+   * @return read only set of the sold symbols.
+   */
+  public Set<String> getSoldSymbols() {
+    return sales.keySet();
+  }
+
+
+  /**
+   * Returning the sales of an asset symbol made within the time range, oldest first.
+   *
+   * @param assetSymbol    asset symbol.
+   * @param startTimeStamp start of the range, inclusive.
+   * @param endTimeStamp   end of the range, inclusive.
+   * @return read only list of the sales in the range.
+   */
+  public List<SoldAsset> getSalesBetween(String assetSymbol, long startTimeStamp,
+      long endTimeStamp) {
+    SaleLog sold = sales.get(assetSymbol);
+    if (sold == null || startTimeStamp > endTimeStamp) {
+      return List.of();
+    }
+    int end = endTimeStamp == Long.MAX_VALUE
+        ? sold.size : sold.firstAtOrAfter(endTimeStamp + 1);
+    return Collections.unmodifiableList(
+        Arrays.asList(sold.items).subList(sold.firstAtOrAfter(startTimeStamp), end));
+  }
+
+
+  /**
+   * Returning the symbol and type of the assets held.
+   *
+   * @return read only map of asset symbol to type.
+   */
+  public Map<String, String> getAssetsInPortfolio() {
+    return assetsInPortfolio;
+  }
+
+
+  /**
+   * Returning the full name and symbol of the assets held.
+   *
+   * @return read only map of full name to asset symbol.
+   */
+  public Map<String, String> getSymbolFullName() {
+    return symbolFullName;
+  }
+
+
+  /**
+   * Returning the full names of the assets held.
+   *
+   * @return read only list of the full names.
+   */
+  public List<String> getAllAssetNames() {
+    return allAssetNames;
+  }
+
+
+  /**
+   * SaleLog class holds the sales of one asset symbol ordered by time. Sales appended later are
+   * written into the free part of the same array, which earlier views never read, so a new view
+   * only copies the sales when the array is full.
+   */
+  private static final class SaleLog {
+
+    /**
+     * Sales ordered by time, valid up to size.
+     */
+    private final SoldAsset[] items;
+
+    /**
+     * Number of sales in this log.
+     */
+    private final int size;
+
+    /**
+     * Whether a later log writes into the same array.
+     */
+    private boolean extended;
+
+
+    /**
+     * Constructor copies the sales.
+     *
+     * @param sales sales ordered by time.
+     */
+    SaleLog(Collection<SoldAsset> sales) {
+      this(sales.toArray(new SoldAsset[0]), sales.size());
+    }
+
+
+    /**
+     * Constructor to instantiate SaleLog object.
+     *
+     * @param items sales ordered by time, valid up to size.
+     * @param size  number of sales.
+     */
+    private SaleLog(SoldAsset[] items, int size) {
+      this.items = items;
+      this.size = size;
+    }
+
+
+    /**
+     * Returning the latest sale.
+     *
+     * @return the latest sale.
+     */
+    SoldAsset last() {
+      return items[size - 1];
+    }
+
+
+    /**
+     * Method returns a log holding these sales followed by the given ones.
+     *
+     * @param later sales ordered by time, all after the latest sale of this log.
+     * @return the longer log.
+     */
+    SaleLog append(Collection<SoldAsset> later) {
+      if (later.isEmpty()) {
+        return this;
+      }
+      SoldAsset[] target = items;
+      if (extended || size + later.size() > items.length) {
+        target = Arrays.copyOf(items, Math.max(items.length * 2, size + later.size()));
+      }
+      extended = true;
+      int next = size;
+      for (SoldAsset sale : later) {
+        target[next++] = sale;
+      }
+      return new SaleLog(target, next);
+    }
+
+
+    /**
+     * Helper method to find the first sale made at or after the given time.
+     *
+     * @param timeStamp UNIX timestamp.
+     * @return position of the sale, size if there is none.
+     */
+    int firstAtOrAfter(long timeStamp) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (items[middle].getTimeStamp() < timeStamp) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
+}
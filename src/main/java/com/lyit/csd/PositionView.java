@@ -0,0 +1,135 @@
+package com.lyit.csd;
+
+import java.util.List;
+
+/**
+ * PositionView class is an immutable copy of the lots of one asset symbol, taken for a
+ * PortfolioView. It holds the lot timeline of the position as it was, whose lot copies and nodes
+ * are shared with the views taken before and after, so taking a view does not walk the lots and
+ * later trades do not show through.
+ */
+public final class PositionView {
+
+  /**
+   * Symbol of the asset.
+   */
+  private final String assetSymbol;
+
+  /**
+   * Full name of the asset.
+   */
+  private final String assetFullName;
+
+  /**
+   * Type of the asset.
+   */
+  private final String assetType;
+
+  /**
+   * Amount held over every lot.
+   */
+  private final double amount;
+
+  /**
+   * Average price paid, weighted by amount.
+   */
+  private final double averagePriceBought;
+
+  /**
+   * Copies of the lots ordered by time of purchase.
+   */
+  private final LotTimeline lots;
+
+
+  /**
+   * Constructor takes the lots of one asset symbol as they are now.
+   *
+   * @param lots lots of the asset symbol, not empty.
+   */
+  PositionView(SymbolLots lots) {
+    Asset first = lots.lowestCost();
+    this.assetSymbol = lots.getAssetSymbol();
+    this.assetFullName = first.getAssetFullName();
+    this.assetType = first.getAssetType();
+    this.amount = lots.getAmount();
+    this.averagePriceBought = lots.getAveragePriceBought();
+    this.lots = lots.timeline();
+  }
+
+
+  /**
+   * Returning asset symbol.
+   *
+   * @return the symbol of the asset.
+   */
+  public String getAssetSymbol() {
+    return assetSymbol;
+  }
+
+
+  /**
+   * Returning asset full name.
+   *
+   * @return the full name of the asset.
+   */
+  public String getAssetFullName() {
+    return assetFullName;
+  }
+
+
+  /**
+   * Returning asset type.
+   *
+   * @return the type of the asset.
+   */
+  public String getAssetType() {
+    return assetType;
+  }
+
+
+  /**
+   * Returning the amount held.
+   *
+   * @return amount held over every lot.
+   */
+  public double getAmount() {
+    return amount;
+  }
+
+
+  /**
+   * Returning the average price paid.
+   *
+   * @return average price paid, weighted by amount.
+   */
+  public double getAveragePriceBought() {
+    return averagePriceBought;
+  }
+
+
+  /**
+   * Returning the lots ordered by time of purchase.
+   *
+   * @return read only list of the lots.
+   */
+  public List<Asset> getLots() {
+    return lots;
+  }
+
+
+  /**
+   * Returning the lots bought within the time range, oldest first.
+   *
+   * @param startTimeStamp start of the range, inclusive.
+   * @param endTimeStamp   end of the range, inclusive.
+   * @return read only list of the lots in the range.
+   */
+  public List<Asset> purchasedBetween(long startTimeStamp, long endTimeStamp) {
+    if (startTimeStamp > endTimeStamp) {
+      return List.of();
+    }
+    int end = endTimeStamp == Long.MAX_VALUE
+        ? lots.size() : lots.firstAtOrAfter(endTimeStamp + 1);
+    return lots.subList(lots.firstAtOrAfter(startTimeStamp), end);
+  }
+}
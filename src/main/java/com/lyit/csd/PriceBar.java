@@ -0,0 +1,91 @@
+package com.lyit.csd;
+
+/**
+ * PriceBar class represents the prices of an asset over one interval of its history. The close
+ * price is the live price of the quote.
+ */
+public class PriceBar extends AssetQuote {
+
+  /**
+   * Price at the start of the interval.
+   */
+  private double open;
+
+  /**
+   * Highest price within the interval.
+   */
+  private double high;
+
+  /**
+   * Lowest price within the interval.
+   */
+  private double low;
+
+  /**
+   * Number of units traded within the interval.
+   */
+  private long volume;
+
+
+  /**
+   * Constructor to instantiate PriceBar object.
+   *
+   * @param assetSymbol   symbol of the asset.
+   * @param assetFullName full name of the asset.
+   * @param assetType     type of the asset.
+   * @param timeStamp     UNIX timestamp of the start of the interval.
+   * @param open          price at the start of the interval.
+   * @param high          highest price within the interval.
+   * @param low           lowest price within the interval.
+   * @param close         price at the end of the interval.
+   * @param volume        number of units traded within the interval.
+   */
+  public PriceBar(String assetSymbol, String assetFullName, String assetType, long timeStamp,
+      double open, double high, double low, double close, long volume) {
+    super(assetSymbol, assetFullName, assetType, timeStamp, close);
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.volume = volume;
+  }
+
+
+  /**
+   * Returning the open price.
+   *
+   * @return price at the start of the interval.
+   */
+  public double getOpen() { return open; }
+
+
+  /**
+   * Returning the high price.
+   *
+   * @return highest price within the interval.
+   */
+  public double getHigh() { return high; }
+
+
+  /**
+   * Returning the low price.
+   *
+   * @return lowest price within the interval.
+   */
+  public double getLow() { return low; }
+
+
+  /**
+   * Returning the close price.
+   *
+   * @return price at the end of the interval.
+   */
+  public double getClose() { return getLivePrice(); }
+
+
+  /**
+   * Returning the volume.
+   *
+   * @return number of units traded within the interval.
+   */
+  public long getVolume() { return volume; }
+}
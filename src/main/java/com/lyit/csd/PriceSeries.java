@@ -0,0 +1,200 @@
+package com.lyit.csd;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PriceSeries class is a read only view of consecutive price bars of one asset, one column per
+ * field. The columns are views of the memory mapped files of the history store, nothing is
+ * copied until toBars is called. A view stays valid until its series is next filled from the
+ * api.
+ */
+public class PriceSeries {
+
+  /**
+   * The symbol of the asset.
+   */
+  private final String assetSymbol;
+
+  /**
+   * The full name of the asset.
+   */
+  private final String assetFullName;
+
+  /**
+   * The type of the asset.
+   */
+  private final String assetType;
+
+  /**
+   * UNIX timestamps of the bars.
+   */
+  private final LongBuffer time;
+
+  /**
+   * Open prices of the bars.
+   */
+  private final DoubleBuffer open;
+
+  /**
+   * High prices of the bars.
+   */
+  private final DoubleBuffer high;
+
+  /**
+   * Low prices of the bars.
+   */
+  private final DoubleBuffer low;
+
+  /**
+   * Close prices of the bars.
+   */
+  private final DoubleBuffer close;
+
+  /**
+   * Volumes of the bars.
+   */
+  private final LongBuffer volume;
+
+
+  /**
+   * Constructor to instantiate PriceSeries object. The buffers must hold the same number of
+   * entries, starting at position 0.
+   *
+   * @param assetSymbol   symbol of the asset.
+   * @param assetFullName full name of the asset.
+   * @param assetType     type of the asset.
+   * @param time          UNIX timestamps of the bars.
+   * @param open          open prices of the bars.
+   * @param high          high prices of the bars.
+   * @param low           low prices of the bars.
+   * @param close         close prices of the bars.
+   * @param volume        volumes of the bars.
+   */
+  PriceSeries(String assetSymbol, String assetFullName, String assetType, LongBuffer time,
+      DoubleBuffer open, DoubleBuffer high, DoubleBuffer low, DoubleBuffer close,
+      LongBuffer volume) {
+    this.assetSymbol = assetSymbol;
+    this.assetFullName = assetFullName;
+    this.assetType = assetType;
+    this.time = time;
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+    this.volume = volume;
+  }
+
+
+  /**
+   * Returning asset symbol.
+   *
+   * @return the symbol of the asset.
+   */
+  public String getAssetSymbol() {
+    return assetSymbol;
+  }
+
+
+  /**
+   * Returning the number of bars.
+   *
+   * @return number of bars in the view.
+   */
+  public int size() {
+    return time.limit();
+  }
+
+
+  /**
+   * Returning the timestamp of a bar.
+   *
+   * @param index position of the bar.
+   * @return UNIX timestamp of the start of the bar.
+   */
+  public long getTimeStamp(int index) {
+    return time.get(index);
+  }
+
+
+  /**
+   * Returning the open price of a bar.
+   *
+   * @param index position of the bar.
+   * @return price at the start of the bar.
+   */
+  public double getOpen(int index) {
+    return open.get(index);
+  }
+
+
+  /**
+   * Returning the high price of a bar.
+   *
+   * @param index position of the bar.
+   * @return highest price within the bar.
+   */
+  public double getHigh(int index) {
+    return high.get(index);
+  }
+
+
+  /**
+   * Returning the low price of a bar.
+   *
+   * @param index position of the bar.
+   * @return lowest price within the bar.
+   */
+  public double getLow(int index) {
+    return low.get(index);
+  }
+
+
+  /**
+   * Returning the close price of a bar.
+   *
+   * @param index position of the bar.
+   * @return price at the end of the bar.
+   */
+  public double getClose(int index) {
+    return close.get(index);
+  }
+
+
+  /**
+   * Returning the volume of a bar.
+   *
+   * @param index position of the bar.
+   * @return number of units traded within the bar.
+   */
+  public long getVolume(int index) {
+    return volume.get(index);
+  }
+
+
+  /**
+   * Returning the close prices as a column.
+   *
+   * @return read only view of the close prices.
+   */
+  public DoubleBuffer closes() {
+    return close.asReadOnlyBuffer();
+  }
+
+
+  /**
+   * Method copies the bars into objects.
+   *
+   * @return the bars, ordered by time.
+   */
+  public List<PriceBar> toBars() {
+    List<PriceBar> bars = new ArrayList<>(size());
+    for (int i = 0; i < size(); i++) {
+      bars.add(new PriceBar(assetSymbol, assetFullName, assetType, getTimeStamp(i), getOpen(i),
+          getHigh(i), getLow(i), getClose(i), getVolume(i)));
+    }
+    return bars;
+  }
+}
@@ -0,0 +1,72 @@
+package com.lyit.csd;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PricedSnapshot class pairs a PortfolioView with the quotes of the asset symbols a report needs,
+ * fetched in one request. Every section of a report, or every report of a batch, rendered from
+ * the same snapshot shows the same prices and costs one upstream call between them.
+ */
+public final class PricedSnapshot {
+
+  /**
+   * View of the account the quotes were fetched for.
+   */
+  private final PortfolioView view;
+
+  /**
+   * Quotes by asset symbol, in the order they were returned.
+   */
+  private final Map<String, AssetQuote> quotes;
+
+
+  /**
+   * Constructor to instantiate PricedSnapshot object.
+   *
+   * @param view   view of the account.
+   * @param quotes quotes fetched for the view.
+   */
+  PricedSnapshot(PortfolioView view, List<AssetQuote> quotes) {
+    Map<String, AssetQuote> bySymbol = new LinkedHashMap<>();
+    for (AssetQuote quote : quotes) {
+      bySymbol.put(quote.getAssetSymbol(), quote);
+    }
+    this.view = view;
+    this.quotes = Collections.unmodifiableMap(bySymbol);
+  }
+
+
+  /**
+   * Returning the view of the account.
+   *
+   * @return the view the quotes were fetched for.
+   */
+  public PortfolioView getView() {
+    return view;
+  }
+
+
+  /**
+   * Returning the quotes.
+   *
+   * @return read only quotes in the order they were returned.
+   */
+  public Collection<AssetQuote> getQuotes() {
+    return quotes.values();
+  }
+
+
+  /**
+   * Returning the quote of one asset symbol.
+   *
+   * @param symbol the asset symbol.
+   * @return the quote, null if it was not fetched.
+   */
+  public AssetQuote getQuote(String symbol) {
+    return quotes.get(symbol);
+  }
+}
@@ -0,0 +1,19 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a quote request is refused because the request budget left is reserved for more
+ * urgent requests, or because the api itself answered that its rate limit was exceeded.
+ */
+public class QuotaExceededException extends IOException {
+
+  /**
+   * Constructor to instantiate QuotaExceededException object.
+   *
+   * @param message description of the refusal.
+   */
+  public QuotaExceededException(String message) {
+    super(message);
+  }
+}
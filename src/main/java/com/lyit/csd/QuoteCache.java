@@ -0,0 +1,392 @@
+package com.lyit.csd;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * QuoteCache class keeps recently received quotes per asset symbol in front of another
+ * QuoteProvider. A fresh quote is served without a request. A stale quote is served at once while
+ * a refresh runs in the background, except to interactive callers who get a new price. Anything
+ * older is fetched before it is returned. If the fetch fails, for example because the request
+ * budget is reserved for more urgent callers, reports and prefetches are served the last known
+ * price instead, while interactive callers get the failure so no trade is priced on it.
+ */
+public class QuoteCache implements QuoteProvider {
+
+  /**
+   * Default number of symbols kept in the cache.
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+  /**
+   * Default time a quote is considered fresh when no freshness is set for its asset type.
+   */
+  public static final Duration DEFAULT_FRESHNESS = Duration.ofSeconds(15);
+
+  /**
+   * Default time after freshness has run out during which a stale quote is still served.
+   */
+  public static final Duration DEFAULT_STALE_WINDOW = Duration.ofMinutes(1);
+
+  /**
+   * Provider used when the cache cannot answer.
+   */
+  private final QuoteProvider delegate;
+
+  /**
+   * Clock used to age entries.
+   */
+  private final Clock clock;
+
+  /**
+   * Cached quotes by upper cased symbol, least recently used first.
+   */
+  private final LinkedHashMap<String, Entry> entries;
+
+  /**
+   * Freshness in milliseconds per asset type (for example EQUITY or CRYPTOCURRENCY).
+   */
+  private final Map<String, Long> freshnessByType = new HashMap<>();
+
+  /**
+   * Freshness in milliseconds for asset types without own setting.
+   */
+  private volatile long defaultFreshness = DEFAULT_FRESHNESS.toMillis();
+
+  /**
+   * Stale window in milliseconds.
+   */
+  private volatile long staleWindow = DEFAULT_STALE_WINDOW.toMillis();
+
+
+  /**
+   * Constructor to instantiate QuoteCache with default size bound.
+   *
+   * @param delegate provider used when the cache cannot answer.
+   */
+  public QuoteCache(QuoteProvider delegate) {
+    this(delegate, DEFAULT_MAX_ENTRIES, Clock.systemUTC());
+  }
+
+
+  /**
+   * Constructor to instantiate QuoteCache object.
+   *
+   * @param delegate   provider used when the cache cannot answer.
+   * @param maxEntries number of symbols kept before the least recently used one is evicted.
+   * @param clock      clock used to age entries.
+   */
+  public QuoteCache(QuoteProvider delegate, int maxEntries, Clock clock) {
+    this.delegate = delegate;
+    this.clock = clock;
+    entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+
+    // crypto trades around the clock and moves faster than equities
+    freshnessByType.put("CRYPTOCURRENCY", Duration.ofSeconds(5).toMillis());
+    freshnessByType.put("EQUITY", DEFAULT_FRESHNESS.toMillis());
+  }
+
+
+  /**
+   * Setting how long quotes of the given asset type stay fresh.
+   *
+   * @param assetType type of the asset as reported by the api, for example EQUITY.
+   * @param freshness time a quote is served without a request.
+   */
+  public void setFreshness(String assetType, Duration freshness) {
+    synchronized (freshnessByType) {
+      freshnessByType.put(assetType.toUpperCase(Locale.ROOT), freshness.toMillis());
+    }
+  }
+
+
+  /**
+   * Setting how long quotes of asset types without own setting stay fresh.
+   *
+   * @param freshness time a quote is served without a request.
+   */
+  public void setDefaultFreshness(Duration freshness) {
+    defaultFreshness = freshness.toMillis();
+  }
+
+
+  /**
+   * Setting how long a quote is served while being refreshed once it is no longer fresh.
+   *
+   * @param staleWindow time after freshness during which stale quote is served.
+   */
+  public void setStaleWindow(Duration staleWindow) {
+    this.staleWindow = staleWindow.toMillis();
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> assetSymbols) {
+    return getQuotesAsync(assetSymbols, QuotePriority.INTERACTIVE);
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> assetSymbols,
+      QuotePriority priority) {
+
+    long now = clock.millis();
+    Set<String> requested = normalise(assetSymbols);
+    Map<String, AssetQuote> found = new HashMap<>();
+    List<String> missing = new ArrayList<>();
+    List<String> toRefresh = new ArrayList<>();
+
+    // sort requested symbols into fresh, stale and missing
+    synchronized (entries) {
+      for (String symbol : requested) {
+        Entry entry = entries.get(symbol);
+        if (entry == null) {
+          missing.add(symbol);
+          continue;
+        }
+        long age = now - entry.fetchedAt;
+        long freshness = freshnessOf(entry.quote.getAssetType());
+        if (age <= freshness) {
+          found.put(symbol, entry.quote);
+        } else if (age <= freshness + staleWindow && priority != QuotePriority.INTERACTIVE) {
+          found.put(symbol, entry.quote);
+          if (!entry.refreshing) {
+            entry.refreshing = true;
+            toRefresh.add(symbol);
+          }
+        } else {
+          missing.add(symbol);
+        }
+      }
+    }
+
+    if (!toRefresh.isEmpty()) {
+      refresh(toRefresh);
+    }
+
+    if (missing.isEmpty()) {
+      return CompletableFuture.completedFuture(inOrder(requested, found));
+    }
+
+    return delegate.getQuotesAsync(missing, priority).handle((quotes, failure) -> {
+      if (failure != null) {
+        // reports get whatever we still hold rather than nothing, trades get the failure
+        if (priority == QuotePriority.INTERACTIVE || !fillFromExpired(missing, found)) {
+          throw new CompletionException(failure);
+        }
+      } else {
+        store(quotes);
+        for (AssetQuote quote : quotes) {
+          found.put(key(quote.getAssetSymbol()), quote);
+        }
+      }
+      return inOrder(requested, found);
+    });
+  }
+
+
+  /**
+   * Returning the number of symbols currently cached.
+   *
+   * @return number of cached symbols.
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+
+  /**
+   * Method removes every cached quote.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+
+  /**
+   * Helper method to refresh stale symbols in the background at prefetch priority.
+   *
+   * @param symbols symbols to refresh.
+   */
+  private void refresh(List<String> symbols) {
+    delegate.getQuotesAsync(symbols, QuotePriority.PREFETCH).whenComplete((quotes, failure) -> {
+      if (failure == null) {
+        store(quotes);
+      }
+      // let the next reader try again if this refresh did not bring the symbol back
+      synchronized (entries) {
+        for (String symbol : symbols) {
+          Entry entry = entries.get(symbol);
+          if (entry != null) {
+            entry.refreshing = false;
+          }
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Helper method to store received quotes.
+   *
+   * @param quotes quotes received from delegate.
+   */
+  private void store(List<AssetQuote> quotes) {
+    long now = clock.millis();
+    synchronized (entries) {
+      for (AssetQuote quote : quotes) {
+        entries.put(key(quote.getAssetSymbol()), new Entry(quote, now));
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to fill missing symbols from entries that are no longer fresh.
+   *
+   * @param missing symbols the delegate failed to provide.
+   * @param found   quotes found so far.
+   * @return true if at least one missing symbol was found in the cache.
+   */
+  private boolean fillFromExpired(List<String> missing, Map<String, AssetQuote> found) {
+    boolean any = false;
+    synchronized (entries) {
+      for (String symbol : missing) {
+        Entry entry = entries.get(symbol);
+        if (entry != null) {
+          found.put(symbol, entry.quote);
+          any = true;
+        }
+      }
+    }
+    return any;
+  }
+
+
+  /**
+   * Helper method to look up freshness of asset type.
+   *
+   * @param assetType type of the asset.
+   * @return freshness in milliseconds.
+   */
+  private long freshnessOf(String assetType) {
+    if (assetType == null) {
+      return defaultFreshness;
+    }
+    synchronized (freshnessByType) {
+      return freshnessByType.getOrDefault(assetType.toUpperCase(Locale.ROOT), defaultFreshness);
+    }
+  }
+
+
+  /**
+   * Helper method to upper case and de-duplicate requested symbols, keeping their order.
+   *
+   * @param assetSymbols symbols as given by the caller.
+   * @return ordered set of cache keys.
+   */
+  private static Set<String> normalise(List<String> assetSymbols) {
+    Set<String> result = new LinkedHashSet<>();
+    for (String symbol : assetSymbols) {
+      result.add(key(symbol));
+    }
+    return result;
+  }
+
+
+  /**
+   * Helper method to build cache key of a symbol.
+   *
+   * @param symbol asset symbol.
+   * @return cache key.
+   */
+  static String key(String symbol) {
+    return symbol.trim().toUpperCase(Locale.ROOT);
+  }
+
+
+  /**
+   * Helper method to list found quotes in the order they were requested.
+   *
+   * @param requested requested cache keys.
+   * @param found     quotes found by cache key.
+   * @return quotes in requested order, symbols without quote are left out.
+   */
+  private static List<AssetQuote> inOrder(Set<String> requested, Map<String, AssetQuote> found) {
+    List<AssetQuote> result = new ArrayList<>(requested.size());
+    for (String symbol : requested) {
+      AssetQuote quote = found.get(symbol);
+      if (quote != null) {
+        result.add(quote);
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+
+  /**
+   * One cached quote with the time it was received.
+   */
+  private static final class Entry {
+
+    /**
+     * The cached quote.
+     */
+    private final AssetQuote quote;
+
+    /**
+     * Time in milliseconds the quote was received.
+     */
+    private final long fetchedAt;
+
+    /**
+     * Whether a background refresh is in flight.
+     */
+    private boolean refreshing;
+
+    /**
+     * Constructor to instantiate Entry object.
+     *
+     * @param quote     the cached quote.
+     * @param fetchedAt time in milliseconds the quote was received.
+     */
+    private Entry(AssetQuote quote, long fetchedAt) {
+      this.quote = quote;
+      this.fetchedAt = fetchedAt;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.lyit.csd;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * QuoteFutures class holds helper methods shared by providers that hand one upstream answer to
+ * several waiting callers.
+ */
+final class QuoteFutures {
+
+  /**
+   * Private constructor, class only holds static helpers.
+   */
+  private QuoteFutures() {
+  }
+
+
+  /**
+   * Method completes per symbol futures from the outcome of one upstream request.
+   *
+   * @param waiting futures by upper cased symbol. Symbols without quote are completed with null.
+   * @param quotes  quotes received, ignored if failure is set.
+   * @param failure failure of the request or null.
+   */
+  static void complete(Map<String, CompletableFuture<AssetQuote>> waiting,
+      List<AssetQuote> quotes, Throwable failure) {
+
+    if (failure != null) {
+      waiting.values().forEach(future -> future.completeExceptionally(failure));
+      return;
+    }
+
+    Map<String, AssetQuote> bySymbol = new HashMap<>();
+    for (AssetQuote quote : quotes) {
+      bySymbol.put(QuoteCache.key(quote.getAssetSymbol()), quote);
+    }
+    for (Map.Entry<String, CompletableFuture<AssetQuote>> entry : waiting.entrySet()) {
+      entry.getValue().complete(bySymbol.get(entry.getKey()));
+    }
+  }
+
+
+  /**
+   * Method waits for per symbol futures and lists their quotes in iteration order.
+   *
+   * @param futures futures to wait on.
+   * @return future completed with the quotes found, symbols without quote are left out.
+   */
+  static CompletableFuture<List<AssetQuote>> collect(
+      Collection<CompletableFuture<AssetQuote>> futures) {
+
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        .thenApply(ignored -> {
+          List<AssetQuote> result = new ArrayList<>(futures.size());
+          for (CompletableFuture<AssetQuote> future : futures) {
+            AssetQuote quote = future.join();
+            if (quote != null) {
+              result.add(quote);
+            }
+          }
+          return result;
+        });
+  }
+}
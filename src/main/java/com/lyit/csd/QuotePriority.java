@@ -0,0 +1,23 @@
+package com.lyit.csd;
+
+/**
+ * Priority classes of quote requests, most urgent first. When the request budget runs low the
+ * less urgent classes are served from cached prices so that trading can go on.
+ */
+public enum QuotePriority {
+
+  /**
+   * Price needed to confirm a trade the user is waiting for.
+   */
+  INTERACTIVE,
+
+  /**
+   * Price needed to render a report or listing.
+   */
+  REPORT,
+
+  /**
+   * Price refreshed in the background before anyone asks for it.
+   */
+  PREFETCH
+}
@@ -0,0 +1,99 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The user of this interface can retrieve realtime asset quotes either by waiting for them or
+ * asynchronously, without holding the calling thread while the request is in flight.
+ */
+public interface QuoteProvider extends AutoCloseable {
+
+  /**
+   * Retrieve realtime quotes for the given asset symbols without blocking the calling thread.
+   *
+   * @param assetSymbols a list of asset symbols for example "BTC-USD", "AAPL", "TSLA"
+   * @return future completed with the quotes found. Symbols without a quote are left out.
+   */
+  CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> assetSymbols);
+
+  /**
+   * Retrieve realtime quotes for the given asset symbols without blocking the calling thread.
+   * Providers that schedule or cache requests use the priority to decide what is sent first and
+   * what may be answered from cached prices.
+   *
+   * @param assetSymbols a list of asset symbols for example "BTC-USD", "AAPL", "TSLA"
+   * @param priority     how urgent the request is.
+   * @return future completed with the quotes found. Symbols without a quote are left out.
+   */
+  default CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> assetSymbols,
+      QuotePriority priority) {
+    return getQuotesAsync(assetSymbols);
+  }
+
+  /**
+   * Retrieve realtime quotes for the given asset symbols and wait for the result.
+   *
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   * @param assetSymbols a list of asset symbols for example "BTC-USD", "AAPL", "TSLA"
+   * @return the quotes found. Symbols without a quote are left out.
+   */
+  default List<AssetQuote> getQuotes(List<String> assetSymbols)
+      throws IOException, InterruptedException {
+    return getQuotes(assetSymbols, QuotePriority.INTERACTIVE);
+  }
+
+  /**
+   * Retrieve realtime quotes for the given asset symbols with given priority and wait for the
+   * result.
+   *
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   * @param assetSymbols a list of asset symbols for example "BTC-USD", "AAPL", "TSLA"
+   * @param priority     how urgent the request is.
+   * @return the quotes found. Symbols without a quote are left out.
+   */
+  default List<AssetQuote> getQuotes(List<String> assetSymbols, QuotePriority priority)
+      throws IOException, InterruptedException {
+    try {
+      return getQuotesAsync(assetSymbols, priority).get();
+    } catch (ExecutionException e) {
+      throw unwrap(e.getCause());
+    }
+  }
+
+  /**
+   * Method stops threads the provider runs. Requests still waiting are failed and later ones are
+   * refused. Providers wrapping another close it as well.
+   */
+  @Override
+  default void close() {
+  }
+
+  /**
+   * Helper method to turn failure of asynchronous request back into checked exception.
+   *
+   * @param cause failure of the request.
+   * @return IOException to throw to the caller.
+   */
+  static IOException unwrap(Throwable cause) {
+    while (cause instanceof ExecutionException
+        || cause instanceof CompletionException) {
+      if (cause.getCause() == null) {
+        break;
+      }
+      cause = cause.getCause();
+    }
+    if (cause instanceof IOException) {
+      return (IOException) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    return new IOException(cause);
+  }
+}
@@ -0,0 +1,70 @@
+package com.lyit.csd;
+
+import java.time.Clock;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * QuoteProviders class assembles the quote stack used by the application. Users sharing an API
+ * key share one stack, so their lookups are cached, coalesced and batched together.
+ */
+public final class QuoteProviders {
+
+  /**
+   * Stack per API key.
+   */
+  private static final ConcurrentHashMap<String, QuoteProvider> SHARED = new ConcurrentHashMap<>();
+
+  /**
+   * Private constructor, class only holds static factory methods.
+   */
+  private QuoteProviders() {
+  }
+
+
+  /**
+   * Returning the stack shared by every user of the given API key.
+   *
+   * @param key String value with user api key.
+   * @return shared quote provider.
+   */
+  public static QuoteProvider forKey(String key) {
+    return SHARED.computeIfAbsent(key, k -> standard(HttpTransport.getDefault(), k));
+  }
+
+
+  /**
+   * Method builds a new stack over the given transport. The cache answers repeated lookups, the
+   * coalescer shares symbols already in flight, the batcher merges what is left into
+   * multi symbol requests and the scheduler paces them within the daily request budget.
+   *
+   * @param transport transport used to reach the api.
+   * @param key       String value with user api key.
+   * @return new quote provider.
+   */
+  public static QuoteProvider standard(HttpTransport transport, String key) {
+    return standard(transport, key, QuoteScheduler.DEFAULT_DAILY_BUDGET,
+        QuoteScheduler.DEFAULT_RATE, QuoteScheduler.DEFAULT_BURST);
+  }
+
+
+  /**
+   * Method builds a new stack over the given transport, pacing requests with the given limits
+   * instead of those of Yahoo finance api, for instance against a local stand-in.
+   *
+   * @param transport   transport used to reach the api.
+   * @param key         String value with user api key.
+   * @param dailyBudget number of upstream requests allowed per day.
+   * @param rate        number of requests sent per second.
+   * @param burst       number of requests that can be sent back to back.
+   * @return new quote provider.
+   */
+  public static QuoteProvider standard(HttpTransport transport, String key, int dailyBudget,
+      double rate, int burst) {
+    return new QuoteCache(
+        new CoalescingQuoteProvider(
+            new BatchingQuoteProvider(
+                new QuoteScheduler(
+                    new ConnectionPort(transport, key), dailyBudget, rate, burst,
+                    Clock.systemUTC()))));
+  }
+}
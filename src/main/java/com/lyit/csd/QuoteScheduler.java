@@ -0,0 +1,417 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QuoteScheduler class decides when quote requests are sent upstream. Requests wait in a queue
+ * ordered by priority, leave it at the pace of a token bucket and each one is charged against a
+ * daily request budget. Part of the budget is reserved for the more urgent classes: once only the
+ * reserve is left, less urgent requests are refused with QuotaExceededException so that a cache
+ * in front can answer them with the last known price. Requests are sent by a dispatcher thread
+ * of its own, stopped by close.
+ */
+public class QuoteScheduler implements QuoteProvider {
+
+  /**
+   * Default number of upstream requests allowed per day, the quota of the free api plan. Can be
+   * changed with the system property portfolio.quotes.dailyBudget.
+   */
+  public static final int DEFAULT_DAILY_BUDGET =
+      Integer.getInteger("portfolio.quotes.dailyBudget", 100);
+
+  /**
+   * Default number of requests sent per second.
+   */
+  public static final double DEFAULT_RATE = 5;
+
+  /**
+   * Default number of requests that can be sent back to back after a quiet period.
+   */
+  public static final int DEFAULT_BURST = 5;
+
+  /**
+   * Provider the requests are sent to.
+   */
+  private final QuoteProvider delegate;
+
+  /**
+   * Clock used to find the start of a new day.
+   */
+  private final Clock clock;
+
+  /**
+   * Requests waiting to be sent, most urgent first.
+   */
+  private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+
+  /**
+   * Sequence used to keep requests of the same priority in arrival order.
+   */
+  private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * Share of the daily budget a priority class may not use, kept for more urgent classes.
+   */
+  private final Map<QuotePriority, Double> reserves = new EnumMap<>(QuotePriority.class);
+
+  /**
+   * Requests allowed per day.
+   */
+  private final int dailyBudget;
+
+  /**
+   * Tokens added per nanosecond.
+   */
+  private final double tokensPerNano;
+
+  /**
+   * Largest number of tokens the bucket holds.
+   */
+  private final double burst;
+
+  /**
+   * Tokens currently in the bucket.
+   */
+  private double tokens;
+
+  /**
+   * Time in nanoseconds the bucket was last filled.
+   */
+  private long lastRefill;
+
+  /**
+   * Day the used budget is counted for.
+   */
+  private LocalDate budgetDay;
+
+  /**
+   * Requests sent during budgetDay.
+   */
+  private int used;
+
+  /**
+   * Thread sending the queued requests.
+   */
+  private final Thread dispatcher;
+
+  /**
+   * Whether the scheduler has been closed.
+   */
+  private volatile boolean closed;
+
+
+  /**
+   * Constructor to instantiate QuoteScheduler with default limits.
+   *
+   * @param delegate provider the requests are sent to.
+   */
+  public QuoteScheduler(QuoteProvider delegate) {
+    this(delegate, DEFAULT_DAILY_BUDGET, DEFAULT_RATE, DEFAULT_BURST, Clock.systemUTC());
+  }
+
+
+  /**
+   * Constructor to instantiate QuoteScheduler object.
+   *
+   * @param delegate    provider the requests are sent to.
+   * @param dailyBudget number of upstream requests allowed per day.
+   * @param rate        number of requests sent per second.
+   * @param burst       number of requests that can be sent back to back.
+   * @param clock       clock used to find the start of a new day.
+   */
+  public QuoteScheduler(QuoteProvider delegate, int dailyBudget, double rate, int burst,
+      Clock clock) {
+    if (rate <= 0 || burst < 1) {
+      throw new IllegalArgumentException("rate must be positive and burst at least 1");
+    }
+    this.delegate = delegate;
+    this.dailyBudget = dailyBudget;
+    this.tokensPerNano = rate / TimeUnit.SECONDS.toNanos(1);
+    this.burst = burst;
+    this.clock = clock;
+    tokens = burst;
+    lastRefill = System.nanoTime();
+    budgetDay = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+
+    // trades may spend everything, reports leave a tenth, prefetch leaves a third
+    reserves.put(QuotePriority.INTERACTIVE, 0.0);
+    reserves.put(QuotePriority.REPORT, 0.1);
+    reserves.put(QuotePriority.PREFETCH, 0.3);
+
+    dispatcher = new Thread(this::dispatch, "quote-scheduler");
+    dispatcher.setDaemon(true);
+    dispatcher.start();
+  }
+
+
+  /**
+   * Setting the share of the daily budget the given class leaves to more urgent classes.
+   *
+   * @param priority priority class.
+   * @param reserve  share of the budget between 0 and 1.
+   */
+  public synchronized void setReserve(QuotePriority priority, double reserve) {
+    reserves.put(priority, Math.max(0, Math.min(1, reserve)));
+  }
+
+
+  /**
+   * Returning the number of requests still allowed today.
+   *
+   * @return remaining daily budget.
+   */
+  public synchronized int getRemainingBudget() {
+    rollDay();
+    return Math.max(0, dailyBudget - used);
+  }
+
+
+  /**
+   * Returning the number of requests waiting to be sent.
+   *
+   * @return queued request count.
+   */
+  public int getQueuedCount() {
+    return queue.size();
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> assetSymbols) {
+    return getQuotesAsync(assetSymbols, QuotePriority.INTERACTIVE);
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> assetSymbols,
+      QuotePriority priority) {
+
+    if (assetSymbols.isEmpty()) {
+      return CompletableFuture.completedFuture(List.of());
+    }
+    if (closed) {
+      return CompletableFuture.failedFuture(closedFailure());
+    }
+
+    // refuse at once rather than queue something that will not be allowed
+    if (!mayUseBudget(priority)) {
+      return CompletableFuture.failedFuture(refusal(priority));
+    }
+
+    Task task = new Task(assetSymbols, priority, sequence.getAndIncrement());
+    queue.add(task);
+    // closed while queuing, nobody is left to send it
+    if (closed && queue.remove(task)) {
+      task.result.completeExceptionally(closedFailure());
+    }
+    return task.result;
+  }
+
+
+  /**
+   * Method stops the dispatcher thread. Requests still queued are failed and later ones are
+   * refused.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    dispatcher.interrupt();
+    Task task;
+    while ((task = queue.poll()) != null) {
+      task.result.completeExceptionally(closedFailure());
+    }
+  }
+
+
+  /**
+   * Method run by the dispatcher thread. Takes the most urgent request, waits for a token and
+   * sends it if the budget still allows.
+   */
+  private void dispatch() {
+    while (true) {
+      Task task;
+      try {
+        task = queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      try {
+        awaitToken();
+      } catch (InterruptedException e) {
+        task.result.completeExceptionally(closedFailure());
+        return;
+      }
+      if (closed) {
+        task.result.completeExceptionally(closedFailure());
+        return;
+      }
+
+      if (!chargeBudget(task.priority)) {
+        task.result.completeExceptionally(refusal(task.priority));
+        continue;
+      }
+
+      try {
+        delegate.getQuotesAsync(task.symbols, task.priority).whenComplete((quotes, failure) -> {
+          if (failure != null) {
+            task.result.completeExceptionally(failure);
+          } else {
+            task.result.complete(quotes);
+          }
+        });
+      } catch (RuntimeException e) {
+        task.result.completeExceptionally(e);
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to wait until the token bucket allows one more request and take its token.
+   *
+   * @throws InterruptedException if the dispatcher is stopped while waiting.
+   */
+  private void awaitToken() throws InterruptedException {
+    while (true) {
+      long waitNanos;
+      synchronized (this) {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens >= 1) {
+          tokens -= 1;
+          return;
+        }
+        waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+      }
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+
+  /**
+   * Helper method to check whether the class may still spend from the budget.
+   *
+   * @param priority priority class.
+   * @return true if a request of this class would be allowed now.
+   */
+  private synchronized boolean mayUseBudget(QuotePriority priority) {
+    rollDay();
+    return dailyBudget - used > dailyBudget * reserves.get(priority);
+  }
+
+
+  /**
+   * Helper method to charge one request against the budget if the class may still spend.
+   *
+   * @param priority priority class.
+   * @return true if the request was charged and may be sent.
+   */
+  private synchronized boolean chargeBudget(QuotePriority priority) {
+    if (!mayUseBudget(priority)) {
+      return false;
+    }
+    used++;
+    return true;
+  }
+
+
+  /**
+   * Helper method to start counting a new budget once the day has changed. Must be called
+   * while holding the lock of this object.
+   */
+  private void rollDay() {
+    LocalDate today = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+    if (!today.equals(budgetDay)) {
+      budgetDay = today;
+      used = 0;
+    }
+  }
+
+
+  /**
+   * Helper method to describe a refused request.
+   *
+   * @param priority priority class of the request.
+   * @return exception to fail the request with.
+   */
+  private QuotaExceededException refusal(QuotePriority priority) {
+    return new QuotaExceededException("Daily quote budget left is reserved, "
+        + priority + " request not sent");
+  }
+
+
+  /**
+   * Helper method to describe a request failed because the scheduler is closed.
+   *
+   * @return exception to fail the request with.
+   */
+  private static IOException closedFailure() {
+    return new IOException("Quote scheduler is closed");
+  }
+
+
+  /**
+   * One queued request.
+   */
+  private static final class Task implements Comparable<Task> {
+
+    /**
+     * Symbols to request.
+     */
+    private final List<String> symbols;
+
+    /**
+     * Priority class of the request.
+     */
+    private final QuotePriority priority;
+
+    /**
+     * Arrival order among requests of the same priority.
+     */
+    private final long sequence;
+
+    /**
+     * Completed with the quotes once the request has been answered.
+     */
+    private final CompletableFuture<List<AssetQuote>> result = new CompletableFuture<>();
+
+    /**
+     * Constructor to instantiate Task object.
+     *
+     * @param symbols  symbols to request.
+     * @param priority priority class of the request.
+     * @param sequence arrival order among requests of the same priority.
+     */
+    private Task(List<String> symbols, QuotePriority priority, long sequence) {
+      this.symbols = symbols;
+      this.priority = priority;
+      this.sequence = sequence;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int compareTo(Task other) {
+      int byPriority = priority.compareTo(other.priority);
+      return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+    }
+  }
+}
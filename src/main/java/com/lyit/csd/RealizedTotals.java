@@ -0,0 +1,85 @@
+package com.lyit.csd;
+
+/**
+ * RealizedTotals class holds what a set of sales realized: the profit or loss against the
+ * purchase price, the amount sold and the number of sales.
+ */
+public final class RealizedTotals {
+
+  /**
+   * Totals of no sales.
+   */
+  public static final RealizedTotals NONE = new RealizedTotals(0, 0, 0);
+
+  /**
+   * Realized profit (positive) or loss (negative) in USD.
+   */
+  private final double profitLoss;
+
+  /**
+   * Amount of the assets sold.
+   */
+  private final double amount;
+
+  /**
+   * Number of sales.
+   */
+  private final long count;
+
+
+  /**
+   * Constructor to instantiate RealizedTotals object.
+   *
+   * @param profitLoss realized profit or loss in USD.
+   * @param amount     amount of the assets sold.
+   * @param count      number of sales.
+   */
+  public RealizedTotals(double profitLoss, double amount, long count) {
+    this.profitLoss = profitLoss;
+    this.amount = amount;
+    this.count = count;
+  }
+
+
+  /**
+   * Returning the realized profit or loss.
+   *
+   * @return profit (positive) or loss (negative) in USD.
+   */
+  public double getProfitLoss() {
+    return profitLoss;
+  }
+
+
+  /**
+   * Returning the amount sold.
+   *
+   * @return amount of the assets sold.
+   */
+  public double getAmount() {
+    return amount;
+  }
+
+
+  /**
+   * Returning the number of sales.
+   *
+   * @return number of sales.
+   */
+  public long getCount() {
+    return count;
+  }
+
+
+  /**
+   * @inheritDoc
+   */
+  @Override
+  public String toString() {
+    return "RealizedTotals{" +
+        "profitLoss=" + profitLoss +
+        ", amount=" + amount +
+        ", count=" + count +
+        '}';
+  }
+}
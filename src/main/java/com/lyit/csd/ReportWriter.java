@@ -0,0 +1,158 @@
+package com.lyit.csd;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ReportWriter class streams report text to an Appendable, a StringBuilder, Writer or
+ * PrintStream, as it is produced, so a report never has to be held whole. Numbers are written
+ * digit by digit through a buffer the writer reuses, money to the micro dollar and amounts to
+ * the hundred millionth of a unit with trailing zeros left out, so writing a row allocates
+ * nothing. Not thread safe, one writer per report.
+ */
+public final class ReportWriter {
+
+  /**
+   * Longest number written, sign, 19 digits and a decimal point.
+   */
+  private static final int MAX_LENGTH = 21;
+
+  /**
+   * Where the report goes.
+   */
+  private final Appendable out;
+
+  /**
+   * Buffer numbers are written into, right to left.
+   */
+  private final char[] digits = new char[MAX_LENGTH];
+
+
+  /**
+   * Constructor to instantiate ReportWriter object.
+   *
+   * @param out where the report goes.
+   */
+  public ReportWriter(Appendable out) {
+    this.out = out;
+  }
+
+
+  /**
+   * Method creates a writer encoding the report as UTF-8 to a stream. The writer buffers, call
+   * flush once the report is written.
+   *
+   * @param out where the report goes.
+   * @return the writer.
+   */
+  public static ReportWriter forStream(OutputStream out) {
+    return new ReportWriter(new BufferedWriter(
+        new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+  }
+
+
+  /**
+   * Method writes text.
+   *
+   * @param text the text.
+   * @return this writer.
+   * @throws IOException if the text can not be written.
+   */
+  public ReportWriter text(CharSequence text) throws IOException {
+    out.append(text);
+    return this;
+  }
+
+
+  /**
+   * Method writes a whole number.
+   *
+   * @param value the number.
+   * @return this writer.
+   * @throws IOException if the number can not be written.
+   */
+  public ReportWriter number(long value) throws IOException {
+    return decimal(value, 0);
+  }
+
+
+  /**
+   * Method writes an amount of money.
+   *
+   * @param usd amount in USD, written to the micro dollar.
+   * @return this writer.
+   * @throws IOException if the amount can not be written.
+   */
+  public ReportWriter money(double usd) throws IOException {
+    return decimal(Money.toMicros(usd), 6);
+  }
+
+
+  /**
+   * Method writes an amount of an asset.
+   *
+   * @param amount the amount, written to the hundred millionth of a unit.
+   * @return this writer.
+   * @throws IOException if the amount can not be written.
+   */
+  public ReportWriter amount(double amount) throws IOException {
+    return decimal(Money.toUnits(amount), 8);
+  }
+
+
+  /**
+   * Method writes a scaled number as a decimal, trailing zeros of the fraction left out but one.
+   *
+   * @param scaled the number times ten to the power of places.
+   * @param places number of decimal places kept in the number, 0 to 18.
+   * @return this writer.
+   * @throws IOException if the number can not be written.
+   */
+  public ReportWriter decimal(long scaled, int places) throws IOException {
+    if (places < 0 || places > 18) {
+      throw new IllegalArgumentException("Decimal places must be between 0 and 18: " + places);
+    }
+    int position = MAX_LENGTH;
+    // digits are taken off as negative numbers, Long.MIN_VALUE has no positive counterpart
+    long rest = scaled > 0 ? -scaled : scaled;
+    if (places > 0) {
+      boolean trailing = true;
+      for (int i = 0; i < places; i++) {
+        char digit = (char) ('0' - rest % 10);
+        rest /= 10;
+        if (!trailing || digit != '0' || i == places - 1) {
+          digits[--position] = digit;
+          trailing = false;
+        }
+      }
+      digits[--position] = '.';
+    }
+    do {
+      digits[--position] = (char) ('0' - rest % 10);
+      rest /= 10;
+    } while (rest != 0);
+    if (scaled < 0) {
+      digits[--position] = '-';
+    }
+    for (int i = position; i < MAX_LENGTH; i++) {
+      out.append(digits[i]);
+    }
+    return this;
+  }
+
+
+  /**
+   * Method flushes the report through to where it goes, if it buffers.
+   *
+   * @throws IOException if the report can not be flushed.
+   */
+  public void flush() throws IOException {
+    if (out instanceof Flushable flushable) {
+      flushable.flush();
+    }
+  }
+}
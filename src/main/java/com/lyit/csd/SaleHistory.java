@@ -0,0 +1,342 @@
+package com.lyit.csd;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * SaleHistory class holds sales ordered by time together with running totals of what they
+ * realized per UTC day. The day totals are kept in Fenwick trees (binary indexed trees), so the
+ * totals over any time range take logarithmic time: whole days come from the trees and only the
+ * sales on the partly covered first and last day are visited. The trees hold one bucket per day
+ * with sales rather than one per day of the span, so an odd timestamp far from the others costs
+ * a single bucket. Days after the last one are appended, an earlier day rebuilds the trees.
+ */
+class SaleHistory {
+
+  /**
+   * Seconds in one bucket.
+   */
+  private static final long DAY = 86_400;
+
+  /**
+   * Sales ordered by time.
+   */
+  private final TreeSet<SoldAsset> byTime = new TreeSet<>(Portfolio.SALES_BY_TIME);
+
+  /**
+   * Days (days since epoch) with a bucket, ascending. Bucket i of the trees is days[i - 1].
+   */
+  private long[] days = new long[0];
+
+  /**
+   * Number of days with a bucket.
+   */
+  private int dayCount;
+
+  /**
+   * Fenwick tree of realized profit and loss per day, in 1e-6 USD. Index 0 is unused.
+   */
+  private long[] profitLoss = new long[1];
+
+  /**
+   * Fenwick tree of amount sold per day, in 1e-8 units. Index 0 is unused.
+   */
+  private long[] amount = new long[1];
+
+  /**
+   * Fenwick tree of number of sales per day. Index 0 is unused.
+   */
+  private long[] count = new long[1];
+
+
+  /**
+   * Returning whether any sale is held.
+   *
+   * @return true if no sale is held.
+   */
+  boolean isEmpty() {
+    return byTime.isEmpty();
+  }
+
+
+  /**
+   * Method adds a sale.
+   *
+   * @param sale sale to add.
+   */
+  void add(SoldAsset sale) {
+    if (byTime.contains(sale)) {
+      return;
+    }
+    // make room first, a rebuild counts the sales already held
+    long day = Math.floorDiv(sale.getTimeStamp(), DAY);
+    fit(day);
+    byTime.add(sale);
+    update(day, sale, 1);
+  }
+
+
+  /**
+   * Method removes a sale.
+   *
+   * @param sale sale to remove.
+   */
+  void remove(SoldAsset sale) {
+    if (byTime.remove(sale)) {
+      update(Math.floorDiv(sale.getTimeStamp(), DAY), sale, -1);
+    }
+  }
+
+
+  /**
+   * Returning the sales made within the time range, oldest first.
+   *
+   * @param startTimeStamp start of the range, inclusive.
+   * @param endTimeStamp   end of the range, inclusive.
+   * @return read only view of the sales in the range.
+   */
+  NavigableSet<SoldAsset> between(long startTimeStamp, long endTimeStamp) {
+    if (startTimeStamp > endTimeStamp) {
+      return Collections.emptyNavigableSet();
+    }
+    return Collections.unmodifiableNavigableSet(byTime.subSet(
+        probe(startTimeStamp, Long.MIN_VALUE), true, probe(endTimeStamp, Long.MAX_VALUE), true));
+  }
+
+
+  /**
+   * Returning what the sales made within the time range realized.
+   *
+   * @param startTimeStamp start of the range, inclusive.
+   * @param endTimeStamp   end of the range, inclusive.
+   * @return realized totals of the range.
+   */
+  RealizedTotals realizedBetween(long startTimeStamp, long endTimeStamp) {
+    if (startTimeStamp > endTimeStamp || byTime.isEmpty()) {
+      return RealizedTotals.NONE;
+    }
+
+    // whole days covered by the range come from the trees
+    long firstDay = Math.floorDiv(startTimeStamp, DAY);
+    long lastDay = Math.floorDiv(endTimeStamp, DAY);
+    long firstWhole = startTimeStamp == firstDay * DAY ? firstDay : firstDay + 1;
+    long lastWhole = endTimeStamp == lastDay * DAY + DAY - 1 ? lastDay : lastDay - 1;
+
+    long[] totals = new long[3];
+    if (firstWhole <= lastWhole) {
+      addRange(totals, firstWhole, lastWhole);
+      // sales on the partly covered days are visited one by one
+      if (firstWhole > firstDay) {
+        addSales(totals, between(startTimeStamp, firstWhole * DAY - 1));
+      }
+      if (lastWhole < lastDay) {
+        addSales(totals, between((lastWhole + 1) * DAY, endTimeStamp));
+      }
+    } else {
+      addSales(totals, between(startTimeStamp, endTimeStamp));
+    }
+
+    return new RealizedTotals(Money.toUsd(totals[0]), Money.toAmount(totals[1]), totals[2]);
+  }
+
+
+  /**
+   * Helper method to add the tree totals of the days to the running totals.
+   *
+   * @param totals   profit and loss, amount and count to add to.
+   * @param firstDay first day, inclusive.
+   * @param lastDay  last day, inclusive.
+   */
+  private void addRange(long[] totals, long firstDay, long lastDay) {
+    int from = lowerBound(firstDay);
+    int to = lowerBound(lastDay + 1);
+    if (from >= to) {
+      return;
+    }
+    totals[0] += prefix(profitLoss, to) - prefix(profitLoss, from);
+    totals[1] += prefix(amount, to) - prefix(amount, from);
+    totals[2] += prefix(count, to) - prefix(count, from);
+  }
+
+
+  /**
+   * Helper method to add the sales one by one to the running totals.
+   *
+   * @param totals profit and loss, amount and count to add to.
+   * @param sales  sales to add.
+   */
+  private static void addSales(long[] totals, Iterable<SoldAsset> sales) {
+    for (SoldAsset sale : sales) {
+      totals[0] += scaledProfitLoss(sale);
+      totals[1] += scaledAmount(sale);
+      totals[2]++;
+    }
+  }
+
+
+  /**
+   * Helper method to add a sale to the trees or take it out of them.
+   *
+   * @param day  day of the sale, must have a bucket.
+   * @param sale the sale.
+   * @param sign 1 to add the sale, -1 to take it out.
+   */
+  private void update(long day, SoldAsset sale, int sign) {
+    int index = Arrays.binarySearch(days, 0, dayCount, day) + 1;
+    long pl = sign * scaledProfitLoss(sale);
+    long sold = sign * scaledAmount(sale);
+    for (int i = index; i <= capacity(); i += i & -i) {
+      profitLoss[i] += pl;
+      amount[i] += sold;
+      count[i] += sign;
+    }
+  }
+
+
+  /**
+   * Helper method to give the day a bucket if it has none.
+   *
+   * @param day day that must have a bucket.
+   */
+  private void fit(long day) {
+    int position = Arrays.binarySearch(days, 0, dayCount, day);
+    if (position >= 0) {
+      return;
+    }
+    position = -position - 1;
+    if (dayCount == capacity()) {
+      grow();
+    }
+    if (position == dayCount) {
+      days[dayCount++] = day;
+      return;
+    }
+    // an earlier day moves the buckets after it, the trees are counted again
+    System.arraycopy(days, position, days, position + 1, dayCount - position);
+    days[position] = day;
+    dayCount++;
+    rebuild();
+  }
+
+
+  /**
+   * Helper method to double the number of buckets. A node of a Fenwick tree with a power of two
+   * size only covers buckets below it, so the existing nodes stay valid, the new top node holds
+   * the grand total and every other new node starts empty.
+   */
+  private void grow() {
+    int size = capacity();
+    int newSize = size == 0 ? 1 : size * 2;
+    days = Arrays.copyOf(days, newSize);
+    profitLoss = grown(profitLoss, newSize);
+    amount = grown(amount, newSize);
+    count = grown(count, newSize);
+  }
+
+
+  /**
+   * Helper method to copy one tree into a larger power of two size.
+   *
+   * @param tree    tree to copy.
+   * @param newSize number of buckets of the copy.
+   * @return the larger tree.
+   */
+  private static long[] grown(long[] tree, int newSize) {
+    long total = prefix(tree, tree.length - 1);
+    long[] copy = new long[newSize + 1];
+    System.arraycopy(tree, 0, copy, 0, tree.length);
+    copy[newSize] = total;
+    return copy;
+  }
+
+
+  /**
+   * Helper method to count the trees again from the sales held.
+   */
+  private void rebuild() {
+    int size = capacity();
+    profitLoss = new long[size + 1];
+    amount = new long[size + 1];
+    count = new long[size + 1];
+    for (SoldAsset sale : byTime) {
+      update(Math.floorDiv(sale.getTimeStamp(), DAY), sale, 1);
+    }
+  }
+
+
+  /**
+   * Helper method to find the first bucket of a day or a later one.
+   *
+   * @param day the day.
+   * @return number of buckets before the day.
+   */
+  private int lowerBound(long day) {
+    int position = Arrays.binarySearch(days, 0, dayCount, day);
+    return position >= 0 ? position : -position - 1;
+  }
+
+
+  /**
+   * Helper method to return the number of buckets.
+   *
+   * @return number of days the trees have room for.
+   */
+  private int capacity() {
+    return profitLoss.length - 1;
+  }
+
+
+  /**
+   * Helper method to sum the first buckets of a tree.
+   *
+   * @param tree  the tree.
+   * @param index number of buckets to sum.
+   * @return sum of the buckets.
+   */
+  private static long prefix(long[] tree, int index) {
+    long sum = 0;
+    for (int i = index; i > 0; i -= i & -i) {
+      sum += tree[i];
+    }
+    return sum;
+  }
+
+
+  /**
+   * Helper method to return what a sale realized.
+   *
+   * @param sale the sale.
+   * @return profit or loss in 1e-6 USD.
+   */
+  private static long scaledProfitLoss(SoldAsset sale) {
+    return Money.cost(sale.getPriceSoldMicros() - sale.getAvgPurchasePriceMicros(),
+        sale.getAmountUnits());
+  }
+
+
+  /**
+   * Helper method to return the amount of a sale.
+   *
+   * @param sale the sale.
+   * @return amount sold in 1e-8 units.
+   */
+  private static long scaledAmount(SoldAsset sale) {
+    return sale.getAmountUnits();
+  }
+
+
+  /**
+   * Helper method to create a sale used only to mark a position in the time index.
+   *
+   * @param timeStamp time of the position.
+   * @param saleId    sale identifier of the position.
+   * @return sale that is never held.
+   */
+  private static SoldAsset probe(long timeStamp, long saleId) {
+    SoldAsset probe = new SoldAsset(null, null, null, timeStamp, 0, 0, 0);
+    probe.setSaleId(saleId);
+    return probe;
+  }
+}
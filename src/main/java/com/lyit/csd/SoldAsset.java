@@ -27,19 +27,24 @@ public class SoldAsset {
   private long timeStamp;
 
   /**
-   * The average purchase price of the asset.
+   * The average purchase price of the asset, in micro dollars.
    */
-  private double avgPurchasePrice;
+  private long avgPurchasePrice;
 
   /**
-   * The value the asset is sold for.
+   * The value the asset is sold for, in micro dollars.
    */
-  private double priceSold;
+  private long priceSold;
 
   /**
-   * The number/unit of the asset (held or bought).
+   * The number/unit of the asset (held or bought), in hundred millionths of a unit.
    */
-  private double amount;
+  private long amount;
+
+  /**
+   * Identifier of this sale within the portfolio holding it, 0 until the sale is recorded.
+   */
+  private long saleId;
 
 
   /**
@@ -59,9 +64,31 @@ public class SoldAsset {
     this.assetFullName = assetFullName;
     this.assetType = assetType;
     this.timeStamp = timeStamp;
-    this.avgPurchasePrice = avgPurchasePrice;
-    this.priceSold = priceSold;
-    this.amount = amount;
+    this.avgPurchasePrice = Money.toMicros(avgPurchasePrice);
+    this.priceSold = Money.toMicros(priceSold);
+    this.amount = Money.toUnits(amount);
+  }
+
+
+  /**
+   * Creating a sale whose prices and amount are already scaled, taken over exactly.
+   *
+   * @param assetSymbol symbol of asset sold
+   * @param assetFullName full name of asset sold
+   * @param assetType type of the asset sold
+   * @param timeStamp timestamp for the transaction
+   * @param avgPurchasePriceMicros average purchase price in micro dollars, see Money
+   * @param priceSoldMicros price for transaction in micro dollars
+   * @param amountUnits amount sold in hundred millionths of a unit
+   * @return the sale.
+   */
+  static SoldAsset ofUnits(String assetSymbol, String assetFullName, String assetType,
+      long timeStamp, long avgPurchasePriceMicros, long priceSoldMicros, long amountUnits) {
+    SoldAsset sale = new SoldAsset(assetSymbol, assetFullName, assetType, timeStamp, 0, 0, 0);
+    sale.avgPurchasePrice = avgPurchasePriceMicros;
+    sale.priceSold = priceSoldMicros;
+    sale.amount = amountUnits;
+    return sale;
   }
 
 
@@ -111,6 +138,16 @@ public class SoldAsset {
    * @return the average asking price of the asset.
    */
   public double getAvgPurchasePrice() {
+    return Money.toUsd(avgPurchasePrice);
+  }
+
+
+  /**
+   * Returning the average price in micro dollars.
+   *
+   * @return the average asking price of the asset, see Money.
+   */
+  public long getAvgPurchasePriceMicros() {
     return avgPurchasePrice;
   }
 
@@ -121,6 +158,16 @@ public class SoldAsset {
    * @return the amount the asset was sold for.
    */
   public double getPriceSold() {
+    return Money.toUsd(priceSold);
+  }
+
+
+  /**
+   * Returning the sold price in micro dollars.
+   *
+   * @return the amount the asset was sold for, see Money.
+   */
+  public long getPriceSoldMicros() {
     return priceSold;
   }
 
@@ -131,6 +178,36 @@ public class SoldAsset {
    * @return the amount of the relevant asset.
    */
   public double getAmount() {
+    return Money.toAmount(amount);
+  }
+
+
+  /**
+   * Returning the amount in hundred millionths of a unit.
+   *
+   * @return the amount of the relevant asset, see Money.
+   */
+  public long getAmountUnits() {
     return amount;
   }
+
+
+  /**
+   * Returning the sale identifier.
+   *
+   * @return the identifier given to this sale by the portfolio holding it.
+   */
+  public long getSaleId() {
+    return saleId;
+  }
+
+
+  /**
+   * Setting the sale identifier. Done by the portfolio when the sale is recorded.
+   *
+   * @param saleId the identifier of this sale within the portfolio.
+   */
+  void setSaleId(long saleId) {
+    this.saleId = saleId;
+  }
 }
@@ -0,0 +1,293 @@
+package com.lyit.csd;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * SymbolLots class holds every lot (purchase) of one asset symbol in a portfolio, that is the
+ * position in the symbol. The lots are kept ordered both by the price they were bought at and by
+ * purchase time, so a sale finds the next lot for any LotSelection in logarithmic time without
+ * sorting, and a specific lot is found by its identifier. Total amount and cost of the position
+ * are kept up to date as lots come and go, so reading them does not walk the lots.
+ */
+public class SymbolLots {
+
+  /**
+   * Orders lots by purchase price, lot identifier keeps lots with the same price apart.
+   */
+  static final Comparator<Asset> BY_COST =
+      Comparator.comparingLong(Asset::getPriceBoughtMicros).thenComparingLong(Asset::getLotId);
+
+  /**
+   * Orders lots by purchase time, lot identifier keeps lots bought at the same time apart.
+   */
+  static final Comparator<Asset> BY_TIME =
+      Comparator.comparingLong(Asset::getTimeStamp).thenComparingLong(Asset::getLotId);
+
+  /**
+   * The symbol of the asset.
+   */
+  private final String assetSymbol;
+
+  /**
+   * Lots ordered from lowest to highest purchase price.
+   */
+  private final TreeSet<Asset> byCost = new TreeSet<>(BY_COST);
+
+  /**
+   * Lots ordered from oldest to newest purchase.
+   */
+  private final TreeSet<Asset> byTime = new TreeSet<>(BY_TIME);
+
+  /**
+   * Lots by lot identifier.
+   */
+  private final Map<Long, Asset> byId = new HashMap<>();
+
+  /**
+   * Copies of the lots ordered by purchase time, shared with the views taken of the position.
+   */
+  private LotTimeline timeline = LotTimeline.EMPTY;
+
+  /**
+   * Amount held over all lots, in 1e-8 units.
+   */
+  private long amount;
+
+  /**
+   * Amount times purchase price summed over all lots, in 1e-6 USD.
+   */
+  private long cost;
+
+
+  /**
+   * Constructor to instantiate SymbolLots object.
+   *
+   * @param assetSymbol the symbol of the asset.
+   */
+  public SymbolLots(String assetSymbol) {
+    this.assetSymbol = assetSymbol;
+  }
+
+
+  /**
+   * Returning asset symbol.
+   *
+   * @return the symbol the lots belong to.
+   */
+  public String getAssetSymbol() {
+    return assetSymbol;
+  }
+
+
+  /**
+   * Returning the number of lots.
+   *
+   * @return number of lots held.
+   */
+  public int size() {
+    return byCost.size();
+  }
+
+
+  /**
+   * Returning whether any lot is held.
+   *
+   * @return true if no lot is held.
+   */
+  public boolean isEmpty() {
+    return byCost.isEmpty();
+  }
+
+
+  /**
+   * Returning the lot bought at the lowest price.
+   *
+   * @return cheapest lot.
+   */
+  public Asset lowestCost() {
+    return byCost.first();
+  }
+
+
+  /**
+   * Returning the lot to sell next with the given selection.
+   *
+   * @param selection order in which lots are used up.
+   * @return next lot to sell.
+   */
+  public Asset next(LotSelection selection) {
+    return switch (selection) {
+      case FIFO -> byTime.first();
+      case LIFO -> byTime.last();
+      case HIGHEST_COST -> byCost.last();
+      case LOWEST_COST -> byCost.first();
+    };
+  }
+
+
+  /**
+   * Returning the lot with the given identifier.
+   *
+   * @param lotId identifier of the lot.
+   * @return the lot, null if it is not held.
+   */
+  public Asset getLot(long lotId) {
+    return byId.get(lotId);
+  }
+
+
+  /**
+   * Returning the lots from oldest to newest purchase.
+   *
+   * @return read only view of the lots.
+   */
+  public NavigableSet<Asset> byTime() {
+    return Collections.unmodifiableNavigableSet(byTime);
+  }
+
+
+  /**
+   * Returning the lots bought within the time range, from oldest to newest purchase. Only the
+   * lots in the range are visited.
+   *
+   * @param startTimeStamp start of the range, inclusive.
+   * @param endTimeStamp   end of the range, inclusive.
+   * @return read only view of the lots in the range.
+   */
+  public NavigableSet<Asset> purchasedBetween(long startTimeStamp, long endTimeStamp) {
+    if (startTimeStamp > endTimeStamp) {
+      return Collections.emptyNavigableSet();
+    }
+    return Collections.unmodifiableNavigableSet(byTime.subSet(
+        probe(startTimeStamp, Long.MIN_VALUE), true, probe(endTimeStamp, Long.MAX_VALUE), true));
+  }
+
+
+  /**
+   * Returning copies of the lots as they are now, from oldest to newest purchase. Later changes
+   * of the lots make a new timeline, the returned one is never changed.
+   *
+   * @return the lot timeline.
+   */
+  LotTimeline timeline() {
+    return timeline;
+  }
+
+
+  /**
+   * Returning the lots from lowest to highest purchase price.
+   *
+   * @return read only view of the lots.
+   */
+  public NavigableSet<Asset> byCost() {
+    return Collections.unmodifiableNavigableSet(byCost);
+  }
+
+
+  /**
+   * Returning the amount held over all lots.
+   *
+   * @return total amount of the asset.
+   */
+  public double getAmount() {
+    return Money.toAmount(amount);
+  }
+
+
+  /**
+   * Returning what was paid for the amount held, each lot at the price it was bought at.
+   *
+   * @return cost basis of the position in USD.
+   */
+  public double getCostBasis() {
+    return Money.toUsd(cost);
+  }
+
+
+  /**
+   * Returning the purchase price of the lots weighted by the amount left in each lot.
+   *
+   * @return average purchase price, 0 if nothing is held.
+   */
+  public double getAveragePriceBought() {
+    return amount == 0 ? 0 : getCostBasis() / getAmount();
+  }
+
+
+  /**
+   * Method adds a lot.
+   *
+   * @param asset lot to add.
+   */
+  void add(Asset asset) {
+    if (byCost.add(asset)) {
+      byTime.add(asset);
+      byId.put(asset.getLotId(), asset);
+      timeline = timeline.with(asset);
+      count(asset, 1);
+    }
+  }
+
+
+  /**
+   * Method removes a lot.
+   *
+   * @param asset lot to remove.
+   */
+  void remove(Asset asset) {
+    if (byCost.remove(asset)) {
+      byTime.remove(asset);
+      byId.remove(asset.getLotId());
+      timeline = timeline.without(asset);
+      count(asset, -1);
+    }
+  }
+
+
+  /**
+   * Method changes the amount left in a lot held here.
+   *
+   * @param asset  lot to change.
+   * @param amountUnits new amount of the lot in hundred millionths of a unit.
+   */
+  void setAmount(Asset asset, long amountUnits) {
+    if (byId.get(asset.getLotId()) != asset) {
+      throw new IllegalArgumentException("Lot " + asset.getLotId() + " is not held");
+    }
+    count(asset, -1);
+    asset.setAmountUnits(amountUnits);
+    timeline = timeline.with(asset);
+    count(asset, 1);
+  }
+
+
+  /**
+   * Helper method to create a lot used only to mark a position in the time index.
+   *
+   * @param timeStamp purchase time of the position.
+   * @param lotId     lot identifier of the position.
+   * @return lot that is never held.
+   */
+  private static Asset probe(long timeStamp, long lotId) {
+    Asset probe = new Asset(null, null, null, timeStamp, 0, 0);
+    probe.setLotId(lotId);
+    return probe;
+  }
+
+
+  /**
+   * Helper method to add a lot to the totals or take it out of them.
+   *
+   * @param asset lot to count.
+   * @param sign  1 to add the lot, -1 to take it out.
+   */
+  private void count(Asset asset, int sign) {
+    amount += sign * asset.getAmountUnits();
+    cost += sign * Money.cost(asset.getPriceBoughtMicros(), asset.getAmountUnits());
+  }
+}
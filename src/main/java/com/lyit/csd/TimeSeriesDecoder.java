@@ -0,0 +1,301 @@
+package com.lyit.csd;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * TimeSeriesDecoder class reads the blocks written by TimeSeriesEncoder from a stream. Blocks
+ * are visited one at a time with nextBlock; the header of the current block tells its time span,
+ * so blocks before a given time are skipped without being decoded, and a block is decoded as a
+ * whole into primitive arrays.
+ */
+public class TimeSeriesDecoder implements Closeable {
+
+  /**
+   * Stream the blocks are read from.
+   */
+  private final DataInputStream in;
+
+  /**
+   * Payload of the current block.
+   */
+  private byte[] payload = new byte[4096];
+
+  /**
+   * Payload length of the current block, -1 if there is no current block.
+   */
+  private int length = -1;
+
+  /**
+   * Whether the payload of the current block was read from the stream.
+   */
+  private boolean loaded;
+
+  /**
+   * Number of points in the current block.
+   */
+  private int count;
+
+  /**
+   * First timestamp of the current block.
+   */
+  private long firstTime;
+
+  /**
+   * Last timestamp of the current block.
+   */
+  private long lastTime;
+
+
+  /**
+   * Constructor to instantiate TimeSeriesDecoder object.
+   *
+   * @param in stream the blocks are read from.
+   */
+  public TimeSeriesDecoder(InputStream in) {
+    this.in = new DataInputStream(in);
+  }
+
+
+  /**
+   * Method moves to the next block, skipping the payload of the current one if it was not
+   * decoded.
+   *
+   * @return true if there is a next block, false at the end of the stream.
+   * @throws IOException if the stream fails or ends within a block.
+   */
+  public boolean nextBlock() throws IOException {
+    if (length >= 0 && !loaded) {
+      in.skipNBytes(length);
+    }
+    int next = in.read();
+    if (next < 0) {
+      length = -1;
+      return false;
+    }
+    length = (next << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8)
+        | in.readUnsignedByte();
+    count = in.readInt();
+    firstTime = in.readLong();
+    lastTime = in.readLong();
+    loaded = false;
+    return true;
+  }
+
+
+  /**
+   * Method moves to the first block holding points at or after the given time, skipping the
+   * blocks before it without decoding them.
+   *
+   * @param time UNIX timestamp to seek to.
+   * @return true if such a block was found, false at the end of the stream.
+   * @throws IOException if the stream fails or ends within a block.
+   */
+  public boolean seek(long time) throws IOException {
+    if (length >= 0 && lastTime >= time) {
+      return true;
+    }
+    while (nextBlock()) {
+      if (lastTime >= time) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  /**
+   * Returning the number of points in the current block.
+   *
+   * @return number of points.
+   */
+  public int getCount() {
+    return count;
+  }
+
+
+  /**
+   * Returning the first timestamp of the current block.
+   *
+   * @return UNIX timestamp of the first point.
+   */
+  public long getFirstTime() {
+    return firstTime;
+  }
+
+
+  /**
+   * Returning the last timestamp of the current block.
+   *
+   * @return UNIX timestamp of the last point.
+   */
+  public long getLastTime() {
+    return lastTime;
+  }
+
+
+  /**
+   * Method decodes the current block into the arrays, which must have room for getCount points
+   * from the offset.
+   *
+   * @param times  array the timestamps are written to.
+   * @param values array the prices are written to.
+   * @param offset position the first point is written at.
+   * @return number of points written.
+   * @throws IOException if the stream fails or ends within a block.
+   */
+  public int decode(long[] times, double[] values, int offset) throws IOException {
+    if (length < 0) {
+      throw new IllegalStateException("No current block");
+    }
+    if (!loaded) {
+      if (payload.length < length) {
+        payload = new byte[Math.max(length, payload.length * 2)];
+      }
+      in.readFully(payload, 0, length);
+      loaded = true;
+    }
+
+    BitReader bits = new BitReader(payload, length);
+    long time = firstTime;
+    long delta = 0;
+    long value = bits.read(64);
+    int leading = 0;
+    int trailing = 0;
+    times[offset] = time;
+    values[offset] = Double.longBitsToDouble(value);
+
+    for (int i = 1; i < count; i++) {
+      delta += readDeltaOfDelta(bits);
+      time += delta;
+
+      if (bits.read(1) == 1) {
+        if (bits.read(1) == 1) {
+          leading = (int) bits.read(6);
+          trailing = 64 - leading - ((int) bits.read(6) + 1);
+        }
+        value ^= bits.read(64 - leading - trailing) << trailing;
+      }
+
+      times[offset + i] = time;
+      values[offset + i] = Double.longBitsToDouble(value);
+    }
+    return count;
+  }
+
+
+  /**
+   * Method closes the stream.
+   *
+   * @throws IOException if the stream cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+
+  /**
+   * Helper method to read the difference between two deltas.
+   *
+   * @param bits the payload.
+   * @return difference between the delta and the previous delta.
+   * @throws EOFException if the payload ends early.
+   */
+  private static long readDeltaOfDelta(BitReader bits) throws EOFException {
+    if (bits.read(1) == 0) {
+      return 0;
+    }
+    if (bits.read(1) == 0) {
+      return signed(bits.read(7), 7);
+    }
+    if (bits.read(1) == 0) {
+      return signed(bits.read(9), 9);
+    }
+    if (bits.read(1) == 0) {
+      return signed(bits.read(12), 12);
+    }
+    return bits.read(64);
+  }
+
+
+  /**
+   * Helper method to extend the sign of a two's complement value.
+   *
+   * @param value  the lowest bits of the value.
+   * @param length number of bits.
+   * @return the value.
+   */
+  private static long signed(long value, int length) {
+    return (value << (64 - length)) >> (64 - length);
+  }
+
+
+  /**
+   * BitReader class reads bits, most significant first, from a byte array.
+   */
+  private static final class BitReader {
+
+    /**
+     * Bytes to read.
+     */
+    private final byte[] data;
+
+    /**
+     * Number of bytes to read.
+     */
+    private final int size;
+
+    /**
+     * Position of the current byte.
+     */
+    private int position;
+
+    /**
+     * Number of bits of the current byte already read.
+     */
+    private int used;
+
+
+    /**
+     * Constructor to instantiate BitReader object.
+     *
+     * @param data bytes to read.
+     * @param size number of bytes to read.
+     */
+    BitReader(byte[] data, int size) {
+      this.data = data;
+      this.size = size;
+    }
+
+
+    /**
+     * Method reads the given number of bits.
+     *
+     * @param length number of bits, up to 64.
+     * @return the bits in the lowest positions.
+     * @throws EOFException if there are fewer bits left.
+     */
+    long read(int length) throws EOFException {
+      long value = 0;
+      while (length > 0) {
+        if (position == size) {
+          throw new EOFException("Block ends early");
+        }
+        int take = Math.min(8 - used, length);
+        int chunk = ((data[position] & 0xff) >>> (8 - used - take)) & ((1 << take) - 1);
+        value = (value << take) | chunk;
+        used += take;
+        length -= take;
+        if (used == 8) {
+          position++;
+          used = 0;
+        }
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,305 @@
+package com.lyit.csd;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * TimeSeriesEncoder class compresses a series of timestamps and prices into blocks written to a
+ * stream. Timestamps are stored as the difference between consecutive deltas, which is zero for
+ * evenly spaced bars and takes one bit. Prices are stored as the XOR of consecutive values,
+ * writing only the bits that differ. Each block starts with a header holding its length and
+ * time span, so a reader can skip blocks without decoding them, see TimeSeriesDecoder.
+ *
+ * <p>Block layout: payload length (int), number of points (int), first timestamp (long), last
+ * timestamp (long), then the payload bits.
+ */
+public class TimeSeriesEncoder implements Closeable, Flushable {
+
+  /**
+   * Number of points per block used by default.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+  /**
+   * Stream the blocks are written to.
+   */
+  private final DataOutputStream out;
+
+  /**
+   * Number of points after which a block is written.
+   */
+  private final int blockSize;
+
+  /**
+   * Payload of the open block.
+   */
+  private final BitWriter bits = new BitWriter();
+
+  /**
+   * Number of points in the open block.
+   */
+  private int count;
+
+  /**
+   * First timestamp of the open block.
+   */
+  private long firstTime;
+
+  /**
+   * Previous timestamp.
+   */
+  private long lastTime = Long.MIN_VALUE;
+
+  /**
+   * Previous difference between timestamps.
+   */
+  private long lastDelta;
+
+  /**
+   * Bits of the previous value.
+   */
+  private long lastValue;
+
+  /**
+   * Leading zero bits of the previous meaningful XOR, -1 if there is none in the block yet.
+   */
+  private int lastLeading = -1;
+
+  /**
+   * Trailing zero bits of the previous meaningful XOR.
+   */
+  private int lastTrailing;
+
+
+  /**
+   * Constructor to instantiate TimeSeriesEncoder object with the default block size.
+   *
+   * @param out stream the blocks are written to.
+   */
+  public TimeSeriesEncoder(OutputStream out) {
+    this(out, DEFAULT_BLOCK_SIZE);
+  }
+
+
+  /**
+   * Constructor to instantiate TimeSeriesEncoder object.
+   *
+   * @param out       stream the blocks are written to.
+   * @param blockSize number of points per block.
+   */
+  public TimeSeriesEncoder(OutputStream out, int blockSize) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+    }
+    this.out = new DataOutputStream(out);
+    this.blockSize = blockSize;
+  }
+
+
+  /**
+   * Method adds a point to the series.
+   *
+   * @param time  UNIX timestamp, not earlier than the previous one.
+   * @param value price at the time.
+   * @throws IOException if a full block cannot be written.
+   */
+  public void add(long time, double value) throws IOException {
+    if (time < lastTime) {
+      throw new IllegalArgumentException("Timestamp " + time + " is before " + lastTime);
+    }
+    long valueBits = Double.doubleToRawLongBits(value);
+    if (count == 0) {
+      firstTime = time;
+      lastDelta = 0;
+      lastLeading = -1;
+      bits.write(valueBits, 64);
+    } else {
+      long delta = time - lastTime;
+      writeDeltaOfDelta(delta - lastDelta);
+      writeXor(valueBits ^ lastValue);
+      lastDelta = delta;
+    }
+    lastTime = time;
+    lastValue = valueBits;
+    if (++count == blockSize) {
+      writeBlock();
+    }
+  }
+
+
+  /**
+   * Method adds the points of the arrays to the series.
+   *
+   * @param times  UNIX timestamps in order.
+   * @param values prices at the times.
+   * @param length number of points to add.
+   * @throws IOException if a full block cannot be written.
+   */
+  public void addAll(long[] times, double[] values, int length) throws IOException {
+    for (int i = 0; i < length; i++) {
+      add(times[i], values[i]);
+    }
+  }
+
+
+  /**
+   * Method writes the open block, even if it is not full, and flushes the stream.
+   *
+   * @throws IOException if the block cannot be written.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (count > 0) {
+      writeBlock();
+    }
+    out.flush();
+  }
+
+
+  /**
+   * Method writes the open block and closes the stream.
+   *
+   * @throws IOException if the block cannot be written.
+   */
+  @Override
+  public void close() throws IOException {
+    flush();
+    out.close();
+  }
+
+
+  /**
+   * Helper method to write the difference between two deltas, using the fewest bits its range
+   * allows. Values are written in two's complement.
+   *
+   * @param dod difference between the delta and the previous delta.
+   */
+  private void writeDeltaOfDelta(long dod) {
+    if (dod == 0) {
+      bits.write(0, 1);
+    } else if (dod >= -64 && dod <= 63) {
+      bits.write(0b10, 2);
+      bits.write(dod, 7);
+    } else if (dod >= -256 && dod <= 255) {
+      bits.write(0b110, 3);
+      bits.write(dod, 9);
+    } else if (dod >= -2048 && dod <= 2047) {
+      bits.write(0b1110, 4);
+      bits.write(dod, 12);
+    } else {
+      bits.write(0b1111, 4);
+      bits.write(dod, 64);
+    }
+  }
+
+
+  /**
+   * Helper method to write the XOR of a value with the previous one. Meaningful bits are written
+   * within the window of the previous XOR when they fit, otherwise a new window is written.
+   *
+   * @param xor bits of the value XOR bits of the previous value.
+   */
+  private void writeXor(long xor) {
+    if (xor == 0) {
+      bits.write(0, 1);
+      return;
+    }
+    int leading = Long.numberOfLeadingZeros(xor);
+    int trailing = Long.numberOfTrailingZeros(xor);
+    if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+      bits.write(0b10, 2);
+      bits.write(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+    } else {
+      int length = 64 - leading - trailing;
+      bits.write(0b11, 2);
+      bits.write(leading, 6);
+      bits.write(length - 1, 6);
+      bits.write(xor >>> trailing, length);
+      lastLeading = leading;
+      lastTrailing = trailing;
+    }
+  }
+
+
+  /**
+   * Helper method to write the open block to the stream and start a new one.
+   *
+   * @throws IOException if the block cannot be written.
+   */
+  private void writeBlock() throws IOException {
+    bits.pad();
+    out.writeInt(bits.size);
+    out.writeInt(count);
+    out.writeLong(firstTime);
+    out.writeLong(lastTime);
+    out.write(bits.data, 0, bits.size);
+    bits.size = 0;
+    count = 0;
+  }
+
+
+  /**
+   * BitWriter class collects bits, most significant first, into a growing byte array.
+   */
+  private static final class BitWriter {
+
+    /**
+     * Bytes written so far.
+     */
+    private byte[] data = new byte[4096];
+
+    /**
+     * Number of complete bytes.
+     */
+    private int size;
+
+    /**
+     * Bits of the incomplete byte, aligned to the left.
+     */
+    private int current;
+
+    /**
+     * Number of bits in the incomplete byte.
+     */
+    private int used;
+
+
+    /**
+     * Method writes the lowest bits of the value.
+     *
+     * @param value  bits to write.
+     * @param length number of bits, up to 64.
+     */
+    void write(long value, int length) {
+      while (length > 0) {
+        int take = Math.min(8 - used, length);
+        int chunk = (int) (value >>> (length - take)) & ((1 << take) - 1);
+        current |= chunk << (8 - used - take);
+        used += take;
+        length -= take;
+        if (used == 8) {
+          if (size == data.length) {
+            data = Arrays.copyOf(data, size * 2);
+          }
+          data[size++] = (byte) current;
+          current = 0;
+          used = 0;
+        }
+      }
+    }
+
+
+    /**
+     * Method completes the incomplete byte with zero bits.
+     */
+    void pad() {
+      if (used > 0) {
+        write(0, 8 - used);
+      }
+    }
+  }
+}
@@ -0,0 +1,567 @@
+package com.lyit.csd;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * TradeJournal class is an append only write ahead log of account changes. Records are written
+ * in a compact binary form, each framed by its length and a CRC32 checksum, to segment files
+ * named after the sequence number of their first record. A record is durable, as set by the
+ * Durability level, before append returns. With GROUP durability writers waiting at the same
+ * time share one sync: the first one to wait forces everything written so far and the others
+ * only wait for it. Callers holding a lock of their own can write under it and await the sync
+ * after letting it go, so their sync is shared with the writers that were queued on it. Segments
+ * are written through a RandomAccessFile, which an interrupted caller can not close. A record
+ * torn by a crash is dropped when the journal is opened again.
+ */
+public class TradeJournal implements Closeable {
+
+  /**
+   * Default durability, can be changed with the system property portfolio.journal.durability.
+   */
+  public static final Durability DEFAULT_DURABILITY = Durability.valueOf(
+      System.getProperty("portfolio.journal.durability", "GROUP").toUpperCase(Locale.ROOT));
+
+  /**
+   * Default size in bytes a segment may grow to before a new one is started.
+   */
+  public static final long DEFAULT_SEGMENT_BYTES = 16L << 20;
+
+  /**
+   * Bytes in front of each record body: body length and checksum.
+   */
+  private static final int FRAME_HEADER = 8;
+
+  /**
+   * Prefix of segment file names.
+   */
+  private static final String SEGMENT_PREFIX = "journal-";
+
+  /**
+   * Suffix of segment file names.
+   */
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  /**
+   * Directory holding the segments.
+   */
+  private final Path directory;
+
+  /**
+   * How far a record must have got before append returns.
+   */
+  private final Durability durability;
+
+  /**
+   * Size a segment may grow to before a new one is started.
+   */
+  private final long segmentBytes;
+
+  /**
+   * Checksum of the record being written.
+   */
+  private final CRC32 crc = new CRC32();
+
+  /**
+   * Lock of the sync shared by waiting writers.
+   */
+  private final Object syncLock = new Object();
+
+  /**
+   * Buffer the record being written is framed in.
+   */
+  private ByteBuffer frame = ByteBuffer.allocate(512);
+
+  /**
+   * Segment being written.
+   */
+  private RandomAccessFile segmentFile;
+
+  /**
+   * Number of segments the journal has rolled over or closed, guarded by the lock of this object.
+   */
+  private long generation;
+
+  /**
+   * Bytes written to the current segment.
+   */
+  private long segmentSize;
+
+  /**
+   * Sequence number given to the next record.
+   */
+  private long nextLsn;
+
+  /**
+   * Sequence number of the last record written.
+   */
+  private long writtenLsn;
+
+  /**
+   * Whether the journal has been closed.
+   */
+  private boolean closed;
+
+  /**
+   * Sequence number up to which records are on disk. Guarded by syncLock.
+   */
+  private long durableLsn;
+
+  /**
+   * Whether a writer is forcing the segment. Guarded by syncLock.
+   */
+  private boolean syncing;
+
+  /**
+   * Number of syncs forced for waiting writers. Guarded by syncLock.
+   */
+  private long syncCount;
+
+
+  /**
+   * Constructor to instantiate TradeJournal object, see open.
+   *
+   * @param directory    directory holding the segments.
+   * @param durability   how far a record must have got before append returns.
+   * @param segmentBytes size a segment may grow to before a new one is started.
+   */
+  private TradeJournal(Path directory, Durability durability, long segmentBytes) {
+    this.directory = directory;
+    this.durability = durability;
+    this.segmentBytes = segmentBytes;
+  }
+
+
+  /**
+   * Opening the journal in the directory with default durability and segment size.
+   *
+   * @param directory directory holding the segments, created if missing.
+   * @return the journal, positioned after its last complete record.
+   * @throws IOException if the journal can not be read or written.
+   */
+  public static TradeJournal open(Path directory) throws IOException {
+    return open(directory, DEFAULT_DURABILITY, DEFAULT_SEGMENT_BYTES);
+  }
+
+
+  /**
+   * Opening the journal in the directory. A record torn by a crash at the end of the last
+   * segment is cut off.
+   *
+   * @param directory    directory holding the segments, created if missing.
+   * @param durability   how far a record must have got before append returns.
+   * @param segmentBytes size a segment may grow to before a new one is started.
+   * @return the journal, positioned after its last complete record.
+   * @throws IOException if the journal can not be read or written.
+   */
+  public static TradeJournal open(Path directory, Durability durability, long segmentBytes)
+      throws IOException {
+
+    Files.createDirectories(directory);
+    TradeJournal journal = new TradeJournal(directory, durability, segmentBytes);
+    List<Path> segments = segments(directory);
+
+    if (segments.isEmpty()) {
+      journal.nextLsn = 1;
+      journal.roll(1);
+    } else {
+      // continue the last segment after its last complete record
+      Path last = segments.get(segments.size() - 1);
+      long[] lastLsn = {firstLsn(last) - 1};
+      long validEnd = scan(last, 0, record -> lastLsn[0] = record.getLsn());
+
+      journal.segmentFile = new RandomAccessFile(last.toFile(), "rw");
+      if (journal.segmentFile.length() > validEnd) {
+        journal.segmentFile.setLength(validEnd);
+        journal.segmentFile.getFD().sync();
+      }
+      journal.segmentFile.seek(validEnd);
+      journal.segmentSize = validEnd;
+      journal.nextLsn = lastLsn[0] + 1;
+    }
+
+    journal.writtenLsn = journal.nextLsn - 1;
+    journal.durableLsn = journal.writtenLsn;
+    return journal;
+  }
+
+
+  /**
+   * Returning how far a record must have got before append returns.
+   *
+   * @return durability level.
+   */
+  public Durability getDurability() {
+    return durability;
+  }
+
+
+  /**
+   * Returning the directory holding the segments.
+   *
+   * @return journal directory.
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+
+  /**
+   * Returning the sequence number of the last record written.
+   *
+   * @return last sequence number, 0 if the journal is empty.
+   */
+  public synchronized long getLastLsn() {
+    return writtenLsn;
+  }
+
+
+  /**
+   * Method appends a record and returns once it is as durable as the journal's level asks.
+   *
+   * @param record the record to append.
+   * @return sequence number given to the record.
+   * @throws IOException if the record can not be written.
+   */
+  public long append(JournalRecord record) throws IOException {
+    long lsn = write(record);
+    awaitDurable(lsn);
+    return lsn;
+  }
+
+
+  /**
+   * Method writes a record without waiting for a GROUP sync, see awaitDurable. With SYNC
+   * durability the record is forced before the method returns.
+   *
+   * @param record the record to write.
+   * @return sequence number given to the record.
+   * @throws IOException if the record can not be written.
+   */
+  public long write(JournalRecord record) throws IOException {
+    long lsn;
+    synchronized (this) {
+      if (closed) {
+        throw new ClosedChannelException();
+      }
+      lsn = nextLsn;
+      ByteBuffer bytes = encode(record, lsn);
+
+      // start a new segment rather than grow past the size limit
+      if (segmentSize > 0 && segmentSize + bytes.remaining() > segmentBytes) {
+        roll(lsn);
+      }
+      segmentSize += bytes.remaining();
+      segmentFile.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+      nextLsn++;
+      writtenLsn = lsn;
+
+      if (durability == Durability.SYNC) {
+        segmentFile.getFD().sync();
+        markDurable(lsn);
+      }
+    }
+    return lsn;
+  }
+
+
+  /**
+   * Returning the number of syncs forced for writers waiting on GROUP durability.
+   *
+   * @return number of shared syncs.
+   */
+  long getSyncCount() {
+    synchronized (syncLock) {
+      return syncCount;
+    }
+  }
+
+
+  /**
+   * Method hands every complete record after the given sequence number to the consumer, oldest
+   * first.
+   *
+   * @param afterLsn sequence number of the last record already applied, 0 for all.
+   * @param consumer called with each record.
+   * @return sequence number of the last record read, afterLsn if there was none.
+   * @throws IOException if a segment can not be read or records after afterLsn were deleted.
+   */
+  public long replay(long afterLsn, Consumer<JournalRecord> consumer) throws IOException {
+    List<Path> segments = segments(directory);
+    if (!segments.isEmpty() && firstLsn(segments.get(0)) > afterLsn + 1) {
+      throw new IOException("Journal starts at record " + firstLsn(segments.get(0))
+          + ", records after " + afterLsn + " are missing");
+    }
+    long[] last = {afterLsn};
+    for (int i = 0; i < segments.size(); i++) {
+      // skip segments that only hold records already applied
+      if (i + 1 < segments.size() && firstLsn(segments.get(i + 1)) <= afterLsn + 1) {
+        continue;
+      }
+      scan(segments.get(i), afterLsn, record -> {
+        consumer.accept(record);
+        last[0] = record.getLsn();
+      });
+    }
+    return last[0];
+  }
+
+
+  /**
+   * Method deletes the segments holding only records up to the sequence number. The segment
+   * being written is never deleted.
+   *
+   * @param lsn sequence number the records of deleted segments may go up to.
+   * @return number of segments deleted.
+   * @throws IOException if a segment can not be deleted.
+   */
+  public int deleteSegmentsThrough(long lsn) throws IOException {
+    List<Path> segments = segments(directory);
+    int deleted = 0;
+    for (int i = 0; i + 1 < segments.size(); i++) {
+      if (firstLsn(segments.get(i + 1)) - 1 > lsn) {
+        break;
+      }
+      Files.deleteIfExists(segments.get(i));
+      deleted++;
+    }
+    return deleted;
+  }
+
+
+  /**
+   * Method forces what has been written and closes the current segment.
+   *
+   * @throws IOException if the segment can not be forced.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      segmentFile.getFD().sync();
+      markDurable(writtenLsn);
+    } finally {
+      generation++;
+      segmentFile.close();
+    }
+  }
+
+
+  /**
+   * Method waits until a written record is as durable as the journal's level asks. With GROUP
+   * durability the first writer to find no sync running forces the segment for everyone written
+   * so far, the others only wait for it.
+   *
+   * @param lsn sequence number of the record.
+   * @throws IOException if the segment can not be forced.
+   */
+  public void awaitDurable(long lsn) throws IOException {
+    if (durability != Durability.GROUP) {
+      return;
+    }
+    while (true) {
+      synchronized (syncLock) {
+        while (syncing && durableLsn < lsn) {
+          try {
+            syncLock.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for journal sync");
+          }
+        }
+        if (durableLsn >= lsn) {
+          return;
+        }
+        syncing = true;
+      }
+
+      RandomAccessFile segment;
+      long target;
+      long segmentGeneration;
+      synchronized (this) {
+        segment = segmentFile;
+        target = writtenLsn;
+        segmentGeneration = generation;
+      }
+
+      boolean forced = false;
+      try {
+        segment.getFD().sync();
+        forced = true;
+      } catch (IOException e) {
+        // a segment the journal rolled or closed was forced before closing, any other error is not
+        synchronized (this) {
+          if (generation == segmentGeneration) {
+            throw e;
+          }
+        }
+        forced = true;
+      } finally {
+        synchronized (syncLock) {
+          syncing = false;
+          syncCount++;
+          if (forced) {
+            durableLsn = Math.max(durableLsn, target);
+          }
+          syncLock.notifyAll();
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to record that everything up to the sequence number is on disk.
+   *
+   * @param lsn sequence number forced.
+   */
+  private void markDurable(long lsn) {
+    synchronized (syncLock) {
+      durableLsn = Math.max(durableLsn, lsn);
+      syncLock.notifyAll();
+    }
+  }
+
+
+  /**
+   * Helper method to frame a record. Must be called while holding the lock of this object.
+   *
+   * @param record the record.
+   * @param lsn    sequence number given to it.
+   * @return buffer holding the frame, ready to write.
+   */
+  private ByteBuffer encode(JournalRecord record, long lsn) {
+    int needed = FRAME_HEADER + record.maxSize();
+    if (frame.capacity() < needed) {
+      frame = ByteBuffer.allocate(Math.max(needed, frame.capacity() * 2));
+    }
+    frame.clear();
+    frame.position(FRAME_HEADER);
+    record.writeTo(frame, lsn);
+    int length = frame.position() - FRAME_HEADER;
+
+    crc.reset();
+    crc.update(frame.array(), FRAME_HEADER, length);
+    frame.putInt(0, length);
+    frame.putInt(4, (int) crc.getValue());
+    frame.flip();
+    return frame;
+  }
+
+
+  /**
+   * Helper method to force and close the current segment and start a new one. Must be called
+   * while holding the lock of this object.
+   *
+   * @param firstLsn sequence number of the first record of the new segment.
+   * @throws IOException if a segment can not be forced or created.
+   */
+  private void roll(long firstLsn) throws IOException {
+    if (segmentFile != null) {
+      segmentFile.getFD().sync();
+      generation++;
+      segmentFile.close();
+      markDurable(firstLsn - 1);
+    }
+    Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn,
+        SEGMENT_SUFFIX));
+    segmentFile = new RandomAccessFile(Files.createFile(segment).toFile(), "rw");
+    segmentSize = 0;
+  }
+
+
+  /**
+   * Helper method to list the segments in the directory, oldest first.
+   *
+   * @param directory directory holding the segments.
+   * @return segment files.
+   * @throws IOException if the directory can not be listed.
+   */
+  static List<Path> segments(Path directory) throws IOException {
+    List<Path> segments = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files.filter(TradeJournal::isSegment).sorted().forEach(segments::add);
+    }
+    return segments;
+  }
+
+
+  /**
+   * Helper method to check whether the file is a segment.
+   *
+   * @param file the file.
+   * @return true if the name is a segment name.
+   */
+  private static boolean isSegment(Path file) {
+    String name = file.getFileName().toString();
+    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+  }
+
+
+  /**
+   * Helper method to read the sequence number of the first record from a segment name.
+   *
+   * @param segment the segment.
+   * @return sequence number the segment starts at.
+   */
+  static long firstLsn(Path segment) {
+    String name = segment.getFileName().toString();
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+        name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+
+  /**
+   * Helper method to read the complete records of a segment. Reading stops at the first record
+   * that is cut short or fails its checksum.
+   *
+   * @param segment  the segment.
+   * @param afterLsn records up to this sequence number are skipped.
+   * @param consumer called with each record after afterLsn.
+   * @return offset just after the last complete record.
+   * @throws IOException if the segment can not be read.
+   */
+  private static long scan(Path segment, long afterLsn, Consumer<JournalRecord> consumer)
+      throws IOException {
+
+    ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segment));
+    CRC32 checksum = new CRC32();
+    int validEnd = 0;
+
+    while (data.remaining() >= FRAME_HEADER) {
+      int length = data.getInt();
+      int expected = data.getInt();
+      if (length <= 0 || length > data.remaining()) {
+        break;
+      }
+      checksum.reset();
+      checksum.update(data.array(), data.position(), length);
+      if ((int) checksum.getValue() != expected) {
+        break;
+      }
+
+      JournalRecord record = JournalRecord.readFrom(data.slice(data.position(), length));
+      data.position(data.position() + length);
+      validEnd = data.position();
+      if (record.getLsn() > afterLsn) {
+        consumer.accept(record);
+      }
+    }
+    return validEnd;
+  }
+}
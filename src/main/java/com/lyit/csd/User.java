@@ -1,41 +1,102 @@
 package com.lyit.csd;
 
 import java.io.IOException;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Current class represent a user that implements controls from PortfolioSystem class
+ * Current class represent a user that implements controls from PortfolioSystem class. An account
+ * may be used from many threads: changes of the same account are serialized by its lock, while
+ * quotes are fetched outside of it, so accounts waiting on the api do not hold each other up.
  */
 public class User implements PortfolioSystem {
 
+  /**
+   * Lock guarding funds, portfolio and journal of this account.
+   */
+  private final Object lock = new Object();
+
   /**
    * The API key.
    */
   private String keyApi;
 
   /**
-   * The available funds.
+   * The available funds in micro dollars. Changed under the lock, read without it to tell if the
+   * view is current.
    */
-  private double availableFunds;
+  private volatile long availableFunds;
 
   /**
    * The portfolio of the user.
    */
-  private Portfolio userPortfolio;
+  private volatile Portfolio userPortfolio;
+
+  /**
+   * Source of realtime quotes for this user.
+   */
+  private QuoteProvider quoteProvider;
+
+  /**
+   * Latest point in time copy of this account, taken by each change while it holds the lock.
+   */
+  private volatile PortfolioView view;
 
   /**
-   * Constructor to instantiate a User.
+   * Local store historical prices are served from, null until first needed.
+   */
+  private HistoryStore historyStore;
+
+  /**
+   * Order in which lots are used up when no order is given for a sale.
+   */
+  private LotSelection lotSelection = LotSelection.LOWEST_COST;
+
+  /**
+   * Journal every change is recorded in before it is applied, null if changes are not recorded.
+   * Set under the lock, read without it to wait for a record to be durable.
+   */
+  private volatile TradeJournal journal;
+
+  /**
+   * Number of journal records after which a new snapshot is taken. Can be changed with the
+   * system property portfolio.snapshot.every.
+   */
+  private long snapshotEvery = Long.getLong("portfolio.snapshot.every", 10_000);
+
+  /**
+   * Journal sequence number of the latest snapshot taken or restored.
+   */
+  private long snapshotLsn;
+
+  /**
+   * Constructor to instantiate a User. Quotes go through the stack shared by every user of the
+   * same key, see QuoteProviders.
    *
    * @param keyApi the Api Key used to the user connect to Yahoo Finance API
    * and retrieve information.
    */
   public User(String keyApi) {
+    this(keyApi, QuoteProviders.forKey(keyApi));
+  }
+
+  /**
+   * Constructor to instantiate a User with given quote source.
+   *
+   * @param keyApi the Api Key used to the user connect to Yahoo Finance API
+   * and retrieve information.
+   * @param quoteProvider source of realtime quotes.
+   */
+  public User(String keyApi, QuoteProvider quoteProvider) {
     this.keyApi = keyApi;
-    availableFunds = 10_000;
+    this.quoteProvider = quoteProvider;
+    availableFunds = Money.toMicros(10_000);
     userPortfolio = new Portfolio();
+    view = new PortfolioView(availableFunds, userPortfolio, null);
   }
 
 
@@ -45,7 +106,17 @@ public class User implements PortfolioSystem {
   @Override
   public void addFunds(double amount) {
     if (amount > 0) {
-      availableFunds += amount;
+      try {
+        long lsn;
+        synchronized (lock) {
+          lsn = record(JournalRecord.fundsAdded(amount));
+          availableFunds += Money.toMicros(amount);
+          publishView();
+        }
+        awaitDurable(lsn);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
     }
   }
 
@@ -54,7 +125,28 @@ public class User implements PortfolioSystem {
    */
   @Override
   public boolean withdrawFunds(double amount) {
-    return availableFunds - amount >= 0;
+    if (amount < 0) {
+      return false;
+    }
+
+    // funds are checked and taken in one step, so two withdrawals can not both pass the check
+    long lsn = 0;
+    try {
+      synchronized (lock) {
+        if (availableFunds - Money.toMicros(amount) < 0) {
+          return false;
+        }
+        if (amount > 0) {
+          lsn = record(JournalRecord.fundsWithdrawn(amount));
+          availableFunds -= Money.toMicros(amount);
+          publishView();
+        }
+      }
+      awaitDurable(lsn);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return true;
   }
 
 
@@ -70,46 +162,82 @@ public class User implements PortfolioSystem {
       return false;
     }
 
-    // make connection to get asset quote from yahoo finance api
-    String requestString = "v6/finance/quote?region=US&lang=en&symbols=" + assetSymbol;
-    ConnectionPort cp = new ConnectionPort(requestString, keyApi);
+    // get asset quote from yahoo finance api, trade confirmations go first
+    List<AssetQuote> quotes = quoteProvider.getQuotes(List.of(assetSymbol),
+        QuotePriority.INTERACTIVE);
 
     // if requested symbol is not real asset symbol
-    if (cp.getAssetQuote().isEmpty()) {
+    if (quotes.isEmpty()) {
       return false;
     }
+    AssetQuote quote = quotes.get(0);
 
-    // if we have enough funds to purchase asset
-    double transactionCost = cp.getAssetQuote().get(0).getLivePrice() * amount;
+    // if we have enough funds to purchase asset, checked and paid under the same lock
+    long units = Money.toUnits(amount);
+    long transactionCost = Money.cost(quote.getLivePriceMicros(), units);
 
-    if (withdrawFunds(transactionCost)) {
+    long lsn;
+    synchronized (lock) {
+      if (availableFunds - transactionCost < 0) {
+        return false;
+      }
+      // recorded before it is applied
+      lsn = record(JournalRecord.purchase(assetSymbol, quote, amount));
+      applyPurchase(assetSymbol, quote, units);
+      publishView();
+    }
 
-      //create new asset instance
-      Asset newAsset = new Asset(
-          cp.getAssetQuote().get(0).getAssetSymbol(),
-          cp.getAssetQuote().get(0).getAssetFullName(),
-          cp.getAssetQuote().get(0).getAssetType(),
-          cp.getAssetQuote().get(0).getTimeStamp(),
-          cp.getAssetQuote().get(0).getLivePrice(),
-          amount
-      );
+    // acknowledged once on disk, the sync is shared with trades queued on the lock meanwhile
+    awaitDurable(lsn);
+    return true;
+  }
 
-      //add it to the right portfolio type and pay for asset
-      findPortfolioType(newAsset.getAssetType(), newAsset);
-      availableFunds -= transactionCost;
+  /**
+   * Helper method to apply a purchase at the given quote, used for new trades and replay.
+   *
+   * @param assetSymbol the symbol the purchase was asked for with
+   * @param quote quote the asset is bought at
+   * @param units the amount of the asset to purchase in hundred millionths of a unit
+   */
+  private void applyPurchase(String assetSymbol, AssetQuote quote, long units) {
+
+    //create new asset instance, priced exactly at the quote
+    Asset newAsset = Asset.ofUnits(
+        quote.getAssetSymbol(),
+        quote.getAssetFullName(),
+        quote.getAssetType(),
+        quote.getTimeStamp(),
+        quote.getLivePriceMicros(),
+        units
+    );
+
+    //add it to the right portfolio type and pay for asset
+    findPortfolioType(newAsset.getAssetType(), newAsset);
+    availableFunds -= Money.cost(quote.getLivePriceMicros(), newAsset.getAmountUnits());
+
+    // update our portfolio class with needed information
+    boolean namesChanged = false;
+    if (!userPortfolio.getAssetsInPortfolio().containsKey(assetSymbol)) {
+      userPortfolio.getAssetsInPortfolio().put(newAsset.getAssetSymbol(),
+          newAsset.getAssetType());
+      namesChanged = true;
+    }
 
-      // update our portfolio class with needed information
-      if (!userPortfolio.getAssetsInPortfolio().containsKey(assetSymbol)) {
-        userPortfolio.getAssetsInPortfolio().put(newAsset.getAssetSymbol(),
-            newAsset.getAssetType());
-      }
+    if (!userPortfolio.getAllAssetNames().contains(newAsset.getAssetFullName())) {
+      userPortfolio.getAllAssetNames().add(newAsset.getAssetFullName());
+      namesChanged = true;
+    }
 
-      if (!userPortfolio.getAllAssetNames().contains(newAsset.getAssetFullName())) {
-        userPortfolio.getAllAssetNames().add(newAsset.getAssetFullName());
-      }
+    // full name to symbol, so the asset is found by name, names match on three characters
+    if (newAsset.getAssetFullName() != null && newAsset.getAssetFullName().length() >= 3
+        && userPortfolio.getSymbolFullName().putIfAbsent(newAsset.getAssetFullName(),
+        newAsset.getAssetSymbol()) == null) {
+      namesChanged = true;
     }
 
-    return true;
+    if (namesChanged) {
+      userPortfolio.namesChanged();
+    }
   }
 
   /**
@@ -130,86 +258,293 @@ public class User implements PortfolioSystem {
   @Override
   public boolean sellAsset(String assetSymbol, double amount)
       throws IOException, InterruptedException {
+    return sellAsset(assetSymbol, amount, lotSelection);
+  }
 
-    // check if asset symbol is in portfolio
-    if(!userPortfolio.getAssetsInPortfolio().containsKey(assetSymbol))
-      return false;
+  /**
+   * Record a sale of the named asset at the current live market value, using up lots in the
+   * given order.
+   *
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   * @param assetSymbol the name of the asset (stock symbol or cryptocurrency) to sell
+   * @param amount      the amount of the asset to sell
+   * @param selection   order in which lots are used up
+   * @return True if the asset is sold successfully, otherwise false.
+   */
+  public boolean sellAsset(String assetSymbol, double amount, LotSelection selection)
+      throws IOException, InterruptedException {
+    return sell(assetSymbol, amount, selection, 0);
+  }
+
+  /**
+   * Record a sale from one specific lot of the named asset at the current live market value.
+   *
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   * @param assetSymbol the name of the asset (stock symbol or cryptocurrency) to sell
+   * @param lotId       identifier of the lot to sell from, see Asset.getLotId
+   * @param amount      the amount of the asset to sell, at most the amount of the lot
+   * @return True if the asset is sold successfully, otherwise false.
+   */
+  public boolean sellLot(String assetSymbol, long lotId, double amount)
+      throws IOException, InterruptedException {
+    return sell(assetSymbol, amount, null, lotId);
+  }
+
+  /**
+   * Helper method to record a sale, either in the given lot order or from one specific lot.
+   *
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   * @param assetSymbol the name of the asset to sell
+   * @param amount      the amount of the asset to sell
+   * @param selection   order in which lots are used up, null to sell from lotId only
+   * @param lotId       identifier of the lot to sell from when selection is null
+   * @return True if the asset is sold successfully, otherwise false.
+   */
+  private boolean sell(String assetSymbol, double amount, LotSelection selection, long lotId)
+      throws IOException, InterruptedException {
 
     if(amount <= 0)
       return false;
 
-    // find amount of asset user holds in the portfolio
-    double userHoldsAmount = 0;
-    double toSell = amount;
-    String assetFullName = "";
-
-    //make list with all assets of this symbol
-    List<Asset> requestedAssets = new ArrayList<>();
-    for (Asset asset : userPortfolio.findPortfolioListType(assetSymbol)) {
-      if(asset.getAssetSymbol().equals(assetSymbol)){
-        userHoldsAmount += asset.getAmount();
-        requestedAssets.add(asset);
-      }
+    synchronized (lock) {
+      if(!canSell(assetSymbol, amount, selection, lotId))
+        return false;
     }
 
-    // if user wants to sell more than he have
-    if(amount > userHoldsAmount)
+    // get live price before the portfolio is touched, trade confirmations go first
+    List<AssetQuote> quotes = quoteProvider.getQuotes(List.of(assetSymbol),
+        QuotePriority.INTERACTIVE);
+
+    // to avoid limit exceeded if user has more than 100 requests per day
+    if(quotes.isEmpty())
       return false;
+    AssetQuote quote = quotes.get(0);
+
+    // checked again, the lots may have been sold while the quote was fetched
+    long lsn;
+    synchronized (lock) {
+      if(!canSell(assetSymbol, amount, selection, lotId))
+        return false;
+
+      // recorded before it is applied
+      lsn = record(JournalRecord.sale(assetSymbol, quote, amount, selection, lotId));
+      applySale(assetSymbol, quote, Money.toUnits(amount), selection, lotId);
+      publishView();
+    }
 
-    // sort list by price (low to high)
-    requestedAssets.sort(Comparator.comparing(Asset::getPriceBought));
+    // acknowledged once on disk, the sync is shared with trades queued on the lock meanwhile
+    awaitDurable(lsn);
+    return true;
+  }
+
+  /**
+   * Helper method to check that the lots held cover a sale. Must hold the lock.
+   *
+   * @param assetSymbol the name of the asset to sell
+   * @param amount      the amount of the asset to sell
+   * @param selection   order in which lots are used up, null to sell from lotId only
+   * @param lotId       identifier of the lot to sell from when selection is null
+   * @return True if the sale can be applied.
+   */
+  private boolean canSell(String assetSymbol, double amount, LotSelection selection, long lotId) {
+
+    // check if asset symbol is in portfolio
+    if(!userPortfolio.getAssetsInPortfolio().containsKey(assetSymbol))
+      return false;
 
-    // as list is sorted, we can sell assets in right order
-    double avgPurchasePrice = 0;
-    int assetsCount = 0;
-    boolean isStill = false;
-    for (Asset asset : requestedAssets){
+    // lots of this symbol only
+    SymbolLots lots = userPortfolio.getLots(assetSymbol);
+    if(lots == null)
+      return false;
 
-      avgPurchasePrice += asset.getPriceBought();
-      assetsCount++;
+    // if user wants to sell more than he have
+    if(selection == null) {
+      Asset specificLot = lots.getLot(lotId);
+      return specificLot != null && Money.toUnits(amount) <= specificLot.getAmountUnits();
+    }
+    return Money.toUnits(amount) <= Money.toUnits(lots.getAmount());
+  }
 
-      if(toSell - asset.getAmount() >= 0) {
+  /**
+   * Helper method to apply a sale at the given quote, used for new trades and replay. The sale
+   * must have been checked against the lots held.
+   *
+   * @param assetSymbol the name of the asset to sell
+   * @param quote       quote the asset is sold at
+   * @param units       the amount of the asset to sell in hundred millionths of a unit
+   * @param selection   order in which lots are used up, null to sell from lotId only
+   * @param lotId       identifier of the lot to sell from when selection is null
+   */
+  private void applySale(String assetSymbol, AssetQuote quote, long units,
+      LotSelection selection, long lotId) {
+
+    SymbolLots lots = userPortfolio.getLots(assetSymbol);
+    Asset specificLot = selection == null ? lots.getLot(lotId) : null;
+    String assetFullName = lots.lowestCost().getAssetFullName();
+
+    // use up lots in the chosen order, stopping once the amount is covered
+    long toSell = units;
+    long costOfSold = 0;
+    while (toSell > 0 && !lots.isEmpty()) {
+      Asset asset = specificLot != null ? specificLot : lots.next(selection);
+      costOfSold += Money.cost(asset.getPriceBoughtMicros(),
+          Math.min(toSell, asset.getAmountUnits()));
+      if(toSell - asset.getAmountUnits() >= 0) {
         userPortfolio.findPortfolioListType(assetSymbol).remove(asset);
-        toSell -= asset.getAmount();
+        toSell -= asset.getAmountUnits();
       } else {
-        asset.setAmount(asset.getAmount() - toSell);
-        isStill = true;
+        userPortfolio.setLotAmount(asset, asset.getAmountUnits() - toSell);
+        toSell = 0;
       }
-      if(assetFullName.isEmpty())
-        assetFullName = asset.getAssetFullName();
+      if(specificLot != null)
+        break;
     }
-
-    // make connection to get live price
-    String requestString = "v6/finance/quote?region=US&lang=en&symbols=" + assetSymbol;
-    ConnectionPort cp = new ConnectionPort(requestString, keyApi);
-
-    // to avoid limit exceeded if user has more than 100 requests per day
-    if(cp.getAssetQuote().isEmpty())
-      return false;
+    boolean isStill = !lots.isEmpty();
 
     // check transaction cost and add it to our funds
-    double transactionCost = cp.getAssetQuote().get(0).getLivePrice() * amount;
+    long transactionCost = Money.cost(quote.getLivePriceMicros(), units);
     availableFunds += transactionCost;
 
-    // add sold asset to the sold asset list
-    userPortfolio.getSoldAssets().add(new SoldAsset(
-        cp.getAssetQuote().get(0).getAssetSymbol(),
-        cp.getAssetQuote().get(0).getAssetFullName(),
-        cp.getAssetQuote().get(0).getAssetType(),
-        cp.getAssetQuote().get(0).getTimeStamp(),
-        avgPurchasePrice / assetsCount,
-        cp.getAssetQuote().get(0).getLivePrice(),
-        amount
+    // add sold asset to the sold asset list, priced at the cost of the lots used up
+    userPortfolio.getSoldAssets().add(SoldAsset.ofUnits(
+        quote.getAssetSymbol(),
+        quote.getAssetFullName(),
+        quote.getAssetType(),
+        quote.getTimeStamp(),
+        Money.unitPrice(costOfSold, units),
+        quote.getLivePriceMicros(),
+        units
     ));
 
     // if asset is fully sold we need to remove extra information we hold
     if(!isStill) {
       userPortfolio.getAssetsInPortfolio().remove(assetSymbol);
-      userPortfolio.getSymbolFullName().remove(assetSymbol);
+      userPortfolio.getSymbolFullName().remove(assetFullName);
       userPortfolio.getAllAssetNames().remove(assetFullName);
+      userPortfolio.namesChanged();
     }
+  }
 
-    return true;
+  /**
+   * Method restores this account from the latest snapshot in the journal directory, replays the
+   * journal records after it and records every later change in the journal. Meant for an
+   * account just created.
+   *
+   * @param journal journal of this account.
+   * @throws IOException if the journal can not be read.
+   */
+  public void attachJournal(TradeJournal journal) throws IOException {
+    synchronized (lock) {
+      snapshotLsn = PortfolioSnapshot.restoreLatest(journal.getDirectory(), this);
+      journal.replay(snapshotLsn, this::apply);
+      this.journal = journal;
+      publishView();
+    }
+  }
+
+  /**
+   * Method takes a snapshot of this account. The state is copied at once, the file is written
+   * and the journal segments it makes obsolete are deleted in the background.
+   *
+   * @return completed with the snapshot file once it is on disk.
+   * @throws IOException if the state can not be encoded.
+   */
+  public CompletableFuture<Path> checkpoint() throws IOException {
+    if (journal == null) {
+      throw new IllegalStateException("No journal attached");
+    }
+    long lsn;
+    byte[] data;
+    synchronized (lock) {
+      lsn = journal.getLastLsn();
+      data = PortfolioSnapshot.encode(this, lsn);
+      snapshotLsn = lsn;
+    }
+    return PortfolioSnapshot.writeAsync(journal, lsn, data);
+  }
+
+  /**
+   * Setting the number of journal records after which a new snapshot is taken.
+   *
+   * @param snapshotEvery number of records between snapshots.
+   */
+  public void setSnapshotEvery(long snapshotEvery) {
+    synchronized (lock) {
+      this.snapshotEvery = snapshotEvery;
+    }
+  }
+
+  /**
+   * Method replaces the state of this account, used when it is restored from a snapshot.
+   *
+   * @param availableFunds funds of the account in micro dollars.
+   * @param lotSelection lot selection of the account.
+   * @param portfolio portfolio of the account.
+   */
+  void restoreState(long availableFunds, LotSelection lotSelection, Portfolio portfolio) {
+    this.availableFunds = availableFunds;
+    this.lotSelection = lotSelection;
+    this.userPortfolio = portfolio;
+  }
+
+  /**
+   * Method applies one journal record to this account without recording it again.
+   *
+   * @param record the record to apply.
+   */
+  void apply(JournalRecord record) {
+    switch (record.getType()) {
+      case FUNDS_ADDED -> availableFunds += record.getScaledAmount();
+      case FUNDS_WITHDRAWN -> availableFunds -= record.getScaledAmount();
+      case PURCHASE -> applyPurchase(record.getAssetSymbol(), record.getQuote(),
+          record.getScaledAmount());
+      case SALE -> applySale(record.getAssetSymbol(), record.getQuote(),
+          record.getScaledAmount(), record.getSelection(), record.getLotId());
+    }
+  }
+
+  /**
+   * Helper method to take a new view after a change, so reports never copy the account under
+   * the lock. Must hold the lock.
+   */
+  private void publishView() {
+    view = new PortfolioView(availableFunds, userPortfolio, view);
+  }
+
+  /**
+   * Helper method to record a change in the journal, if there is one, before it is applied. The
+   * record is written but not waited for, see awaitDurable. Must hold the lock.
+   *
+   * @param record the change.
+   * @return sequence number of the record, 0 if changes are not recorded.
+   * @throws IOException if the journal can not be written.
+   */
+  private long record(JournalRecord record) throws IOException {
+    if (journal == null) {
+      return 0;
+    }
+    // every earlier record has been applied, so this is a consistent point for a snapshot
+    if (journal.getLastLsn() - snapshotLsn >= snapshotEvery) {
+      checkpoint();
+    }
+    return journal.write(record);
+  }
+
+  /**
+   * Helper method to wait until a recorded change is as durable as the journal asks. Called
+   * after the lock is let go, so the sync does not hold up other changes of the account.
+   *
+   * @param lsn sequence number of the record, 0 if nothing was recorded.
+   * @throws IOException if the journal can not be forced.
+   */
+  private void awaitDurable(long lsn) throws IOException {
+    TradeJournal current = journal;
+    if (lsn > 0 && current != null) {
+      current.awaitDurable(lsn);
+    }
   }
 
   /**
@@ -225,7 +560,34 @@ public class User implements PortfolioSystem {
    */
   @Override
   public List<AssetQuote> getHistoricalData(List<String> assetSymbols, String interval, String range) {
-    return null;
+    synchronized (lock) {
+      if(historyStore == null)
+        historyStore = HistoryStore.forKey(keyApi);
+    }
+
+    List<AssetQuote> history = new ArrayList<>();
+    try {
+      for(String assetSymbol : assetSymbols)
+        history.addAll(historyStore.read(assetSymbol, interval, range).toBars());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedIOException(new InterruptedIOException(e.getMessage()));
+    }
+    return history;
+  }
+
+  /**
+   * Setting the store historical prices are served from, instead of the one shared by every
+   * user of the same key.
+   *
+   * @param historyStore the history store.
+   */
+  public void setHistoryStore(HistoryStore historyStore) {
+    synchronized (lock) {
+      this.historyStore = historyStore;
+    }
   }
 
   /**
@@ -243,30 +605,20 @@ public class User implements PortfolioSystem {
   public List<AssetQuote> getAssetInformation(List<String> assetNames)
       throws IOException, InterruptedException {
 
-    // build multiple symbol request string part
-    StringBuilder symbolList = new StringBuilder();
-
-    // build string with string builder
-    for (String assetSymbol : assetNames) {
-      symbolList.append(assetSymbol).append("%2C");
-    }
-
-    // result to return
-    List<AssetQuote> assetInformation = new ArrayList<>();
+    // connect to api to get information, empty list if no asset names given
+    return new ArrayList<>(quoteProvider.getQuotes(assetNames));
 
-    //return empty list if asset names is not in our portfolio
-    if(symbolList.length() == 0)
-      return assetInformation;
-
-    // connect to api to get information
-    String requestString = "v6/finance/quote?region=US&lang=en&symbols=" + symbolList.toString();
-    ConnectionPort cp = new ConnectionPort(requestString, keyApi);
-
-    // create and populate return list
-    assetInformation = new ArrayList<>(cp.getAssetQuote());
-
-    return assetInformation;
+  }
 
+  /**
+   * Asynchronous variant of getAssetInformation. The calling thread is not held while the
+   * request is in flight.
+   *
+   * @param assetNames a list of asset symbols for example, "BTC-USD", "AAPL", "TSLA"
+   * @return future completed with the list of AssetQuote objects.
+   */
+  public CompletableFuture<List<AssetQuote>> getAssetInformationAsync(List<String> assetNames) {
+    return quoteProvider.getQuotesAsync(assetNames).thenApply(ArrayList::new);
   }
 
   /**
@@ -274,46 +626,43 @@ public class User implements PortfolioSystem {
    */
   @Override
   public double getPortfolioValue() throws IOException, InterruptedException {
-    double livePrice = 0;
-    double result ;
-
-    List<String> userHoldSymbols = userPortfolio.getAllAssetNames();
-
-
-    // build multiple symbol request string part
-    StringBuilder symbolList = new StringBuilder();
-
-    List<String> symbols = namesToSymbolList(userHoldSymbols);
-
-    // build string with string builder
-    for (String assetSymbol : symbols) {
-      symbolList.append(assetSymbol).append("%2C");
-    }
-
-    // result to return
-    List<AssetQuote> assetInformation = new ArrayList<>();
-
-
-    // connect to api to get information
-    String requestString = "v6/finance/quote?region=US&lang=en&symbols=" + symbolList.toString();
-    ConnectionPort cp = new ConnectionPort(requestString, keyApi);
-
-    // create and populate return list
-    assetInformation = new ArrayList<>(cp.getAssetQuote());
-
-
-    List<AssetQuote> quotes = assetInformation;
-
-    for(AssetQuote quote : quotes) {
-      livePrice += quote.getLivePrice();
+    return getPortfolioValue(priceSnapshot());
+  }
 
-    }
-    NumberFormat formatter  = new DecimalFormat(".##");
-    result = Double.parseDouble(formatter.format(livePrice));
 
+  /**
+   * Variant of getPortfolioValue priced from a snapshot, no quotes are fetched.
+   *
+   * @param snapshot priced snapshot of this account.
+   * @return the value of the portfolio in USD.
+   */
+  public double getPortfolioValue(PricedSnapshot snapshot) {
+    return sumLivePrices(snapshot);
+  }
 
-    return result;
+  /**
+   * Asynchronous variant of getPortfolioValue. The calling thread is not held while the
+   * request is in flight.
+   *
+   * @return future completed with the value of the portfolio in USD.
+   */
+  public CompletableFuture<Double> getPortfolioValueAsync() {
+    PortfolioView current = getView();
+    return quoteProvider.getQuotesAsync(heldSymbols(current, null), QuotePriority.REPORT)
+        .thenApply(quotes -> sumLivePrices(new PricedSnapshot(current, quotes)));
+  }
 
+  /**
+   * Method fetches the quotes of every asset symbol held in one request. Reports rendered from
+   * the snapshot share its prices, so a batch of reports costs a single upstream call.
+   *
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   * @return priced snapshot of this account.
+   */
+  public PricedSnapshot priceSnapshot() throws IOException, InterruptedException {
+    PortfolioView current = getView();
+    return priceSnapshot(current, heldSymbols(current, null));
   }
 
   /**
@@ -321,13 +670,40 @@ public class User implements PortfolioSystem {
    */
   @Override
   public String listAllInvestments() throws IOException, InterruptedException {
+    StringBuilder result = new StringBuilder();
+    writeAllInvestments(result);
+    return result.toString();
+  }
+
 
+  /**
+   * Streaming variant of listAllInvestments, rows are written to out as they are produced.
+   *
+   * @throws IOException if underlying service fails or out can not be written.
+   * @throws InterruptedException if underlying service fails.
+   * @param out where the report goes.
+   */
+  public void writeAllInvestments(Appendable out) throws IOException, InterruptedException {
+
+    // both sections from the same view and the same quotes
+    PortfolioView current = getView();
+    List<String> symbols = heldSymbols(current, assetTypeOf("stock"));
+    symbols.addAll(heldSymbols(current, assetTypeOf("crypto")));
+    writeAllInvestments(priceSnapshot(current, symbols), out);
+  }
 
-    // Creating String variables to hold the required information
-    String stock = listPortfolioAssetsByType("stock");
-    String crypto = listPortfolioAssetsByType("crypto");
 
-    return stock + crypto;
+  /**
+   * Variant of writeAllInvestments rendered from a snapshot, no quotes are fetched.
+   *
+   * @throws IOException if out can not be written.
+   * @param snapshot priced snapshot of this account.
+   * @param out where the report goes.
+   */
+  public void writeAllInvestments(PricedSnapshot snapshot, Appendable out) throws IOException {
+    ReportWriter writer = new ReportWriter(out);
+    writeAssetsByType(assetTypeOf("stock"), snapshot, writer);
+    writeAssetsByType(assetTypeOf("crypto"), snapshot, writer);
   }
 
 
@@ -337,36 +713,70 @@ public class User implements PortfolioSystem {
   @Override
   public String listPortfolioAssetsByType(String assetType)
       throws IOException, InterruptedException {
-
     StringBuilder result = new StringBuilder();
-    HashMap<String, List<Asset>> typeSortedPortfolio = new HashMap<>();
+    writePortfolioAssetsByType(assetType, result);
+    return result.toString();
+  }
 
-    if (assetType.toLowerCase().equals("stock")) {
-      typeSortedPortfolio = getSortedStockPortfolio();
-    }
 
-    if (assetType.toLowerCase().equals("crypto")) {
-      typeSortedPortfolio = getSortedCryptoPortfolio();
+  /**
+   * Streaming variant of listPortfolioAssetsByType, rows are written to out as they are
+   * produced.
+   *
+   * @throws IOException if underlying service fails or out can not be written.
+   * @throws InterruptedException if underlying service fails.
+   * @param assetType the type of asset, stock or crypto.
+   * @param out where the report goes.
+   */
+  public void writePortfolioAssetsByType(String assetType, Appendable out)
+      throws IOException, InterruptedException {
+    // an unknown type lists nothing, so nothing is fetched for it
+    String type = assetTypeOf(assetType);
+    if (type == null) {
+      return;
     }
-    //System.out.println(typeSortedPortfolio);
+    PortfolioView current = getView();
+    writeAssetsByType(type, priceSnapshot(current, heldSymbols(current, type)),
+        new ReportWriter(out));
+  }
 
-    // get quote for each asset symbol related to asset type
-    List<String> userHoldsSymbols = new ArrayList<>();
-    for (Entry<String, List<Asset>> entry : typeSortedPortfolio.entrySet()) {
-      String symbol = entry.getKey();
-      if(!userHoldsSymbols.contains(symbol)) {
-        userHoldsSymbols.add(symbol);
-      }
-    }
-    List<AssetQuote> quotes = getAssetInformation(userHoldsSymbols);
 
-    // loop through the quotes to get detailed information for each investment
-    for (AssetQuote quote : quotes) {
-      List<Asset> assetList = typeSortedPortfolio.get(quote.getAssetSymbol());
-      result.append(assetDetailedInfo(assetList, quote.getLivePrice()));
+  /**
+   * Variant of writePortfolioAssetsByType rendered from a snapshot, no quotes are fetched.
+   *
+   * @throws IOException if out can not be written.
+   * @param snapshot priced snapshot of this account.
+   * @param assetType the type of asset, stock or crypto.
+   * @param out where the report goes.
+   */
+  public void writePortfolioAssetsByType(PricedSnapshot snapshot, String assetType,
+      Appendable out) throws IOException {
+    String type = assetTypeOf(assetType);
+    if (type == null) {
+      return;
     }
+    writeAssetsByType(type, snapshot, new ReportWriter(out));
+  }
 
-    return result.toString();
+
+  /**
+   * Helper method to write the assets of one type priced from a snapshot.
+   *
+   * @throws IOException if the report can not be written.
+   * @param type the type of asset as the api names it, EQUITY or CRYPTOCURRENCY.
+   * @param snapshot priced snapshot of the account.
+   * @param writer where the report goes.
+   */
+  private void writeAssetsByType(String type, PricedSnapshot snapshot, ReportWriter writer)
+      throws IOException {
+
+    // loop through the quotes to write detailed information for each investment
+    for (AssetQuote quote : snapshot.getQuotes()) {
+      PositionView position = snapshot.getView().getPosition(quote.getAssetSymbol());
+      if(position != null && position.getAssetType().equals(type)) {
+        assetDetailedInfo(position, quote.getLivePrice(), writer);
+      }
+    }
   }
 
 
@@ -376,25 +786,53 @@ public class User implements PortfolioSystem {
   @Override
   public String listPortfolioAssetsByName(List<String> assetNames)
           throws IOException, InterruptedException {
-
     StringBuilder result = new StringBuilder();
-    HashMap<String, List<Asset>> chosenNamePortfolio = new HashMap<>();
+    writePortfolioAssetsByName(assetNames, result);
+    return result.toString();
+  }
+
+
+  /**
+   * Streaming variant of listPortfolioAssetsByName, rows are written to out as they are
+   * produced.
+   *
+   * @throws IOException if underlying service fails or out can not be written.
+   * @throws InterruptedException if underlying service fails.
+   * @param assetNames a list of asset names or symbols.
+   * @param out where the report goes.
+   */
+  public void writePortfolioAssetsByName(List<String> assetNames, Appendable out)
+          throws IOException, InterruptedException {
 
     // list of all asset symbols to make request from.
-    // we will use helper method to sort asset names and create sorted portfolio based on names.
-    List<String> symbols = namesToSymbolList(assetNames);
-    chosenNamePortfolio = getAllSortedPortfolio(symbols);
+    // we will use helper method to sort asset names.
+    PortfolioView current = getView();
+    writePortfolioAssetsByName(priceSnapshot(current, namesToSymbolList(current, assetNames)),
+        assetNames, out);
+  }
 
-    // get quote on user held symbols
-    List<AssetQuote> quotes = getAssetInformation(symbols);
 
-    // loop through quotes and print detailed information
-    for (AssetQuote quote : quotes) {
-      List<Asset> assetList = chosenNamePortfolio.get(quote.getAssetSymbol());
-      result.append(assetDetailedInfo(assetList, quote.getLivePrice()));
-    }
+  /**
+   * Variant of writePortfolioAssetsByName rendered from a snapshot, no quotes are fetched.
+   *
+   * @throws IOException if out can not be written.
+   * @param snapshot priced snapshot of this account.
+   * @param assetNames a list of asset names or symbols.
+   * @param out where the report goes.
+   */
+  public void writePortfolioAssetsByName(PricedSnapshot snapshot, List<String> assetNames,
+      Appendable out) throws IOException {
 
-    return result.toString();
+    Set<String> symbols = new HashSet<>(namesToSymbolList(snapshot.getView(), assetNames));
+
+    // loop through quotes and write detailed information
+    ReportWriter writer = new ReportWriter(out);
+    for (AssetQuote quote : snapshot.getQuotes()) {
+      PositionView position = snapshot.getView().getPosition(quote.getAssetSymbol());
+      if(position != null && symbols.contains(quote.getAssetSymbol())) {
+        assetDetailedInfo(position, quote.getLivePrice(), writer);
+      }
+    }
   }
 
   /**
@@ -403,37 +841,59 @@ public class User implements PortfolioSystem {
   @Override
   public String listPortfolioPurchasesInRange(long startTimeStamp, long endTimeStamp)
       throws IOException, InterruptedException {
-
     StringBuilder result = new StringBuilder();
+    writePortfolioPurchasesInRange(startTimeStamp, endTimeStamp, result);
+    return result.toString();
+  }
 
-    // if start date is in front of the end date
-    if(startTimeStamp > endTimeStamp)
-      return result.toString();
 
-    HashMap<String, List<Asset>> sortedAllPortfolio = getAllSortedPortfolio();
+  /**
+   * Streaming variant of listPortfolioPurchasesInRange, rows are written to out as they are
+   * produced.
+   *
+   * @throws IOException if underlying service fails or out can not be written.
+   * @throws InterruptedException if underlying service fails.
+   * @param startTimeStamp the start date of the range.
+   * @param endTimeStamp the end date of the range.
+   * @param out where the report goes.
+   */
+  public void writePortfolioPurchasesInRange(long startTimeStamp, long endTimeStamp,
+      Appendable out) throws IOException, InterruptedException {
 
-    // sort map sortedAllPortfolio by purchase timestamp
-    for (String symbol : sortedAllPortfolio.keySet()) {
-      List<Asset> toSort = sortedAllPortfolio.get(symbol);
+    // if start date is in front of the end date
+    if(startTimeStamp > endTimeStamp)
+      return;
 
-      // remove assets not in range
-      toSort.removeIf(
-          asset -> asset.getTimeStamp() < startTimeStamp || asset.getTimeStamp() > endTimeStamp);
+    // get live information for each asset symbol
+    writePortfolioPurchasesInRange(priceSnapshot(), startTimeStamp, endTimeStamp, out);
+  }
 
-      // sort based on timestamp (low to high)
-      toSort.sort(Comparator.comparing(Asset::getTimeStamp));
-    }
 
-    // get live information for each asset symbol
-    List<AssetQuote> quotes = getAssetInformationAlternate(userPortfolio.getAllAssetNames());
+  /**
+   * Variant of writePortfolioPurchasesInRange rendered from a snapshot, no quotes are fetched.
+   *
+   * @throws IOException if out can not be written.
+   * @param snapshot priced snapshot of this account.
+   * @param startTimeStamp the start date of the range.
+   * @param endTimeStamp the end date of the range.
+   * @param out where the report goes.
+   */
+  public void writePortfolioPurchasesInRange(PricedSnapshot snapshot, long startTimeStamp,
+      long endTimeStamp, Appendable out) throws IOException {
 
-    // loop through quotes and print detailed information
-    for (AssetQuote quote : quotes) {
-      List<Asset> assetList = sortedAllPortfolio.get(quote.getAssetSymbol());
-      result.append(assetPurchaseRangeInfo(assetList, quote.getLivePrice()));
+    // if start date is in front of the end date
+    if(startTimeStamp > endTimeStamp)
+      return;
+
+    // loop through quotes and write detailed information, lots come in range by timestamp
+    ReportWriter writer = new ReportWriter(out);
+    for (AssetQuote quote : snapshot.getQuotes()) {
+      PositionView position = snapshot.getView().getPosition(quote.getAssetSymbol());
+      if(position != null) {
+        assetPurchaseRangeInfo(position.purchasedBetween(startTimeStamp, endTimeStamp),
+            quote.getLivePrice(), writer);
+      }
     }
-
-    return result.toString();
   }
 
   /**
@@ -441,56 +901,56 @@ public class User implements PortfolioSystem {
    */
   @Override
   public String listPortfolioSalesInRange(long startTimeStamp, long endTimeStamp) {
-
     StringBuilder result = new StringBuilder();
+    try {
+      writePortfolioSalesInRange(startTimeStamp, endTimeStamp, result);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return result.toString();
+  }
 
-    // if start date is in front of the end date
-    if(startTimeStamp > endTimeStamp)
-      return result.toString();
 
-    HashMap<String, List<SoldAsset>> sortedSales = new HashMap<>();
+  /**
+   * Streaming variant of listPortfolioSalesInRange, rows are written to out as they are
+   * produced.
+   *
+   * @throws IOException if out can not be written.
+   * @param startTimeStamp the start date of the range.
+   * @param endTimeStamp the end date of the range.
+   * @param out where the report goes.
+   */
+  public void writePortfolioSalesInRange(long startTimeStamp, long endTimeStamp,
+      Appendable out) throws IOException {
 
-    // populate sortedSales with related sales for each asset symbol
-    for (SoldAsset soldAsset : userPortfolio.getSoldAssets()) {
-      String symbol = soldAsset.getAssetSymbol();
-      if(!sortedSales.containsKey(symbol)) {
-        List<SoldAsset> list = new ArrayList<>();
-        list.add(soldAsset);
-        sortedSales.put(symbol, list);
-      } else {
-        sortedSales.get(symbol).add(soldAsset);
-      }
-    }
+    // if start date is in front of the end date
+    if(startTimeStamp > endTimeStamp)
+      return;
 
-    // loop through map and build result string
-    for (String symbol : sortedSales.keySet()) {
+    PortfolioView current = getView();
+    ReportWriter writer = new ReportWriter(out);
 
-      // sort based on timestamp (low to high)
-      List<SoldAsset> list = sortedSales.get(symbol);
-      list.sort(Comparator.comparing(SoldAsset::getTimeStamp));
+    // loop through sold symbols and write the sales
+    for (String symbol : current.getSoldSymbols()) {
 
-      // loop through sorted list and add to result string in range sold assets
-      for (SoldAsset soldAsset : list) {
+      // sales in range only, ordered by timestamp (low to high)
+      for (SoldAsset soldAsset : current.getSalesBetween(symbol, startTimeStamp,
+          endTimeStamp)) {
 
         double avgPurchasePrice = soldAsset.getAvgPurchasePrice();
         double soldPrice = soldAsset.getPriceSold();
-        double differenceUSD = soldPrice - avgPurchasePrice;
-        differenceUSD = Double.parseDouble(
-            new DecimalFormat(".##").format(differenceUSD));
+        long differenceUSD = Money.roundToCents(
+            soldAsset.getPriceSoldMicros() - soldAsset.getAvgPurchasePriceMicros());
         int differencePercentage = (int) (100 * (soldPrice - avgPurchasePrice) / avgPurchasePrice);
 
-        if(soldAsset.getTimeStamp() >= startTimeStamp && soldAsset.getTimeStamp() <= endTimeStamp) {
-          result.append("\nAsset Name         : ").append(soldAsset.getAssetFullName());
-          result.append("\nAvg Purchase Price : ").append(soldAsset.getAvgPurchasePrice());
-          result.append("\nSale price         : ").append(soldAsset.getPriceSold());
-          result.append("\nDifference USD     : ").append(differenceUSD);
-          result.append("\nDifference %       : ").append(differencePercentage);
-          result.append("\n");
-        }
+        writer.text("\nAsset Name         : ").text(soldAsset.getAssetFullName());
+        writer.text("\nAvg Purchase Price : ").money(avgPurchasePrice);
+        writer.text("\nSale price         : ").money(soldPrice);
+        writer.text("\nDifference USD     : ").decimal(differenceUSD, 6);
+        writer.text("\nDifference %       : ").number(differencePercentage);
+        writer.text("\n");
       }
     }
-
-    return result.toString();
   }
 
   /**
@@ -499,12 +959,70 @@ public class User implements PortfolioSystem {
    * @return the available funds of the user.
    */
   public double getAvailableFunds() {
+    synchronized (lock) {
+      return Money.toUsd(availableFunds);
+    }
+  }
+
+  /**
+   * Returning the available funds in micro dollars.
+   *
+   * @return the available funds of the user in 1e-6 USD.
+   */
+  long getAvailableFundsMicros() {
     return availableFunds;
   }
 
 
   /**
-   * Returning the user's portfolio.
+   * Returning the order in which lots are used up when no order is given for a sale.
+   *
+   * @return the lot selection of this account.
+   */
+  public LotSelection getLotSelection() {
+    synchronized (lock) {
+      return lotSelection;
+    }
+  }
+
+
+  /**
+   * Setting the order in which lots are used up when no order is given for a sale.
+   *
+   * @param lotSelection the lot selection of this account.
+   */
+  public void setLotSelection(LotSelection lotSelection) {
+    synchronized (lock) {
+      this.lotSelection = lotSelection;
+    }
+  }
+
+
+  /**
+   * Returning a point in time copy of this account. Trades take the copy as they change the
+   * account, so a report reads it without waiting for the lock. Only a portfolio changed behind
+   * the account's back, through getUserPortfolio, is copied here.
+   *
+   * @return immutable view of the account.
+   */
+  public PortfolioView getView() {
+    PortfolioView current = view;
+    if(current != null && current.isCurrent(availableFunds, userPortfolio))
+      return current;
+
+    synchronized (lock) {
+      current = view;
+      if(current == null || !current.isCurrent(availableFunds, userPortfolio)) {
+        current = new PortfolioView(availableFunds, userPortfolio, current);
+        view = current;
+      }
+      return current;
+    }
+  }
+
+  /**
+   * Returning the user's portfolio. The portfolio is not guarded by the account lock, it must not
+   * be read while other threads trade on the account; reports read getView instead.
    *
    * @return the portfolio of the user.
    */
@@ -523,7 +1041,7 @@ public class User implements PortfolioSystem {
    * @param names list of asset partial names or full symbols
    * @return list with symbols which user has from names list.
    */
-  private List<String> namesToSymbolList(List<String> names) {
+  List<String> namesToSymbolList(PortfolioView current, List<String> names) {
 
     List<String> result = new ArrayList<>();
     // lower cased names list
@@ -535,7 +1053,7 @@ public class User implements PortfolioSystem {
     }
 
     // check if names contains symbol
-    for (Entry<String, String> entry : userPortfolio.getAssetsInPortfolio().entrySet()) {
+    for (Entry<String, String> entry : current.getAssetsInPortfolio().entrySet()) {
       String symbol = entry.getKey();
       String toCompare = symbol.toLowerCase();
       if(lowerCasedNames.contains(toCompare)){
@@ -552,7 +1070,7 @@ public class User implements PortfolioSystem {
     }
 
     // check if name contains partial name
-    for (Entry<String, String> entry : userPortfolio.getSymbolFullName().entrySet()) {
+    for (Entry<String, String> entry : current.getSymbolFullName().entrySet()) {
       String key = entry.getKey();
       String compareTo = key.substring(0, 3).toLowerCase();
       String value = entry.getValue();
@@ -565,185 +1083,59 @@ public class User implements PortfolioSystem {
   }
 
   /**
-   * Helper method to get sorted stock assets in our portfolio by asset symbol
-   *
-   * @return sorted portfolio hash map
-   */
-  private HashMap<String, List<Asset>> getSortedStockPortfolio() {
-
-    HashMap<String, List<Asset>> result = new HashMap<>();
-
-    // populate result hash map with stock assets
-    for(Asset asset : userPortfolio.getStock()) {
-      if(!result.containsKey(asset.getAssetSymbol())) {
-        List<Asset> newList = new ArrayList<>();
-        newList.add(asset);
-        result.put(asset.getAssetSymbol(), newList);
-      } else {
-        result.get(asset.getAssetSymbol()).add(asset);
-      }
-    }
-
-    return result;
-  }
-
-  /**
-   * Helper method to get sorted crypto assets in our portfolio by asset symbol
-   *
-   * @return sorted portfolio hash map
-   */
-  private HashMap<String, List<Asset>> getSortedCryptoPortfolio() {
-
-    HashMap<String, List<Asset>> result = new HashMap<>();
-
-    // populate result hash map with crypto assets
-    for(Asset asset : userPortfolio.getCrypto()) {
-      if(!result.containsKey(asset.getAssetSymbol())) {
-        List<Asset> newList = new ArrayList<>();
-        newList.add(asset);
-        result.put(asset.getAssetSymbol(), newList);
-      } else {
-        result.get(asset.getAssetSymbol()).add(asset);
-      }
-    }
-
-    return result;
-  }
-
-  /**
-   * Helper method to get all sorted crypto and stock portfolio by asset symbol
-   *
-   * @return sorted portfolio hash map
-   */
-  private HashMap<String, List<Asset>> getAllSortedPortfolio() {
-
-    HashMap<String, List<Asset>> result = new HashMap<>();
-
-    // merge two hash (stock and crypto) together
-    result = getSortedStockPortfolio();
-    result.putAll(getSortedCryptoPortfolio());
-
-    return result;
-  }
-
-  /**
-   * Helper method to get sorted portfolio based on asset names list.
-   *
-   * @return sorted portfolio hash map
-   */
-  private HashMap<String, List<Asset>> getAllSortedPortfolio(List<String> names){
-
-
-  HashMap<String, List<Asset>> result = new HashMap<>();
-  // populate result hash map with selected stock assets
-  for(Asset asset : userPortfolio.getStock()) {
-    if (!result.containsKey(asset.getAssetSymbol()) && names.contains(asset.getAssetSymbol())) {
-      List<Asset> newList = new ArrayList<>();
-      newList.add(asset);
-      result.put(asset.getAssetSymbol(), newList);
-      continue;
-    }
-    if (result.containsKey(asset.getAssetSymbol())) {
-      result.get(asset.getAssetSymbol()).add(asset);
-    }
-  }
-
-    // populate result hash map with selected crypto assets
-    for(Asset asset : userPortfolio.getCrypto()) {
-      if (!result.containsKey(asset.getAssetSymbol()) && names.contains(asset.getAssetSymbol())) {
-        List<Asset> newList = new ArrayList<>();
-        newList.add(asset);
-        result.put(asset.getAssetSymbol(), newList);
-        continue;
-      }
-
-      if (result.containsKey(asset.getAssetSymbol())) {
-        result.get(asset.getAssetSymbol()).add(asset);
-      }
-    }
-
-    return result;
-  }
-
-
-  /**
-   * Helper method to get detailed information String on all assets of one symbol.
+   * Helper method to write detailed information on all assets of one symbol.
    *
-   * @param assets grouped list of same symbol assets
+   * @param position position held in this asset symbol
    * @param livePrice live price for this asset symbol
-   * @return detailed information about asset.
+   * @param writer where the information goes.
+   * @throws IOException if the information can not be written.
    */
-  private String assetDetailedInfo(List<Asset> assets, double livePrice) {
+  private void assetDetailedInfo(PositionView position, double livePrice, ReportWriter writer)
+      throws IOException {
 
-    String name = "";
-    String symbol = "";
-    double avgPurchasePrice = 0;
-    double amount = 0;
+    // totals are kept by the portfolio, no need to walk the lots
+    double avgPurchasePrice = position.getAveragePriceBought();
     double differenceUSD = 0;
     int differencePercentage = 0;
 
-    for (Asset asset : assets) {
-
-      if (name.isEmpty()) {
-        name = asset.getAssetFullName();
-      }
-      if (symbol.isEmpty()) {
-        symbol = asset.getAssetSymbol();
-      }
-
-      avgPurchasePrice += asset.getPriceBought();
-      amount += asset.getAmount();
-    }
-
-    avgPurchasePrice /= assets.size();
-    differenceUSD = livePrice - avgPurchasePrice;
-    livePrice = Double.parseDouble(
-        new DecimalFormat(".##").format(livePrice));
-    differenceUSD = Double.parseDouble(
-        new DecimalFormat(".##").format(differenceUSD));
+    differenceUSD = Money.roundToCents(livePrice - avgPurchasePrice);
+    livePrice = Money.roundToCents(livePrice);
     differencePercentage = (int) (100 * (livePrice - avgPurchasePrice) / avgPurchasePrice);
 
-
-    return "\nAsset Name     : " + name +
-        "\nAsset Symbol   : " + symbol +
-        "\nAsset Amount   : " + amount +
-        "\nAverage Price  : " + avgPurchasePrice + " USD" +
-        "\nLive Price     : " + livePrice + " USD" +
-        "\nDifference USD : " + differenceUSD + " USD" +
-        "\nDifference %   : " + differencePercentage + "%\n";
-
+    writer.text("\nAsset Name     : ").text(position.getAssetFullName())
+        .text("\nAsset Symbol   : ").text(position.getAssetSymbol())
+        .text("\nAsset Amount   : ").amount(position.getAmount())
+        .text("\nAverage Price  : ").money(avgPurchasePrice).text(" USD")
+        .text("\nLive Price     : ").money(livePrice).text(" USD")
+        .text("\nDifference USD : ").money(differenceUSD).text(" USD")
+        .text("\nDifference %   : ").number(differencePercentage).text("%\n");
   }
 
   /**
-   * Helper method to get detailed information on the assets' profitability.
+   * Helper method to write detailed information on the assets' profitability.
    *
-   * @param assets grouped list of assets in portfolio.
+   * @param assets grouped assets in portfolio.
    * @param livePrice the actual price of the relevant asset.
-   * @return the detailed information of profitability.
+   * @param writer where the information goes.
+   * @throws IOException if the information can not be written.
    */
-  private String assetPurchaseRangeInfo(List<Asset> assets, double livePrice) {
-
-    StringBuilder result = new StringBuilder();
+  private void assetPurchaseRangeInfo(Collection<Asset> assets, double livePrice,
+      ReportWriter writer) throws IOException {
 
     for (Asset asset : assets) {
 
       double purchasePrice = asset.getPriceBought();
-      double differenceUSD = livePrice - purchasePrice;
-      livePrice = Double.parseDouble(
-              new DecimalFormat(".##").format(livePrice));
-      differenceUSD = Double.parseDouble(
-              new DecimalFormat(".##").format(differenceUSD));
+      double differenceUSD = Money.roundToCents(livePrice - purchasePrice);
+      livePrice = Money.roundToCents(livePrice);
       int differencePercentage = (int) (100 * (livePrice - purchasePrice) / purchasePrice);
 
-      result.append("\nAsset Name     : ").append(asset.getAssetFullName());
-      result.append("\nPrice Bought   : ").append(asset.getPriceBought());
-      result.append("\nLive Price     : ").append(livePrice);
-      result.append("\nDifference USD : ").append(differenceUSD);
-      result.append("\nDifference %   : ").append(differencePercentage);
-      result.append("\n");
+      writer.text("\nAsset Name     : ").text(asset.getAssetFullName());
+      writer.text("\nPrice Bought   : ").money(purchasePrice);
+      writer.text("\nLive Price     : ").money(livePrice);
+      writer.text("\nDifference USD : ").money(differenceUSD);
+      writer.text("\nDifference %   : ").number(differencePercentage);
+      writer.text("\n");
     }
-
-    return result.toString();
   }
 
   /**
@@ -754,14 +1146,9 @@ public class User implements PortfolioSystem {
   public String getShortStatus() {
 
     StringBuilder result = new StringBuilder();
-    HashMap<String, List<Asset>> allAssets = getAllSortedPortfolio();
-    for(Entry<String, List<Asset>> entry : allAssets.entrySet()) {
-      String symbol = entry.getKey();
-      List<Asset> list = entry.getValue();
-      double amount = 0;
-      for (Asset asset : list) {
-        amount += asset.getAmount();
-      }
+    for(PositionView position : getView().getPositions()) {
+      String symbol = position.getAssetSymbol();
+      double amount = position.getAmount();
 
       result.append("{").append(symbol.toUpperCase()).append(" x ").append(amount).append("} ");
     }
@@ -781,33 +1168,75 @@ public class User implements PortfolioSystem {
   public List<AssetQuote> getAssetInformationAlternate(List<String> assetNames)
           throws IOException, InterruptedException {
 
-    // build multiple symbol request string part
-    StringBuilder symbolList = new StringBuilder();
-
     // list of all asset symbols to make request from.
     // we will use helper method to sort asset names
-    List<String> symbols = namesToSymbolList(assetNames);
-
-    // build string with string builder
-    for (String assetSymbol : symbols) {
-      symbolList.append(assetSymbol).append("%2C");
-    }
+    List<String> symbols = namesToSymbolList(getView(), assetNames);
 
-    // result to return
-    List<AssetQuote> assetInformation = new ArrayList<>();
+    // connect to api to get information, empty list if asset names is not in our portfolio
+    return new ArrayList<>(quoteProvider.getQuotes(symbols, QuotePriority.REPORT));
 
-    //return empty list if asset names is not in our portfolio
-    if(symbolList.length() == 0)
-      return assetInformation;
+  }
 
-    // connect to api to get information
-    String requestString = "v6/finance/quote?region=US&lang=en&symbols=" + symbolList.toString();
-    ConnectionPort cp = new ConnectionPort(requestString, keyApi);
+  /**
+   * Helper method to fetch the quotes of the given asset symbols in one request.
+   *
+   * @throws IOException if underlying service fails.
+   * @throws InterruptedException if underlying service fails.
+   * @param current view of the account.
+   * @param symbols asset symbols the report needs.
+   * @return priced snapshot of the view.
+   */
+  private PricedSnapshot priceSnapshot(PortfolioView current, List<String> symbols)
+      throws IOException, InterruptedException {
+    return new PricedSnapshot(current, quoteProvider.getQuotes(symbols, QuotePriority.REPORT));
+  }
 
-    // create and populate return list
-    assetInformation = new ArrayList<>(cp.getAssetQuote());
+  /**
+   * Helper method to list the asset symbols held in the given view.
+   *
+   * @param current view of the account.
+   * @param type the type of asset as the api names it, null for every type.
+   * @return the asset symbols held.
+   */
+  private static List<String> heldSymbols(PortfolioView current, String type) {
+    List<String> symbols = new ArrayList<>();
+    for (PositionView position : current.getPositions()) {
+      if(type == null || position.getAssetType().equals(type)) {
+        symbols.add(position.getAssetSymbol());
+      }
+    }
+    return symbols;
+  }
 
-    return assetInformation;
+  /**
+   * Helper method to name an asset type the way the api does.
+   *
+   * @param assetType the type of asset, stock or crypto.
+   * @return EQUITY or CRYPTOCURRENCY, null if the type is neither.
+   */
+  private static String assetTypeOf(String assetType) {
+    if (assetType.toLowerCase().equals("stock")) {
+      return "EQUITY";
+    }
+    if (assetType.toLowerCase().equals("crypto")) {
+      return "CRYPTOCURRENCY";
+    }
+    return null;
+  }
 
+  /**
+   * Helper method to add up live prices of the assets held.
+   *
+   * @param snapshot priced snapshot of the account.
+   * @return sum of the live prices rounded to two decimal places.
+   */
+  private double sumLivePrices(PricedSnapshot snapshot) {
+    long livePrice = 0;
+    for(AssetQuote quote : snapshot.getQuotes()) {
+      if(snapshot.getView().getPosition(quote.getAssetSymbol()) != null) {
+        livePrice += quote.getLivePriceMicros();
+      }
+    }
+    return Money.toUsd(Money.roundToCents(livePrice));
   }
 }
@@ -0,0 +1,87 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BatchingQuoteProviderTest {
+
+  // prices every symbol at its position in the request, refuses requests holding LYIT
+  private final List<List<String>> requests = Collections.synchronizedList(new ArrayList<>());
+  private final QuoteProvider upstream = symbols -> {
+    requests.add(new ArrayList<>(symbols));
+    if (symbols.contains("LYIT")) {
+      return CompletableFuture.failedFuture(new IOException("upstream down"));
+    }
+    List<AssetQuote> quotes = new ArrayList<>();
+    for (int i = 0; i < symbols.size(); i++) {
+      quotes.add(new AssetQuote(symbols.get(i), symbols.get(i) + " Inc.", "EQUITY", 1, i + 1));
+    }
+    return CompletableFuture.completedFuture(quotes);
+  };
+
+  @BeforeMethod
+  public void setUp() {
+    requests.clear();
+  }
+
+  @Test
+  public void testCallsWithinTheWindowShareOneRequest() throws Exception {
+    BatchingQuoteProvider provider = new BatchingQuoteProvider(upstream,
+        Duration.ofMillis(200), 10);
+    CompletableFuture<List<AssetQuote>> first = provider.getQuotesAsync(List.of("AAPL"));
+    CompletableFuture<List<AssetQuote>> second = provider.getQuotesAsync(List.of("MSFT", "aapl"));
+    assertTrue(requests.isEmpty());
+
+    // each caller gets its own symbols back, in the order it asked for them
+    List<AssetQuote> mine = second.get(5, TimeUnit.SECONDS);
+    assertEquals(requests, List.of(List.of("AAPL", "MSFT")));
+    assertEquals(first.get().get(0).getAssetSymbol(), "AAPL");
+    assertEquals(first.get().get(0).getLivePrice(), 1.0);
+    assertEquals(mine.get(0).getAssetSymbol(), "MSFT");
+    assertEquals(mine.get(0).getLivePrice(), 2.0);
+    assertEquals(mine.get(1).getAssetSymbol(), "AAPL");
+  }
+
+  @Test
+  public void testBatchIsSplitAtMaxBatch() throws Exception {
+    BatchingQuoteProvider provider = new BatchingQuoteProvider(upstream, Duration.ofHours(1), 2);
+    CompletableFuture<List<AssetQuote>> quotes = provider.getQuotesAsync(
+        List.of("AAPL", "MSFT", "TSLA", "NVDA", "IBM"));
+
+    // full batches go at once, the rest waits for the window or a flush
+    assertEquals(requests, List.of(List.of("AAPL", "MSFT"), List.of("TSLA", "NVDA")));
+    provider.flush();
+    assertEquals(requests.get(2), List.of("IBM"));
+    assertEquals(quotes.get(5, TimeUnit.SECONDS).size(), 5);
+  }
+
+  @Test
+  public void testFailureFailsEveryCallerOfTheBatch() throws Exception {
+    BatchingQuoteProvider provider = new BatchingQuoteProvider(upstream, Duration.ofHours(1), 10);
+    CompletableFuture<List<AssetQuote>> first = provider.getQuotesAsync(List.of("AAPL"));
+    CompletableFuture<List<AssetQuote>> second = provider.getQuotesAsync(List.of("LYIT"));
+    provider.flush();
+
+    assertEquals(requests.size(), 1);
+    for (CompletableFuture<List<AssetQuote>> caller : List.of(first, second)) {
+      try {
+        caller.get(5, TimeUnit.SECONDS);
+        throw new AssertionError("Failure was not passed on");
+      } catch (ExecutionException e) {
+        assertEquals(QuoteProvider.unwrap(e).getMessage(), "upstream down");
+      }
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CoalescingQuoteProviderTest {
+
+  // requests are held open until the test answers them
+  private final List<List<String>> requests = new ArrayList<>();
+  private final List<QuotePriority> priorities = new ArrayList<>();
+  private final List<CompletableFuture<List<AssetQuote>>> pending = new ArrayList<>();
+
+  private CoalescingQuoteProvider provider;
+
+  @BeforeMethod
+  public void setUp() {
+    requests.clear();
+    priorities.clear();
+    pending.clear();
+    provider = new CoalescingQuoteProvider(new QuoteProvider() {
+      @Override
+      public CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> symbols) {
+        return getQuotesAsync(symbols, QuotePriority.INTERACTIVE);
+      }
+
+      @Override
+      public CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> symbols,
+          QuotePriority priority) {
+        CompletableFuture<List<AssetQuote>> future = new CompletableFuture<>();
+        requests.add(symbols);
+        priorities.add(priority);
+        pending.add(future);
+        return future;
+      }
+    });
+  }
+
+  private static AssetQuote quote(String symbol, double price) {
+    return new AssetQuote(symbol, symbol + " Inc.", "EQUITY", 1, price);
+  }
+
+  @Test
+  public void testCallersOfTheSameSymbolShareOneRequest() throws Exception {
+    CompletableFuture<List<AssetQuote>> first = provider.getQuotesAsync(List.of("AAPL"));
+    CompletableFuture<List<AssetQuote>> second = provider.getQuotesAsync(List.of("aapl", "MSFT"));
+
+    assertEquals(requests, List.of(List.of("AAPL"), List.of("MSFT")));
+    assertEquals(provider.inFlightCount(), 2);
+
+    pending.get(0).complete(List.of(quote("AAPL", 150)));
+    pending.get(1).complete(List.of(quote("MSFT", 300)));
+    assertEquals(first.get().get(0).getLivePrice(), 150.0);
+    assertSame(second.get().get(0), first.get().get(0));
+    assertEquals(second.get().get(1).getLivePrice(), 300.0);
+    assertEquals(provider.inFlightCount(), 0);
+
+    // once answered, the next caller sends a request of its own
+    provider.getQuotesAsync(List.of("AAPL"));
+    assertEquals(requests.size(), 3);
+  }
+
+  @Test
+  public void testUrgentCallerDoesNotJoinLessUrgentRequest() {
+    provider.getQuotesAsync(List.of("AAPL"), QuotePriority.PREFETCH);
+    provider.getQuotesAsync(List.of("AAPL"), QuotePriority.INTERACTIVE);
+    assertEquals(requests.size(), 2);
+    assertEquals(priorities, List.of(QuotePriority.PREFETCH, QuotePriority.INTERACTIVE));
+
+    // a less urgent caller joins the interactive request
+    provider.getQuotesAsync(List.of("AAPL"), QuotePriority.REPORT);
+    assertEquals(requests.size(), 2);
+  }
+
+  @Test
+  public void testFailureReachesEveryCaller() throws InterruptedException {
+    CompletableFuture<List<AssetQuote>> first = provider.getQuotesAsync(List.of("AAPL"));
+    CompletableFuture<List<AssetQuote>> second = provider.getQuotesAsync(List.of("AAPL"));
+    assertEquals(requests.size(), 1);
+
+    pending.get(0).completeExceptionally(new QuotaExceededException("budget spent"));
+    for (CompletableFuture<List<AssetQuote>> caller : List.of(first, second)) {
+      try {
+        caller.get();
+        throw new AssertionError("Failure was not passed on");
+      } catch (ExecutionException e) {
+        IOException cause = QuoteProvider.unwrap(e);
+        assertTrue(cause instanceof QuotaExceededException, String.valueOf(cause));
+      }
+    }
+    assertEquals(provider.inFlightCount(), 0);
+  }
+}
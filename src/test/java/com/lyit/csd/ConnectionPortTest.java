@@ -0,0 +1,124 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class ConnectionPortTest {
+
+  private static List<AssetQuote> decode(String json) throws IOException {
+    return ConnectionPort.mapRequiredFields(
+        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testQuoteResponseIsDecoded() throws IOException {
+    List<AssetQuote> quotes = decode("{\"quoteResponse\":{\"result\":["
+        + "{\"language\":\"en-US\",\"quoteType\":\"EQUITY\",\"currency\":\"USD\","
+        + "\"regularMarketPrice\":310.2,\"regularMarketTime\":1640995200,"
+        + "\"shortName\":\"Microsoft Corporation\",\"symbol\":\"MSFT\"},"
+        + "{\"quoteType\":\"CRYPTOCURRENCY\",\"regularMarketPrice\":47000.5,"
+        + "\"regularMarketTime\":1640995260,\"shortName\":\"Bitcoin USD\","
+        + "\"symbol\":\"BTC-USD\"}],\"error\":null}}");
+
+    assertEquals(quotes.size(), 2);
+    AssetQuote msft = quotes.get(0);
+    assertEquals(msft.getAssetSymbol(), "MSFT");
+    assertEquals(msft.getAssetFullName(), "Microsoft Corporation");
+    assertEquals(msft.getAssetType(), "EQUITY");
+    assertEquals(msft.getTimeStamp(), 1_640_995_200L);
+    assertEquals(msft.getLivePrice(), 310.2);
+    assertEquals(quotes.get(1).getAssetType(), "CRYPTOCURRENCY");
+    assertEquals(quotes.get(1).getLivePrice(), 47_000.5);
+  }
+
+  @Test
+  public void testMissingAndReorderedFields() throws IOException {
+    List<AssetQuote> quotes = decode("{\"quoteResponse\":{\"error\":null,\"result\":["
+        + "{\"symbol\":\"IBM\",\"regularMarketPrice\":130}]}}");
+
+    assertEquals(quotes.size(), 1);
+    assertEquals(quotes.get(0).getAssetSymbol(), "IBM");
+    assertEquals(quotes.get(0).getLivePrice(), 130.0);
+    assertNull(quotes.get(0).getAssetFullName());
+    assertNull(quotes.get(0).getAssetType());
+    assertEquals(quotes.get(0).getTimeStamp(), 0);
+  }
+
+  @Test
+  public void testUnknownNestedObjectsAreSkipped() throws IOException {
+    List<AssetQuote> quotes = decode("{\"finance\":{\"result\":[{\"symbol\":\"NOT\"}]},"
+        + "\"quoteResponse\":{\"meta\":{\"result\":[1,2]},\"result\":["
+        + "{\"components\":[\"^NDX\",{\"symbol\":\"NOT\"}],"
+        + "\"pageViews\":{\"shortTermTrend\":\"UP\",\"nested\":{\"symbol\":\"NOT\"}},"
+        + "\"symbol\":\"AAPL\",\"regularMarketPrice\":170.5}]}}");
+
+    assertEquals(quotes.size(), 1);
+    assertEquals(quotes.get(0).getAssetSymbol(), "AAPL");
+    assertEquals(quotes.get(0).getLivePrice(), 170.5);
+  }
+
+  @Test
+  public void testEmptyResult() throws IOException {
+    assertTrue(decode("{\"quoteResponse\":{\"result\":[],\"error\":null}}").isEmpty());
+    assertTrue(decode("{\"message\":\"Limit Exceeded\"}").isEmpty());
+  }
+
+  private static List<PriceBar> chart(String json) throws IOException {
+    return ConnectionPort.mapChart(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test(timeOut = 5_000)
+  public void testMalformedChartArraysDoNotHang() throws IOException {
+    // a null timestamp adds no bars, the rest of the response is still read
+    assertTrue(chart("{\"chart\":{\"result\":[{\"timestamp\":null,\"indicators\":{\"quote\":"
+        + "[{\"close\":[1.5]}]}}],\"error\":null}}").isEmpty());
+
+    List<PriceBar> bars = chart("{\"chart\":{\"result\":[{\"timestamp\":[1,[2],{\"t\":3}],"
+        + "\"indicators\":{\"quote\":[{\"open\":{\"a\":1},\"close\":[1.5,2.5,3.5],"
+        + "\"volume\":7}]}}],\"error\":null}}");
+    assertEquals(bars.size(), 3);
+    assertEquals(bars.get(2).getClose(), 3.5);
+    assertTrue(Double.isNaN(bars.get(0).getOpen()));
+
+    expectThrows(IOException.class, () -> chart("{\"chart\":{\"result\":[{\"timestamp\":[1,2"));
+    expectThrows(IOException.class, () -> chart("{\"chart\":{\"result\":[{\"timestamp\":[1],"
+        + "\"indicators\":{\"quote\":[{\"close\":[1.5,"));
+  }
+
+  @Test
+  public void testRateLimitIsQuotaExceeded() throws IOException {
+    HttpServer server = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", exchange -> {
+      byte[] body = "{\"message\":\"Limit Exceeded\"}".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(429, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+    try {
+      URI base = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+      ConnectionPort api = new ConnectionPort(
+          new HttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(5), base), "test");
+      expectThrows(QuotaExceededException.class, () -> api.getQuotes(List.of("MSFT")));
+    } finally {
+      server.stop(0);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class HistoryStoreTest {
+
+  private static final long DAY = 86_400;
+  private static final long NOW = 1_000 * DAY;
+
+  private int calls;
+  private final List<String> ranges = new ArrayList<>();
+  private final HistorySource api = (symbol, interval, range) -> {
+    calls++;
+    ranges.add(range);
+    long start = HistoryStore.rangeStart(range, NOW);
+    List<PriceBar> bars = new ArrayList<>();
+    for (long t = NOW - 400 * DAY; t <= NOW; t += DAY) {
+      if (t >= start) {
+        bars.add(new PriceBar(symbol, "Microsoft Corporation", "EQUITY", t, t, t + 2, t - 1,
+            t + 1, t / DAY));
+      }
+    }
+    return bars;
+  };
+
+  private Path directory;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("history");
+    calls = 0;
+    ranges.clear();
+  }
+
+  @Test
+  public void testRepeatedReadsStayLocal() throws IOException, InterruptedException {
+    Clock clock = Clock.fixed(Instant.ofEpochSecond(NOW), ZoneOffset.UTC);
+    try (HistoryStore store = new HistoryStore(directory, api, clock)) {
+      PriceSeries month = store.read("MSFT", "1d", "1mo");
+      assertEquals(month.size(), 32);
+      assertEquals(store.read("MSFT", "1d", "5d").size(), 6);
+      assertEquals(calls, 1);
+
+      // a longer range fetches again, the bars already stored are merged in
+      PriceSeries year = store.read("MSFT", "1d", "1y");
+      assertEquals(year.size(), 367);
+      assertEquals(store.read("MSFT", "1d", "6mo").size(), 184);
+      assertEquals(calls, 2);
+
+      PriceBar last = year.toBars().get(year.size() - 1);
+      assertEquals(last.getTimeStamp(), NOW);
+      assertEquals(last.getOpen(), NOW, 0);
+      assertEquals(last.getClose(), NOW + 1, 0);
+      assertEquals(last.getVolume(), NOW / DAY);
+      assertEquals(last.getAssetFullName(), "Microsoft Corporation");
+    }
+
+    // the series survives a restart
+    try (HistoryStore store = new HistoryStore(directory, api,
+        Clock.fixed(Instant.ofEpochSecond(NOW), ZoneOffset.UTC))) {
+      assertEquals(store.read("msft", "1d", "1y").size(), 367);
+      assertEquals(calls, 2);
+    }
+  }
+
+  @Test
+  public void testNewBarIsFetchedOnceDue() throws IOException, InterruptedException {
+    try (HistoryStore store = new HistoryStore(directory, api,
+        Clock.fixed(Instant.ofEpochSecond(NOW - 2 * DAY), ZoneOffset.UTC))) {
+      store.read("MSFT", "1d", "5d");
+    }
+    try (HistoryStore store = new HistoryStore(directory, api,
+        Clock.fixed(Instant.ofEpochSecond(NOW), ZoneOffset.UTC))) {
+      PriceSeries series = store.read("MSFT", "1d", "5d");
+      assertEquals(calls, 2);
+      assertEquals(series.size(), 6);
+      for (int i = 1; i < series.size(); i++) {
+        assertEquals(series.getTimeStamp(i) - series.getTimeStamp(i - 1), DAY);
+      }
+    }
+  }
+
+  @Test
+  public void testDueBarFetchesOnlyTheTail() throws IOException, InterruptedException {
+    try (HistoryStore store = new HistoryStore(directory, api,
+        Clock.fixed(Instant.ofEpochSecond(NOW - 2 * DAY), ZoneOffset.UTC))) {
+      store.read("MSFT", "1d", "1y");
+    }
+    try (HistoryStore store = new HistoryStore(directory, api,
+        Clock.fixed(Instant.ofEpochSecond(NOW), ZoneOffset.UTC))) {
+      PriceSeries year = store.read("MSFT", "1d", "1y");
+      assertEquals(ranges, List.of("1y", "5d"));
+      assertEquals(year.size(), 367);
+      assertEquals(year.getTimeStamp(year.size() - 1), NOW);
+    }
+  }
+
+  @Test
+  public void testEarlierViewsKeepTheirBars() throws IOException, InterruptedException {
+    Clock clock = Clock.fixed(Instant.ofEpochSecond(NOW), ZoneOffset.UTC);
+    try (HistoryStore store = new HistoryStore(directory, api, clock)) {
+      PriceSeries month = store.read("MSFT", "1d", "1mo");
+      long first = month.getTimeStamp(0);
+      double close = month.getClose(0);
+
+      // older bars are merged in front of the stored ones
+      PriceSeries half = store.read("MSFT", "1d", "6mo");
+      assertEquals(half.size(), 184);
+      assertEquals(month.size(), 32);
+      assertEquals(month.getTimeStamp(0), first);
+      assertEquals(month.getClose(0), close, 0);
+    }
+  }
+
+  @Test
+  public void testUserServesHistoryFromStore() throws IOException {
+    User user = new User("test", symbols -> null);
+    try (HistoryStore store = new HistoryStore(directory, api,
+        Clock.fixed(Instant.ofEpochSecond(NOW), ZoneOffset.UTC))) {
+      user.setHistoryStore(store);
+      List<AssetQuote> history = user.getHistoricalData(List.of("MSFT", "IBM"), "1d", "5d");
+      user.getHistoricalData(List.of("MSFT", "IBM"), "1d", "5d");
+      assertEquals(history.size(), 12);
+      assertEquals(history.get(6).getAssetSymbol(), "IBM");
+      assertEquals(calls, 2);
+    }
+  }
+
+  @Test
+  public void testExportIsCompressedClosingPrices() throws IOException, InterruptedException {
+    try (HistoryStore store = new HistoryStore(directory, api,
+        Clock.fixed(Instant.ofEpochSecond(NOW), ZoneOffset.UTC))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertEquals(store.export("MSFT", "1d", "1y", out), 367);
+      PriceSeries stored = store.read("MSFT", "1d", "1y");
+      assertEquals(calls, 1);
+      // evenly spaced times take a bit or two each, against 16 bytes per bar in the columns
+      assertTrue(out.size() < 367 * 16 / 2, "export took " + out.size());
+
+      long[] times = new long[367];
+      double[] closes = new double[367];
+      int read = 0;
+      try (TimeSeriesDecoder decoder = new TimeSeriesDecoder(
+          new ByteArrayInputStream(out.toByteArray()))) {
+        while (decoder.nextBlock()) {
+          read += decoder.decode(times, closes, read);
+        }
+      }
+      assertEquals(read, 367);
+      for (int i = 0; i < read; i++) {
+        assertEquals(times[i], stored.getTimeStamp(i));
+        assertEquals(closes[i], stored.getClose(i));
+      }
+    }
+  }
+
+  @Test
+  public void testChartResponseIsParsed() throws IOException {
+    String json = "{\"chart\":{\"result\":[{\"meta\":{\"symbol\":\"MSFT\",\"instrumentType\":"
+        + "\"EQUITY\"},\"timestamp\":[1,2,3],\"indicators\":{\"quote\":[{\"open\":[1.0,2.0,3.0],"
+        + "\"close\":[1.5,null,3.5],\"volume\":[10,20,30]}]}}],\"error\":null}}";
+    List<PriceBar> bars = ConnectionPort.mapChart(
+        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    assertEquals(bars.size(), 2);
+    assertEquals(bars.get(1).getTimeStamp(), 3);
+    assertEquals(bars.get(1).getClose(), 3.5, 0);
+    assertEquals(bars.get(1).getVolume(), 30);
+    assertEquals(bars.get(0).getAssetType(), "EQUITY");
+  }
+}
@@ -0,0 +1,110 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class LoadGeneratorTest {
+
+  private final QuoteProvider market = symbols -> {
+    List<AssetQuote> quotes = new ArrayList<>();
+    for (String symbol : symbols) {
+      quotes.add(new AssetQuote(symbol, symbol + " Inc.", "EQUITY", 1, 100));
+    }
+    return CompletableFuture.completedFuture(quotes);
+  };
+
+  @Test
+  public void testPercentilesAreWithinOnePercent() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    List<Long> values = new ArrayList<>();
+    Random random = new Random(1);
+    for (int i = 0; i < 100_000; i++) {
+      // spread over several powers of ten like real latencies
+      long value = (long) Math.pow(10, 3 + 4 * random.nextDouble());
+      values.add(value);
+      histogram.record(value);
+    }
+    values.sort(null);
+
+    for (double percentile : new double[] {50, 99, 99.9}) {
+      long exact = values.get((int) Math.ceil(percentile / 100 * values.size()) - 1);
+      assertEquals(histogram.getValueAtPercentile(percentile), exact, exact * 0.01);
+    }
+    assertEquals(histogram.getValueAtPercentile(100), (long) values.get(values.size() - 1));
+    assertEquals(histogram.getCount(), 100_000);
+
+    LatencyHistogram sum = new LatencyHistogram();
+    sum.add(histogram);
+    sum.add(histogram);
+    assertEquals(sum.getCount(), 200_000);
+    assertEquals(sum.getValueAtPercentile(50), histogram.getValueAtPercentile(50));
+  }
+
+  @Test
+  public void testRunRecordsEveryOperationOfTheMix() throws InterruptedException, IOException {
+    try (PortfolioEngine engine = new PortfolioEngine("test", market, null, Durability.NONE)) {
+      LoadGenerator load = new LoadGenerator(engine);
+      load.setUsers(4);
+      load.setDuration(Duration.ofMillis(100), Duration.ofMillis(500));
+      load.setMix("buy=5,sell=3,quote=0");
+
+      LoadGenerator.Report report = load.run();
+      assertEquals(engine.getAccountIds().size(), 4);
+      for (LoadGenerator.Operation operation : List.of(LoadGenerator.Operation.BUY,
+          LoadGenerator.Operation.SELL, LoadGenerator.Operation.REPORT)) {
+        assertTrue(report.getLatencies(operation).getCount() > 0, operation.name());
+        assertEquals(report.getErrors(operation), 0);
+        assertTrue(report.getThroughput(operation) > 0);
+      }
+      assertEquals(report.getLatencies(LoadGenerator.Operation.QUOTE).getCount(), 0);
+      assertTrue(report.toString().contains("p999"));
+    }
+  }
+
+  @Test
+  public void testLatencyCountsFromWhenTheOperationWasDue() throws Exception {
+    // each lookup takes 50 ms but one is due every 10 ms, so the backlog grows through the run
+    QuoteProvider slow = symbols -> CompletableFuture.supplyAsync(() -> List.of(),
+        CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+    try (PortfolioEngine engine = new PortfolioEngine("test", slow, null, Durability.NONE)) {
+      LoadGenerator load = new LoadGenerator(engine);
+      load.setUsers(1);
+      load.setRate(100);
+      load.setDuration(Duration.ZERO, Duration.ofMillis(600));
+      load.setMix("buy=0,sell=0,quote=1,report=0");
+
+      LatencyHistogram latencies = load.run().getLatencies(LoadGenerator.Operation.QUOTE);
+      assertTrue(latencies.getCount() > 0);
+      // measured from when each lookup started every one would take about 50 ms
+      assertTrue(latencies.getMax() > TimeUnit.MILLISECONDS.toNanos(200),
+          "max " + latencies.getMax());
+    }
+  }
+
+  @Test
+  public void testFailuresAreKeptOutOfTheLatencies() throws Exception {
+    QuoteProvider down = symbols -> CompletableFuture.failedFuture(new IOException("down"));
+    try (PortfolioEngine engine = new PortfolioEngine("test", down, null, Durability.NONE)) {
+      LoadGenerator load = new LoadGenerator(engine);
+      load.setUsers(2);
+      load.setDuration(Duration.ZERO, Duration.ofMillis(200));
+      load.setMix("buy=0,sell=0,quote=1,report=0");
+
+      LoadGenerator.Report report = load.run();
+      assertEquals(report.getLatencies(LoadGenerator.Operation.QUOTE).getCount(), 0);
+      assertTrue(report.getErrors(LoadGenerator.Operation.QUOTE) > 0);
+      assertEquals(report.getFailureLatencies(LoadGenerator.Operation.QUOTE).getCount(),
+          report.getErrors(LoadGenerator.Operation.QUOTE));
+    }
+  }
+}
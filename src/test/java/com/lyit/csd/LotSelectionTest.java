@@ -0,0 +1,119 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class LotSelectionTest {
+
+  // quotes every symbol at the current price and time
+  private double price;
+  private long time;
+  private final QuoteProvider market = symbols -> CompletableFuture.completedFuture(
+      List.of(new AssetQuote(symbols.get(0), "Microsoft Corporation", "EQUITY", time, price)));
+
+  private User user;
+
+  @BeforeMethod
+  public void setUp() throws IOException, InterruptedException {
+    user = new User("test", market);
+    user.addFunds(1000);
+
+    // three lots of 1 share: oldest is in the middle, newest is the most expensive
+    buy(1, 20);
+    buy(2, 10);
+    buy(3, 30);
+    price = 25;
+  }
+
+  private void buy(long at, double cost) throws IOException, InterruptedException {
+    time = at;
+    price = cost;
+    user.purchaseAsset("MSFT", 1);
+  }
+
+  private double soldAt(int index) {
+    return user.getUserPortfolio().getSoldAssets().get(index).getAvgPurchasePrice();
+  }
+
+  @Test
+  public void testDefaultSellsLowestCostFirst() throws IOException, InterruptedException {
+    assertTrue(user.sellAsset("MSFT", 1));
+    assertEquals(soldAt(0), 10.0);
+  }
+
+  @Test
+  public void testFifoSellsOldestFirst() throws IOException, InterruptedException {
+    user.setLotSelection(LotSelection.FIFO);
+    assertTrue(user.sellAsset("MSFT", 1));
+    assertEquals(soldAt(0), 20.0);
+  }
+
+  @Test
+  public void testLifoAndHighestCost() throws IOException, InterruptedException {
+    assertTrue(user.sellAsset("MSFT", 1, LotSelection.LIFO));
+    assertTrue(user.sellAsset("MSFT", 1, LotSelection.HIGHEST_COST));
+    assertEquals(soldAt(0), 30.0);
+    assertEquals(soldAt(1), 20.0);
+  }
+
+  @Test
+  public void testCostOfSaleIsWeightedByAmountUsed() throws IOException, InterruptedException {
+    assertTrue(user.sellAsset("MSFT", 1.5, LotSelection.FIFO));
+    // kept to the micro dollar
+    assertEquals(soldAt(0), 16.666667);
+    assertEquals(user.getUserPortfolio().getLots("MSFT").getAmount(), 1.5, 1e-9);
+  }
+
+  @Test
+  public void testSellSpecificLot() throws IOException, InterruptedException {
+    SymbolLots lots = user.getUserPortfolio().getLots("MSFT");
+    long newest = lots.byTime().last().getLotId();
+
+    assertFalse(user.sellLot("MSFT", newest, 2));
+    assertTrue(user.sellLot("MSFT", newest, 1));
+    assertEquals(soldAt(0), 30.0);
+    assertEquals(lots.size(), 2);
+    assertFalse(user.sellLot("MSFT", newest, 1));
+  }
+
+  @Test
+  public void testPositionTotalsFollowPurchasesAndSales() throws IOException, InterruptedException {
+    SymbolLots lots = user.getUserPortfolio().getLots("MSFT");
+    assertEquals(lots.getAmount(), 3.0);
+    assertEquals(lots.getCostBasis(), 60.0);
+
+    assertTrue(user.sellAsset("MSFT", 1.5, LotSelection.HIGHEST_COST));
+    assertEquals(lots.getAmount(), 1.5);
+    assertEquals(lots.getCostBasis(), 20.0);
+    assertEquals(lots.getAveragePriceBought(), 20 / 1.5, 1e-9);
+    assertEquals(lots.size(), 2);
+    assertTrue(user.getShortStatus().contains("{MSFT x 1.5}"));
+  }
+
+  @Test
+  public void testRangesOnlyHoldEntriesInRange() throws IOException, InterruptedException {
+    SymbolLots lots = user.getUserPortfolio().getLots("MSFT");
+    assertEquals(lots.purchasedBetween(2, 3).size(), 2);
+    assertEquals(lots.purchasedBetween(2, 3).first().getPriceBought(), 10.0);
+    assertTrue(lots.purchasedBetween(4, 9).isEmpty());
+
+    time = 5;
+    user.sellAsset("MSFT", 1);
+    time = 7;
+    user.sellAsset("MSFT", 1);
+    Portfolio portfolio = user.getUserPortfolio();
+    assertEquals(portfolio.getSalesBetween("MSFT", 6, 8).size(), 1);
+    assertEquals(portfolio.getSalesBetween("MSFT", 6, 8).first().getTimeStamp(), 7);
+    assertEquals(portfolio.getSalesBetween("MSFT", 0, 10).size(), 2);
+    assertTrue(user.listPortfolioSalesInRange(6, 8).contains("Avg Purchase Price : 20.0"));
+    assertFalse(user.listPortfolioSalesInRange(6, 8).contains("Avg Purchase Price : 10.0"));
+  }
+}
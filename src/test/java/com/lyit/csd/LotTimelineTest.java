@@ -0,0 +1,84 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.testng.annotations.Test;
+
+public class LotTimelineTest {
+
+  private static Asset lot(long time, long lotId, double amount) {
+    Asset lot = new Asset("MSFT", "Microsoft Corporation", "EQUITY", time, 100, amount);
+    lot.setLotId(lotId);
+    return lot;
+  }
+
+  private static List<String> describe(Iterable<Asset> lots) {
+    List<String> out = new ArrayList<>();
+    for (Asset lot : lots) {
+      out.add(lot.getTimeStamp() + "/" + lot.getLotId() + "/" + lot.getAmountUnits());
+    }
+    return out;
+  }
+
+  @Test
+  public void testVersionsMatchSortedLots() {
+    Random random = new Random(7);
+    TreeSet<Asset> expected = new TreeSet<>(SymbolLots.BY_TIME);
+    LotTimeline timeline = LotTimeline.EMPTY;
+    List<LotTimeline> versions = new ArrayList<>();
+    List<List<String>> contents = new ArrayList<>();
+
+    for (long id = 1; id <= 2_000; id++) {
+      int action = random.nextInt(4);
+      if (action < 2 || expected.isEmpty()) {
+        Asset lot = lot(random.nextInt(500), id, 1 + random.nextInt(9));
+        expected.add(lot);
+        timeline = timeline.with(lot);
+      } else {
+        Asset held = random.nextBoolean() ? expected.first() : expected.last();
+        if (action == 2) {
+          expected.remove(held);
+          timeline = timeline.without(held);
+        } else {
+          held.setAmountUnits(held.getAmountUnits() / 2);
+          timeline = timeline.with(held);
+        }
+      }
+      if (id % 100 == 0) {
+        versions.add(timeline);
+        contents.add(describe(expected));
+      }
+    }
+
+    // every version still holds the lots as they were when it was made
+    for (int i = 0; i < versions.size(); i++) {
+      LotTimeline version = versions.get(i);
+      assertEquals(describe(version), contents.get(i));
+      assertEquals(version.size(), contents.get(i).size());
+      for (int j = 0; j < version.size(); j++) {
+        assertEquals(version.get(j).getTimeStamp() + "/" + version.get(j).getLotId() + "/"
+            + version.get(j).getAmountUnits(), contents.get(i).get(j));
+      }
+    }
+
+    int first = timeline.firstAtOrAfter(250);
+    assertEquals(first, expected.headSet(lot(250, Long.MIN_VALUE, 0)).size());
+  }
+
+  @Test
+  public void testLotsAreCopied() {
+    Asset lot = lot(1, 1, 2);
+    LotTimeline timeline = LotTimeline.EMPTY.with(lot);
+    lot.setAmountUnits(0);
+    assertNotSame(timeline.get(0), lot);
+    assertEquals(timeline.get(0).getAmount(), 2, 1e-9);
+    assertEquals(timeline.without(lot(5, 5, 0)), timeline);
+    assertEquals(timeline.without(lot).size(), 0);
+  }
+}
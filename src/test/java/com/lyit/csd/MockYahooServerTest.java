@@ -0,0 +1,128 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class MockYahooServerTest {
+
+  private MockYahooServer server;
+  private ConnectionPort api;
+
+  private static MockYahooServer start(long seed) throws IOException {
+    MockYahooServer server = new MockYahooServer(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), seed);
+    server.start();
+    return server;
+  }
+
+  private static HttpTransport transport(MockYahooServer server) {
+    return new HttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(5), server.getBaseUri());
+  }
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    server = start(42);
+    api = new ConnectionPort(transport(server), "test");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void testMadeUpQuotesWalk() throws Exception {
+    List<AssetQuote> first = api.getQuotes(List.of("MSFT", "BTC-USD"));
+    assertEquals(first.size(), 2);
+    assertEquals(first.get(0).getAssetSymbol(), "MSFT");
+    assertEquals(first.get(0).getAssetType(), "EQUITY");
+    assertEquals(first.get(1).getAssetType(), "CRYPTOCURRENCY");
+    assertTrue(first.get(0).getLivePrice() > 0);
+
+    double next = api.getQuotes(List.of("MSFT")).get(0).getLivePrice();
+    assertNotEquals(next, first.get(0).getLivePrice());
+    assertEquals(next, first.get(0).getLivePrice(), first.get(0).getLivePrice() * 0.1);
+
+    // the same seed walks the same way
+    try (MockYahooServer same = start(42)) {
+      ConnectionPort other = new ConnectionPort(transport(same), "test");
+      assertEquals(other.getQuotes(List.of("MSFT", "BTC-USD")).get(0).getLivePrice(),
+          first.get(0).getLivePrice());
+    }
+  }
+
+  @Test
+  public void testSteadyListedQuotes() throws Exception {
+    server.setVolatility(0);
+    server.setFullNames(Map.of("AAPL", "Apple Inc."));
+    server.setUnlisted(List.of("LYIT"));
+    List<AssetQuote> quotes = api.getQuotes(List.of("AAPL", "LYIT", "MSFT"));
+    assertEquals(quotes.size(), 2);
+    assertEquals(quotes.get(0).getAssetFullName(), "Apple Inc.");
+    assertEquals(quotes.get(1).getAssetFullName(), "MSFT Mock");
+    assertEquals(api.getQuotes(List.of("AAPL")).get(0).getLivePrice(),
+        quotes.get(0).getLivePrice());
+  }
+
+  @Test
+  public void testMadeUpHistory() throws Exception {
+    List<PriceBar> bars = api.getHistory("MSFT", "1d", "1mo");
+    assertTrue(bars.size() == 31 || bars.size() == 32, "bars: " + bars.size());
+    for (int i = 1; i < bars.size(); i++) {
+      assertEquals(bars.get(i).getTimeStamp() - bars.get(i - 1).getTimeStamp(), 86_400);
+      assertTrue(bars.get(i).getLow() <= bars.get(i).getClose());
+      assertTrue(bars.get(i).getHigh() >= bars.get(i).getOpen());
+    }
+  }
+
+  @Test
+  public void testRecordAndReplay() throws Exception {
+    Path recordings = Files.createTempDirectory("recordings");
+    server.setRecordings(recordings);
+    try (MockYahooServer upstream = start(7)) {
+      server.setUpstream(transport(upstream), "test");
+      double recorded = api.getQuotes(List.of("IBM")).get(0).getLivePrice();
+      assertEquals(upstream.getRequestCount(), 1);
+
+      // recorded responses are replayed without asking upstream again
+      assertEquals(api.getQuotes(List.of("IBM")).get(0).getLivePrice(), recorded);
+      assertEquals(upstream.getRequestCount(), 1);
+      server.setUpstream(null, null);
+      assertEquals(api.getQuotes(List.of("IBM")).get(0).getLivePrice(), recorded);
+    }
+    assertEquals(Files.list(recordings).count(), 1);
+  }
+
+  @Test
+  public void testInjectedFailures() throws Exception {
+    server.setRateLimitRate(1);
+    expectThrows(QuotaExceededException.class, () -> api.getQuotes(List.of("MSFT")));
+
+    server.setRateLimitRate(0);
+    server.setErrorRate(1);
+    IOException error = expectThrows(IOException.class, () -> api.getQuotes(List.of("MSFT")));
+    assertTrue(error.getMessage().contains("500"));
+
+    server.setErrorRate(0);
+    server.setLatency(200, 50);
+    long start = System.nanoTime();
+    api.getQuotes(List.of("MSFT"));
+    assertTrue(System.nanoTime() - start >= Duration.ofMillis(200).toNanos());
+    assertEquals(server.getRequestCount(), 3);
+  }
+}
@@ -0,0 +1,61 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.testng.annotations.Test;
+
+public class MoneyTest {
+
+  @Test
+  public void testCostIsExactAndRoundsHalfToEven() {
+    assertEquals(Money.cost(1, 50_000_000), 0);
+    assertEquals(Money.cost(3, 50_000_000), 2);
+    assertEquals(Money.cost(-3, 50_000_000), -2);
+    assertEquals(Money.cost(Money.toMicros(0.1), Money.toUnits(3)), Money.toMicros(0.3));
+
+    // a bitcoin sized price times a large amount still fits
+    assertEquals(Money.cost(Money.toMicros(60_000), Money.toUnits(12_345.6789)),
+        740_740_734_000_000L);
+  }
+
+
+  @Test
+  public void testUnitPriceUndoesCost() {
+    assertEquals(Money.unitPrice(Money.toMicros(10), Money.toUnits(3)), 3_333_333);
+    assertEquals(Money.unitPrice(Money.toMicros(20), Money.toUnits(3)), 6_666_667);
+    long price = 123_456_789;
+    long amount = Money.toUnits(7.25);
+    assertEquals(Money.unitPrice(Money.cost(price, amount), amount), price);
+  }
+
+
+  @Test
+  public void testRoundToCentsRoundsHalfToEven() {
+    assertEquals(Money.roundToCents(1_005_000), 1_000_000);
+    assertEquals(Money.roundToCents(1_015_000), 1_020_000);
+    assertEquals(Money.roundToCents(1_005_001), 1_010_000);
+    assertEquals(Money.roundToCents(-1_005_000), -1_000_000);
+    assertEquals(Money.roundToCents(-1_015_000), -1_020_000);
+    assertEquals(Money.roundToCents(12.344999), 12.34);
+  }
+
+
+  @Test
+  public void testFundsAddUpWithoutDrift() throws IOException, InterruptedException {
+    User user = new User("test", symbols -> CompletableFuture.completedFuture(
+        List.of(new AssetQuote("MSFT", "Microsoft Corporation", "EQUITY", 1, 0.1))));
+    for (int i = 0; i < 10; i++) {
+      assertTrue(user.purchaseAsset("MSFT", 1));
+    }
+    assertEquals(user.getAvailableFunds(), 9_999.0);
+
+    assertTrue(user.sellAsset("MSFT", 3));
+    assertEquals(user.getAvailableFunds(), 9_999.3);
+    assertEquals(user.getUserPortfolio().getLots("MSFT").getAmount(), 7.0);
+  }
+}
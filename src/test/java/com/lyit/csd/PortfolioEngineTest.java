@@ -0,0 +1,173 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PortfolioEngineTest {
+
+  private final TestMarket market = new TestMarket(1, 100);
+
+  private ExecutorService pool;
+
+  @BeforeMethod
+  public void setUp() {
+    pool = Executors.newFixedThreadPool(16);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  private int countSuccesses(List<Future<Boolean>> tasks) throws Exception {
+    int succeeded = 0;
+    for (Future<Boolean> task : tasks) {
+      succeeded += task.get() ? 1 : 0;
+    }
+    return succeeded;
+  }
+
+  @Test
+  public void testWithdrawalsNeverOverdraw() throws Exception {
+    User user = new User("test", market);
+    List<Future<Boolean>> tasks = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      tasks.add(pool.submit(() -> user.withdrawFunds(100)));
+    }
+    assertEquals(countSuccesses(tasks), 100);
+    assertEquals(user.getAvailableFunds(), 0, 1e-9);
+  }
+
+  @Test
+  public void testPurchasesNeverOverdraw() throws Exception {
+    try (PortfolioEngine engine = new PortfolioEngine("test", market, null, Durability.NONE)) {
+      User user = engine.account("alice");
+      assertSame(engine.account("alice"), user);
+
+      List<Future<Boolean>> tasks = new ArrayList<>();
+      for (int i = 0; i < 300; i++) {
+        tasks.add(pool.submit(() -> user.purchaseAsset("MSFT", 1)));
+        tasks.add(pool.submit(() -> user.sellAsset("MSFT", 1, LotSelection.FIFO)));
+      }
+      countSuccesses(tasks);
+
+      double held = user.getUserPortfolio().getLots("MSFT") == null
+          ? 0 : user.getUserPortfolio().getLots("MSFT").getAmount();
+      assertTrue(user.getAvailableFunds() >= 0);
+      assertEquals(user.getAvailableFunds() + 100 * held, 10_000, 1e-6);
+    }
+  }
+
+  @Test
+  public void testQuotesAreFetchedOutsideTheAccountLock() throws Exception {
+    CountDownLatch requested = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    QuoteProvider slowMarket = symbols -> {
+      requested.countDown();
+      return CompletableFuture.supplyAsync(() -> {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return List.of(new AssetQuote(symbols.get(0), "Microsoft Corporation", "EQUITY", 1, 100));
+      });
+    };
+
+    User user = new User("test", slowMarket);
+    Future<Boolean> purchase = pool.submit(() -> user.purchaseAsset("MSFT", 1));
+    assertTrue(requested.await(5, TimeUnit.SECONDS));
+
+    // the account is still usable while its purchase waits on the api
+    user.addFunds(50);
+    assertEquals(user.getAvailableFunds(), 10_050, 1e-9);
+    release.countDown();
+    assertTrue(purchase.get());
+    assertEquals(user.getAvailableFunds(), 9_950, 1e-9);
+  }
+
+  @Test
+  public void testAccountsAreRestoredFromTheirJournals() throws Exception {
+    Path directory = Files.createTempDirectory("engine");
+    try (PortfolioEngine engine = new PortfolioEngine("test", market, directory,
+        Durability.GROUP)) {
+      AtomicInteger next = new AtomicInteger();
+      List<Future<Boolean>> tasks = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        tasks.add(pool.submit(() -> {
+          User account = engine.account("account-" + next.getAndIncrement() % 20);
+          account.withdrawFunds(10);
+          return account.purchaseAsset("MSFT", 1);
+        }));
+      }
+      assertEquals(countSuccesses(tasks), 200);
+      assertEquals(engine.getAccountIds().size(), 20);
+    }
+
+    try (PortfolioEngine engine = new PortfolioEngine("test", market, directory,
+        Durability.GROUP)) {
+      assertNull(engine.findAccount("account-20"));
+      for (int i = 0; i < 20; i++) {
+        User account = engine.findAccount("account-" + i);
+        assertEquals(account.getAvailableFunds(), 10_000 - 10 * 110, 1e-9);
+        assertEquals(account.getUserPortfolio().getLots("MSFT").getAmount(), 10, 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testFailedOpenIsTriedAgain() throws Exception {
+    Path directory = Files.createTempDirectory("engine");
+    Path blocked = Files.createFile(directory.resolve("alice"));
+    try (PortfolioEngine engine = new PortfolioEngine("test", market, directory,
+        Durability.NONE)) {
+      List<Future<User>> opens = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        opens.add(pool.submit(() -> engine.account("alice")));
+      }
+      for (Future<User> open : opens) {
+        try {
+          open.get();
+          fail("journal directory is a file");
+        } catch (ExecutionException e) {
+          assertTrue(e.getCause() instanceof UncheckedIOException);
+        }
+      }
+
+      Files.delete(blocked);
+      User user = engine.account("alice");
+      assertSame(engine.account("alice"), user);
+      assertEquals(engine.getAccountIds(), Set.of("alice"));
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testAccountIdentifierCannotLeaveJournalDirectory() throws IOException {
+    try (PortfolioEngine engine = new PortfolioEngine("test", market, null, Durability.NONE)) {
+      engine.account("../other");
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PortfolioServerTest {
+
+  private final ObjectMapper json = new ObjectMapper();
+  private final HttpClient client = HttpClient.newBuilder()
+      .executor(Executors.newCachedThreadPool()).build();
+
+  private long delay;
+  private final QuoteProvider market = symbols -> CompletableFuture.supplyAsync(() -> {
+    List<AssetQuote> quotes = new ArrayList<>();
+    for (String symbol : symbols) {
+      quotes.add(new AssetQuote(symbol, symbol + " Inc.", "EQUITY", 1, 100));
+    }
+    return quotes;
+  }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+
+  private PortfolioEngine engine;
+  private PortfolioServer server;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    delay = 0;
+    engine = new PortfolioEngine("test", market, null, Durability.NONE);
+    server = new PortfolioServer(engine,
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    server.start();
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    server.close();
+    engine.close();
+  }
+
+  private HttpResponse<String> send(String method, String path) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(
+            URI.create("http://localhost:" + server.getPort() + path))
+        .method(method, HttpRequest.BodyPublishers.noBody()).build();
+    return client.send(request, HttpResponse.BodyHandlers.ofString());
+  }
+
+  private JsonNode call(String method, String path, int status) throws Exception {
+    HttpResponse<String> response = send(method, path);
+    assertEquals(response.statusCode(), status, response.body());
+    return json.readTree(response.body());
+  }
+
+  @Test
+  public void testTradesAndStatus() throws Exception {
+    call("POST", "/accounts/alice", 200);
+    assertTrue(call("POST", "/accounts/alice/buy?symbol=MSFT&amount=3", 200)
+        .get("success").asBoolean());
+    assertTrue(call("POST", "/accounts/alice/sell?symbol=MSFT&amount=1&selection=FIFO", 200)
+        .get("success").asBoolean());
+    JsonNode funds = call("POST", "/accounts/alice/withdraw?amount=100", 200);
+    assertEquals(funds.get("availableFunds").asDouble(), 10_000 - 300 + 100 - 100, 1e-9);
+
+    JsonNode status = call("GET", "/accounts/alice", 200);
+    double msft = 0;
+    for (JsonNode position : status.get("positions")) {
+      if (position.get("symbol").asText().equals("MSFT")) {
+        msft = position.get("amount").asDouble();
+      }
+    }
+    assertEquals(msft, 2, 1e-9);
+
+    JsonNode quotes = call("GET", "/quotes?symbols=MSFT,IBM", 200);
+    assertEquals(quotes.size(), 2);
+    assertEquals(quotes.get(1).get("symbol").asText(), "IBM");
+    assertTrue(call("GET", "/accounts/alice/sales?from=0&to=10", 200)
+        .get("report").asText().contains("MSFT Inc."));
+  }
+
+  @Test
+  public void testErrors() throws Exception {
+    call("GET", "/nothing", 404);
+    call("POST", "/accounts/alice", 200);
+    call("GET", "/accounts/alice/buy?symbol=MSFT&amount=1", 405);
+    call("POST", "/accounts/alice/buy?symbol=MSFT&amount=lots", 400);
+    call("POST", "/accounts/alice/funds", 400);
+    assertTrue(call("GET", "/accounts/..", 400).get("error").asText().contains("account"));
+  }
+
+  @Test
+  public void testRequestsWaitingUpstreamDoNotQueue() throws Exception {
+    delay = 500;
+    for (int i = 0; i < 100; i++) {
+      engine.account("user-" + i);
+    }
+    long start = System.nanoTime();
+    List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      responses.add(client.sendAsync(HttpRequest.newBuilder(URI.create(
+              "http://localhost:" + server.getPort() + "/accounts/user-" + i
+                  + "/buy?symbol=MSFT&amount=1"))
+          .POST(HttpRequest.BodyPublishers.noBody()).build(),
+          HttpResponse.BodyHandlers.ofString()));
+    }
+    for (CompletableFuture<HttpResponse<String>> response : responses) {
+      assertEquals(response.get(30, TimeUnit.SECONDS).statusCode(), 200);
+    }
+
+    // one after another this would take 50 seconds
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(20));
+    assertEquals(engine.getAccountIds().size(), 100);
+  }
+
+  @Test
+  public void testOnlyCreatingOrFundingOpensAnAccount() throws Exception {
+    call("GET", "/accounts/bob", 404);
+    call("GET", "/accounts/bob/value", 404);
+    call("GET", "/accounts/bob/investments", 404);
+    call("POST", "/accounts/bob/buy?symbol=MSFT&amount=1", 404);
+    call("POST", "/accounts/bob/funds", 400);
+    assertTrue(engine.getAccountIds().isEmpty());
+
+    JsonNode funded = call("POST", "/accounts/bob/funds?amount=5", 200);
+    assertEquals(funded.get("availableFunds").asDouble(), 10_005, 1e-9);
+    assertEquals(call("GET", "/accounts/bob", 200).get("availableFunds").asDouble(), 10_005,
+        1e-9);
+
+    assertEquals(call("POST", "/accounts/carol", 200).get("availableFunds").asDouble(), 10_000,
+        1e-9);
+    call("GET", "/accounts/carol/value", 200);
+    assertEquals(engine.getAccountIds(), Set.of("bob", "carol"));
+  }
+}
@@ -0,0 +1,113 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.annotations.Test;
+
+public class PortfolioViewTest {
+
+  private final TestMarket market = new TestMarket(1, 100);
+
+  private static double held(PortfolioView view) {
+    PositionView position = view.getPosition("MSFT");
+    return position == null ? 0 : position.getAmount();
+  }
+
+  @Test
+  public void testViewIsRebuiltOnlyForChangedSymbols() throws Exception {
+    User user = new User("test", market);
+    user.purchaseAsset("MSFT", 2);
+    PortfolioView before = user.getView();
+    assertSame(user.getView(), before);
+
+    user.sellAsset("MSFT", 1, LotSelection.FIFO);
+    PortfolioView after = user.getView();
+    assertNotSame(after, before);
+    assertSame(after.getPosition("AAPL"), before.getPosition("AAPL"));
+
+    // the earlier view still shows the account as it was
+    assertEquals(held(before), 2, 1e-9);
+    assertEquals(before.getPosition("MSFT").getLots().get(0).getAmount(), 2, 1e-9);
+    assertEquals(after.getPosition("MSFT").getLots().get(0).getAmount(), 1, 1e-9);
+    assertEquals(before.getSoldSymbols().size(), 0);
+    assertEquals(held(after), 1, 1e-9);
+    assertEquals(after.getSalesBetween("MSFT", 0, 1).size(), 1);
+    assertEquals(after.getAvailableFunds(), 10_000 - 100, 1e-9);
+  }
+
+  @Test
+  public void testTradesPublishTheViewAndKeepUnchangedNames() throws Exception {
+    User user = new User("test", market);
+    user.purchaseAsset("MSFT", 2);
+    PortfolioView bought = user.getView();
+    assertTrue(bought.getAssetsInPortfolio().containsKey("MSFT"));
+    assertTrue(bought.getAllAssetNames().contains("Microsoft Corporation"));
+
+    // a trade of a symbol already held shares the name copies of the previous view
+    user.purchaseAsset("MSFT", 1);
+    PortfolioView more = user.getView();
+    assertNotSame(more, bought);
+    assertSame(more.getAssetsInPortfolio(), bought.getAssetsInPortfolio());
+    assertSame(more.getSymbolFullName(), bought.getSymbolFullName());
+    assertSame(more.getAllAssetNames(), bought.getAllAssetNames());
+    assertEquals(held(more), 3, 1e-9);
+
+    // selling out removes the names
+    user.sellAsset("MSFT", 3, LotSelection.FIFO);
+    PortfolioView sold = user.getView();
+    assertTrue(!sold.getAssetsInPortfolio().containsKey("MSFT"));
+    assertTrue(!sold.getAllAssetNames().contains("Microsoft Corporation"));
+    assertTrue(bought.getAssetsInPortfolio().containsKey("MSFT"));
+  }
+
+  @Test
+  public void testReportsSeeWholeTradesWhileTradesRun() throws Exception {
+    User user = new User("test", market);
+    AtomicBoolean trading = new AtomicBoolean(true);
+    ExecutorService pool = Executors.newFixedThreadPool(6);
+    try {
+      List<Future<?>> traders = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        traders.add(pool.submit(() -> {
+          for (int j = 0; j < 1_000; j++) {
+            user.purchaseAsset("MSFT", 1);
+            user.sellAsset("MSFT", 1, LotSelection.FIFO);
+          }
+          return null;
+        }));
+      }
+      Future<Integer> reports = pool.submit(() -> {
+        int views = 0;
+        while (trading.get()) {
+          PortfolioView view = user.getView();
+          // money moves between funds and lots at a constant price of 100
+          assertEquals(view.getAvailableFunds() + 100 * held(view), 10_000, 1e-6);
+          user.listPortfolioSalesInRange(1, 1);
+          user.getShortStatus();
+          views++;
+        }
+        return views;
+      });
+      for (Future<?> trader : traders) {
+        trader.get(30, TimeUnit.SECONDS);
+      }
+      trading.set(false);
+      assertTrue(reports.get(30, TimeUnit.SECONDS) > 0);
+      assertEquals(user.getView().getSalesBetween("MSFT", 0, 1).size(), 4_000);
+    } finally {
+      trading.set(false);
+      pool.shutdown();
+    }
+  }
+}
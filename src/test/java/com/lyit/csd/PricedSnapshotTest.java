@@ -0,0 +1,72 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+public class PricedSnapshotTest {
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  private final QuoteProvider market = symbols -> {
+    calls.incrementAndGet();
+    List<AssetQuote> quotes = new ArrayList<>();
+    for (String symbol : symbols) {
+      quotes.add(new AssetQuote(symbol, symbol + " Holdings", "EQUITY", 1, 10));
+    }
+    return CompletableFuture.completedFuture(quotes);
+  };
+
+  @Test
+  public void testAllInvestmentsIsOneFetch() throws IOException, InterruptedException {
+    User user = new User("test", market);
+    assertTrue(user.purchaseAsset("MSFT", 1));
+    calls.set(0);
+
+    String report = user.listAllInvestments();
+    assertEquals(calls.get(), 1);
+    assertTrue(report.contains("MSFT Holdings"));
+    assertTrue(report.indexOf("MSFT Holdings") < report.indexOf("Bitcoin"));
+  }
+
+  @Test
+  public void testUnknownTypeFetchesNothing() throws IOException, InterruptedException {
+    User user = new User("test", market);
+    calls.set(0);
+
+    assertEquals(user.listPortfolioAssetsByType("bonds"), "");
+    assertEquals(calls.get(), 0);
+  }
+
+  @Test
+  public void testBatchRendersFromOneSnapshot() throws IOException, InterruptedException {
+    User user = new User("test", market);
+    assertTrue(user.purchaseAsset("MSFT", 1));
+    calls.set(0);
+
+    PricedSnapshot snapshot = user.priceSnapshot();
+    StringBuilder all = new StringBuilder();
+    user.writeAllInvestments(snapshot, all);
+    StringBuilder purchases = new StringBuilder();
+    user.writePortfolioPurchasesInRange(snapshot, 0, Long.MAX_VALUE, purchases);
+    StringBuilder byName = new StringBuilder();
+    user.writePortfolioAssetsByName(snapshot, List.of("MSFT Holdings"), byName);
+    double value = user.getPortfolioValue(snapshot);
+    assertEquals(calls.get(), 1);
+
+    // every held symbol is priced at 10, the bought one included
+    int held = user.getView().getPositions().size();
+    assertEquals(value, 10.0 * held);
+    assertEquals(user.getPortfolioValue(), value);
+    assertEquals(all.toString(), user.listAllInvestments());
+    assertEquals(purchases.toString(), user.listPortfolioPurchasesInRange(0, Long.MAX_VALUE));
+    assertTrue(byName.toString().contains("Asset Symbol   : MSFT"));
+  }
+}
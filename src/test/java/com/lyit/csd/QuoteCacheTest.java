@@ -0,0 +1,161 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class QuoteCacheTest {
+
+  // counts requests and prices every symbol at the current request number
+  private final List<List<String>> requests = new ArrayList<>();
+  private final QuoteProvider upstream = symbols -> {
+    requests.add(new ArrayList<>(symbols));
+    List<AssetQuote> quotes = new ArrayList<>();
+    for (String symbol : symbols) {
+      if (!symbol.equals("LYIT")) {
+        quotes.add(new AssetQuote(symbol, symbol + " Inc.", "EQUITY", 0, requests.size()));
+      }
+    }
+    return CompletableFuture.completedFuture(quotes);
+  };
+
+  private MutableClock clock;
+  private QuoteCache cache;
+
+  @BeforeMethod
+  public void setUp() {
+    requests.clear();
+    clock = new MutableClock();
+    cache = new QuoteCache(upstream, 2, clock);
+    cache.setFreshness("EQUITY", Duration.ofSeconds(10));
+    cache.setStaleWindow(Duration.ofSeconds(20));
+  }
+
+  @Test
+  public void testFreshQuoteIsServedWithoutRequest() throws IOException, InterruptedException {
+    cache.getQuotes(List.of("AAPL"));
+    clock.advance(Duration.ofSeconds(5));
+    List<AssetQuote> quotes = cache.getQuotes(List.of("aapl"));
+
+    assertEquals(requests.size(), 1);
+    assertEquals(quotes.get(0).getLivePrice(), 1.0);
+  }
+
+  @Test
+  public void testStaleQuoteIsServedWhileRefreshing() throws IOException, InterruptedException {
+    cache.getQuotes(List.of("AAPL"));
+    clock.advance(Duration.ofSeconds(15));
+
+    // stale price comes back at once, refresh replaces it for the next caller
+    assertEquals(cache.getQuotes(List.of("AAPL"), QuotePriority.REPORT).get(0).getLivePrice(), 1.0);
+    assertEquals(requests.size(), 2);
+    assertEquals(cache.getQuotes(List.of("AAPL"), QuotePriority.REPORT).get(0).getLivePrice(), 2.0);
+  }
+
+  @Test
+  public void testStaleQuoteIsNotServedToInteractiveCaller()
+      throws IOException, InterruptedException {
+    cache.getQuotes(List.of("AAPL"));
+    clock.advance(Duration.ofSeconds(15));
+
+    assertEquals(cache.getQuotes(List.of("AAPL"), QuotePriority.INTERACTIVE).get(0).getLivePrice(),
+        2.0);
+  }
+
+  @Test
+  public void testCachedQuoteIsServedToReportsWhenUpstreamRefuses()
+      throws IOException, InterruptedException {
+    QuoteCache refusing = new QuoteCache(symbols -> {
+      requests.add(symbols);
+      if (requests.size() > 1) {
+        return CompletableFuture.failedFuture(new QuotaExceededException("budget reserved"));
+      }
+      return CompletableFuture.completedFuture(
+          List.of(new AssetQuote("AAPL", "Apple Inc.", "EQUITY", 0, 150)));
+    }, 2, clock);
+
+    refusing.getQuotes(List.of("AAPL"));
+    clock.advance(Duration.ofHours(1));
+    assertEquals(refusing.getQuotes(List.of("AAPL"), QuotePriority.REPORT).get(0).getLivePrice(),
+        150.0);
+    Assert.assertThrows(QuotaExceededException.class,
+        () -> refusing.getQuotes(List.of("TSLA"), QuotePriority.REPORT));
+
+    // a trade is never priced on an expired quote
+    Assert.assertThrows(QuotaExceededException.class,
+        () -> refusing.getQuotes(List.of("AAPL"), QuotePriority.INTERACTIVE));
+  }
+
+  @Test
+  public void testExpiredQuoteIsFetchedAgain() throws IOException, InterruptedException {
+    cache.getQuotes(List.of("AAPL", "TSLA"));
+    clock.advance(Duration.ofSeconds(31));
+    List<AssetQuote> quotes = cache.getQuotes(List.of("TSLA", "AAPL"));
+
+    assertEquals(requests.size(), 2);
+    assertEquals(quotes.get(0).getAssetSymbol(), "TSLA");
+    assertEquals(quotes.get(1).getLivePrice(), 2.0);
+  }
+
+  @Test
+  public void testOnlyMissingSymbolsAreRequested() throws IOException, InterruptedException {
+    cache.getQuotes(List.of("AAPL"));
+    List<AssetQuote> quotes = cache.getQuotes(List.of("AAPL", "NVDA", "LYIT"));
+
+    assertEquals(requests.get(1), List.of("NVDA", "LYIT"));
+    assertEquals(quotes.size(), 2);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedSymbolIsEvicted() throws IOException, InterruptedException {
+    cache.getQuotes(List.of("AAPL"));
+    cache.getQuotes(List.of("TSLA"));
+    cache.getQuotes(List.of("AAPL"));
+    cache.getQuotes(List.of("NVDA"));
+
+    assertEquals(cache.size(), 2);
+    cache.getQuotes(List.of("AAPL"));
+    Assert.assertEquals(requests.size(), 3);
+    cache.getQuotes(List.of("TSLA"));
+    Assert.assertEquals(requests.size(), 4);
+  }
+
+  /**
+   * Clock moved forward by the test.
+   */
+  private static class MutableClock extends Clock {
+
+    private Instant now = Instant.ofEpochSecond(1_640_995_200);
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneOffset getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
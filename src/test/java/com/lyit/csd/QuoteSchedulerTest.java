@@ -0,0 +1,138 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class QuoteSchedulerTest {
+
+  private final Clock clock = Clock.fixed(Instant.ofEpochSecond(1_640_995_200), ZoneOffset.UTC);
+
+  // records the first symbol of each request in the order they are sent
+  private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+  private final List<Long> sentAt = Collections.synchronizedList(new ArrayList<>());
+  private final QuoteProvider upstream = symbols -> {
+    sent.add(symbols.get(0));
+    sentAt.add(System.nanoTime());
+    return CompletableFuture.completedFuture(
+        List.of(new AssetQuote(symbols.get(0), "Stock", "EQUITY", 1, 10)));
+  };
+
+  private QuoteScheduler scheduler;
+
+  @BeforeMethod
+  public void setUp() {
+    sent.clear();
+    sentAt.clear();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    if (scheduler != null) {
+      scheduler.close();
+    }
+  }
+
+  private static Throwable failure(CompletableFuture<List<AssetQuote>> future)
+      throws InterruptedException {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      return e.getCause();
+    } catch (TimeoutException e) {
+      throw new AssertionError("Request was never answered");
+    }
+    throw new AssertionError("Request was not refused");
+  }
+
+  @Test
+  public void testMostUrgentRequestIsSentFirst() throws Exception {
+    scheduler = new QuoteScheduler(upstream, 100, 5, 1, clock);
+
+    // the first request takes the only token, the second waits for the next one
+    scheduler.getQuotesAsync(List.of("FIRST")).get(5, TimeUnit.SECONDS);
+    CompletableFuture<List<AssetQuote>> waiting =
+        scheduler.getQuotesAsync(List.of("WAITING"), QuotePriority.PREFETCH);
+    while (scheduler.getQueuedCount() > 0) {
+      Thread.sleep(1);
+    }
+    CompletableFuture<List<AssetQuote>> prefetch =
+        scheduler.getQuotesAsync(List.of("PREFETCH"), QuotePriority.PREFETCH);
+    CompletableFuture<List<AssetQuote>> report =
+        scheduler.getQuotesAsync(List.of("REPORT"), QuotePriority.REPORT);
+    CompletableFuture<List<AssetQuote>> trade =
+        scheduler.getQuotesAsync(List.of("TRADE"), QuotePriority.INTERACTIVE);
+
+    CompletableFuture.allOf(waiting, prefetch, report, trade).get(10, TimeUnit.SECONDS);
+    assertEquals(sent, List.of("FIRST", "WAITING", "TRADE", "REPORT", "PREFETCH"));
+  }
+
+  @Test
+  public void testRequestsArePacedByTheTokenBucket() throws Exception {
+    scheduler = new QuoteScheduler(upstream, 100, 20, 2, clock);
+    List<CompletableFuture<List<AssetQuote>>> requests = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      requests.add(scheduler.getQuotesAsync(List.of("S" + i)));
+    }
+    CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+    // two go back to back, the other four wait 50 ms each for a token
+    long burst = sentAt.get(1) - sentAt.get(0);
+    long paced = sentAt.get(5) - sentAt.get(1);
+    assertTrue(burst < TimeUnit.MILLISECONDS.toNanos(40), "burst took " + burst);
+    assertTrue(paced >= TimeUnit.MILLISECONDS.toNanos(190), "paced took " + paced);
+  }
+
+  @Test
+  public void testClassesAreRefusedOnceOnlyTheirReserveIsLeft() throws Exception {
+    scheduler = new QuoteScheduler(upstream, 10, 1_000, 100, clock);
+
+    // prefetch leaves 3 of 10, reports leave 1, trades may spend the rest
+    for (int i = 0; i < 7; i++) {
+      scheduler.getQuotesAsync(List.of("P" + i), QuotePriority.PREFETCH).get(5, TimeUnit.SECONDS);
+    }
+    assertTrue(failure(scheduler.getQuotesAsync(List.of("P"), QuotePriority.PREFETCH))
+        instanceof QuotaExceededException);
+    for (int i = 0; i < 2; i++) {
+      scheduler.getQuotesAsync(List.of("R" + i), QuotePriority.REPORT).get(5, TimeUnit.SECONDS);
+    }
+    assertTrue(failure(scheduler.getQuotesAsync(List.of("R"), QuotePriority.REPORT))
+        instanceof QuotaExceededException);
+    scheduler.getQuotesAsync(List.of("T"), QuotePriority.INTERACTIVE).get(5, TimeUnit.SECONDS);
+    assertTrue(failure(scheduler.getQuotesAsync(List.of("T"), QuotePriority.INTERACTIVE))
+        instanceof QuotaExceededException);
+
+    assertEquals(sent.size(), 10);
+    assertEquals(scheduler.getRemainingBudget(), 0);
+  }
+
+  @Test
+  public void testCloseFailsQueuedAndLaterRequests() throws Exception {
+    scheduler = new QuoteScheduler(upstream, 100, 0.001, 1, clock);
+    scheduler.getQuotesAsync(List.of("FIRST")).get(5, TimeUnit.SECONDS);
+    CompletableFuture<List<AssetQuote>> waiting = scheduler.getQuotesAsync(List.of("WAITING"));
+    CompletableFuture<List<AssetQuote>> queued = scheduler.getQuotesAsync(List.of("QUEUED"));
+
+    scheduler.close();
+    assertTrue(failure(waiting) instanceof IOException);
+    assertTrue(failure(queued) instanceof IOException);
+    expectThrows(IOException.class, () -> scheduler.getQuotes(List.of("LATER")));
+    assertEquals(sent, List.of("FIRST"));
+  }
+}
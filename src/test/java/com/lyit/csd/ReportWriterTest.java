@@ -0,0 +1,145 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ReportWriterTest {
+
+  // quotes MSFT at the current price and ETH-USD at 120, the pre-populated assets not at all
+  private double price;
+  private long time;
+  private final QuoteProvider market = symbols -> {
+    List<AssetQuote> quotes = new ArrayList<>();
+    for (String symbol : symbols) {
+      if (symbol.equals("MSFT")) {
+        quotes.add(new AssetQuote("MSFT", "Microsoft Corporation", "EQUITY", time, price));
+      } else if (symbol.equals("ETH-USD")) {
+        quotes.add(new AssetQuote("ETH-USD", "Ethereum USD", "CRYPTOCURRENCY", time, 120));
+      }
+    }
+    return CompletableFuture.completedFuture(quotes);
+  };
+
+  private User user;
+
+  @BeforeMethod
+  public void setUp() throws IOException, InterruptedException {
+    user = new User("test", market);
+    time = 50;
+    assertTrue(user.purchaseAsset("ETH-USD", 2));
+    time = 100;
+    price = 10;
+    assertTrue(user.purchaseAsset("MSFT", 2));
+    time = 200;
+    price = 12.345;
+    assertTrue(user.purchaseAsset("MSFT", 1));
+    time = 300;
+    price = 15;
+    assertTrue(user.sellAsset("MSFT", 1, LotSelection.FIFO));
+  }
+
+  private String write(long scaled, int places) throws IOException {
+    StringBuilder out = new StringBuilder();
+    new ReportWriter(out).decimal(scaled, places);
+    return out.toString();
+  }
+
+  @Test
+  public void testDecimalsLeaveOutTrailingZeros() throws IOException {
+    assertEquals(write(100_000_000, 6), "100.0");
+    assertEquals(write(12_500_000, 6), "12.5");
+    assertEquals(write(1_000_005, 6), "1.000005");
+    assertEquals(write(-1, 6), "-0.000001");
+    assertEquals(write(0, 8), "0.0");
+    assertEquals(write(0, 0), "0");
+    assertEquals(write(-42, 0), "-42");
+    assertEquals(write(Long.MIN_VALUE, 0), String.valueOf(Long.MIN_VALUE));
+    assertEquals(write(Long.MAX_VALUE, 18), "9.223372036854775807");
+  }
+
+  @Test
+  public void testAllInvestmentsReport() throws IOException, InterruptedException {
+    StringBuilder out = new StringBuilder();
+    user.writeAllInvestments(out);
+
+    // FIFO sold the lot at 10, stocks come before crypto
+    assertEquals(out.toString(), "\n"
+        + "Asset Name     : Microsoft Corporation\n"
+        + "Asset Symbol   : MSFT\n"
+        + "Asset Amount   : 2.0\n"
+        + "Average Price  : 11.1725 USD\n"
+        + "Live Price     : 15.0 USD\n"
+        + "Difference USD : 3.83 USD\n"
+        + "Difference %   : 34%\n"
+        + "\n"
+        + "Asset Name     : Ethereum USD\n"
+        + "Asset Symbol   : ETH-USD\n"
+        + "Asset Amount   : 2.0\n"
+        + "Average Price  : 120.0 USD\n"
+        + "Live Price     : 120.0 USD\n"
+        + "Difference USD : 0.0 USD\n"
+        + "Difference %   : 0%\n");
+  }
+
+  @Test
+  public void testAssetsByTypeReportStreamsToAStream() throws IOException, InterruptedException {
+    // as the console writes to System.out
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    user.writePortfolioAssetsByType("crypto", new PrintStream(bytes, true, StandardCharsets.UTF_8));
+
+    assertEquals(bytes.toString(StandardCharsets.UTF_8), "\n"
+        + "Asset Name     : Ethereum USD\n"
+        + "Asset Symbol   : ETH-USD\n"
+        + "Asset Amount   : 2.0\n"
+        + "Average Price  : 120.0 USD\n"
+        + "Live Price     : 120.0 USD\n"
+        + "Difference USD : 0.0 USD\n"
+        + "Difference %   : 0%\n");
+  }
+
+  @Test
+  public void testPurchasesInRangeReport() throws IOException, InterruptedException {
+    StringBuilder out = new StringBuilder();
+    user.writePortfolioPurchasesInRange(150, 250, out);
+
+    // only the lot bought at 200, 2.655 rounds half even to 2.66
+    assertEquals(out.toString(), "\n"
+        + "Asset Name     : Microsoft Corporation\n"
+        + "Price Bought   : 12.345\n"
+        + "Live Price     : 15.0\n"
+        + "Difference USD : 2.66\n"
+        + "Difference %   : 21\n");
+
+    StringBuilder reversed = new StringBuilder();
+    user.writePortfolioPurchasesInRange(250, 150, reversed);
+    assertEquals(reversed.toString(), "");
+  }
+
+  @Test
+  public void testSalesInRangeReport() throws IOException {
+    StringBuilder out = new StringBuilder();
+    user.writePortfolioSalesInRange(250, 350, out);
+
+    assertEquals(out.toString(), "\n"
+        + "Asset Name         : Microsoft Corporation\n"
+        + "Avg Purchase Price : 10.0\n"
+        + "Sale price         : 15.0\n"
+        + "Difference USD     : 5.0\n"
+        + "Difference %       : 50\n");
+
+    StringBuilder before = new StringBuilder();
+    user.writePortfolioSalesInRange(0, 299, before);
+    assertEquals(before.toString(), "");
+  }
+}
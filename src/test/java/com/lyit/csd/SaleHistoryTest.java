@@ -0,0 +1,93 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class SaleHistoryTest {
+
+  private static final long DAY = 86_400;
+
+  private long nextId = 1;
+
+  private SoldAsset sale(long timeStamp, double bought, double sold, double amount) {
+    SoldAsset sale = new SoldAsset("MSFT", "Microsoft Corporation", "EQUITY", timeStamp, bought,
+        sold, amount);
+    sale.setSaleId(nextId++);
+    return sale;
+  }
+
+  @Test
+  public void testPartlyCoveredDaysAreExact() {
+    SaleHistory history = new SaleHistory();
+    history.add(sale(10 * DAY + 100, 10, 12, 1));
+    history.add(sale(10 * DAY + 500, 10, 9, 2));
+    history.add(sale(12 * DAY, 10, 15, 1));
+
+    RealizedTotals totals = history.realizedBetween(10 * DAY + 200, 12 * DAY);
+    assertEquals(totals.getCount(), 2);
+    assertEquals(totals.getProfitLoss(), -2 + 5.0);
+    assertEquals(totals.getAmount(), 3.0);
+    assertEquals(history.realizedBetween(11 * DAY, 11 * DAY + 5).getCount(), 0);
+  }
+
+  @Test
+  public void testFarApartTimestampsEachTakeOneDay() {
+    SaleHistory history = new SaleHistory();
+    // a sale at the epoch and one with a millisecond timestamp are billions of days apart
+    history.add(sale(1_640_995_200_000L, 10, 11, 1));
+    history.add(sale(0, 10, 13, 1));
+    history.add(sale(-DAY, 10, 7, 1));
+    history.add(sale(Long.MAX_VALUE, 10, 20, 1));
+
+    assertEquals(history.realizedBetween(Long.MIN_VALUE, Long.MAX_VALUE).getCount(), 4);
+    assertEquals(history.realizedBetween(0, DAY).getProfitLoss(), 3.0);
+    assertEquals(history.realizedBetween(-DAY, 1_640_995_200_000L).getProfitLoss(), 1.0 + 3 - 3);
+    assertEquals(history.realizedBetween(1, Long.MAX_VALUE).getProfitLoss(), 11.0);
+  }
+
+  @Test
+  public void testRandomRangesMatchFullScan() {
+    Random random = new Random(42);
+    SaleHistory history = new SaleHistory();
+    List<SoldAsset> sales = new ArrayList<>();
+
+    // sales land before and after the first one so the trees both grow and move back
+    for (int i = 0; i < 500; i++) {
+      SoldAsset sale = sale(1_600_000_000L + random.nextInt(400) * DAY / 2 - 100 * DAY
+          + random.nextInt((int) DAY), 10 + random.nextInt(50), 10 + random.nextInt(50),
+          1 + random.nextInt(5));
+      history.add(sale);
+      sales.add(sale);
+      if (random.nextInt(10) == 0) {
+        SoldAsset removed = sales.remove(random.nextInt(sales.size()));
+        history.remove(removed);
+      }
+    }
+
+    for (int i = 0; i < 300; i++) {
+      long a = 1_600_000_000L - 120 * DAY + (long) (random.nextDouble() * 360 * DAY);
+      long b = a + (long) (random.nextDouble() * 120 * DAY);
+
+      double profitLoss = 0;
+      double amount = 0;
+      long count = 0;
+      for (SoldAsset sale : sales) {
+        if (sale.getTimeStamp() >= a && sale.getTimeStamp() <= b) {
+          profitLoss += (sale.getPriceSold() - sale.getAvgPurchasePrice()) * sale.getAmount();
+          amount += sale.getAmount();
+          count++;
+        }
+      }
+
+      RealizedTotals totals = history.realizedBetween(a, b);
+      assertEquals(totals.getCount(), count);
+      assertEquals(totals.getProfitLoss(), profitLoss, 1e-6);
+      assertEquals(totals.getAmount(), amount, 1e-6);
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package com.lyit.csd;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Market for tests quoting every requested symbol as a Microsoft equity at the price and time
+ * last set.
+ */
+class TestMarket implements QuoteProvider {
+
+  private volatile long time;
+  private volatile double price;
+
+  TestMarket(long time, double price) {
+    set(time, price);
+  }
+
+  void set(long time, double price) {
+    this.time = time;
+    this.price = price;
+  }
+
+  @Override
+  public CompletableFuture<List<AssetQuote>> getQuotesAsync(List<String> assetSymbols) {
+    List<AssetQuote> quotes = new ArrayList<>();
+    for (String symbol : assetSymbols) {
+      quotes.add(new AssetQuote(symbol, "Microsoft Corporation", "EQUITY", time, price));
+    }
+    return CompletableFuture.completedFuture(quotes);
+  }
+}
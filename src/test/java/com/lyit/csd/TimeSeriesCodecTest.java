@@ -0,0 +1,84 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class TimeSeriesCodecTest {
+
+  private static final int POINTS = 100_000;
+
+  private final long[] times = new long[POINTS];
+  private final double[] values = new double[POINTS];
+
+  public TimeSeriesCodecTest() {
+    Random random = new Random(42);
+    long time = 1_600_000_000;
+    long cents = 15_000;
+    for (int i = 0; i < POINTS; i++) {
+      // minute bars with overnight gaps and a price that often does not move
+      time += i % 390 == 0 ? 17 * 3_600 + random.nextInt(5) : 60;
+      int move = random.nextInt(10);
+      cents += move < 6 ? 0 : move - 7;
+      times[i] = time;
+      values[i] = cents / 100.0;
+    }
+    values[POINTS / 2] = Double.NaN;
+  }
+
+  private byte[] encode(int blockSize) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (TimeSeriesEncoder encoder = new TimeSeriesEncoder(out, blockSize)) {
+      encoder.addAll(times, values, POINTS);
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testRoundTripIsExact() throws IOException {
+    byte[] data = encode(1000);
+    long[] decodedTimes = new long[POINTS];
+    double[] decodedValues = new double[POINTS];
+    int read = 0;
+    try (TimeSeriesDecoder decoder = new TimeSeriesDecoder(new ByteArrayInputStream(data))) {
+      while (decoder.nextBlock()) {
+        read += decoder.decode(decodedTimes, decodedValues, read);
+      }
+    }
+    assertEquals(read, POINTS);
+    assertEquals(decodedTimes, times);
+    for (int i = 0; i < POINTS; i++) {
+      assertEquals(Double.doubleToRawLongBits(decodedValues[i]),
+          Double.doubleToRawLongBits(values[i]));
+    }
+
+    // at least five times smaller than two longs per point
+    assertTrue(data.length * 5 < POINTS * 16, "compressed to " + data.length + " bytes");
+  }
+
+  @Test
+  public void testSeekSkipsEarlierBlocks() throws IOException {
+    byte[] data = encode(256);
+    long target = times[70_000];
+    long[] decodedTimes = new long[256];
+    double[] decodedValues = new double[256];
+    try (TimeSeriesDecoder decoder = new TimeSeriesDecoder(new ByteArrayInputStream(data))) {
+      assertTrue(decoder.seek(target));
+      assertTrue(decoder.getFirstTime() <= target && decoder.getLastTime() >= target);
+      int count = decoder.decode(decodedTimes, decodedValues, 0);
+      int index = 70_000 - 70_000 / 256 * 256;
+      assertEquals(count, 256);
+      assertEquals(decodedTimes[index], target);
+      assertEquals(decodedValues[index], values[70_000]);
+
+      assertFalse(decoder.seek(times[POINTS - 1] + 1));
+    }
+  }
+}
@@ -0,0 +1,226 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TradeJournalTest {
+
+  private final TestMarket market = new TestMarket(0, 0);
+
+  private Path directory;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("journal");
+  }
+
+  @Test
+  public void testReplayRebuildsAccount() throws IOException, InterruptedException {
+    try (TradeJournal journal = TradeJournal.open(directory, Durability.GROUP, 256)) {
+      User user = new User("test", market);
+      user.attachJournal(journal);
+      user.addFunds(500);
+      market.set(1, 10);
+      user.purchaseAsset("MSFT", 3);
+      market.set(2, 20);
+      user.purchaseAsset("MSFT", 2);
+      user.sellAsset("MSFT", 4, LotSelection.FIFO);
+      long lot = user.getUserPortfolio().getLots("MSFT").lowestCost().getLotId();
+      user.sellLot("MSFT", lot, 0.5);
+    }
+    assertTrue(TradeJournal.segments(directory).size() > 1);
+
+    User restored = new User("test", market);
+    try (TradeJournal journal = TradeJournal.open(directory, Durability.GROUP, 256)) {
+      restored.attachJournal(journal);
+      assertEquals(journal.getLastLsn(), 5);
+    }
+    assertEquals(restored.getAvailableFunds(), 10_000 + 500 - 30 - 40 + 80 + 10, 1e-9);
+    assertEquals(restored.getUserPortfolio().getLots("MSFT").getAmount(), 0.5, 1e-9);
+    assertEquals(restored.getUserPortfolio().getSoldAssets().size(), 2);
+    assertEquals(restored.getUserPortfolio().getSoldAssets().get(0).getAvgPurchasePrice(),
+        (3 * 10 + 20) / 4.0, 1e-9);
+  }
+
+  @Test
+  public void testTornTailIsDropped() throws IOException {
+    try (TradeJournal journal = TradeJournal.open(directory)) {
+      journal.append(JournalRecord.fundsAdded(1));
+      journal.append(JournalRecord.fundsAdded(2));
+    }
+
+    // cut the last record short as a crash in the middle of a write would
+    Path segment = TradeJournal.segments(directory).get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    try (TradeJournal journal = TradeJournal.open(directory)) {
+      assertEquals(journal.getLastLsn(), 1);
+      assertEquals(journal.append(JournalRecord.fundsAdded(3)), 2);
+      List<Double> amounts = new ArrayList<>();
+      journal.replay(0, record -> amounts.add(record.getAmount()));
+      assertEquals(amounts, List.of(1.0, 3.0));
+    }
+  }
+
+  @Test
+  public void testInterruptedWriterLeavesJournalOpen() throws IOException {
+    for (Durability durability : List.of(Durability.SYNC, Durability.GROUP)) {
+      Path dir = Files.createTempDirectory("journal");
+      try (TradeJournal journal = TradeJournal.open(dir, durability, 1 << 20)) {
+        Thread.currentThread().interrupt();
+        try {
+          journal.append(JournalRecord.fundsAdded(1));
+        } finally {
+          assertTrue(Thread.interrupted());
+        }
+        assertEquals(journal.append(JournalRecord.fundsAdded(2)), 2);
+      }
+
+      try (TradeJournal journal = TradeJournal.open(dir)) {
+        List<Double> amounts = new ArrayList<>();
+        journal.replay(0, record -> amounts.add(record.getAmount()));
+        assertEquals(amounts, List.of(1.0, 2.0));
+      }
+    }
+  }
+
+  @Test
+  public void testWritersWaitingTogetherShareOneSync() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    Object accountLock = new Object();
+    CyclicBarrier written = new CyclicBarrier(8);
+    try (TradeJournal journal = TradeJournal.open(directory, Durability.GROUP, 1 << 20)) {
+      List<Future<?>> writers = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        writers.add(pool.submit(() -> {
+          // written under the account lock, waited for after letting it go
+          long lsn;
+          synchronized (accountLock) {
+            lsn = journal.write(JournalRecord.fundsAdded(1));
+          }
+          written.await();
+          journal.awaitDurable(lsn);
+          return null;
+        }));
+      }
+      for (Future<?> writer : writers) {
+        writer.get();
+      }
+      assertEquals(journal.getLastLsn(), 8);
+      assertEquals(journal.getSyncCount(), 1);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testConcurrentWritersGetDistinctSequenceNumbers() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try (TradeJournal journal = TradeJournal.open(directory, Durability.GROUP, 4096)) {
+      List<Future<?>> writers = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        writers.add(pool.submit(() -> {
+          for (int j = 0; j < 200; j++) {
+            journal.append(JournalRecord.fundsAdded(1));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> writer : writers) {
+        writer.get();
+      }
+      assertEquals(journal.getLastLsn(), 1600);
+    } finally {
+      pool.shutdown();
+    }
+
+    try (TradeJournal journal = TradeJournal.open(directory)) {
+      long[] expected = {1};
+      journal.replay(0, record -> assertEquals(record.getLsn(), expected[0]++));
+      assertEquals(expected[0], 1601);
+    }
+  }
+
+  @Test
+  public void testRestoreLoadsSnapshotAndReplaysTail() throws IOException, InterruptedException {
+    User user = new User("test", market);
+    user.setSnapshotEvery(10);
+    try (TradeJournal journal = TradeJournal.open(directory, Durability.NONE, 512)) {
+      user.attachJournal(journal);
+      for (int i = 1; i <= 60; i++) {
+        market.set(i, 10 + i % 7);
+        user.purchaseAsset(i % 2 == 0 ? "MSFT" : "IBM", 2);
+        if (i % 3 == 0) {
+          user.sellAsset("MSFT", 1, LotSelection.FIFO);
+        }
+      }
+      user.checkpoint().join();
+      user.addFunds(7);
+    }
+
+    // old snapshots and the segments they cover are gone, the tail is still there
+    assertEquals(PortfolioSnapshot.snapshots(directory).size(), PortfolioSnapshot.KEEP);
+    assertTrue(TradeJournal.firstLsn(TradeJournal.segments(directory).get(0)) > 1);
+
+    User restored = new User("test", market);
+    try (TradeJournal journal = TradeJournal.open(directory, Durability.NONE, 512)) {
+      restored.attachJournal(journal);
+    }
+    assertEquals(restored.getAvailableFunds(), user.getAvailableFunds(), 1e-9);
+    for (String symbol : List.of("MSFT", "IBM", "AAPL", "BTC-USD")) {
+      assertEquals(restored.getUserPortfolio().getLots(symbol).getAmount(),
+          user.getUserPortfolio().getLots(symbol).getAmount());
+    }
+    assertEquals(restored.getUserPortfolio().getSoldAssets().size(),
+        user.getUserPortfolio().getSoldAssets().size());
+    assertEquals(restored.getUserPortfolio().getLots("MSFT").byTime().first().getLotId(),
+        user.getUserPortfolio().getLots("MSFT").byTime().first().getLotId());
+    assertEquals(restored.getUserPortfolio().getRealizedBetween(0, 100).getProfitLoss(),
+        user.getUserPortfolio().getRealizedBetween(0, 100).getProfitLoss(), 1e-9);
+  }
+
+  @Test
+  public void testSnapshotAndJournalKeepScaledValuesExactly() throws Exception {
+    User user = new User("test", market);
+    try (TradeJournal journal = TradeJournal.open(directory, Durability.NONE, 1 << 20)) {
+      user.attachJournal(journal);
+      market.set(1, 123.456789);
+      user.purchaseAsset("MSFT", 0.33333333);
+      user.checkpoint().join();
+      user.addFunds(0.000001);
+      market.set(1, 0.000003);
+      user.purchaseAsset("MSFT", 12_345.6789);
+    }
+
+    User restored = new User("test", market);
+    try (TradeJournal journal = TradeJournal.open(directory, Durability.NONE, 1 << 20)) {
+      restored.attachJournal(journal);
+    }
+    assertEquals(restored.getAvailableFundsMicros(), user.getAvailableFundsMicros());
+    List<Asset> lots = new ArrayList<>(user.getUserPortfolio().getLots("MSFT").byTime());
+    List<Asset> restoredLots = new ArrayList<>(
+        restored.getUserPortfolio().getLots("MSFT").byTime());
+    assertEquals(restoredLots.size(), lots.size());
+    for (int i = 0; i < lots.size(); i++) {
+      assertEquals(restoredLots.get(i).getPriceBoughtMicros(), lots.get(i).getPriceBoughtMicros());
+      assertEquals(restoredLots.get(i).getAmountUnits(), lots.get(i).getAmountUnits());
+    }
+  }
+}
@@ -3,17 +3,50 @@ package com.lyit.csd;
 import static org.testng.Assert.assertEquals;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 public class UserTest {
 
-  // please input your API key in string key
-  String key = "Wr4J5M8opl3mlzbElkxUg3OUZ0np1RcT65McuaC8";
-  User user = new User(key);
+  // quotes come from a local mock of the api, no key or network needed
+  private MockYahooServer server;
+  private ConnectionPort api;
+
+  String key = "test";
+  User user;
+
+  @BeforeClass
+  public void startServer() throws IOException {
+    server = new MockYahooServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 42);
+    // steady prices, the names the account starts with and a symbol that is not on the market
+    server.setVolatility(0);
+    server.setFullNames(Map.of("TSLA", "Tesla, Inc.", "AAPL", "Apple Inc.",
+        "NVDA", "NVIDIA Corporation", "BTC-USD", "Bitcoin USD"));
+    server.setUnlisted(List.of("LYIT"));
+    server.start();
+    api = new ConnectionPort(new HttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(5),
+        server.getBaseUri()), "test");
+  }
+
+  @AfterClass
+  public void stopServer() {
+    server.close();
+  }
+
+  @BeforeMethod
+  public void setUp() {
+    user = new User(key, api);
+  }
 
   @Test
   public void testPurchaseAsset_and_findPortfolioType_helperMethod() throws IOException, InterruptedException {
@@ -66,7 +99,7 @@ public class UserTest {
   @Test
   public void testSellAsset_and_findPortfolioType_helperMethod() throws IOException, InterruptedException {
 
-    user = new User(key);
+    user = new User(key, api);
     int cryptoLength = user.getUserPortfolio().getCrypto().size();
     int stockLength = user.getUserPortfolio().getStock().size();
     int assetNamesLength = user.getUserPortfolio().getAllAssetNames().size();
@@ -112,7 +145,7 @@ public class UserTest {
       Assert.assertEquals(availableFunds, user.getAvailableFunds());
 
       //Test Withdraw funds
-      user = new User(key);
+      user = new User(key, api);
       Assert.assertFalse(user.withdrawFunds(10_001));
       Assert.assertTrue(user.withdrawFunds(9_999));
   }
@@ -120,7 +153,7 @@ public class UserTest {
   @Test
   public void testListAllInvestments_helperMethod() throws IOException, InterruptedException {
     // creating user for test
-    user = new User(key);
+    user = new User(key, api);
 
     // creating actual values for assertion
     String actual = user.listPortfolioAssetsByType("stock") + user.listPortfolioAssetsByType("crypto");
@@ -132,7 +165,7 @@ public class UserTest {
   }
   @Test
   public void testListPortfolioAssetsByType() throws IOException, InterruptedException {
-    user = new User(key);
+    user = new User(key, api);
 
 
     //checking stock